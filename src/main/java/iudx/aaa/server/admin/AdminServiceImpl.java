@@ -19,6 +19,8 @@ import static iudx.aaa.server.admin.Constants.SQL_UPDATE_ROLE_STATUS;
 import static iudx.aaa.server.admin.Constants.SUCC_TITLE_CREATED_RS;
 import static iudx.aaa.server.admin.Constants.SUCC_TITLE_PROVIDER_REGS;
 import static iudx.aaa.server.admin.Constants.SUCC_TITLE_PROV_STATUS_UPDATE;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_ADDRESS;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_DELEGATORS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_ALREADY_EXISTS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_ROLE;
@@ -27,6 +29,7 @@ import static iudx.aaa.server.apiserver.util.Urn.URN_SUCCESS;
 import com.google.common.net.InternetDomainName;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgPool;
@@ -42,6 +45,7 @@ import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.util.ComposeException;
 import iudx.aaa.server.registration.KcAdmin;
 import iudx.aaa.server.registration.RegistrationService;
+import iudx.aaa.server.registration.UserReplica;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -66,6 +70,8 @@ public class AdminServiceImpl implements AdminService {
   private PgPool pool;
   private KcAdmin kc;
   private RegistrationService registrationService;
+  private UserReplica userReplica;
+  private EventBus eventBus;
 
   /**
    * Constructor to instantiate {@link AdminServiceImpl}.
@@ -75,9 +81,46 @@ public class AdminServiceImpl implements AdminService {
    * @param registrationService instance of {@link RegistrationService}
    */
   public AdminServiceImpl(PgPool pool, KcAdmin kc, RegistrationService registrationService) {
+    this(pool, kc, registrationService, null);
+  }
+
+  /**
+   * Constructor to instantiate {@link AdminServiceImpl} with a local replica of the users on
+   * Keycloak.
+   *
+   * @param pool instance of {@link PgPool}
+   * @param kc instance of {@link KcAdmin}
+   * @param registrationService instance of {@link RegistrationService}
+   * @param userReplica instance of {@link UserReplica}, or <tt>null</tt> if users are always looked
+   *     up on Keycloak
+   */
+  public AdminServiceImpl(
+      PgPool pool, KcAdmin kc, RegistrationService registrationService, UserReplica userReplica) {
+    this(pool, kc, registrationService, userReplica, null);
+  }
+
+  /**
+   * Constructor to instantiate {@link AdminServiceImpl} that evicts the delegations of providers
+   * from the delegation cache when the status of their provider role changes.
+   *
+   * @param pool instance of {@link PgPool}
+   * @param kc instance of {@link KcAdmin}
+   * @param registrationService instance of {@link RegistrationService}
+   * @param userReplica instance of {@link UserReplica}, or <tt>null</tt> if users are always looked
+   *     up on Keycloak
+   * @param eventBus the event bus, or <tt>null</tt> to not publish evictions
+   */
+  public AdminServiceImpl(
+      PgPool pool,
+      KcAdmin kc,
+      RegistrationService registrationService,
+      UserReplica userReplica,
+      EventBus eventBus) {
     this.pool = pool;
     this.kc = kc;
     this.registrationService = registrationService;
+    this.userReplica = userReplica;
+    this.eventBus = eventBus;
   }
 
   @Override
@@ -140,7 +183,7 @@ public class AdminServiceImpl implements AdminService {
                       .distinct()
                       .collect(Collectors.toList());
 
-              return kc.getDetails(userIds);
+              return lookupDetails(userIds);
             });
 
     nameDetails
@@ -276,11 +319,18 @@ public class AdminServiceImpl implements AdminService {
                     conn ->
                         conn.preparedQuery(SQL_UPDATE_ROLE_STATUS)
                             .executeBatch(tuple)
-                            .compose(res -> kc.getDetails(providerUserIds))));
+                            .compose(res -> lookupDetails(providerUserIds))));
 
     updateStatusAndGetUserDetails
         .onSuccess(
             details -> {
+              if (eventBus != null) {
+                eventBus.publish(
+                    DELEGATION_CACHE_ADDRESS,
+                    new JsonObject()
+                        .put(DELEGATION_CACHE_DELEGATORS, new JsonArray(checkProvRegIds.result())));
+              }
+
               JsonArray resp = new JsonArray();
               Map<UUID, JsonObject> providerInfo = pendingProvDetails.result();
 
@@ -431,4 +481,9 @@ public class AdminServiceImpl implements AdminService {
 
     return promiseHandler.future();
   }
+
+  /** Get the details of users from the local replica if enabled, else from Keycloak. */
+  private Future<Map<String, JsonObject>> lookupDetails(List<String> ids) {
+    return userReplica == null ? kc.getDetails(ids) : userReplica.getDetails(ids);
+  }
 }
@@ -12,10 +12,16 @@ import static iudx.aaa.server.admin.Constants.DB_RECONNECT_ATTEMPTS;
 import static iudx.aaa.server.admin.Constants.DB_RECONNECT_INTERVAL_MS;
 import static iudx.aaa.server.admin.Constants.KC_ADMIN_CLIENT_ID;
 import static iudx.aaa.server.admin.Constants.KC_ADMIN_CLIENT_SEC;
+import static iudx.aaa.server.admin.Constants.KC_ADMIN_MAX_CONCURRENCY;
+import static iudx.aaa.server.admin.Constants.KC_ADMIN_PAGE_SIZE;
 import static iudx.aaa.server.admin.Constants.KC_ADMIN_POOLSIZE;
 import static iudx.aaa.server.admin.Constants.KEYCLOAK_REALM;
 import static iudx.aaa.server.admin.Constants.KEYCLOAK_URL;
 import static iudx.aaa.server.admin.Constants.REGISTRATION_SERVICE_ADDRESS;
+import static iudx.aaa.server.admin.Constants.USER_REPLICA_ENABLED;
+import static iudx.aaa.server.admin.Constants.USER_REPLICA_MAX_STALENESS;
+import static iudx.aaa.server.registration.Constants.DEFAULT_KC_ADMIN_PAGE_SIZE;
+import static iudx.aaa.server.registration.Constants.DEFAULT_USER_REPLICA_MAX_STALENESS;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
@@ -26,6 +32,7 @@ import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
 import iudx.aaa.server.registration.KcAdmin;
 import iudx.aaa.server.registration.RegistrationService;
+import iudx.aaa.server.registration.UserReplica;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -65,6 +72,8 @@ public class AdminVerticle extends AbstractVerticle {
   private AdminService adminService;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
+  private KcAdmin kcadmin;
+  private UserReplica userReplica;
   private static final Logger LOGGER = LogManager.getLogger(AdminVerticle.class);
 
   private RegistrationService registrationService;
@@ -119,16 +128,30 @@ public class AdminVerticle extends AbstractVerticle {
     /* Create the client pool */
     pool = PgPool.pool(vertx, connectOptions, poolOptions);
 
-    KcAdmin kcadmin =
+    kcadmin =
         new KcAdmin(
+            vertx,
             keycloakUrl,
             keycloakRealm,
             keycloakAdminClientId,
             keycloakAdminClientSecret,
-            keycloakAdminPoolSize);
+            keycloakAdminPoolSize,
+            config().getInteger(KC_ADMIN_MAX_CONCURRENCY, keycloakAdminPoolSize),
+            config().getInteger(KC_ADMIN_PAGE_SIZE, DEFAULT_KC_ADMIN_PAGE_SIZE));
+
+    /* the replica is kept in sync by the Registration Verticle */
+    if (config().getBoolean(USER_REPLICA_ENABLED, false)) {
+      userReplica =
+          new UserReplica(
+              vertx,
+              pool,
+              kcadmin,
+              config().getLong(USER_REPLICA_MAX_STALENESS, DEFAULT_USER_REPLICA_MAX_STALENESS));
+    }
 
     registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
-    adminService = new AdminServiceImpl(pool, kcadmin, registrationService);
+    adminService =
+        new AdminServiceImpl(pool, kcadmin, registrationService, userReplica, vertx.eventBus());
     binder = new ServiceBinder(vertx);
     consumer = binder.setAddress(ADMIN_SERVICE_ADDRESS).register(AdminService.class, adminService);
 
@@ -138,5 +161,6 @@ public class AdminVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    kcadmin.close();
   }
 }
@@ -22,6 +22,10 @@ public class Constants {
   public static final String KC_ADMIN_CLIENT_ID = "keycloakAdminClientId";
   public static final String KC_ADMIN_CLIENT_SEC = "keycloakAdminClientSecret";
   public static final String KC_ADMIN_POOLSIZE = "keycloakAdminPoolSize";
+  public static final String KC_ADMIN_MAX_CONCURRENCY = "keycloakAdminMaxConcurrency";
+  public static final String KC_ADMIN_PAGE_SIZE = "keycloakAdminPageSize";
+  public static final String USER_REPLICA_ENABLED = "userReplicaEnabled";
+  public static final String USER_REPLICA_MAX_STALENESS = "userReplicaMaxStalenessSeconds";
 
   /* Response fields */
   public static final String RESP_STATUS = "status";
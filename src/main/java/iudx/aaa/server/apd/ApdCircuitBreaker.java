@@ -0,0 +1,306 @@
+package iudx.aaa.server.apd;
+
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_FAILURE_RATE;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_MIN_CALLS;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_OPEN_MS;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_WINDOW_SIZE;
+import static iudx.aaa.server.apd.Constants.DEFAULT_CB_FAILURE_RATE;
+import static iudx.aaa.server.apd.Constants.DEFAULT_CB_MIN_CALLS;
+import static iudx.aaa.server.apd.Constants.DEFAULT_CB_OPEN_MS;
+import static iudx.aaa.server.apd.Constants.DEFAULT_CB_WINDOW_SIZE;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_CALLS;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_FAILURE_RATE;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_STATE;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_TIMEOUT_RATE;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Circuit breaker for the calls made to each APD by {@link ApdWebClient}, so that a slow or failing
+ * APD does not hold up token requests for the full web client timeout.
+ *
+ * <p>The outcome of the last <tt>circuitBreakerWindowSize</tt> calls to each APD is tracked. Once
+ * at least <tt>circuitBreakerMinCalls</tt> calls have been made and the share of failures (errors,
+ * invalid responses and timeouts) reaches <tt>circuitBreakerFailureRate</tt>, the circuit opens
+ * and calls to the APD fail immediately. After <tt>circuitBreakerOpenMs</tt>, the circuit is half
+ * open and a single probe call is let through. The circuit closes if the probe succeeds, and opens
+ * again otherwise.
+ *
+ * <p>The state of each circuit is exported through Micrometer as <tt>aaa.apd.circuit.state</tt>
+ * (<em>0</em> for closed, <em>1</em> for half open and <em>2</em> for open), and the number of
+ * calls as <tt>aaa.apd.calls</tt> tagged with the <tt>outcome</tt> (<em>success</em>,
+ * <em>failure</em>, <em>timeout</em> or <em>rejected</em>). All metrics are tagged with the APD
+ * URL and the deployment ID of the verticle.
+ */
+public class ApdCircuitBreaker {
+
+  private static final Logger LOGGER = LogManager.getLogger(ApdCircuitBreaker.class);
+  private static final String METRICS_STATE = "aaa.apd.circuit.state";
+  private static final String METRICS_CALLS = "aaa.apd.calls";
+
+  /** The state of a circuit, in increasing order of severity. */
+  enum State {
+    CLOSED,
+    HALF_OPEN,
+    OPEN;
+
+    String tag() {
+      return name().toLowerCase();
+    }
+  }
+
+  /** The outcome of a call to an APD. */
+  enum Outcome {
+    SUCCESS,
+    FAILURE,
+    TIMEOUT,
+    REJECTED;
+
+    String tag() {
+      return name().toLowerCase();
+    }
+  }
+
+  /** The state and recent calls of a single APD. */
+  private final class Circuit {
+    private final String url;
+    private final Map<Outcome, Counter> calls = new EnumMap<Outcome, Counter>(Outcome.class);
+
+    /* ring buffer of the outcomes of the last calls */
+    private final Outcome[] window = new Outcome[windowSize];
+    private int next;
+    private int recorded;
+    private int failures;
+    private int timeouts;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    private Circuit(String url) {
+      this.url = url;
+      for (Outcome outcome : Outcome.values()) {
+        calls.put(
+            outcome,
+            Counter.builder(METRICS_CALLS)
+                .tag("apd", url)
+                .tag("outcome", outcome.tag())
+                .tag("deployment", deploymentId)
+                .register(registry));
+      }
+      Gauge.builder(METRICS_STATE, this, circuit -> circuit.state.ordinal())
+          .tag("apd", url)
+          .tag("deployment", deploymentId)
+          .tag("instance", instance)
+          .register(registry);
+    }
+
+    private void add(Outcome outcome) {
+      if (recorded == windowSize) {
+        remove(window[next]);
+      } else {
+        recorded++;
+      }
+      window[next] = outcome;
+      next = (next + 1) % windowSize;
+
+      if (outcome != Outcome.SUCCESS) {
+        failures++;
+      }
+      if (outcome == Outcome.TIMEOUT) {
+        timeouts++;
+      }
+    }
+
+    private void remove(Outcome outcome) {
+      if (outcome != Outcome.SUCCESS) {
+        failures--;
+      }
+      if (outcome == Outcome.TIMEOUT) {
+        timeouts--;
+      }
+    }
+
+    private void reset() {
+      next = 0;
+      recorded = 0;
+      failures = 0;
+      timeouts = 0;
+    }
+
+    private double rate(int count) {
+      return recorded == 0 ? 0 : (double) count / recorded;
+    }
+
+    private void open() {
+      state = State.OPEN;
+      openedAtNanos = nanoTime.getAsLong();
+      LOGGER.warn(
+          "Circuit for APD {} opened; failure rate {}, timeout rate {} in last {} calls",
+          url,
+          rate(failures),
+          rate(timeouts),
+          recorded);
+    }
+  }
+
+  private final int windowSize;
+  private final int minCalls;
+  private final double failureRate;
+  private final long openNanos;
+  private final LongSupplier nanoTime;
+
+  private final MeterRegistry registry;
+  private final String deploymentId;
+  private final String instance = Integer.toHexString(System.identityHashCode(this));
+  private final Map<String, Circuit> circuits = new HashMap<String, Circuit>();
+
+  /**
+   * Create the circuit breaker.
+   *
+   * @param options the configuration options of the {@link ApdWebClient}
+   */
+  public ApdCircuitBreaker(JsonObject options) {
+    this(options, System::nanoTime);
+  }
+
+  ApdCircuitBreaker(JsonObject options, LongSupplier nanoTime) {
+    this.windowSize = options.getInteger(CONFIG_CB_WINDOW_SIZE, DEFAULT_CB_WINDOW_SIZE);
+    this.minCalls = options.getInteger(CONFIG_CB_MIN_CALLS, DEFAULT_CB_MIN_CALLS);
+    this.failureRate = options.getDouble(CONFIG_CB_FAILURE_RATE, DEFAULT_CB_FAILURE_RATE);
+    this.openNanos =
+        TimeUnit.MILLISECONDS.toNanos(options.getLong(CONFIG_CB_OPEN_MS, DEFAULT_CB_OPEN_MS));
+    this.nanoTime = nanoTime;
+
+    if (windowSize <= 0
+        || minCalls <= 0
+        || minCalls > windowSize
+        || failureRate <= 0
+        || failureRate > 1
+        || openNanos <= 0) {
+      throw new IllegalArgumentException("Invalid APD circuit breaker configuration");
+    }
+
+    this.registry = EvictingCache.meterRegistry();
+
+    Context context = Vertx.currentContext();
+    this.deploymentId = String.valueOf(context == null ? null : context.deploymentID());
+  }
+
+  private Circuit circuit(String url) {
+    return circuits.computeIfAbsent(url, Circuit::new);
+  }
+
+  /**
+   * Check if a call may be made to an APD. If <tt>true</tt> is returned, the outcome of the call
+   * must be recorded with {@link #onSuccess(String)} or {@link #onFailure(String, boolean)}.
+   *
+   * @param url the URL of the APD
+   * @return <tt>true</tt> if the call may be made, <tt>false</tt> if the circuit is open
+   */
+  public synchronized boolean tryAcquire(String url) {
+    Circuit circuit = circuit(url);
+
+    if (circuit.state == State.OPEN
+        && nanoTime.getAsLong() - circuit.openedAtNanos >= openNanos) {
+      circuit.state = State.HALF_OPEN;
+      circuit.probeInFlight = false;
+      LOGGER.info("Circuit for APD {} half open, probing", url);
+    }
+
+    if (circuit.state == State.CLOSED) {
+      return true;
+    }
+
+    if (circuit.state == State.HALF_OPEN && !circuit.probeInFlight) {
+      circuit.probeInFlight = true;
+      return true;
+    }
+
+    circuit.calls.get(Outcome.REJECTED).increment();
+    return false;
+  }
+
+  /**
+   * Record a call to an APD that got a valid response.
+   *
+   * @param url the URL of the APD
+   */
+  public synchronized void onSuccess(String url) {
+    record(url, Outcome.SUCCESS);
+  }
+
+  /**
+   * Record a call to an APD that failed or got an invalid response.
+   *
+   * @param url the URL of the APD
+   * @param timedOut <tt>true</tt> if the call timed out
+   */
+  public synchronized void onFailure(String url, boolean timedOut) {
+    record(url, timedOut ? Outcome.TIMEOUT : Outcome.FAILURE);
+  }
+
+  private void record(String url, Outcome outcome) {
+    Circuit circuit = circuit(url);
+    circuit.calls.get(outcome).increment();
+
+    switch (circuit.state) {
+      case HALF_OPEN:
+        circuit.probeInFlight = false;
+        if (outcome == Outcome.SUCCESS) {
+          circuit.state = State.CLOSED;
+          circuit.reset();
+          LOGGER.info("Circuit for APD {} closed", url);
+        } else {
+          circuit.open();
+        }
+        break;
+      case CLOSED:
+        circuit.add(outcome);
+        if (circuit.recorded >= minCalls && circuit.rate(circuit.failures) >= failureRate) {
+          circuit.open();
+        }
+        break;
+      default:
+        /* calls made before the circuit opened, the circuit stays open */
+        break;
+    }
+  }
+
+  /**
+   * Get the state of the circuit of an APD, as seen by this instance.
+   *
+   * @param url the URL of the APD
+   * @return a JSON object with the <tt>state</tt>, the <tt>failureRate</tt> and
+   *     <tt>timeoutRate</tt> of the recent calls and the number of recent <tt>calls</tt>
+   */
+  public synchronized JsonObject health(String url) {
+    Circuit circuit = circuits.get(url);
+    if (circuit == null) {
+      return new JsonObject()
+          .put(RESP_APD_HEALTH_STATE, State.CLOSED.tag())
+          .put(RESP_APD_HEALTH_FAILURE_RATE, 0.0)
+          .put(RESP_APD_HEALTH_TIMEOUT_RATE, 0.0)
+          .put(RESP_APD_HEALTH_CALLS, 0);
+    }
+
+    return new JsonObject()
+        .put(RESP_APD_HEALTH_STATE, circuit.state.tag())
+        .put(RESP_APD_HEALTH_FAILURE_RATE, circuit.rate(circuit.failures))
+        .put(RESP_APD_HEALTH_TIMEOUT_RATE, circuit.rate(circuit.timeouts))
+        .put(RESP_APD_HEALTH_CALLS, circuit.recorded);
+  }
+}
@@ -0,0 +1,152 @@
+package iudx.aaa.server.apd;
+
+import static iudx.aaa.server.apd.Constants.APD_DECISION_CACHE_ADDRESS;
+import static iudx.aaa.server.apd.Constants.APD_RESP_CACHE_TTL;
+import static iudx.aaa.server.apd.Constants.APD_RESP_TYPE;
+import static iudx.aaa.server.apd.Constants.APD_URN_ALLOW;
+import static iudx.aaa.server.apd.Constants.RESP_APD_URL;
+
+import com.google.common.base.Ticker;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import java.nio.charset.StandardCharsets;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded cache of the allow decisions sent by APDs, so that {@link ApdServiceImpl#callApd} does
+ * not call the APD again for the same request while the decision is fresh.
+ *
+ * <p>A decision is cached only if the APD sent an allow response with the <tt>cacheTtlSeconds</tt>
+ * key, for that many seconds or <tt>decisionCacheMaxTtlSeconds</tt>, whichever is lower. Deny and
+ * deny-needs-interaction responses are never cached. Decisions are keyed by the user ID, the item
+ * ID, the APD URL and a hash of the request context.
+ *
+ * <p>When the status of an APD is changed, its decisions are evicted on every ApdVerticle instance
+ * in the cluster by publishing a JSON object with the APD URL in the <tt>url</tt> key on {@link
+ * Constants#APD_DECISION_CACHE_ADDRESS}.
+ *
+ * <p>The number of lookups is exported through Micrometer as <tt>aaa.apd.decision.cache</tt>,
+ * tagged with the <tt>result</tt> (<em>hit</em> or <em>miss</em>) and the deployment ID of the
+ * verticle.
+ */
+public class ApdDecisionCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(ApdDecisionCache.class);
+  private static final String METRICS_NAME = "aaa.apd.decision.cache";
+
+  /** A cached APD response and the APD that sent it. */
+  private static final class Decision {
+    private final String apdUrl;
+    private final JsonObject response;
+
+    private Decision(String apdUrl, JsonObject response) {
+      this.apdUrl = apdUrl;
+      this.response = response;
+    }
+  }
+
+  private final long maxTtlSeconds;
+  private final EvictingCache<HashCode, Decision> decisions;
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxSize maximum number of decisions held. A size of <tt>0</tt> disables caching
+   * @param maxTtlSeconds maximum time in seconds for which a decision is cached, whatever the APD
+   *     asks for. A TTL of <tt>0</tt> disables caching
+   */
+  public ApdDecisionCache(Vertx vertx, long maxSize, long maxTtlSeconds) {
+    this(vertx, maxSize, maxTtlSeconds, Ticker.systemTicker());
+  }
+
+  ApdDecisionCache(Vertx vertx, long maxSize, long maxTtlSeconds, Ticker ticker) {
+    if (maxSize < 0 || maxTtlSeconds < 0) {
+      throw new IllegalArgumentException("Invalid APD decision cache configuration");
+    }
+
+    this.maxTtlSeconds = maxTtlSeconds;
+    this.decisions =
+        new EvictingCache<HashCode, Decision>(
+            vertx,
+            METRICS_NAME,
+            maxSize,
+            maxTtlSeconds,
+            ticker,
+            APD_DECISION_CACHE_ADDRESS,
+            msg -> evictLocal(msg.getString(RESP_APD_URL)));
+  }
+
+  private static HashCode key(String userId, String itemId, String apdUrl, JsonObject context) {
+    /* none of the values can contain a newline, since the context is encoded as JSON */
+    String key =
+        String.join("\n", userId, itemId, apdUrl, context == null ? "" : context.encode());
+    return Hashing.sha256().hashString(key, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Get a cached allow decision.
+   *
+   * @param userId the ID of the user requesting access
+   * @param itemId the ID of the item
+   * @param apdUrl the URL of the APD
+   * @param context the context sent by the user
+   * @return the response sent by the APD, or <tt>null</tt> if there is no fresh decision
+   */
+  public JsonObject get(String userId, String itemId, String apdUrl, JsonObject context) {
+    Decision decision = decisions.get(key(userId, itemId, apdUrl, context));
+    return decision == null ? null : decision.response.copy();
+  }
+
+  /**
+   * Cache the response sent by an APD, if it is an allow response with a cache TTL.
+   *
+   * @param userId the ID of the user requesting access
+   * @param itemId the ID of the item
+   * @param apdUrl the URL of the APD
+   * @param context the context sent by the user
+   * @param response the response sent by the APD, as checked by {@link ApdWebClient}
+   */
+  public void put(
+      String userId, String itemId, String apdUrl, JsonObject context, JsonObject response) {
+    if (!APD_URN_ALLOW.equals(response.getString(APD_RESP_TYPE))) {
+      return;
+    }
+
+    long ttlSeconds = Math.min(response.getLong(APD_RESP_CACHE_TTL, 0L), maxTtlSeconds);
+    decisions.put(
+        key(userId, itemId, apdUrl, context), new Decision(apdUrl, response.copy()), ttlSeconds);
+  }
+
+  /**
+   * Evict the decisions of an APD on all instances in the cluster.
+   *
+   * @param apdUrl the URL of the APD
+   */
+  public void invalidate(String apdUrl) {
+    decisions.publish(new JsonObject().put(RESP_APD_URL, apdUrl));
+  }
+
+  private void evictLocal(String apdUrl) {
+    decisions.removeIf((key, decision) -> decision.apdUrl.equals(apdUrl));
+    LOGGER.debug("Info: Evicted cached decisions of APD {}", apdUrl);
+  }
+
+  /**
+   * Close the cache when the verticle is undeployed, see {@link EvictingCache#close()}.
+   *
+   * @return a Future that completes once the cache is closed
+   */
+  public Future<Void> close() {
+    return decisions.close();
+  }
+
+  long size() {
+    return decisions.size();
+  }
+}
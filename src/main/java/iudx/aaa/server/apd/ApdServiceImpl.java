@@ -43,6 +43,7 @@ import static iudx.aaa.server.apd.Constants.GET_APDINFO_URL;
 import static iudx.aaa.server.apd.Constants.INTERNALERROR;
 import static iudx.aaa.server.apd.Constants.LIST_AUTH_QUERY;
 import static iudx.aaa.server.apd.Constants.LIST_USER_QUERY;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH;
 import static iudx.aaa.server.apd.Constants.RESP_APD_ID;
 import static iudx.aaa.server.apd.Constants.RESP_APD_NAME;
 import static iudx.aaa.server.apd.Constants.RESP_APD_OWNER;
@@ -50,7 +51,6 @@ import static iudx.aaa.server.apd.Constants.RESP_APD_STATUS;
 import static iudx.aaa.server.apd.Constants.RESP_APD_URL;
 import static iudx.aaa.server.apd.Constants.RESP_OWNER_USER_ID;
 import static iudx.aaa.server.apd.Constants.SQL_GET_APDS_BY_ID_COS_ADMIN;
-import static iudx.aaa.server.apd.Constants.SQL_GET_APD_URL_STATUS;
 import static iudx.aaa.server.apd.Constants.SQL_INSERT_APD_IF_NOT_EXISTS;
 import static iudx.aaa.server.apd.Constants.SQL_UPDATE_APD_STATUS;
 import static iudx.aaa.server.apd.Constants.SUCC_TITLE_APD_READ;
@@ -82,6 +82,7 @@ import iudx.aaa.server.apiserver.Response.ResponseBuilder;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.token.TokenService;
 import java.util.ArrayList;
@@ -89,6 +90,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collector;
@@ -114,6 +116,8 @@ public class ApdServiceImpl implements ApdService {
   private ApdWebClient apdWebClient;
   private RegistrationService registrationService;
   private TokenService tokenService;
+  private ServerRegistry serverRegistry;
+  private ApdDecisionCache decisionCache;
 
   private static final JsonObject DEFAULT_CONSTRAINTS = new JsonObject();
 
@@ -121,19 +125,43 @@ public class ApdServiceImpl implements ApdService {
    * Constructor to instantiate {@link ApdServiceImpl}.
    *
    * @param pool instance of {@link PgPool}
+   * @param serverRegistry instance of {@link ServerRegistry}
    * @param apdWebClient instance of {@link ApdWebClient}
    * @param regService instance of {@link RegistrationService}
    * @param tokService instance of {@link TokenService}
    */
   public ApdServiceImpl(
       PgPool pool,
+      ServerRegistry serverRegistry,
       ApdWebClient apdWebClient,
       RegistrationService regService,
       TokenService tokService) {
+    this(pool, serverRegistry, apdWebClient, regService, tokService, null);
+  }
+
+  /**
+   * Constructor to instantiate {@link ApdServiceImpl} with a cache of APD decisions.
+   *
+   * @param pool instance of {@link PgPool}
+   * @param serverRegistry instance of {@link ServerRegistry}
+   * @param apdWebClient instance of {@link ApdWebClient}
+   * @param regService instance of {@link RegistrationService}
+   * @param tokService instance of {@link TokenService}
+   * @param decisionCache instance of {@link ApdDecisionCache}, or <tt>null</tt> if disabled
+   */
+  public ApdServiceImpl(
+      PgPool pool,
+      ServerRegistry serverRegistry,
+      ApdWebClient apdWebClient,
+      RegistrationService regService,
+      TokenService tokService,
+      ApdDecisionCache decisionCache) {
     this.pool = pool;
+    this.serverRegistry = serverRegistry;
     this.apdWebClient = apdWebClient;
     this.registrationService = regService;
     this.tokenService = tokService;
+    this.decisionCache = decisionCache;
   }
 
   /**
@@ -202,6 +230,11 @@ public class ApdServiceImpl implements ApdService {
                   .forEach(
                       id -> {
                         JsonObject result = details.getJsonObject(id);
+                        if (user.getRoles().contains(Roles.COS_ADMIN)) {
+                          result.put(
+                              RESP_APD_HEALTH,
+                              apdWebClient.getApdHealth(result.getString(RESP_APD_URL)));
+                        }
                         response.add(result);
                       });
               return Future.succeededFuture(response);
@@ -334,6 +367,11 @@ public class ApdServiceImpl implements ApdService {
                 obj.remove(RESP_APD_STATUS);
                 obj.put(RESP_APD_STATUS, req.getStatus().toString().toLowerCase());
 
+                /* cached decisions must not outlive the status they were made in */
+                if (decisionCache != null) {
+                  decisionCache.invalidate(obj.getString(RESP_APD_URL));
+                }
+
                 response.add(obj);
                 LOGGER.info(
                     "Status of APD {} updated to {}", apdId.toString(), req.getStatus().toString());
@@ -688,30 +726,17 @@ public class ApdServiceImpl implements ApdService {
     /* TODO: make apdContext a class */
     String apdUrl = apdContext.getString("apdUrl");
     String userId = apdContext.getString("userId");
-    String ownerId = apdContext.getString("ownerId");
     String itemId = apdContext.getString("itemId");
-    String itemType = apdContext.getString("itemType");
     String rsUrl = apdContext.getString("resSerUrl");
     JsonObject context = apdContext.getJsonObject("context");
 
-    Collector<Row, ?, List<JsonObject>> collector =
-        Collectors.mapping(row -> row.toJson(), Collectors.toList());
+    Future<Optional<ApdStatus>> apdDetails = serverRegistry.getApdStatus(apdUrl);
 
-    Future<List<JsonObject>> apdDetails =
-        pool.withConnection(
-            conn ->
-                conn.preparedQuery(SQL_GET_APD_URL_STATUS)
-                    .collecting(collector)
-                    .execute(Tuple.of(apdUrl))
-                    .map(res -> res.value()));
-
-    Future<Map<String, JsonObject>> userAndOwnerDetails = getUserDetails(List.of(userId, ownerId));
-
-    Future<JsonObject> authAccessToken =
+    Future<JsonObject> apdResponse =
         apdDetails.compose(
-            list -> {
+            apdStatus -> {
               /* In case the APD URL in the CAT item was not registered on the server */
-              if (list.isEmpty()) {
+              if (apdStatus.isEmpty()) {
                 return Future.failedFuture(
                     new ComposeException(
                         403,
@@ -720,56 +745,20 @@ public class ApdServiceImpl implements ApdService {
                         ERR_DETAIL_APD_NOT_REGISTERED));
               }
 
-              return tokenService.getAuthServerToken(apdUrl);
-            });
+              /* decisions are only cached and used while the APD is active */
+              if (decisionCache == null || !apdStatus.get().equals(ApdStatus.ACTIVE)) {
+                return verifyWithApd(apdContext, apdStatus.get());
+              }
 
-    Future<JsonObject> apdResponse =
-        CompositeFuture.all(authAccessToken, userAndOwnerDetails)
-            .compose(
-                res -> {
-                  JsonObject apdRequest = new JsonObject();
-
-                  JsonObject user = userAndOwnerDetails.result().get(userId);
-                  user.put("id", userId);
-                  JsonObject owner = userAndOwnerDetails.result().get(ownerId);
-                  owner.put("id", ownerId);
-                  JsonObject item =
-                      new JsonObject().put("itemId", itemId).put("itemType", itemType);
-
-                  String token = authAccessToken.result().getString("accessToken");
-
-                  apdRequest
-                      .put(APD_REQ_USER, user)
-                      .put(APD_REQ_OWNER, owner)
-                      .put(APD_REQ_ITEM, item)
-                      .put(APD_REQ_CONTEXT, context);
-
-                  /*
-                   * In case the web client fails to get a valid response from the APD, we catch the
-                   * ComposeException and add a message to the detail in case the APD was in an inactive
-                   * state.
-                   */
-                  return apdWebClient
-                      .callVerifyApdEndpoint(apdUrl, token, apdRequest)
-                      .recover(
-                          webClientErr -> {
-                            if (webClientErr instanceof ComposeException) {
-                              String apdStatus = apdDetails.result().get(0).getString("status");
-                              String apdNotActiveMesg = APD_NOT_ACTIVE;
-                              if (ApdStatus.valueOf(apdStatus).equals(ApdStatus.ACTIVE)) {
-                                apdNotActiveMesg = "";
-                              }
-
-                              ComposeException exp = (ComposeException) webClientErr;
-                              Response err = exp.getResponse();
-                              err.setDetail(err.getDetail() + apdNotActiveMesg);
-                              err.setTitle(ERR_TITLE_APD_EVAL_FAILED);
-                              return Future.failedFuture(new ComposeException(err));
-                            } else {
-                              return Future.failedFuture(webClientErr);
-                            }
-                          });
-                });
+              JsonObject cached = decisionCache.get(userId, itemId, apdUrl, context);
+              if (cached != null) {
+                return Future.succeededFuture(cached);
+              }
+
+              return verifyWithApd(apdContext, apdStatus.get())
+                  .onSuccess(
+                      response -> decisionCache.put(userId, itemId, apdUrl, context, response));
+            });
 
     /*
      * If the APD responds with an allow, a succeeded future is returned with a JSON object
@@ -820,9 +809,9 @@ public class ApdServiceImpl implements ApdService {
               } else if (response.getString(APD_RESP_TYPE).equals(APD_URN_DENY)) {
 
                 /* Add extra message if APD not active and has denied */
-                String apdStatus = apdDetails.result().get(0).getString("status");
+                ApdStatus apdStatus = apdDetails.result().get();
                 String apdNotActiveMesg = APD_NOT_ACTIVE;
-                if (ApdStatus.valueOf(apdStatus).equals(ApdStatus.ACTIVE)) {
+                if (apdStatus.equals(ApdStatus.ACTIVE)) {
                   apdNotActiveMesg = "";
                 }
 
@@ -847,4 +836,68 @@ public class ApdServiceImpl implements ApdService {
 
     return promiseHandler.future();
   }
+
+  /**
+   * Call the verify endpoint of an APD for an access request.
+   *
+   * @param apdContext the APD context passed to {@link #callApd(JsonObject)}
+   * @param apdStatus the current status of the APD
+   * @return a future with the response sent by the APD, as checked by {@link ApdWebClient}
+   */
+  private Future<JsonObject> verifyWithApd(JsonObject apdContext, ApdStatus apdStatus) {
+    String apdUrl = apdContext.getString("apdUrl");
+    String userId = apdContext.getString("userId");
+    String ownerId = apdContext.getString("ownerId");
+    String itemId = apdContext.getString("itemId");
+    String itemType = apdContext.getString("itemType");
+    JsonObject context = apdContext.getJsonObject("context");
+
+    Future<Map<String, JsonObject>> userAndOwnerDetails = getUserDetails(List.of(userId, ownerId));
+    Future<JsonObject> authAccessToken = tokenService.getAuthServerToken(apdUrl);
+
+    return CompositeFuture.all(authAccessToken, userAndOwnerDetails)
+        .compose(
+            res -> {
+              JsonObject apdRequest = new JsonObject();
+
+              JsonObject user = userAndOwnerDetails.result().get(userId);
+              user.put("id", userId);
+              JsonObject owner = userAndOwnerDetails.result().get(ownerId);
+              owner.put("id", ownerId);
+              JsonObject item = new JsonObject().put("itemId", itemId).put("itemType", itemType);
+
+              String token = authAccessToken.result().getString("accessToken");
+
+              apdRequest
+                  .put(APD_REQ_USER, user)
+                  .put(APD_REQ_OWNER, owner)
+                  .put(APD_REQ_ITEM, item)
+                  .put(APD_REQ_CONTEXT, context);
+
+              /*
+               * In case the web client fails to get a valid response from the APD, we catch the
+               * ComposeException and add a message to the detail in case the APD was in an inactive
+               * state.
+               */
+              return apdWebClient
+                  .callVerifyApdEndpoint(apdUrl, token, apdRequest)
+                  .recover(
+                      webClientErr -> {
+                        if (webClientErr instanceof ComposeException) {
+                          String apdNotActiveMesg = APD_NOT_ACTIVE;
+                          if (apdStatus.equals(ApdStatus.ACTIVE)) {
+                            apdNotActiveMesg = "";
+                          }
+
+                          ComposeException exp = (ComposeException) webClientErr;
+                          Response err = exp.getResponse();
+                          err.setDetail(err.getDetail() + apdNotActiveMesg);
+                          err.setTitle(ERR_TITLE_APD_EVAL_FAILED);
+                          return Future.failedFuture(new ComposeException(err));
+                        } else {
+                          return Future.failedFuture(webClientErr);
+                        }
+                      });
+            });
+  }
 }
@@ -2,6 +2,12 @@ package iudx.aaa.server.apd;
 
 import static iudx.aaa.server.admin.Constants.DB_RECONNECT_ATTEMPTS;
 import static iudx.aaa.server.admin.Constants.DB_RECONNECT_INTERVAL_MS;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_FAILURE_RATE;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_MIN_CALLS;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_OPEN_MS;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_WINDOW_SIZE;
+import static iudx.aaa.server.apd.Constants.CONFIG_DECISION_CACHE_MAX_TTL;
+import static iudx.aaa.server.apd.Constants.CONFIG_DECISION_CACHE_SIZE;
 import static iudx.aaa.server.apd.Constants.CONFIG_WEBCLI_TIMEOUTMS;
 import static iudx.aaa.server.apd.Constants.DATABASE_IP;
 import static iudx.aaa.server.apd.Constants.DATABASE_NAME;
@@ -11,20 +17,25 @@ import static iudx.aaa.server.apd.Constants.DATABASE_PORT;
 import static iudx.aaa.server.apd.Constants.DATABASE_SCHEMA;
 import static iudx.aaa.server.apd.Constants.DATABASE_USERNAME;
 import static iudx.aaa.server.apd.Constants.DB_CONNECT_TIMEOUT;
+import static iudx.aaa.server.apd.Constants.DEFAULT_DECISION_CACHE_MAX_TTL;
+import static iudx.aaa.server.apd.Constants.DEFAULT_DECISION_CACHE_SIZE;
 import static iudx.aaa.server.apd.Constants.REGISTRATION_SERVICE_ADDRESS;
 import static iudx.aaa.server.apd.Constants.TOKEN_SERVICE_ADDRESS;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_CLIENT;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
+import iudx.aaa.server.apiserver.util.WebClientPools;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.token.TokenService;
+import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -52,13 +63,15 @@ public class ApdVerticle extends AbstractVerticle {
   private int poolSize;
 
   private PgPool pool;
+  private ServerRegistry serverRegistry;
   private PoolOptions poolOptions;
   private PgConnectOptions connectOptions;
   private static final String APD_SERVICE_ADDRESS = "iudx.aaa.apd.service";
   private static JsonObject apdWebCliConfig;
-  private WebClient webClient;
+  private WebClientPools webClientPools;
   private WebClientOptions webClientOptions;
   private ApdWebClient apdWebClient;
+  private ApdDecisionCache decisionCache;
   private RegistrationService registrationService;
   private TokenService tokenService;
 
@@ -92,6 +105,12 @@ public class ApdVerticle extends AbstractVerticle {
     apdWebCliConfig =
         new JsonObject().put(CONFIG_WEBCLI_TIMEOUTMS, config().getInteger(CONFIG_WEBCLI_TIMEOUTMS));
 
+    /* circuit breaker options are optional, the defaults are used if not set */
+    List.of(CONFIG_CB_WINDOW_SIZE, CONFIG_CB_MIN_CALLS, CONFIG_CB_FAILURE_RATE, CONFIG_CB_OPEN_MS)
+        .stream()
+        .filter(key -> config().containsKey(key))
+        .forEach(key -> apdWebCliConfig.put(key, config().getValue(key)));
+
     /* Set Connection Object and schema */
     if (connectOptions == null) {
       Map<String, String> schemaProp = Map.of("search_path", databaseSchema);
@@ -116,6 +135,8 @@ public class ApdVerticle extends AbstractVerticle {
 
     /* Create the client pool */
     pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    serverRegistry = new ServerRegistry(vertx, pool, connectOptions);
+    serverRegistry.start();
 
     /* Create the APD web client */
     webClientOptions =
@@ -124,12 +145,20 @@ public class ApdVerticle extends AbstractVerticle {
             .setVerifyHost(true)
             .setTrustAll(true)
             .setFollowRedirects(false);
-    webClient = WebClient.create(vertx, webClientOptions);
-    apdWebClient = new ApdWebClient(webClient, apdWebCliConfig);
+    JsonObject httpClientConfig = config().getJsonObject(CONFIG_HTTP_CLIENT, new JsonObject());
+    webClientPools = new WebClientPools(vertx, "apd", webClientOptions, httpClientConfig);
+    apdWebClient = new ApdWebClient(webClientPools, apdWebCliConfig);
 
     registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
     tokenService = TokenService.createProxy(vertx, TOKEN_SERVICE_ADDRESS);
-    apdService = new ApdServiceImpl(pool, apdWebClient, registrationService, tokenService);
+    decisionCache =
+        new ApdDecisionCache(
+            vertx,
+            config().getLong(CONFIG_DECISION_CACHE_SIZE, DEFAULT_DECISION_CACHE_SIZE),
+            config().getLong(CONFIG_DECISION_CACHE_MAX_TTL, DEFAULT_DECISION_CACHE_MAX_TTL));
+    apdService =
+        new ApdServiceImpl(
+            pool, serverRegistry, apdWebClient, registrationService, tokenService, decisionCache);
     binder = new ServiceBinder(vertx);
     consumer = binder.setAddress(APD_SERVICE_ADDRESS).register(ApdService.class, apdService);
 
@@ -139,5 +168,8 @@ public class ApdVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    serverRegistry.close();
+    decisionCache.close();
+    webClientPools.close();
   }
 }
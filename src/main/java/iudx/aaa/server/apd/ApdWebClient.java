@@ -1,6 +1,7 @@
 package iudx.aaa.server.apd;
 
 import static iudx.aaa.server.apd.Constants.APD_CONSTRAINTS;
+import static iudx.aaa.server.apd.Constants.APD_RESP_CACHE_TTL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_DETAIL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_SESSIONID;
 import static iudx.aaa.server.apd.Constants.APD_RESP_TYPE;
@@ -22,15 +23,17 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.RequestOptions;
 import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.HttpResponse;
-import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.predicate.ResponsePredicate;
 import iudx.aaa.server.apiserver.Response;
 import iudx.aaa.server.apiserver.Response.ResponseBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.WebClientPools;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeoutException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -39,46 +42,54 @@ import org.apache.logging.log4j.Logger;
  * easily mocked when testing.
  */
 public class ApdWebClient {
-  private final WebClient webClient;
   private static final Logger LOGGER = LogManager.getLogger(ApdWebClient.class);
-  private static int webClientTimeoutMs;
-  private static int PORT = 443;
+  private static final int DEFAULT_PORT = 443;
+
+  private final WebClientPools pools;
+  private final ApdCircuitBreaker circuitBreaker;
+  private final int webClientTimeoutMs;
+  private final int port;
 
   /**
    * Create {@link ApdWebClient}.
    *
-   * @param wc instance of {@link WebClient}
+   * @param pools the {@link WebClientPools} holding a connection pool for each APD
    * @param options configuration options
    */
-  public ApdWebClient(WebClient wc, JsonObject options) {
-    this.webClient = wc;
-    webClientTimeoutMs = options.getInteger(CONFIG_WEBCLI_TIMEOUTMS);
+  public ApdWebClient(WebClientPools pools, JsonObject options) {
+    this(pools, options, DEFAULT_PORT);
   }
 
   /**
    * Create {@link ApdWebClient} while specifying which port to connect for HTTP calls to APDs.
    * Mainly used for unit tests.
    *
-   * @param wc instance of {@link WebClient}
+   * @param pools the {@link WebClientPools} holding a connection pool for each APD
    * @param options configuration options
    * @param port port to which the HTTP calls to APDs are made
    */
-  public ApdWebClient(WebClient wc, JsonObject options, int port) {
-    this.webClient = wc;
-    webClientTimeoutMs = options.getInteger(CONFIG_WEBCLI_TIMEOUTMS);
-    PORT = port;
+  public ApdWebClient(WebClientPools pools, JsonObject options, int port) {
+    this.pools = pools;
+    this.circuitBreaker = new ApdCircuitBreaker(options);
+    this.webClientTimeoutMs = options.getInteger(CONFIG_WEBCLI_TIMEOUTMS);
+    this.port = port;
   }
 
-  static Response failureResponse =
-      new ResponseBuilder()
-          .type(URN_INVALID_INPUT)
-          .title(ERR_TITLE_APD_NOT_RESPOND)
-          .detail(ERR_DETAIL_APD_NOT_RESPOND)
-          .status(400)
-          .build();
+  /* a new response each time, since callers modify the response of the exception */
+  private static ComposeException notRespondingError() {
+    Response failureResponse =
+        new ResponseBuilder()
+            .type(URN_INVALID_INPUT)
+            .title(ERR_TITLE_APD_NOT_RESPOND)
+            .detail(ERR_DETAIL_APD_NOT_RESPOND)
+            .status(400)
+            .build();
+    return new ComposeException(failureResponse);
+  }
 
   /**
-   * Call an APD's verify endpoint.
+   * Call an APD's verify endpoint. If the circuit for the APD is open, see {@link
+   * ApdCircuitBreaker}, the APD is not called and the call fails immediately.
    *
    * @param url the URL of the APD
    * @param authToken the auth server token to be added as an Authorization header
@@ -90,18 +101,28 @@ public class ApdWebClient {
       String url, String authToken, JsonObject request) {
     Promise<JsonObject> promise = Promise.promise();
 
+    if (!circuitBreaker.tryAcquire(url)) {
+      LOGGER.warn("Circuit for APD {} is open, not calling the APD", url);
+      return Future.failedFuture(notRespondingError());
+    }
+
     RequestOptions options = new RequestOptions();
-    options.setHost(url).setPort(PORT).setURI(APD_VERIFY_API);
+    options.setHost(url).setPort(port).setURI(APD_VERIFY_API);
     options.addHeader(APD_VERIFY_AUTH_HEADER, APD_VERIFY_BEARER + authToken);
 
-    webClient
-        .request(HttpMethod.POST, options)
-        .timeout(webClientTimeoutMs)
-        .expect(ResponsePredicate.JSON)
-        .sendJsonObject(request)
+    pools
+        .send(
+            url,
+            client ->
+                client
+                    .request(HttpMethod.POST, options)
+                    .timeout(webClientTimeoutMs)
+                    .expect(ResponsePredicate.JSON)
+                    .sendJsonObject(request))
         .compose(body -> checkApdResponse(body))
         .onSuccess(
             resp -> {
+              circuitBreaker.onSuccess(url);
               promise.complete(resp);
               LOGGER.info(
                   "APD {} responded to access request by {}",
@@ -110,12 +131,24 @@ public class ApdWebClient {
             })
         .onFailure(
             err -> {
+              circuitBreaker.onFailure(url, err instanceof TimeoutException);
               LOGGER.error(err.getMessage());
-              promise.fail(new ComposeException(failureResponse));
+              promise.fail(notRespondingError());
             });
     return promise.future();
   }
 
+  /**
+   * Get the state of the circuit breaker of an APD.
+   *
+   * @param url the URL of the APD
+   * @return a JSON object with the state of the circuit and the failure and timeout rates of the
+   *     recent calls to the APD
+   */
+  public JsonObject getApdHealth(String url) {
+    return circuitBreaker.health(url);
+  }
+
   /**
    * Check if the response sent back by the APD after querying the verify endpoint has:.
    *
@@ -125,6 +158,8 @@ public class ApdWebClient {
    *   <li>Has <i>type</i> keyword with value either <i>allow URN/deny URN</i>
    *   <li>If <i>deny URN</i>, then must contain <i>detail</i> also
    *   <li>If the appropriate URN+status code combo is sent.
+   *   <li>If <i>allow URN</i> and <i>cacheTtlSeconds</i> is present, it must be a non-negative
+   *       integer
    * </ul>
    *
    * @param body the buffer response from the web client
@@ -132,20 +167,37 @@ public class ApdWebClient {
    *     returned.
    */
   Future<JsonObject> checkApdResponse(HttpResponse<Buffer> body) {
+    return checkApdResponse(body.statusCode(), body.body());
+  }
+
+  /**
+   * Check the status code and body sent back by the APD. See {@link
+   * #checkApdResponse(HttpResponse)} for the checks performed.
+   *
+   * @param code the HTTP status code of the response
+   * @param body the response body, may be <tt>null</tt>
+   * @return a future with the JSON object body if all checks pass. Else a failed future is
+   *     returned.
+   */
+  Future<JsonObject> checkApdResponse(int code, Buffer body) {
     /* TODO: Consider using JSON schema validation for this */
 
-    int code = body.statusCode();
     Set<Integer> allowedCodes = Set.of(200, 403);
 
     if (!allowedCodes.contains(code)) {
-      LOGGER.warn("Status code {}, Response body : {}", code, body.bodyAsString());
+      LOGGER.warn("Status code {}, Response body : {}", code, body);
       return Future.failedFuture("Non " + allowedCodes.toString() + " status code sent by APD");
     }
 
     JsonObject json;
 
     try {
-      json = Optional.ofNullable(body.bodyAsJsonObject()).orElseThrow(DecodeException::new);
+      Object decoded = Optional.ofNullable(body).map(Json::decodeValue).orElse(null);
+      json =
+          Optional.ofNullable(decoded)
+              .filter(JsonObject.class::isInstance)
+              .map(JsonObject.class::cast)
+              .orElseThrow(DecodeException::new);
     } catch (DecodeException e) {
       return Future.failedFuture("Invalid JSON sent by APD");
     }
@@ -186,6 +238,15 @@ public class ApdWebClient {
       }
     }
 
+    /* cacheTtlSeconds is ignored in deny responses, since they are never cached */
+    if (json.getString(APD_RESP_TYPE).equals(APD_URN_ALLOW)
+        && json.containsKey(APD_RESP_CACHE_TTL)) {
+      Object ttl = json.getValue(APD_RESP_CACHE_TTL);
+      if (!(ttl instanceof Integer || ttl instanceof Long) || ((Number) ttl).longValue() < 0) {
+        return Future.failedFuture("Invalid cache TTL sent by APD");
+      }
+    }
+
     return Future.succeededFuture(json);
   }
 }
@@ -21,6 +21,21 @@ public class Constants {
   public static final int DB_CONNECT_TIMEOUT = 10000;
   public static final int DB_RECONNECT_ATTEMPTS = 5;
   public static final long DB_RECONNECT_INTERVAL_MS = 10000;
+  public static final String CONFIG_DECISION_CACHE_SIZE = "decisionCacheSize";
+  public static final String CONFIG_DECISION_CACHE_MAX_TTL = "decisionCacheMaxTtlSeconds";
+  public static final long DEFAULT_DECISION_CACHE_SIZE = 10000;
+  public static final long DEFAULT_DECISION_CACHE_MAX_TTL = 300;
+  public static final String CONFIG_CB_WINDOW_SIZE = "circuitBreakerWindowSize";
+  public static final String CONFIG_CB_MIN_CALLS = "circuitBreakerMinCalls";
+  public static final String CONFIG_CB_FAILURE_RATE = "circuitBreakerFailureRate";
+  public static final String CONFIG_CB_OPEN_MS = "circuitBreakerOpenMs";
+  public static final int DEFAULT_CB_WINDOW_SIZE = 20;
+  public static final int DEFAULT_CB_MIN_CALLS = 10;
+  public static final double DEFAULT_CB_FAILURE_RATE = 0.5;
+  public static final long DEFAULT_CB_OPEN_MS = 30000;
+
+  /* Event bus address on which APD URLs are published to evict their cached decisions */
+  public static final String APD_DECISION_CACHE_ADDRESS = "iudx.aaa.apd.decision.cache.evict";
 
   /* Response fields */
   public static final String RESP_APD_ID = "id";
@@ -29,6 +44,11 @@ public class Constants {
   public static final String RESP_APD_STATUS = "status";
   public static final String RESP_APD_OWNER = "owner";
   public static final String RESP_OWNER_USER_ID = "id";
+  public static final String RESP_APD_HEALTH = "health";
+  public static final String RESP_APD_HEALTH_STATE = "state";
+  public static final String RESP_APD_HEALTH_FAILURE_RATE = "failureRate";
+  public static final String RESP_APD_HEALTH_TIMEOUT_RATE = "timeoutRate";
+  public static final String RESP_APD_HEALTH_CALLS = "calls";
   public static final String INTERNALERROR = "internal server error";
 
   /* Response title and details */
@@ -87,9 +107,6 @@ public class Constants {
   public static final String SQL_UPDATE_APD_STATUS =
       "UPDATE apds SET status = $1::apd_status_enum, updated_at = NOW() WHERE id = $2::uuid";
 
-  public static final String SQL_GET_APD_URL_STATUS =
-      "SELECT url, status FROM apds WHERE url = $1::text";
-
   /* APD API endpoints and request metadata */
   public static final String APD_VERIFY_API = "/verify";
   public static final String APD_VERIFY_AUTH_HEADER = "Authorization";
@@ -115,6 +132,7 @@ public class Constants {
   public static final String APD_RESP_SESSIONID = "sessionId";
   public static final String APD_RESP_LINK = "link";
   public static final String APD_CONSTRAINTS = "apdConstraints";
+  public static final String APD_RESP_CACHE_TTL = "cacheTtlSeconds";
 
   /* create token service JSON key/values */
   public static final String CREATE_TOKEN_URL = "url";
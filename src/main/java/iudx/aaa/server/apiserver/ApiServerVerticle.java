@@ -2,10 +2,11 @@ package iudx.aaa.server.apiserver;
 
 import static iudx.aaa.server.apiserver.util.Constants.*;
 
-import com.nimbusds.jose.jwk.ECKey;
+import com.google.common.hash.Hashing;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
@@ -13,7 +14,6 @@ import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.core.net.JksOptions;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
@@ -28,6 +28,7 @@ import iudx.aaa.server.admin.AdminService;
 import iudx.aaa.server.apd.ApdService;
 import iudx.aaa.server.apiserver.Response.ResponseBuilder;
 import iudx.aaa.server.apiserver.util.ClientAuthentication;
+import iudx.aaa.server.apiserver.util.DelegationCache;
 import iudx.aaa.server.apiserver.util.DelegationIdAuthorization;
 import iudx.aaa.server.apiserver.util.FailureHandler;
 import iudx.aaa.server.apiserver.util.FetchRoles;
@@ -35,14 +36,14 @@ import iudx.aaa.server.apiserver.util.OIDCAuthentication;
 import iudx.aaa.server.auditing.AuditingService;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
+import iudx.aaa.server.token.SigningKeys;
 import iudx.aaa.server.token.TokenService;
-import java.security.KeyStore;
-import java.security.cert.Certificate;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import org.apache.commons.codec.binary.Base64;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -71,6 +72,10 @@ public class ApiServerVerticle extends AbstractVerticle {
   private int port;
   private String jwtKeystorePath;
   private String jwtKeystorePassword;
+  private Buffer jwksResponse;
+  private String jwksEtag;
+  private Buffer certResponse;
+  private String certEtag;
 
   private String databaseIP;
   private int databasePort;
@@ -81,6 +86,9 @@ public class ApiServerVerticle extends AbstractVerticle {
   private int poolSize;
   private PoolOptions poolOptions;
   private PgConnectOptions connectOptions;
+  private DelegationCache delegationCache;
+  private OIDCAuthentication oidcFlow;
+  private boolean cataloguePrefetch;
 
   private long serverTimeout;
   private String corsRegex;
@@ -119,8 +127,19 @@ public class ApiServerVerticle extends AbstractVerticle {
     poolSize = Integer.parseInt(config().getString(POOLSIZE));
     serverTimeout = Long.parseLong(config().getString(SERVER_TIMEOUT_MS));
     corsRegex = config().getString(CORS_REGEX);
+    cataloguePrefetch =
+        config().getBoolean(CONFIG_CATALOGUE_PREFETCH, DEFAULT_CATALOGUE_PREFETCH);
     jwtKeystorePath = config().getString(KEYSTORE_PATH);
     jwtKeystorePassword = config().getString(KEYSTPRE_PASSWORD);
+    String activeKeyAlias = config().getString(ACTIVE_KEY_ALIAS, KS_ALIAS);
+
+    /* The public keys are served from memory, so they are loaded and encoded only once */
+    SigningKeys signingKeys =
+        SigningKeys.load(vertx, jwtKeystorePath, jwtKeystorePassword, activeKeyAlias);
+    jwksResponse = signingKeys.jwks().toBuffer();
+    jwksEtag = etag(jwksResponse);
+    certResponse = new JsonObject().put(CERTIFICATE, signingKeys.certificate()).toBuffer();
+    certEtag = etag(certResponse);
 
     /* Set Connection Object and schema */
     if (connectOptions == null) {
@@ -173,10 +192,16 @@ public class ApiServerVerticle extends AbstractVerticle {
 
     /* Passing the full config to OIDC auth, as the config has all the required keycloak
      * options */
-    OIDCAuthentication oidcFlow = new OIDCAuthentication(vertx, config());
+    oidcFlow = new OIDCAuthentication(vertx, config());
     FetchRoles fetchRoles = new FetchRoles(pgPool, config());
     ClientAuthentication clientFlow = new ClientAuthentication(pgPool);
-    DelegationIdAuthorization delegationAuth = new DelegationIdAuthorization(pgPool);
+    delegationCache =
+        new DelegationCache(
+            vertx,
+            config().getLong(CONFIG_DELEGATION_CACHE_SIZE, DEFAULT_DELEGATION_CACHE_SIZE),
+            config().getLong(CONFIG_DELEGATION_CACHE_TTL, DEFAULT_DELEGATION_CACHE_TTL));
+    DelegationIdAuthorization delegationAuth =
+        new DelegationIdAuthorization(pgPool, delegationCache);
     FailureHandler failureHandler = new FailureHandler();
 
     RouterBuilder.create(vertx, "docs/openapi.yaml")
@@ -195,17 +220,33 @@ public class ApiServerVerticle extends AbstractVerticle {
               routerBuilder
                   .operation(CREATE_TOKEN)
                   .handler(clientFlow)
+                  .handler(this::prefetchResourceHandler)
                   .handler(ctx -> fetchRoles.fetch(ctx, Roles.allRoles))
                   .handler(delegationAuth)
                   .handler(this::createTokenHandler)
                   .failureHandler(failureHandler);
 
+              // Post batch token create
+              routerBuilder
+                  .operation(CREATE_TOKEN_BATCH)
+                  .handler(clientFlow)
+                  .handler(ctx -> fetchRoles.fetch(ctx, Roles.allRoles))
+                  .handler(delegationAuth)
+                  .handler(this::createTokensHandler)
+                  .failureHandler(failureHandler);
+
               // Post token introspect
               routerBuilder
                   .operation(TIP_TOKEN)
                   .handler(this::validateTokenHandler)
                   .failureHandler(failureHandler);
 
+              // Post batch token introspect
+              routerBuilder
+                  .operation(TIP_TOKEN_BATCH)
+                  .handler(this::validateTokensHandler)
+                  .failureHandler(failureHandler);
+
               // Post token revoke
               routerBuilder
                   .operation(REVOKE_TOKEN)
@@ -213,6 +254,13 @@ public class ApiServerVerticle extends AbstractVerticle {
                   .handler(this::revokeTokenHandler)
                   .failureHandler(failureHandler);
 
+              // Get pending token revocations
+              routerBuilder
+                  .operation(LIST_REVOCATIONS)
+                  .handler(ctx -> fetchRoles.fetch(ctx, Roles.allRoles))
+                  .handler(this::listRevocationsHandler)
+                  .failureHandler(failureHandler);
+
               // Post user profile
               routerBuilder
                   .operation(ADD_ROLES)
@@ -417,6 +465,29 @@ public class ApiServerVerticle extends AbstractVerticle {
             });
   }
 
+  /**
+   * Handler to start the catalogue lookup of a resource or resource group token request, so that
+   * it runs alongside the role fetch and delegation checks instead of after them. The lookup is
+   * cached by the policy service and is reused when the token request reaches it. It is started
+   * only once the user has been authenticated, so unauthenticated requests cannot make catalogue
+   * calls or fill the catalogue cache.
+   *
+   * @param context which is RoutingContext
+   */
+  private void prefetchResourceHandler(RoutingContext context) {
+    if (cataloguePrefetch) {
+      /* the body is already validated against the OpenAPI spec */
+      JsonObject tokenRequestJson = context.body().asJsonObject();
+      String itemType = tokenRequestJson.getString("itemType");
+
+      if (ItemType.RESOURCE.name().equalsIgnoreCase(itemType)
+          || ItemType.RESOURCE_GROUP.name().equalsIgnoreCase(itemType)) {
+        policyService.prefetchResource(tokenRequestJson.getString("itemId").toLowerCase());
+      }
+    }
+    context.next();
+  }
+
   /**
    * Handler to handle create token request.
    *
@@ -441,6 +512,40 @@ public class ApiServerVerticle extends AbstractVerticle {
         .onFailure(failure -> processResponse(context.response(), failure.getLocalizedMessage()));
   }
 
+  /**
+   * Handler to handle batch create token request. A {@link RequestToken} is created for each item
+   * ID with the common item type, role and context.
+   *
+   * @param context which is RoutingContext
+   */
+  private void createTokensHandler(RoutingContext context) {
+
+    JsonObject batchRequestJson = context.body().asJsonObject();
+    JsonArray itemIds = batchRequestJson.getJsonArray(ITEM_IDS);
+    List<RequestToken> requestTokens =
+        itemIds.stream()
+            .map(
+                itemId -> {
+                  JsonObject tokenRequestJson = batchRequestJson.copy();
+                  tokenRequestJson.remove(ITEM_IDS);
+                  tokenRequestJson.put("itemId", itemId);
+                  return new RequestToken(tokenRequestJson);
+                })
+            .collect(Collectors.toList());
+    User user = context.get(USER);
+
+    DelegationInformation delegationInfo = context.get(DELEGATION_INFO);
+
+    tokenService
+        .createTokens(requestTokens, delegationInfo, user)
+        .onSuccess(
+            result -> {
+              Future.future(future -> handleAuditLogs(context, result));
+              processResponse(context.response(), result);
+            })
+        .onFailure(failure -> processResponse(context.response(), failure.getLocalizedMessage()));
+  }
+
   /**
    * Handle the Token Introspection.
    *
@@ -456,6 +561,29 @@ public class ApiServerVerticle extends AbstractVerticle {
         .onFailure(failure -> processResponse(context.response(), failure.getLocalizedMessage()));
   }
 
+  /**
+   * Handle batch Token Introspection.
+   *
+   * @param context
+   */
+  private void validateTokensHandler(RoutingContext context) {
+    JsonArray accessTokens = context.body().asJsonObject().getJsonArray(ACCESS_TOKENS);
+    List<IntrospectToken> introspectTokens =
+        accessTokens.stream()
+            .map(
+                token -> {
+                  IntrospectToken introspectToken = new IntrospectToken();
+                  introspectToken.setAccessToken((String) token);
+                  return introspectToken;
+                })
+            .collect(Collectors.toList());
+
+    tokenService
+        .validateTokens(introspectTokens)
+        .onSuccess(result -> processResponse(context.response(), result))
+        .onFailure(failure -> processResponse(context.response(), failure.getLocalizedMessage()));
+  }
+
   /**
    * Handles the Token revocation.
    *
@@ -478,6 +606,20 @@ public class ApiServerVerticle extends AbstractVerticle {
         .onFailure(failure -> processResponse(context.response(), failure.getLocalizedMessage()));
   }
 
+  /**
+   * Handles listing the token revocations of the user that are pending or have failed.
+   *
+   * @param context
+   */
+  private void listRevocationsHandler(RoutingContext context) {
+    User user = context.get(USER);
+
+    tokenService
+        .listRevocations(user)
+        .onSuccess(result -> processResponse(context.response(), result))
+        .onFailure(failure -> processResponse(context.response(), failure.getLocalizedMessage()));
+  }
+
   /**
    * Handles user profile creation.
    *
@@ -807,52 +949,54 @@ public class ApiServerVerticle extends AbstractVerticle {
    * @param context
    */
   private void pubCertHandler(RoutingContext context) {
-
-    JksOptions options = new JksOptions().setPath(jwtKeystorePath).setPassword(jwtKeystorePassword);
-    try {
-      KeyStore ks = options.loadKeyStore(vertx);
-      if (ks.containsAlias(KS_ALIAS)) {
-        Certificate cert = ks.getCertificate(KS_ALIAS);
-        String pubKeyCertEncoded = Base64.encodeBase64String(cert.getEncoded());
-
-        String certKeyString =
-            "-----BEGIN CERTIFICATE-----\n" + pubKeyCertEncoded + "\n-----END CERTIFICATE-----";
-
-        context
-            .response()
-            .putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON)
-            .end(new JsonObject().put(CERTIFICATE, certKeyString).encode());
-
-      } else {
-        processResponse(context.response(), KS_PARSE_ERROR);
-      }
-    } catch (Exception e) {
-      processResponse(context.response(), KS_PARSE_ERROR);
-    }
+    publicKeyResponse(context, certResponse, certEtag);
   }
 
   /**
-   * Loads the keystore using the provided path and password, and retrieves the public key
-   * information.
+   * Lists the public keys of all JWT signing keys in JWKS format.
    *
    * @param context The routing context
    */
   private void retrievePublicKey(RoutingContext context) {
+    publicKeyResponse(context, jwksResponse, jwksEtag);
+  }
 
-    JksOptions options = new JksOptions().setPath(jwtKeystorePath).setPassword(jwtKeystorePassword);
-    try {
-      KeyStore ks = options.loadKeyStore(vertx);
-      {
-        ECKey ecKey = ECKey.load(ks, "ES256", jwtKeystorePassword.toCharArray());
-        JsonArray result = new JsonArray().add(ecKey.toPublicJWK().toJSONObject());
+  /**
+   * Send a pre-encoded public key response with caching headers. If the client already has the
+   * current version of the response, as given by the <tt>If-None-Match</tt> header, a <tt>304 Not
+   * Modified</tt> is sent without a body.
+   *
+   * @param context The routing context
+   * @param body the encoded response body
+   * @param etag the entity tag of the response body
+   */
+  private void publicKeyResponse(RoutingContext context, Buffer body, String etag) {
+    HttpServerResponse response =
         context
             .response()
-            .putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON)
-            .end(new JsonObject().put("keys", result).encode());
-      }
-    } catch (Exception e) {
-      processResponse(context.response(), KS_PARSE_ERROR);
+            .putHeader(HEADER_ETAG, etag)
+            .putHeader(HEADER_CACHE_CONTROL, PUBLIC_KEY_CACHE_CONTROL);
+
+    String ifNoneMatch = context.request().getHeader(HEADER_IF_NONE_MATCH);
+    if (ifNoneMatch != null
+        && Arrays.stream(ifNoneMatch.split(","))
+            .map(String::trim)
+            .anyMatch(tag -> tag.equals(etag) || tag.equals("*"))) {
+      response.setStatusCode(304).end();
+      return;
     }
+
+    response.putHeader(HEADER_CONTENT_TYPE, MIME_APPLICATION_JSON).end(body);
+  }
+
+  /**
+   * Create the entity tag for a response body.
+   *
+   * @param body the response body
+   * @return the quoted entity tag
+   */
+  private static String etag(Buffer body) {
+    return "\"" + Hashing.sha256().hashBytes(body.getBytes()) + "\"";
   }
 
   /**
@@ -932,5 +1076,11 @@ public class ApiServerVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     LOGGER.info("Stopping the API server");
+    if (delegationCache != null) {
+      delegationCache.close();
+    }
+    if (oidcFlow != null) {
+      oidcFlow.close();
+    }
   }
 }
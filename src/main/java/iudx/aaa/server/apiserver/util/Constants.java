@@ -15,6 +15,9 @@ public class Constants {
   public static final String HEADER_ACCEPT = "Accept";
   public static final String HEADER_CONTENT_LENGTH = "Content-Length";
   public static final String HEADER_CONTENT_TYPE = "Content-Type";
+  public static final String HEADER_ETAG = "ETag";
+  public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+  public static final String HEADER_CACHE_CONTROL = "Cache-Control";
   public static final String HEADER_X_CONTENT_TYPE_OPTIONS = "X-Content-Type-Options";
   public static final String HEADER_ORIGIN = "Origin";
   public static final String HEADER_REFERER = "Referer";
@@ -40,6 +43,7 @@ public class Constants {
   public static final String POOLSIZE = "poolSize";
   public static final String KEYSTORE_PATH = "keystorePath";
   public static final String KEYSTPRE_PASSWORD = "keystorePassword";
+  public static final String ACTIVE_KEY_ALIAS = "activeKeyAlias";
   public static final String COS_DOMAIN = "cosDomain";
   public static final String KEYCLOACK_OPTIONS = "keycloakOptions";
   public static final int PG_CONNECTION_TIMEOUT = 10000;
@@ -48,6 +52,48 @@ public class Constants {
   public static final String SERVER_TIMEOUT_MS = "serverTimeoutMs";
   public static final String CORS_REGEX = "corsRegexString";
 
+  /* Delegation cache, see DelegationCache */
+  public static final String CONFIG_DELEGATION_CACHE_SIZE = "delegationCacheSize";
+  public static final String CONFIG_DELEGATION_CACHE_TTL = "delegationCacheTtlSeconds";
+  public static final long DEFAULT_DELEGATION_CACHE_SIZE = 10000;
+  public static final long DEFAULT_DELEGATION_CACHE_TTL = 60;
+  public static final String DELEGATION_CACHE_ADDRESS = "iudx.aaa.delegation.cache.evict";
+  public static final String DELEGATION_CACHE_IDS = "ids";
+  public static final String DELEGATION_CACHE_DELEGATORS = "delegatorIds";
+
+  /* Keycloak token validation and userinfo cache, see OIDCAuthentication and UserInfoCache */
+  public static final String CONFIG_KEYCLOAK_LOCAL_VALIDATION = "keycloakLocalTokenValidation";
+  public static final boolean DEFAULT_KEYCLOAK_LOCAL_VALIDATION = false;
+  public static final String CONFIG_KEYCLOAK_JWKS_REFRESH = "keycloakJwksRefreshSeconds";
+  public static final long DEFAULT_KEYCLOAK_JWKS_REFRESH = 3600;
+  public static final long JWKS_MIN_REFRESH_INTERVAL_MS = 10000;
+  public static final String CONFIG_USERINFO_CACHE_SIZE = "userInfoCacheSize";
+  public static final String CONFIG_USERINFO_CACHE_TTL = "userInfoCacheTtlSeconds";
+  public static final long DEFAULT_USERINFO_CACHE_SIZE = 10000;
+  public static final long DEFAULT_USERINFO_CACHE_TTL = 60;
+  public static final String KC_ACCESS_TOKEN_ATTRIBUTE = "accessToken";
+  public static final String KC_EXP = "exp";
+
+  /* Catalogue prefetch for token requests */
+  public static final String CONFIG_CATALOGUE_PREFETCH = "cataloguePrefetchEnabled";
+  public static final boolean DEFAULT_CATALOGUE_PREFETCH = true;
+
+  /* HTTP client pool options, see WebClientPools */
+  public static final String CONFIG_HTTP_CLIENT = "httpClientOptions";
+  public static final String CONFIG_HTTP_HOSTS = "hosts";
+  public static final String CONFIG_HTTP_MAX_POOL_SIZE = "maxPoolSize";
+  public static final String CONFIG_HTTP_KEEP_ALIVE = "keepAlive";
+  public static final String CONFIG_HTTP_KEEP_ALIVE_TIMEOUT = "keepAliveTimeoutSeconds";
+  public static final String CONFIG_HTTP_IDLE_TIMEOUT = "idleTimeoutSeconds";
+  public static final String CONFIG_HTTP_CONNECT_TIMEOUT = "connectTimeoutMs";
+  public static final String CONFIG_HTTP2 = "http2";
+  public static final int DEFAULT_HTTP_MAX_POOL_SIZE = 20;
+  public static final boolean DEFAULT_HTTP_KEEP_ALIVE = true;
+  public static final int DEFAULT_HTTP_KEEP_ALIVE_TIMEOUT = 60;
+  public static final int DEFAULT_HTTP_IDLE_TIMEOUT = 60;
+  public static final int DEFAULT_HTTP_CONNECT_TIMEOUT = 5000;
+  public static final boolean DEFAULT_HTTP2 = false;
+
   // API Documentation endpoint
   public static final String ROUTE_STATIC_SPEC = "/apis/spec";
   public static final String ROUTE_DOC = "/apis";
@@ -60,8 +106,11 @@ public class Constants {
 
   /* API Server Operations/Routes */
   public static final String CREATE_TOKEN = "post-auth-v1-token";
+  public static final String CREATE_TOKEN_BATCH = "post-auth-v1-token-batch";
   public static final String TIP_TOKEN = "post-auth-v1-introspect";
+  public static final String TIP_TOKEN_BATCH = "post-auth-v1-introspect-batch";
   public static final String REVOKE_TOKEN = "post-auth-v1-revoke";
+  public static final String LIST_REVOCATIONS = "get-auth-v1-token-revoke";
   public static final String ADD_ROLES = "post-auth-v1-user-roles";
   public static final String GET_USER_ROLES = "get-auth-v1-user-roles";
   public static final String RESET_CLIENT_CRED = "put-auth-v1-user-clientcredentials";
@@ -82,6 +131,10 @@ public class Constants {
   public static final String SEARCH_USER = "get-auth-v1-user-search";
   public static final String TOKEN_ROUTE = "/auth/v1/token";
 
+  /* Request body keys */
+  public static final String ACCESS_TOKENS = "accessTokens";
+  public static final String ITEM_IDS = "itemIds";
+
   /* Query Params */
   public static final String QUERY_FILTER = "filter";
   public static final String QUERY_EMAIL = "email";
@@ -108,7 +161,6 @@ public class Constants {
   public static final String ERR_TITLE_NO_SUCH_API = "No such API/method";
   public static final String ERR_DETAIL_NO_SUCH_API =
       "Refer to the " + ROUTE_DOC + " endpoint for documentation";
-  public static final String KS_PARSE_ERROR = "Unable to parse KeyStore";
   public static final String ERR_PROVDERID = "General request- Delegate";
   public static final String INVALID_DELEGATION_ID = "Invalid delegationId";
   public static final String ERR_DELEGATE = "Invalid delegate request";
@@ -157,6 +209,7 @@ public class Constants {
   public static final String KS_ALIAS = "ES256";
   public static final String PUB_KEY = "publicKey";
   public static final String CERTIFICATE = "cert";
+  public static final String PUBLIC_KEY_CACHE_CONTROL = "public, max-age=3600";
   public static final String REQUEST = "request";
   public static final String DELEGATION_INFO = "delegation_info_object";
   public static final String CONTEXT_SEARCH_USER = "searchUserData";
@@ -209,4 +262,11 @@ public class Constants {
           + " JOIN resource_server on roles.resource_server_id = resource_server.id"
           + " WHERE delegations.id = $1::uuid AND delegations.user_id = $2::uuid"
           + " AND delegations.status = 'ACTIVE' AND roles.status = 'APPROVED'";
+
+  /* Server registry */
+  public static final String SERVER_REGISTRY_CHANNEL = "aaa_server_registry";
+
+  public static final String SQL_REGISTRY_GET_RS = "SELECT id, url FROM resource_server";
+
+  public static final String SQL_REGISTRY_GET_APDS = "SELECT url, status FROM apds";
 }
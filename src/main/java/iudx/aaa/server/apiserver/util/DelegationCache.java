@@ -0,0 +1,146 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_ADDRESS;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_DELEGATORS;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_IDS;
+
+import com.google.common.base.Ticker;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.DelegationInformation;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded cache of the delegations validated by {@link DelegationIdAuthorization}, keyed by the
+ * delegation ID and the user ID of the delegate.
+ *
+ * <p>Only valid delegations are cached, so a delegation is never hidden by the cache once it has
+ * been created. A cached delegation is served for at most <tt>delegationCacheTtlSeconds</tt>.
+ *
+ * <p>Delegations can be evicted on every ApiServerVerticle instance in the cluster by publishing a
+ * JSON object on {@link Constants#DELEGATION_CACHE_ADDRESS} with an array of delegation IDs in the
+ * <tt>ids</tt> key and/or an array of delegator user IDs in the <tt>delegatorIds</tt> key. The
+ * policy service evicts by delegation ID when delegations are deleted, and the admin service evicts
+ * by delegator when the status of a provider role is changed.
+ *
+ * <p>The number of lookups is exported through Micrometer as <tt>aaa.delegation.cache</tt>, tagged
+ * with the <tt>result</tt> (<em>hit</em> or <em>miss</em>) and the deployment ID of the verticle.
+ */
+public class DelegationCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(DelegationCache.class);
+  private static final String METRICS_NAME = "aaa.delegation.cache";
+
+  /** The delegation ID and the user ID of the delegate. */
+  private static final class Key {
+    private final UUID delegationId;
+    private final UUID userId;
+
+    private Key(UUID delegationId, UUID userId) {
+      this.delegationId = delegationId;
+      this.userId = userId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return delegationId.equals(other.delegationId) && userId.equals(other.userId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(delegationId, userId);
+    }
+  }
+
+  /* the delegation is held as JSON, since DelegationInformation is mutable */
+  private final EvictingCache<Key, JsonObject> delegations;
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxSize maximum number of delegations held. A size of <tt>0</tt> disables caching
+   * @param ttlSeconds time in seconds for which a delegation is cached
+   */
+  public DelegationCache(Vertx vertx, long maxSize, long ttlSeconds) {
+    this(vertx, maxSize, ttlSeconds, Ticker.systemTicker());
+  }
+
+  DelegationCache(Vertx vertx, long maxSize, long ttlSeconds, Ticker ticker) {
+    if (maxSize < 0 || ttlSeconds < 0) {
+      throw new IllegalArgumentException("Invalid delegation cache configuration");
+    }
+
+    this.delegations =
+        new EvictingCache<Key, JsonObject>(
+            vertx,
+            METRICS_NAME,
+            maxSize,
+            ttlSeconds,
+            ticker,
+            DELEGATION_CACHE_ADDRESS,
+            msg ->
+                evict(
+                    msg.getJsonArray(DELEGATION_CACHE_IDS, new JsonArray()),
+                    msg.getJsonArray(DELEGATION_CACHE_DELEGATORS, new JsonArray())));
+  }
+
+  /**
+   * Get a cached delegation.
+   *
+   * @param delegationId the delegation ID
+   * @param userId the user ID of the delegate
+   * @return the delegation, or <tt>null</tt> if it is not cached
+   */
+  public DelegationInformation get(UUID delegationId, UUID userId) {
+    JsonObject delegation = delegations.get(new Key(delegationId, userId));
+    return delegation == null ? null : new DelegationInformation(delegation);
+  }
+
+  /**
+   * Cache a valid delegation.
+   *
+   * @param userId the user ID of the delegate
+   * @param delegation the delegation
+   */
+  public void put(UUID userId, DelegationInformation delegation) {
+    delegations.put(
+        new Key(UUID.fromString(delegation.getDelegationId()), userId), delegation.toJson());
+  }
+
+  private void evict(JsonArray ids, JsonArray delegatorIds) {
+    Set<UUID> delegationIds =
+        ids.stream().map(id -> UUID.fromString(id.toString())).collect(Collectors.toSet());
+    Set<String> delegators =
+        delegatorIds.stream().map(Object::toString).collect(Collectors.toSet());
+    delegations.removeIf(
+        (key, delegation) ->
+            delegationIds.contains(key.delegationId)
+                || delegators.contains(delegation.getString("delegatorUserId")));
+    LOGGER.debug("Info: Evicted delegations {} and delegations by {}", delegationIds, delegators);
+  }
+
+  /**
+   * Close the cache when the verticle is undeployed, see {@link EvictingCache#close()}.
+   *
+   * @return a Future that completes once the cache is closed
+   */
+  public Future<Void> close() {
+    return delegations.close();
+  }
+
+  long size() {
+    return delegations.size();
+  }
+}
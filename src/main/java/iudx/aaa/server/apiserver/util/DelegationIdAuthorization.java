@@ -23,14 +23,27 @@ import org.apache.logging.log4j.Logger;
 /**
  * Validates the <em>delegationId</em> header based on the incoming user and puts all information
  * about the delegation as {@link DelegationInformation} object onto the {@link RoutingContext}.
+ * Valid delegations are served from the {@link DelegationCache}, if present.
  */
 public class DelegationIdAuthorization implements Handler<RoutingContext> {
 
   private static final Logger LOGGER = LogManager.getLogger(DelegationIdAuthorization.class);
   private PgPool pgPool;
+  private DelegationCache cache;
 
   public DelegationIdAuthorization(PgPool pgPool) {
+    this(pgPool, null);
+  }
+
+  /**
+   * Create the handler, caching valid delegations.
+   *
+   * @param pgPool the Postgres pool
+   * @param cache the cache of valid delegations, or <tt>null</tt> if disabled
+   */
+  public DelegationIdAuthorization(PgPool pgPool, DelegationCache cache) {
     this.pgPool = pgPool;
+    this.cache = cache;
   }
 
   @Override
@@ -73,6 +86,15 @@ public class DelegationIdAuthorization implements Handler<RoutingContext> {
     }
 
     UUID delegationId = UUID.fromString(delegationIdStr);
+    UUID userId = UUID.fromString(user.getUserId());
+
+    if (cache != null) {
+      DelegationInformation cached = cache.get(delegationId, userId);
+      if (cached != null) {
+        routingContext.put(DELEGATION_INFO, cached).next();
+        return;
+      }
+    }
 
     Tuple tuple = Tuple.of(delegationId, user.getUserId());
 
@@ -101,11 +123,15 @@ public class DelegationIdAuthorization implements Handler<RoutingContext> {
                         .detail(ERR_DELEGATE)
                         .build();
                 routingContext.fail(new Throwable(rs.toJsonString()));
+                return;
               }
 
               JsonObject data = rows.iterator().next().toJson();
               DelegationInformation delegInfo = new DelegationInformation(data);
 
+              if (cache != null) {
+                cache.put(userId, delegInfo);
+              }
               routingContext.put(DELEGATION_INFO, delegInfo).next();
             });
   }
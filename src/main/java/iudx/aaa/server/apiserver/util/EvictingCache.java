@@ -0,0 +1,258 @@
+package iudx.aaa.server.apiserver.util;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache with a TTL per entry, lookup metrics and cluster-wide eviction, shared by the
+ * caches of the verticles. The owning class decides the key, what is cached for how long and what
+ * an eviction message removes.
+ *
+ * <p>Entries are dropped by Guava after <tt>maxTtlSeconds</tt>, or earlier if put with a shorter
+ * TTL. A size or maximum TTL of <tt>0</tt> disables caching.
+ *
+ * <p>If a metrics name is given, lookups through {@link #get(Object)} are counted in Micrometer
+ * under that name, tagged with the <tt>result</tt> (<em>hit</em> or <em>miss</em>) and the
+ * deployment ID of the verticle. Meters with the same tags are shared, so the instances of a
+ * deployment add up their counts.
+ *
+ * <p>If an eviction address is given, JSON objects published on it are passed to the eviction
+ * handler on every instance in the cluster, and {@link #publish(JsonObject)} runs the handler
+ * locally and publishes the message.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class EvictingCache<K, V> {
+
+  /** A cached value and the time at which it expires, as read from the ticker. */
+  private static final class Entry<V> {
+    private final V value;
+    private final long expiresAtNanos;
+
+    private Entry(V value, long expiresAtNanos) {
+      this.value = value;
+      this.expiresAtNanos = expiresAtNanos;
+    }
+  }
+
+  private final Vertx vertx;
+  private final Ticker ticker;
+  private final long maxTtlSeconds;
+  private final Cache<K, Entry<V>> cache;
+  private final Counter hits;
+  private final Counter misses;
+  private final String evictionAddress;
+  private final Handler<JsonObject> evictionHandler;
+  private final MessageConsumer<JsonObject> consumer;
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param metricsName the name of the hit and miss counters, or <tt>null</tt> if the owner counts
+   *     lookups itself
+   * @param maxSize maximum number of entries held
+   * @param maxTtlSeconds maximum time in seconds for which an entry is cached
+   * @param ticker the ticker used for expiry
+   * @param evictionAddress the event bus address of eviction messages, or <tt>null</tt> if entries
+   *     are never evicted across the cluster
+   * @param evictionHandler removes the entries named in an eviction message
+   */
+  public EvictingCache(
+      Vertx vertx,
+      String metricsName,
+      long maxSize,
+      long maxTtlSeconds,
+      Ticker ticker,
+      String evictionAddress,
+      Handler<JsonObject> evictionHandler) {
+    this.vertx = vertx;
+    this.ticker = ticker;
+    this.maxTtlSeconds = maxTtlSeconds;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxTtlSeconds == 0 ? 0 : maxSize)
+            .expireAfterWrite(maxTtlSeconds, TimeUnit.SECONDS)
+            .ticker(ticker)
+            .build();
+
+    if (metricsName == null) {
+      hits = null;
+      misses = null;
+    } else {
+      hits = counter(vertx, metricsName, "hit");
+      misses = counter(vertx, metricsName, "miss");
+    }
+
+    this.evictionAddress = evictionAddress;
+    this.evictionHandler = evictionHandler;
+    consumer =
+        evictionAddress == null
+            ? null
+            : vertx.eventBus().consumer(evictionAddress, msg -> evictionHandler.handle(msg.body()));
+  }
+
+  /**
+   * Get the default Micrometer registry, or a registry that is not exported if metrics are not
+   * enabled, e.g. in tests.
+   *
+   * @return the registry
+   */
+  public static MeterRegistry meterRegistry() {
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    return registry == null ? new SimpleMeterRegistry() : registry;
+  }
+
+  /**
+   * Register a lookup counter tagged with the deployment ID of the current verticle.
+   *
+   * @param vertx the Vert.x instance
+   * @param name the name of the counter
+   * @param result the value of the <tt>result</tt> tag
+   * @param tags further tags as key and value pairs
+   * @return the counter
+   */
+  public static Counter counter(Vertx vertx, String name, String result, String... tags) {
+    String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+    return Counter.builder(name)
+        .tag("result", result)
+        .tags(tags)
+        .tag("deployment", deploymentId)
+        .register(meterRegistry());
+  }
+
+  /**
+   * Get a cached value, counting the lookup.
+   *
+   * @param key the key
+   * @return the value, or <tt>null</tt> if it is not cached or has expired
+   */
+  public V get(K key) {
+    return get(key, value -> true);
+  }
+
+  /**
+   * Get a cached value, counting the lookup. A value that is no longer fresh is dropped.
+   *
+   * @param key the key
+   * @param fresh checks the value for staleness the TTL does not cover, e.g. an <tt>exp</tt> claim
+   * @return the value, or <tt>null</tt> if it is not cached, has expired or is not fresh
+   */
+  public V get(K key, Predicate<? super V> fresh) {
+    Entry<V> entry = cache.getIfPresent(key);
+
+    if (entry != null && (ticker.read() - entry.expiresAtNanos >= 0 || !fresh.test(entry.value))) {
+      cache.invalidate(key);
+      entry = null;
+    }
+
+    if (entry == null) {
+      if (misses != null) {
+        misses.increment();
+      }
+      return null;
+    }
+
+    if (hits != null) {
+      hits.increment();
+    }
+    return entry.value;
+  }
+
+  /**
+   * Cache a value for the maximum TTL.
+   *
+   * @param key the key
+   * @param value the value
+   */
+  public void put(K key, V value) {
+    put(key, value, maxTtlSeconds);
+  }
+
+  /**
+   * Cache a value. Values with a TTL of <tt>0</tt> or less are not cached.
+   *
+   * @param key the key
+   * @param value the value
+   * @param ttlSeconds time in seconds for which the value is cached, capped at the maximum TTL
+   */
+  public void put(K key, V value, long ttlSeconds) {
+    if (ttlSeconds <= 0) {
+      return;
+    }
+
+    long expiresAtNanos = ticker.read() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+    cache.put(key, new Entry<V>(value, expiresAtNanos));
+  }
+
+  /**
+   * Drop the entry of a key on this instance.
+   *
+   * @param key the key
+   */
+  public void invalidate(K key) {
+    cache.invalidate(key);
+  }
+
+  /**
+   * Drop the entries of some keys on this instance.
+   *
+   * @param keys the keys
+   */
+  public void invalidateAll(Iterable<? extends K> keys) {
+    cache.invalidateAll(keys);
+  }
+
+  /**
+   * Drop the entries matching a condition on this instance.
+   *
+   * @param filter the condition on the key and value of an entry
+   */
+  public void removeIf(BiPredicate<? super K, ? super V> filter) {
+    cache.asMap().entrySet().removeIf(e -> filter.test(e.getKey(), e.getValue().value));
+  }
+
+  /**
+   * Evict entries on all instances in the cluster, including this one.
+   *
+   * @param message the eviction message
+   */
+  public void publish(JsonObject message) {
+    evictionHandler.handle(message);
+    vertx.eventBus().publish(evictionAddress, message);
+  }
+
+  /**
+   * Drop all entries and stop listening for evictions. Called when the verticle is undeployed.
+   *
+   * @return a Future that completes once the consumer is unregistered
+   */
+  public Future<Void> close() {
+    cache.invalidateAll();
+    return consumer == null ? Future.succeededFuture() : consumer.unregister();
+  }
+
+  /**
+   * Get the number of entries, for tests.
+   *
+   * @return the number of entries held
+   */
+  public long size() {
+    cache.cleanUp();
+    return cache.size();
+  }
+}
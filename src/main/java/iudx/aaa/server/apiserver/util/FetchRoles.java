@@ -53,7 +53,7 @@ public class FetchRoles {
     this.config = config;
   }
 
-  private static Collector<Row, ?, Map<String, JsonArray>> roleToRsCollector =
+  static Collector<Row, ?, Map<String, JsonArray>> roleToRsCollector =
       Collectors.toMap(
           row -> row.getString("role"),
           row -> new JsonArray(Arrays.asList(row.getArrayOfStrings("rs_urls"))));
@@ -136,16 +136,7 @@ public class FetchRoles {
                     .map(res -> res.value()))
         .compose(
             roleToRsMap -> {
-              userBuilder.rolesToRsMapping(roleToRsMap);
-
-              ownedRoles.addAll(
-                  roleToRsMap.keySet().stream()
-                      .map(role -> Roles.valueOf(role))
-                      .collect(Collectors.toList()));
-              userBuilder.roles(ownedRoles);
-
-              ctx.put(USER, userBuilder.build());
-
+              ctx.put(USER, toUser(userBuilder, ownedRoles, roleToRsMap));
               return Future.succeededFuture();
             })
         .onSuccess(userObj -> ctx.next())
@@ -162,4 +153,24 @@ public class FetchRoles {
               ctx.fail(new Throwable(rs.toJsonString()));
             });
   }
+
+  /**
+   * Build the {@link User} object from the roles and resource servers fetched from the DB.
+   *
+   * @param userBuilder builder with the user ID and name already set
+   * @param ownedRoles roles the user is known to have that are not fetched from the DB
+   * @param roleToRsMap map of fetched role to the resource servers for which the role is
+   *     applicable, as collected by {@link #roleToRsCollector}
+   * @return the User object
+   */
+  static User toUser(
+      UserBuilder userBuilder, List<Roles> ownedRoles, Map<String, JsonArray> roleToRsMap) {
+    userBuilder.rolesToRsMapping(roleToRsMap);
+
+    ownedRoles.addAll(
+        roleToRsMap.keySet().stream().map(role -> Roles.valueOf(role)).collect(Collectors.toList()));
+    userBuilder.roles(ownedRoles);
+
+    return userBuilder.build();
+  }
 }
@@ -26,6 +26,14 @@ import org.apache.logging.log4j.Logger;
  * validation successful, adds the <i>sub</i> field from the Keycloak token - the Keycloak user ID -
  * and the first and last names of the user to the routing context. The Keycloak user ID is the user
  * ID used in all tables and throughout the DX system.
+ *
+ * <p>The token is validated against the realm keys (JWKS) fetched from Keycloak on discovery. The
+ * keys are fetched again every <tt>keycloakJwksRefreshSeconds</tt>. A token signed with a key that
+ * is not known yet also causes the keys to be fetched, and is validated again once they are.
+ *
+ * <p>If <tt>keycloakLocalTokenValidation</tt> is enabled, the user ID and names are read from the
+ * validated token, and the Keycloak userinfo endpoint is only called for tokens without the name
+ * claims. Userinfo is cached in a {@link UserInfoCache}.
  */
 public class OIDCAuthentication implements AuthenticationHandler {
 
@@ -33,10 +41,24 @@ public class OIDCAuthentication implements AuthenticationHandler {
   private Vertx vertx;
   private JsonObject keycloakOptions;
   private OAuth2Auth keycloak;
+  private final boolean localValidation;
+  private final UserInfoCache userInfoCache;
+  private long jwksTimer = -1;
+  private long lastJwksRefresh;
+  private long jwksRefreshes;
+  private Future<Void> jwksRefresh = Future.succeededFuture();
 
   public OIDCAuthentication(Vertx vertx, JsonObject keycloakOptions) {
     this.vertx = vertx;
     this.keycloakOptions = keycloakOptions;
+    this.localValidation =
+        keycloakOptions.getBoolean(
+            CONFIG_KEYCLOAK_LOCAL_VALIDATION, DEFAULT_KEYCLOAK_LOCAL_VALIDATION);
+    this.userInfoCache =
+        new UserInfoCache(
+            vertx,
+            keycloakOptions.getLong(CONFIG_USERINFO_CACHE_SIZE, DEFAULT_USERINFO_CACHE_SIZE),
+            keycloakOptions.getLong(CONFIG_USERINFO_CACHE_TTL, DEFAULT_USERINFO_CACHE_TTL));
     keyCloackAuth();
   }
 
@@ -64,8 +86,7 @@ public class OIDCAuthentication implements AuthenticationHandler {
      * chain and prevents all the onFailure blocks from being triggered */
     if (token != null && !token.isBlank()) {
       TokenCredentials credentials = new TokenCredentials().setToken(token);
-      keycloak
-          .authenticate(credentials)
+      authenticate(credentials)
           .onFailure(
               authHandler -> {
                 Response rs =
@@ -78,9 +99,8 @@ public class OIDCAuthentication implements AuthenticationHandler {
                 routingContext.fail(new Throwable(rs.toJsonString()));
               })
           .compose(
-              mapper -> {
-                User cred = User.create(new JsonObject().put("access_token", token));
-                return keycloak.userInfo(cred);
+              user -> {
+                return identity(token, user);
                 /*
                  * Add extra onFailure as userinfo may not respect leeway. Token may pass authentication,
                  * but may fail userinfo auth
@@ -105,7 +125,7 @@ public class OIDCAuthentication implements AuthenticationHandler {
               })
           .compose(
               mapper -> {
-                LOGGER.debug("Info: JWT authenticated; UserInfo fetched");
+                LOGGER.debug("Info: JWT authenticated; identity obtained");
                 String kId = mapper.getString(SUB);
                 routingContext.put(OBTAINED_USER_ID, kId);
 
@@ -160,6 +180,79 @@ public class OIDCAuthentication implements AuthenticationHandler {
     }
   }
 
+  /**
+   * Validate the token. If the token is signed with a key that is not known yet, the missing key
+   * handler starts fetching the realm keys, and the token is validated again once they are fetched.
+   */
+  private Future<User> authenticate(TokenCredentials credentials) {
+    long refreshes = jwksRefreshes;
+    return keycloak
+        .authenticate(credentials)
+        .recover(
+            err -> {
+              if (jwksRefreshes == refreshes) {
+                return Future.failedFuture(err);
+              }
+              return jwksRefresh.transform(keys -> keycloak.authenticate(credentials));
+            });
+  }
+
+  /**
+   * Get the user ID and names of the user. If local validation is enabled and the validated token
+   * has the name claims, they are read from the token. Otherwise the Keycloak userinfo is used,
+   * from the cache if the token was seen recently.
+   */
+  private Future<JsonObject> identity(String token, User user) {
+    JsonObject claims = user.attributes().getJsonObject(KC_ACCESS_TOKEN_ATTRIBUTE);
+
+    if (localValidation
+        && claims != null
+        && claims.getString(SUB) != null
+        && (claims.containsKey(KC_GIVEN_NAME) || claims.containsKey(KC_FAMILY_NAME))) {
+      return Future.succeededFuture(claims);
+    }
+
+    JsonObject cached = userInfoCache.get(token);
+    if (cached != null) {
+      return Future.succeededFuture(cached);
+    }
+
+    Long exp = claims != null ? claims.getLong(KC_EXP) : user.attributes().getLong(KC_EXP);
+    User cred = User.create(new JsonObject().put("access_token", token));
+    return keycloak.userInfo(cred).onSuccess(info -> userInfoCache.put(token, info, exp));
+  }
+
+  /**
+   * Fetch the realm keys for a token signed with an unknown key, e.g. after the keys are rotated on
+   * Keycloak. Fetches are spaced at least {@link Constants#JWKS_MIN_REFRESH_INTERVAL_MS} apart, so
+   * that tokens with made up key IDs do not cause a call to Keycloak each.
+   */
+  private void missingKey(String kid) {
+    long now = System.currentTimeMillis();
+    if (now - lastJwksRefresh < JWKS_MIN_REFRESH_INTERVAL_MS) {
+      return;
+    }
+
+    LOGGER.info("Info: Fetching Keycloak realm keys for unknown key ID {}", kid);
+    lastJwksRefresh = now;
+    jwksRefreshes++;
+    jwksRefresh = refreshKeys();
+  }
+
+  private Future<Void> refreshKeys() {
+    return keycloak
+        .jWKSet()
+        .onFailure(err -> LOGGER.error("Fail: Could not fetch Keycloak realm keys; {}", err));
+  }
+
+  /** Stop refreshing the realm keys and drop the cached userinfo. Called on undeploy. */
+  public void close() {
+    if (jwksTimer != -1) {
+      vertx.cancelTimer(jwksTimer);
+    }
+    userInfoCache.close();
+  }
+
   /**
    * Creates KeyCloack provider using configurations. keycloakOptions is a JSON object containing
    * the required keys. (It is actually the full config verticle config object)
@@ -188,6 +281,14 @@ public class OIDCAuthentication implements AuthenticationHandler {
         discover -> {
           if (discover.succeeded()) {
             keycloak = discover.result();
+            keycloak.missingKeyHandler(this::missingKey);
+
+            long refreshSeconds =
+                keycloakOptions.getLong(
+                    CONFIG_KEYCLOAK_JWKS_REFRESH, DEFAULT_KEYCLOAK_JWKS_REFRESH);
+            if (refreshSeconds > 0) {
+              jwksTimer = vertx.setPeriodic(refreshSeconds * 1000, id -> refreshKeys());
+            }
           } else {
             LOGGER.error(LOG_FAILED_DISCOVERY, discover.cause());
           }
@@ -0,0 +1,283 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.SERVER_REGISTRY_CHANNEL;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_REGISTRY_GET_APDS;
+import static iudx.aaa.server.apiserver.util.Constants.SQL_REGISTRY_GET_RS;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.pgclient.pubsub.PgSubscriber;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlResult;
+import iudx.aaa.server.apiserver.ApdStatus;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * In-memory registry of the resource servers and APDs in the <tt>resource_server</tt> and
+ * <tt>apds</tt> tables, used to answer existence and status checks without querying the database.
+ *
+ * <p>Both tables are loaded when the registry is started, and are loaded again whenever the
+ * database sends a notification on the <tt>aaa_server_registry</tt> channel. The notifications are
+ * sent by triggers on both tables, so any change to a resource server or APD is picked up shortly
+ * after it is committed. The tables are also loaded again when the listening connection reconnects,
+ * since notifications may have been missed while it was down. If the connection cannot be opened
+ * when the registry is started, it is retried until it succeeds.
+ *
+ * <p>A URL that is not in the registry may have been added after the last load, for e.g. if the
+ * notification has not arrived yet. In that case, the tables are loaded again before answering.
+ * Since any caller can send unknown URLs, these loads are made at most once a second; other misses
+ * in that second wait for the running load, if any, and are otherwise answered from the last load,
+ * which the notifications keep current. Concurrent loads are coalesced.
+ *
+ * <p>A registry must only be used on the context of the verticle that created it.
+ */
+public class ServerRegistry {
+
+  private static final Logger LOGGER = LogManager.getLogger(ServerRegistry.class);
+  private static final long MAX_RECONNECT_DELAY_MS = 30000;
+  static final long MISS_RELOAD_INTERVAL_MS = 1000;
+
+  private final Vertx vertx;
+  private final PgPool pool;
+  private final PgSubscriber subscriber;
+  private final long missReloadIntervalMs;
+
+  private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of());
+  private Future<Void> currentLoad;
+  private Promise<Void> nextLoad;
+  private Future<Void> missReload;
+  private long lastMissReload;
+  private final Promise<Void> started = Promise.promise();
+  private long connectTimer = -1;
+  private boolean closed = false;
+
+  /**
+   * Create the registry. Nothing is loaded until {@link #start()} is called or a lookup is made.
+   *
+   * @param vertx the Vert.x instance
+   * @param pool the Postgres pool used to load the tables
+   * @param connectOptions the options used to open the connection that listens for changes
+   */
+  public ServerRegistry(Vertx vertx, PgPool pool, PgConnectOptions connectOptions) {
+    this(vertx, pool, connectOptions, MISS_RELOAD_INTERVAL_MS);
+  }
+
+  ServerRegistry(
+      Vertx vertx, PgPool pool, PgConnectOptions connectOptions, long missReloadIntervalMs) {
+    this.vertx = vertx;
+    this.pool = pool;
+    this.missReloadIntervalMs = missReloadIntervalMs;
+    this.subscriber =
+        PgSubscriber.subscriber(vertx, connectOptions)
+            .reconnectPolicy(retries -> Math.min(1000L * (retries + 1), MAX_RECONNECT_DELAY_MS));
+
+    /* the subscribe handler is called on every (re)connect, after which changes are notified */
+    subscriber
+        .channel(SERVER_REGISTRY_CHANNEL)
+        .subscribeHandler(v -> reload())
+        .handler(
+            table -> {
+              LOGGER.debug("Info: {} changed, reloading server registry", table);
+              reload();
+            });
+  }
+
+  /**
+   * Start listening for changes. The tables are loaded once listening has started. If the
+   * listening connection cannot be opened, it is retried with the same backoff as a reconnect, so
+   * that changes to known servers, e.g. an APD becoming inactive, are picked up once it opens.
+   *
+   * @return a future that succeeds once the listening connection is open
+   */
+  public Future<Void> start() {
+    connect(0);
+    return started.future();
+  }
+
+  private void connect(int retries) {
+    if (closed) {
+      return;
+    }
+
+    subscriber
+        .connect()
+        .onSuccess(v -> started.tryComplete())
+        .onFailure(
+            err -> {
+              long delay = Math.min(1000L * (retries + 1), MAX_RECONNECT_DELAY_MS);
+              LOGGER.error(
+                  "Fail: Could not listen for server registry changes, retrying in {} ms",
+                  delay,
+                  err);
+              if (!closed) {
+                connectTimer = vertx.setTimer(delay, id -> connect(retries + 1));
+              }
+            });
+  }
+
+  /** Stop listening for changes. */
+  public void close() {
+    closed = true;
+    if (connectTimer != -1) {
+      vertx.cancelTimer(connectTimer);
+    }
+    subscriber.close();
+  }
+
+  /**
+   * Check if a resource server is registered.
+   *
+   * @param url the URL of the resource server
+   * @return a future with <tt>true</tt> if the resource server exists
+   */
+  public Future<Boolean> resourceServerExists(String url) {
+    return lookup(snap -> snap.resourceServers.containsKey(url))
+        .map(snap -> snap.resourceServers.containsKey(url));
+  }
+
+  /**
+   * Get the IDs of registered resource servers.
+   *
+   * @param urls the URLs of the resource servers
+   * @return a future with a map of URL to resource server ID. URLs that are not registered are not
+   *     in the map
+   */
+  public Future<Map<String, UUID>> getResourceServerIds(Collection<String> urls) {
+    return lookup(snap -> snap.resourceServers.keySet().containsAll(urls))
+        .map(
+            snap ->
+                urls.stream()
+                    .filter(snap.resourceServers::containsKey)
+                    .distinct()
+                    .collect(Collectors.toMap(url -> url, snap.resourceServers::get)));
+  }
+
+  /**
+   * Get the status of a registered APD.
+   *
+   * @param url the URL of the APD
+   * @return a future with the status of the APD, empty if the APD is not registered
+   */
+  public Future<Optional<ApdStatus>> getApdStatus(String url) {
+    return lookup(snap -> snap.apds.containsKey(url))
+        .map(snap -> Optional.ofNullable(snap.apds.get(url)));
+  }
+
+  /**
+   * Check if a URL belongs to a registered resource server or an active APD, i.e. a server that
+   * accepts tokens issued by the auth server.
+   *
+   * @param url the URL of the server
+   * @return a future with <tt>true</tt> if the URL is a resource server or an active APD
+   */
+  public Future<Boolean> isResourceServerOrActiveApd(String url) {
+    return lookup(snap -> snap.resourceServers.containsKey(url) || snap.apds.containsKey(url))
+        .map(
+            snap ->
+                snap.resourceServers.containsKey(url)
+                    || ApdStatus.ACTIVE.equals(snap.apds.get(url)));
+  }
+
+  private Future<Snapshot> lookup(Predicate<Snapshot> known) {
+    Snapshot current = snapshot;
+    if (known.test(current)) {
+      return Future.succeededFuture(current);
+    }
+    /* the server may have been added after the last load */
+    long now = System.currentTimeMillis();
+    if (missReload != null && now - lastMissReload < missReloadIntervalMs) {
+      if (missReload.isComplete()) {
+        return Future.succeededFuture(snapshot);
+      }
+      return missReload.map(v -> snapshot);
+    }
+
+    lastMissReload = now;
+    missReload = reload();
+    return missReload.map(v -> snapshot);
+  }
+
+  /**
+   * Load the tables again. If a load is already running, another load is run once it completes, so
+   * that changes committed while it was running are not missed.
+   *
+   * @return a future that completes once the tables have been loaded
+   */
+  private Future<Void> reload() {
+    if (currentLoad == null) {
+      currentLoad =
+          load()
+              .onComplete(
+                  res -> {
+                    currentLoad = null;
+                    if (nextLoad != null) {
+                      Promise<Void> queued = nextLoad;
+                      nextLoad = null;
+                      reload().onComplete(queued);
+                    }
+                  });
+      return currentLoad;
+    }
+
+    if (nextLoad == null) {
+      nextLoad = Promise.promise();
+    }
+    return nextLoad.future();
+  }
+
+  private Future<Void> load() {
+    Collector<Row, ?, Map<String, UUID>> rsCollector =
+        Collectors.toMap(row -> row.getString("url"), row -> row.getUUID("id"));
+    Collector<Row, ?, Map<String, ApdStatus>> apdCollector =
+        Collectors.toMap(
+            row -> row.getString("url"), row -> ApdStatus.valueOf(row.getString("status")));
+
+    Future<Map<String, UUID>> resourceServers =
+        pool.query(SQL_REGISTRY_GET_RS)
+            .collecting(rsCollector)
+            .execute()
+            .map(SqlResult::value);
+
+    Future<Map<String, ApdStatus>> apds =
+        pool.query(SQL_REGISTRY_GET_APDS)
+            .collecting(apdCollector)
+            .execute()
+            .map(SqlResult::value);
+
+    return CompositeFuture.all(resourceServers, apds)
+        .<Void>map(
+            res -> {
+              snapshot = new Snapshot(resourceServers.result(), apds.result());
+              LOGGER.debug(
+                  "Info: Server registry loaded; {} resource servers, {} APDs",
+                  resourceServers.result().size(),
+                  apds.result().size());
+              return null;
+            })
+        .onFailure(err -> LOGGER.error("Fail: Could not load server registry", err));
+  }
+
+  /** An immutable copy of both tables. */
+  private static final class Snapshot {
+    private final Map<String, UUID> resourceServers;
+    private final Map<String, ApdStatus> apds;
+
+    private Snapshot(Map<String, UUID> resourceServers, Map<String, ApdStatus> apds) {
+      this.resourceServers = Collections.unmodifiableMap(resourceServers);
+      this.apds = Collections.unmodifiableMap(apds);
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package iudx.aaa.server.apiserver.util;
+
+import com.google.common.base.Ticker;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of the Keycloak userinfo fetched by {@link OIDCAuthentication}, keyed by the
+ * SHA-256 hash of the access token, so that repeat requests with the same token do not call the
+ * Keycloak userinfo endpoint.
+ *
+ * <p>Userinfo is served for at most <tt>userInfoCacheTtlSeconds</tt>, and never once the
+ * <tt>exp</tt> of the token has passed. The TTL is kept short, since a session ended on Keycloak
+ * is only noticed once the userinfo is fetched again.
+ *
+ * <p>The number of lookups is exported through Micrometer as <tt>aaa.oidc.userinfo.cache</tt>,
+ * tagged with the <tt>result</tt> (<em>hit</em> or <em>miss</em>) and the deployment ID of the
+ * verticle.
+ */
+public class UserInfoCache {
+
+  private static final String METRICS_NAME = "aaa.oidc.userinfo.cache";
+
+  /** The userinfo and the <tt>exp</tt> of the token it was fetched with, if known. */
+  private static final class Entry {
+    private final JsonObject userInfo;
+    private final Long exp;
+
+    private Entry(JsonObject userInfo, Long exp) {
+      this.userInfo = userInfo;
+      this.exp = exp;
+    }
+  }
+
+  private final EvictingCache<HashCode, Entry> cache;
+  private final LongSupplier epochSeconds;
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxSize maximum number of tokens held. A size of <tt>0</tt> disables caching
+   * @param ttlSeconds time in seconds for which userinfo is cached
+   */
+  public UserInfoCache(Vertx vertx, long maxSize, long ttlSeconds) {
+    this(
+        vertx, maxSize, ttlSeconds, Ticker.systemTicker(), () -> System.currentTimeMillis() / 1000);
+  }
+
+  UserInfoCache(
+      Vertx vertx, long maxSize, long ttlSeconds, Ticker ticker, LongSupplier epochSeconds) {
+    if (maxSize < 0 || ttlSeconds < 0) {
+      throw new IllegalArgumentException("Invalid userinfo cache configuration");
+    }
+
+    this.epochSeconds = epochSeconds;
+    this.cache =
+        new EvictingCache<HashCode, Entry>(
+            vertx, METRICS_NAME, maxSize, ttlSeconds, ticker, null, null);
+  }
+
+  /**
+   * Get the cached userinfo of a token.
+   *
+   * @param token the access token
+   * @return a copy of the userinfo, or <tt>null</tt> if it is not cached or the token has expired
+   */
+  public JsonObject get(String token) {
+    Entry entry =
+        cache.get(hash(token), e -> e.exp == null || epochSeconds.getAsLong() < e.exp);
+    return entry == null ? null : entry.userInfo.copy();
+  }
+
+  /**
+   * Cache the userinfo fetched with a token. Userinfo of tokens that have already expired is not
+   * cached.
+   *
+   * @param token the access token
+   * @param userInfo the userinfo
+   * @param exp the <tt>exp</tt> of the token in epoch seconds, or <tt>null</tt> if not known
+   */
+  public void put(String token, JsonObject userInfo, Long exp) {
+    if (exp != null && epochSeconds.getAsLong() >= exp) {
+      return;
+    }
+    cache.put(hash(token), new Entry(userInfo.copy(), exp));
+  }
+
+  /** Drop all cached userinfo. Called when the verticle is undeployed. */
+  public void close() {
+    cache.close();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  private static HashCode hash(String token) {
+    return Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+  }
+}
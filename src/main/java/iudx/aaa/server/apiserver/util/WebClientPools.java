@@ -0,0 +1,231 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP2;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_CONNECT_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_HOSTS;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_IDLE_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_KEEP_ALIVE;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_KEEP_ALIVE_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_MAX_POOL_SIZE;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_HTTP2;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_HTTP_CONNECT_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_HTTP_IDLE_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_HTTP_KEEP_ALIVE;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_HTTP_KEEP_ALIVE_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_HTTP_MAX_POOL_SIZE;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Dedicated HTTP connection pools for each destination host, so that the pool of each host can be
+ * tuned separately and a slow host does not use up the connections of the others.
+ *
+ * <p>The pool options are read from the <tt>httpClientOptions</tt> config object. The options at
+ * the top level apply to every host, and can be overridden for a host in the <tt>hosts</tt> object,
+ * keyed by the host name. The options are <tt>maxPoolSize</tt>, <tt>keepAlive</tt>,
+ * <tt>keepAliveTimeoutSeconds</tt>, <tt>idleTimeoutSeconds</tt> (after which idle connections are
+ * closed, <em>0</em> to keep them open), <tt>connectTimeoutMs</tt> and <tt>http2</tt>. With
+ * <tt>http2</tt>, HTTP/2 is negotiated using ALPN and HTTP/1.1 is used if the host does not support
+ * it.
+ *
+ * <p>Requests made through {@link #send(String, Function)} are timed and exported through
+ * Micrometer as the <tt>aaa.http.client.requests</tt> histogram, tagged with the <tt>client</tt>
+ * name, the <tt>host</tt> and the <tt>outcome</tt> (<em>success</em> or <em>failure</em>). The
+ * number of requests in flight and their ratio to <tt>maxPoolSize</tt> are exported as the
+ * <tt>aaa.http.client.pool.in.use</tt> and <tt>aaa.http.client.pool.utilisation</tt> gauges. Over
+ * HTTP/1.1, each request in flight holds a connection of the pool. All metrics are tagged with the
+ * deployment ID of the verticle.
+ */
+public class WebClientPools {
+
+  private static final String METRICS_REQUESTS = "aaa.http.client.requests";
+  private static final String METRICS_IN_USE = "aaa.http.client.pool.in.use";
+  private static final String METRICS_UTILISATION = "aaa.http.client.pool.utilisation";
+
+  /** The web client and metrics of a single host. */
+  private final class Pool {
+    private final WebClient client;
+    private final int maxPoolSize;
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final Timer succeeded;
+    private final Timer failed;
+
+    private Pool(String host) {
+      WebClientOptions options = options(host);
+      this.client = WebClient.create(vertx, options);
+      this.maxPoolSize = options.getMaxPoolSize();
+      this.succeeded = timer(host, "success");
+      this.failed = timer(host, "failure");
+
+      Gauge.builder(METRICS_IN_USE, inUse, AtomicInteger::get)
+          .tag("client", name)
+          .tag("host", host)
+          .tag("deployment", deploymentId)
+          .tag("instance", instance)
+          .register(registry);
+      Gauge.builder(METRICS_UTILISATION, this, pool -> (double) pool.inUse.get() / maxPoolSize)
+          .tag("client", name)
+          .tag("host", host)
+          .tag("deployment", deploymentId)
+          .tag("instance", instance)
+          .register(registry);
+    }
+
+    private Timer timer(String host, String outcome) {
+      return Timer.builder(METRICS_REQUESTS)
+          .tag("client", name)
+          .tag("host", host)
+          .tag("outcome", outcome)
+          .tag("deployment", deploymentId)
+          .publishPercentileHistogram()
+          .register(registry);
+    }
+  }
+
+  private final Vertx vertx;
+  private final String name;
+  private final WebClientOptions baseOptions;
+  private final JsonObject config;
+  private final Map<String, Pool> pools = new ConcurrentHashMap<String, Pool>();
+
+  private final MeterRegistry registry;
+  private final String deploymentId;
+  private final String instance = Integer.toHexString(System.identityHashCode(this));
+
+  /**
+   * Create the pools. The pool of a host is created on the first request to it.
+   *
+   * @param vertx the Vert.x instance
+   * @param name the name of the client, used to tag the metrics
+   * @param baseOptions the web client options common to all hosts, for e.g. SSL options
+   * @param config the <tt>httpClientOptions</tt> config object
+   */
+  public WebClientPools(Vertx vertx, String name, WebClientOptions baseOptions, JsonObject config) {
+    this.vertx = vertx;
+    this.name = name;
+    this.baseOptions = baseOptions;
+    this.config = config;
+
+    this.registry = EvictingCache.meterRegistry();
+    this.deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+
+    /* fail on deployment rather than on the first request to a misconfigured host */
+    options(null);
+    config
+        .getJsonObject(CONFIG_HTTP_HOSTS, new JsonObject())
+        .fieldNames()
+        .forEach(host -> options(host));
+  }
+
+  /**
+   * Get the web client options of a host.
+   *
+   * @param host the host name, or <tt>null</tt> for the options common to all hosts
+   * @return the options
+   */
+  WebClientOptions options(String host) {
+    JsonObject hostConfig =
+        host == null
+            ? new JsonObject()
+            : config
+                .getJsonObject(CONFIG_HTTP_HOSTS, new JsonObject())
+                .getJsonObject(host, new JsonObject());
+
+    int maxPoolSize = intOption(hostConfig, CONFIG_HTTP_MAX_POOL_SIZE, DEFAULT_HTTP_MAX_POOL_SIZE);
+    int keepAliveTimeout =
+        intOption(hostConfig, CONFIG_HTTP_KEEP_ALIVE_TIMEOUT, DEFAULT_HTTP_KEEP_ALIVE_TIMEOUT);
+    int idleTimeout = intOption(hostConfig, CONFIG_HTTP_IDLE_TIMEOUT, DEFAULT_HTTP_IDLE_TIMEOUT);
+    int connectTimeout =
+        intOption(hostConfig, CONFIG_HTTP_CONNECT_TIMEOUT, DEFAULT_HTTP_CONNECT_TIMEOUT);
+    boolean keepAlive =
+        hostConfig.getBoolean(
+            CONFIG_HTTP_KEEP_ALIVE,
+            config.getBoolean(CONFIG_HTTP_KEEP_ALIVE, DEFAULT_HTTP_KEEP_ALIVE));
+    boolean http2 =
+        hostConfig.getBoolean(CONFIG_HTTP2, config.getBoolean(CONFIG_HTTP2, DEFAULT_HTTP2));
+
+    if (maxPoolSize <= 0 || keepAliveTimeout < 0 || idleTimeout < 0 || connectTimeout < 0) {
+      throw new IllegalArgumentException(
+          "Invalid HTTP client configuration for " + (host == null ? name : host));
+    }
+
+    WebClientOptions options = new WebClientOptions(baseOptions);
+    options.setMaxPoolSize(maxPoolSize);
+    options.setKeepAlive(keepAlive);
+    options.setKeepAliveTimeout(keepAliveTimeout);
+    options.setIdleTimeout(idleTimeout);
+    options.setIdleTimeoutUnit(TimeUnit.SECONDS);
+    options.setConnectTimeout(connectTimeout);
+
+    if (http2) {
+      options.setProtocolVersion(HttpVersion.HTTP_2);
+      options.setUseAlpn(true);
+    }
+    return options;
+  }
+
+  private int intOption(JsonObject hostConfig, String key, int defaultValue) {
+    return hostConfig.getInteger(key, config.getInteger(key, defaultValue));
+  }
+
+  private Pool pool(String host) {
+    return pools.computeIfAbsent(host, Pool::new);
+  }
+
+  /**
+   * Get the web client of a host. Requests made directly on the client are not timed.
+   *
+   * @param host the host name
+   * @return the web client
+   */
+  public WebClient client(String host) {
+    return pool(host).client;
+  }
+
+  /**
+   * Make a timed request to a host.
+   *
+   * @param <T> the type of the result
+   * @param host the host name
+   * @param request makes the request using the web client of the host
+   * @return the future returned by the request
+   */
+  public <T> Future<T> send(String host, Function<WebClient, Future<T>> request) {
+    Pool pool = pool(host);
+    long start = System.nanoTime();
+    pool.inUse.incrementAndGet();
+
+    Future<T> result;
+    try {
+      result = request.apply(pool.client);
+    } catch (RuntimeException e) {
+      result = Future.failedFuture(e);
+    }
+
+    return result.onComplete(
+        ar -> {
+          pool.inUse.decrementAndGet();
+          Timer timer = ar.succeeded() ? pool.succeeded : pool.failed;
+          timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+  }
+
+  /** Close the web clients of all hosts. Called when the verticle is undeployed. */
+  public void close() {
+    pools.values().forEach(pool -> pool.client.close());
+    pools.clear();
+  }
+}
@@ -0,0 +1,205 @@
+package iudx.aaa.server.policy;
+
+import static iudx.aaa.server.policy.Constants.CATALOGUE_CACHE_ADDRESS;
+import static iudx.aaa.server.policy.Constants.ERR_NOT_VALID_RESOURCE;
+import static iudx.aaa.server.policy.Constants.ID;
+import static iudx.aaa.server.policy.Constants.ITEMNOTFOUND;
+
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.ResourceObj;
+import iudx.aaa.server.apiserver.Response;
+import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded cache of the resource details fetched from the catalogue by {@link CatalogueClient},
+ * keyed by the item ID.
+ *
+ * <p>Resource and resource group details are cached for <tt>cacheTtlSeconds</tt>. Items that do
+ * not exist on the catalogue or are neither resources nor resource groups are cached for the
+ * shorter <tt>negativeCacheTtlSeconds</tt>, so that an item that is added to the catalogue soon
+ * becomes usable. Any other failure, e.g. the
+ * catalogue being unreachable, is not cached.
+ *
+ * <p>An item can be evicted on every PolicyVerticle instance in the cluster by publishing a JSON
+ * object with the item ID in the <tt>id</tt> key on {@link Constants#CATALOGUE_CACHE_ADDRESS}, for
+ * e.g. when the item is updated or deleted on the catalogue.
+ *
+ * <p>The number of lookups is exported through Micrometer as <tt>aaa.policy.catalogue.cache</tt>,
+ * tagged with the <tt>result</tt> (<em>hit</em> or <em>miss</em>) and the <tt>outcome</tt>
+ * (<em>resource</em>, <em>not_found</em>, <em>not_resource</em> or <em>error</em>). All metrics
+ * are tagged with the deployment ID of the verticle.
+ */
+public class CatalogueCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(CatalogueCache.class);
+  private static final String METRICS_NAME = "aaa.policy.catalogue.cache";
+
+  /** The outcome of a catalogue lookup. */
+  enum Outcome {
+    RESOURCE,
+    NOT_FOUND,
+    NOT_RESOURCE,
+    ERROR;
+
+    String tag() {
+      return name().toLowerCase();
+    }
+  }
+
+  /* both are evicted through the consumer of the resources cache */
+  private final EvictingCache<UUID, ResourceObj> resources;
+  private final EvictingCache<UUID, Response> invalidItems;
+
+  private final Map<Outcome, Counter> hits = new EnumMap<Outcome, Counter>(Outcome.class);
+  private final Map<Outcome, Counter> misses = new EnumMap<Outcome, Counter>(Outcome.class);
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxSize maximum number of items held, for each of resources and invalid items. A size of
+   *     <tt>0</tt> disables caching
+   * @param ttlSeconds time in seconds for which resource details are cached
+   * @param negativeTtlSeconds time in seconds for which items that do not exist or are not resources
+   *     are cached
+   */
+  public CatalogueCache(Vertx vertx, long maxSize, long ttlSeconds, long negativeTtlSeconds) {
+    this(vertx, maxSize, ttlSeconds, negativeTtlSeconds, Ticker.systemTicker());
+  }
+
+  CatalogueCache(
+      Vertx vertx, long maxSize, long ttlSeconds, long negativeTtlSeconds, Ticker ticker) {
+    if (maxSize < 0 || ttlSeconds < 0 || negativeTtlSeconds < 0) {
+      throw new IllegalArgumentException("Invalid catalogue cache configuration");
+    }
+
+    this.resources =
+        new EvictingCache<UUID, ResourceObj>(
+            vertx,
+            null,
+            maxSize,
+            ttlSeconds,
+            ticker,
+            CATALOGUE_CACHE_ADDRESS,
+            msg -> evictLocal(msg.getString(ID)));
+    this.invalidItems =
+        new EvictingCache<UUID, Response>(
+            vertx, null, maxSize, negativeTtlSeconds, ticker, null, null);
+
+    /* lookups are counted here, since the outcome of a miss is only known once it is put */
+    for (Outcome outcome : Outcome.values()) {
+      hits.put(outcome, counter(vertx, "hit", outcome));
+      misses.put(outcome, counter(vertx, "miss", outcome));
+    }
+  }
+
+  private static Counter counter(Vertx vertx, String result, Outcome outcome) {
+    return EvictingCache.counter(vertx, METRICS_NAME, result, "outcome", outcome.tag());
+  }
+
+  /**
+   * Get the cached result of a catalogue lookup.
+   *
+   * @param itemId the item ID
+   * @return a succeeded future with the resource details, a failed future with a {@link
+   *     ComposeException} if the item does not exist or is not a resource, or <tt>null</tt> if
+   *     there is no cached result
+   */
+  public Future<ResourceObj> get(UUID itemId) {
+    ResourceObj resource = resources.get(itemId);
+    if (resource != null) {
+      hits.get(Outcome.RESOURCE).increment();
+      return Future.succeededFuture(resource);
+    }
+
+    Response invalid = invalidItems.get(itemId);
+    if (invalid != null) {
+      hits.get(outcomeOf(invalid)).increment();
+      return Future.failedFuture(new ComposeException(invalid));
+    }
+
+    return null;
+  }
+
+  /**
+   * Cache the result of a catalogue lookup made after a cache miss.
+   *
+   * @param itemId the item ID
+   * @param result the result of {@link CatalogueClient#getItemDetails(UUID)}
+   */
+  public void put(UUID itemId, AsyncResult<ResourceObj> result) {
+    if (result.succeeded()) {
+      misses.get(Outcome.RESOURCE).increment();
+      resources.put(itemId, result.result());
+      return;
+    }
+
+    if (!(result.cause() instanceof ComposeException)) {
+      misses.get(Outcome.ERROR).increment();
+      return;
+    }
+
+    Response response = ((ComposeException) result.cause()).getResponse();
+    Outcome outcome = outcomeOf(response);
+    misses.get(outcome).increment();
+    if (outcome != Outcome.ERROR) {
+      invalidItems.put(itemId, response);
+    }
+  }
+
+  private static Outcome outcomeOf(Response response) {
+    if (ITEMNOTFOUND.equals(response.getTitle())) {
+      return Outcome.NOT_FOUND;
+    } else if (ERR_NOT_VALID_RESOURCE.equals(response.getTitle())) {
+      return Outcome.NOT_RESOURCE;
+    }
+    return Outcome.ERROR;
+  }
+
+  /**
+   * Evict an item on all instances in the cluster.
+   *
+   * @param itemId the item ID
+   */
+  public void invalidate(UUID itemId) {
+    resources.publish(new JsonObject().put(ID, itemId.toString()));
+  }
+
+  private void evictLocal(String itemId) {
+    UUID id;
+    try {
+      id = UUID.fromString(String.valueOf(itemId));
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Invalid item ID {} for catalogue cache eviction", itemId);
+      return;
+    }
+
+    resources.invalidate(id);
+    invalidItems.invalidate(id);
+    LOGGER.debug("Info: Evicted cached catalogue item {}", id);
+  }
+
+  /**
+   * Close the cache when the verticle is undeployed, see {@link EvictingCache#close()}.
+   *
+   * @return a Future that completes once the cache is closed
+   */
+  public Future<Void> close() {
+    return invalidItems.close().compose(v -> resources.close());
+  }
+
+  long size() {
+    return resources.size() + invalidItems.size();
+  }
+}
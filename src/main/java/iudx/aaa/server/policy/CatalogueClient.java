@@ -1,6 +1,7 @@
 package iudx.aaa.server.policy;
 
 import static iudx.aaa.server.policy.Constants.ERR_NOT_VALID_RESOURCE;
+import static iudx.aaa.server.policy.Constants.ERR_NOT_VALID_RESOURCE_GROUP;
 import static iudx.aaa.server.policy.Constants.ID;
 import static iudx.aaa.server.policy.Constants.INTERNALERROR;
 import static iudx.aaa.server.policy.Constants.ITEMNOTFOUND;
@@ -8,17 +9,25 @@ import static iudx.aaa.server.policy.Constants.RESULTS;
 import static iudx.aaa.server.policy.Constants.TYPE;
 import static iudx.aaa.server.policy.Constants.UUID_REGEX;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.HttpResponse;
 import iudx.aaa.server.apiserver.ItemType;
 import iudx.aaa.server.apiserver.ResourceObj;
 import iudx.aaa.server.apiserver.ResourceObj.ResourceObjBuilder;
 import iudx.aaa.server.apiserver.Response;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import iudx.aaa.server.apiserver.util.WebClientPools;
 import iudx.aaa.server.apiserver.util.Urn;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -41,39 +50,196 @@ public class CatalogueClient {
   public static final String CAT_SUCCESS_URN = "urn:dx:cat:Success";
 
   public static final String CAT_RESP_RESOURCE_TYPE = "iudx:Resource";
+  public static final String CAT_RESP_RESOURCE_GROUP_TYPE = "iudx:ResourceGroup";
   public static final String CAT_RESP_PROVIDER_TYPE = "iudx:Provider";
   public static final String CAT_RESP_RES_SERVER_TYPE = "iudx:ResourceServer";
 
-  private final WebClient client;
+  private static final String METRICS_COALESCED = "aaa.policy.catalogue.coalesced";
+
+  private final WebClientPools pools;
   private final String catHost;
   private final Integer catPort;
   private final String catBasePath;
+  private final CatalogueCache cache;
+  private final CatalogueSnapshot snapshot;
+
+  /* lookups waiting on the catalogue, only accessed on the context of the verticle */
+  private final Map<UUID, Future<ResourceObj>> inFlight = new HashMap<UUID, Future<ResourceObj>>();
+  private final Counter coalesced;
 
-  public CatalogueClient(WebClient client, JsonObject options) {
+  /**
+   * Create the catalogue client. The client must only be used on the context of the verticle that
+   * created it.
+   *
+   * @param vertx the Vert.x instance
+   * @param pools the HTTP connection pools used to call the catalogue
+   * @param options the <tt>catalogueOptions</tt> config object
+   * @param cache the cache of catalogue lookups
+   */
+  public CatalogueClient(
+      Vertx vertx, WebClientPools pools, JsonObject options, CatalogueCache cache) {
+    this(vertx, pools, options, cache, null);
+  }
+
+  /**
+   * Create the catalogue client, looking up resources in a local snapshot of the catalogue first.
+   * The client must only be used on the context of the verticle that created it.
+   *
+   * @param vertx the Vert.x instance
+   * @param pools the HTTP connection pools used to call the catalogue
+   * @param options the <tt>catalogueOptions</tt> config object
+   * @param cache the cache of catalogue lookups
+   * @param snapshot the local snapshot of the catalogue, or <tt>null</tt> if disabled
+   */
+  public CatalogueClient(
+      Vertx vertx,
+      WebClientPools pools,
+      JsonObject options,
+      CatalogueCache cache,
+      CatalogueSnapshot snapshot) {
 
-    this.client = client;
+    this.pools = pools;
     this.catHost = options.getString("catServerHost");
     this.catPort = Integer.parseInt(options.getString("catServerPort"));
     this.catBasePath = options.getString("catServerBasePath");
+    this.cache = cache;
+    this.snapshot = snapshot;
+
+    MeterRegistry registry = EvictingCache.meterRegistry();
+    String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+    this.coalesced =
+        Counter.builder(METRICS_COALESCED).tag("deployment", deploymentId).register(registry);
   }
 
   /**
    * Checks if given resource ID is a valid resource, gets all info about the resource and puts it
-   * into a {@link ResourceObj} object.
+   * into a {@link ResourceObj} object. See {@link #getItemDetails(UUID)} for how lookups are
+   * served.
    *
    * @param itemId a UUID representing a resource
    * @return a Future of {@link ResourceObj} object containing all info if successful
    */
   public Future<ResourceObj> getResourceDetails(UUID itemId) {
+    return getItemDetails(itemId)
+        .compose(
+            item -> {
+              if (item.getItemType() != ItemType.RESOURCE) {
+                return Future.failedFuture(notValidItem(ERR_NOT_VALID_RESOURCE, itemId));
+              }
+              return Future.succeededFuture(item);
+            });
+  }
+
+  /**
+   * Checks if given resource group ID is a valid resource group, gets all info about the group and
+   * puts it into a {@link ResourceObj} object. The resource group ID of the object is the ID of the
+   * group itself. See {@link #getItemDetails(UUID)} for how lookups are served.
+   *
+   * @param itemId a UUID representing a resource group
+   * @return a Future of {@link ResourceObj} object containing all info if successful
+   */
+  public Future<ResourceObj> getResourceGroupDetails(UUID itemId) {
+    return getItemDetails(itemId)
+        .transform(
+            res -> {
+              if (res.succeeded() && res.result().getItemType() == ItemType.RESOURCE_GROUP) {
+                return Future.succeededFuture(res.result());
+              }
+
+              /* the item lookup reports items that are neither resources nor groups as not being
+               * valid resources */
+              if (res.succeeded() || isNotValidResource(res.cause())) {
+                return Future.failedFuture(notValidItem(ERR_NOT_VALID_RESOURCE_GROUP, itemId));
+              }
+              return Future.failedFuture(res.cause());
+            });
+  }
+
+  private static boolean isNotValidResource(Throwable err) {
+    return err instanceof ComposeException
+        && ERR_NOT_VALID_RESOURCE.equals(((ComposeException) err).getResponse().getTitle());
+  }
+
+  private static ComposeException notValidItem(String title, UUID itemId) {
+    Response r =
+        new Response.ResponseBuilder()
+            .type(Urn.URN_INVALID_INPUT.toString())
+            .title(title)
+            .detail(itemId.toString())
+            .status(400)
+            .build();
+    return new ComposeException(r);
+  }
+
+  /**
+   * Gets all info about a resource or resource group and puts it into a {@link ResourceObj}
+   * object. The result is served from the {@link CatalogueSnapshot}, if enabled, or the {@link
+   * CatalogueCache} if present. Lookups are cached by item ID, whatever the type of the item.
+   *
+   * <p>Concurrent lookups for the same item share a single call to the catalogue. The number of
+   * lookups that did not call the catalogue because a call was already in flight is exported
+   * through Micrometer as <tt>aaa.policy.catalogue.coalesced</tt>.
+   *
+   * @param itemId a UUID representing a resource or resource group
+   * @return a Future of {@link ResourceObj} object containing all info if successful
+   */
+  Future<ResourceObj> getItemDetails(UUID itemId) {
+    if (snapshot != null) {
+      ResourceObj indexed = snapshot.get(itemId);
+      if (indexed != null) {
+        return Future.succeededFuture(indexed);
+      }
+    }
+
+    Future<ResourceObj> cached = cache.get(itemId);
+    if (cached != null) {
+      return cached;
+    }
+
+    Future<ResourceObj> pending = inFlight.get(itemId);
+    if (pending != null) {
+      coalesced.increment();
+      return pending;
+    }
+
+    /* registered before the call is made, in case the call completes immediately */
+    Promise<ResourceObj> promise = Promise.promise();
+    inFlight.put(itemId, promise.future());
+
+    fetchResourceDetails(itemId)
+        .onComplete(
+            res -> {
+              inFlight.remove(itemId);
+              cache.put(itemId, res);
+              promise.handle(res);
+            });
+    return promise.future();
+  }
+
+  int inFlightCount() {
+    return inFlight.size();
+  }
+
+  /**
+   * Fetch the resource or resource group details from the catalogue.
+   *
+   * @param itemId a UUID representing a resource or resource group
+   * @return a Future of {@link ResourceObj} object containing all info if successful
+   */
+  private Future<ResourceObj> fetchResourceDetails(UUID itemId) {
     Promise<ResourceObj> promise = Promise.promise();
 
     ResourceObjBuilder builder = new ResourceObjBuilder();
 
     Future<JsonArray> catExistenceResponse =
-        client
-            .get(catPort, catHost, catBasePath + CAT_ITEM_ENDPOINT)
-            .addQueryParam(ID, itemId.toString())
-            .send()
+        pools
+            .send(
+                catHost,
+                client ->
+                    client
+                        .get(catPort, catHost, catBasePath + CAT_ITEM_ENDPOINT)
+                        .addQueryParam(ID, itemId.toString())
+                        .send())
             .compose(
                 res -> {
                   if (res.statusCode() == 200
@@ -97,6 +263,19 @@ public class CatalogueClient {
                   }
                 });
 
+    /* the relationship request is sent along with the item request, but its response is only
+     * checked once the item is known to be a valid resource. If the item check fails, the
+     * relationship response is ignored */
+    Future<HttpResponse<Buffer>> catRelationRequest =
+        pools.send(
+            catHost,
+            client ->
+                client
+                    .get(catPort, catHost, catBasePath + CAT_RELATION_ENDPOINT)
+                    .addQueryParam(ID, itemId.toString())
+                    .addQueryParam(CAT_REL_QUERY_PARAM, CAT_REL_QUERY_VAL_ALL)
+                    .send());
+
     Future<JsonObject> itemValidation =
         catExistenceResponse.compose(
             resArr -> {
@@ -109,15 +288,9 @@ public class CatalogueClient {
 
               JsonArray itemTypes = body.getJsonArray(CAT_RESP_TYPE_KEY);
 
-              if (!itemTypes.contains(CAT_RESP_RESOURCE_TYPE)) {
-                Response r =
-                    new Response.ResponseBuilder()
-                        .type(Urn.URN_INVALID_INPUT.toString())
-                        .title(ERR_NOT_VALID_RESOURCE)
-                        .detail(itemId.toString())
-                        .status(400)
-                        .build();
-                return Future.failedFuture(new ComposeException(r));
+              boolean isGroup = itemTypes.contains(CAT_RESP_RESOURCE_GROUP_TYPE);
+              if (!itemTypes.contains(CAT_RESP_RESOURCE_TYPE) && !isGroup) {
+                return Future.failedFuture(notValidItem(ERR_NOT_VALID_RESOURCE, itemId));
               }
 
               if (!body.containsKey(CAT_RESP_APD_KEY)) {
@@ -134,8 +307,14 @@ public class CatalogueClient {
                 return Future.failedFuture(INTERNALERROR);
               }
 
-              if (!(body.containsKey(CAT_RESP_RES_GROUP_KEY)
-                  && body.getString(CAT_RESP_RES_GROUP_KEY).matches(UUID_REGEX))) {
+              if (isGroup) {
+                builder.resGrpId(itemId);
+                builder.itemType(ItemType.RESOURCE_GROUP);
+              } else if (body.containsKey(CAT_RESP_RES_GROUP_KEY)
+                  && body.getString(CAT_RESP_RES_GROUP_KEY).matches(UUID_REGEX)) {
+                builder.resGrpId(UUID.fromString(body.getString(CAT_RESP_RES_GROUP_KEY)));
+                builder.itemType(ItemType.RESOURCE);
+              } else {
                 LOGGER.error(
                     "Failed Catalogue item check : Resource {} does not have `resourceGroup` key or is not UUID",
                     itemId.toString());
@@ -144,35 +323,27 @@ public class CatalogueClient {
 
               builder.id(itemId);
               builder.apdUrl(body.getString(CAT_RESP_APD_KEY));
-              builder.resGrpId(UUID.fromString(body.getString(CAT_RESP_RES_GROUP_KEY)));
               builder.accessType(body.getString(CAT_RESP_ACCESS_POLICY_KEY));
-              builder.itemType(ItemType.RESOURCE);
 
               return Future.succeededFuture();
             });
 
     Future<JsonArray> catRelationResponse =
-        itemValidation.compose(
-            itemExists ->
-                client
-                    .get(catPort, catHost, catBasePath + CAT_RELATION_ENDPOINT)
-                    .addQueryParam(ID, itemId.toString())
-                    .addQueryParam(CAT_REL_QUERY_PARAM, CAT_REL_QUERY_VAL_ALL)
-                    .send()
-                    .compose(
-                        res -> {
-                          if (res.statusCode() == 200
-                              && CAT_SUCCESS_URN.equals(res.bodyAsJsonObject().getString(TYPE))) {
-                            return Future.succeededFuture(
-                                res.bodyAsJsonObject().getJsonArray(RESULTS));
-                          } else {
-                            LOGGER.error(
-                                "Failed Catalogue relation check : {} {}",
-                                res.statusCode(),
-                                res.bodyAsJsonObject().toString());
-                            return Future.failedFuture(INTERNALERROR);
-                          }
-                        }));
+        itemValidation
+            .compose(itemExists -> catRelationRequest)
+            .compose(
+                res -> {
+                  if (res.statusCode() == 200
+                      && CAT_SUCCESS_URN.equals(res.bodyAsJsonObject().getString(TYPE))) {
+                    return Future.succeededFuture(res.bodyAsJsonObject().getJsonArray(RESULTS));
+                  } else {
+                    LOGGER.error(
+                        "Failed Catalogue relation check : {} {}",
+                        res.statusCode(),
+                        res.bodyAsJsonObject().toString());
+                    return Future.failedFuture(INTERNALERROR);
+                  }
+                });
 
     Future<ResourceObj> relationValidation =
         catRelationResponse.compose(
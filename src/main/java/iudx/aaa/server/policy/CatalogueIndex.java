@@ -0,0 +1,281 @@
+package iudx.aaa.server.policy;
+
+import iudx.aaa.server.apiserver.ItemType;
+import iudx.aaa.server.apiserver.ResourceObj;
+import iudx.aaa.server.apiserver.ResourceObj.ResourceObjBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact in-memory index of resource ID to the resource details needed for token requests, used by
+ * {@link CatalogueSnapshot}.
+ *
+ * <p>The index is an open addressing hash table over primitive arrays. The resource ID is stored
+ * as two longs, and the resource group, owner, APD URL, resource server URL and access policy are
+ * stored as indices into pools of distinct values, since they are shared by many resources. A slot
+ * takes 41 bytes, or about 55 bytes per resource at the maximum load, compared to a few hundred
+ * bytes per resource for a map of {@link UUID} to {@link ResourceObj}.
+ *
+ * <p>Entries are marked with the number of the sync pass in which they were last seen. Entries that
+ * were not seen in a complete pass, i.e. resources deleted from the catalogue, are removed by
+ * {@link #endPass()}. Pass numbers are never reused, so entries marked in an earlier pass that did
+ * not complete are not taken as seen. Removed entries leave tombstones, which are dropped when the
+ * table is rehashed. The table is rehashed at the same capacity when it is filled mostly by
+ * tombstones, so it does not grow with churn on the catalogue.
+ *
+ * <p>The index is not thread safe and must only be used on the context of the verticle.
+ */
+class CatalogueIndex {
+
+  private static final double LOAD_FACTOR = 0.75;
+  private static final int MIN_CAPACITY = 1024;
+
+  private static final byte EMPTY = 0;
+  private static final byte DELETED = 1;
+  private static final byte LIVE = 2;
+
+  private final Pool<UUID> uuids = new Pool<UUID>();
+  private final Pool<String> strings = new Pool<String>();
+
+  private int capacity;
+  private int size;
+  private int deleted;
+  private int currentPass;
+
+  private byte[] state;
+  private int[] pass;
+  private long[] idHi;
+  private long[] idLo;
+  private int[] resGrp;
+  private int[] owner;
+  private int[] apdUrl;
+  private int[] resServerUrl;
+  private int[] accessPolicy;
+
+  CatalogueIndex() {
+    allocate(MIN_CAPACITY);
+  }
+
+  /**
+   * Get the details of a resource.
+   *
+   * @param id the resource ID
+   * @return the resource details, or <tt>null</tt> if the resource is not in the index
+   */
+  ResourceObj get(UUID id) {
+    int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    if (slot < 0) {
+      return null;
+    }
+
+    return new ResourceObjBuilder()
+        .id(id)
+        .itemType(ItemType.RESOURCE)
+        .resGrpId(uuids.get(resGrp[slot]))
+        .ownerId(uuids.get(owner[slot]))
+        .apdUrl(strings.get(apdUrl[slot]))
+        .resServerUrl(strings.get(resServerUrl[slot]))
+        .accessType(strings.get(accessPolicy[slot]))
+        .build();
+  }
+
+  /**
+   * Add or update a resource, marking it as seen in the current pass.
+   *
+   * @param id the resource ID
+   * @param resGrpId the resource group ID
+   * @param ownerId the user ID of the provider
+   * @param apd the APD URL
+   * @param resServer the resource server URL
+   * @param policy the access policy
+   */
+  void put(UUID id, UUID resGrpId, UUID ownerId, String apd, String resServer, String policy) {
+    long hi = id.getMostSignificantBits();
+    long lo = id.getLeastSignificantBits();
+
+    int slot = find(hi, lo);
+    if (slot < 0) {
+      if (size + deleted + 1 > capacity * LOAD_FACTOR) {
+        /* rehashing drops the tombstones; the table only grows if live entries fill half of it */
+        resize(capacityFor(size + 1) * 2 > capacity ? capacity * 2 : capacity);
+      }
+      slot = insertionSlot(hi, lo);
+      if (state[slot] == DELETED) {
+        deleted--;
+      }
+      idHi[slot] = hi;
+      idLo[slot] = lo;
+      size++;
+    }
+
+    state[slot] = LIVE;
+    pass[slot] = currentPass;
+    resGrp[slot] = uuids.intern(resGrpId);
+    owner[slot] = uuids.intern(ownerId);
+    apdUrl[slot] = strings.intern(apd);
+    resServerUrl[slot] = strings.intern(resServer);
+    accessPolicy[slot] = strings.intern(policy);
+  }
+
+  /**
+   * Remove a resource.
+   *
+   * @param id the resource ID
+   * @return <tt>true</tt> if the resource was in the index
+   */
+  boolean remove(UUID id) {
+    int slot = find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    if (slot < 0) {
+      return false;
+    }
+    state[slot] = DELETED;
+    size--;
+    deleted++;
+    return true;
+  }
+
+  /**
+   * Make room for the expected number of resources, e.g. the total number of resources on the
+   * catalogue, to avoid resizing while they are added.
+   *
+   * @param expectedSize the expected number of resources
+   */
+  void ensureCapacity(int expectedSize) {
+    int required = capacityFor(expectedSize);
+    if (required > capacity) {
+      resize(required);
+    }
+  }
+
+  /** Start a sync pass. Resources added or updated from now on are marked as seen in this pass. */
+  void beginPass() {
+    currentPass++;
+  }
+
+  /**
+   * End a complete sync pass, removing the resources that were not seen in it.
+   *
+   * @return the number of resources removed
+   */
+  int endPass() {
+    int removed = 0;
+    for (int slot = 0; slot < capacity; slot++) {
+      if (state[slot] == LIVE && pass[slot] != currentPass) {
+        state[slot] = DELETED;
+        removed++;
+      }
+    }
+    size -= removed;
+    deleted += removed;
+    return removed;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Get the approximate memory used by the index, excluding the pools of distinct values.
+   *
+   * @return the size in bytes
+   */
+  long memoryBytes() {
+    /* 2 longs and 6 ints per slot, plus the state */
+    return (long) capacity * (2 * Long.BYTES + 6 * Integer.BYTES + 1);
+  }
+
+  private static int capacityFor(int entries) {
+    return (int) Math.max(MIN_CAPACITY, Math.ceil(entries / LOAD_FACTOR) + 1);
+  }
+
+  private int home(long hi, long lo) {
+    long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+    return Math.floorMod(h ^ (h >>> 32), capacity);
+  }
+
+  private int find(long hi, long lo) {
+    int slot = home(hi, lo);
+    while (state[slot] != EMPTY) {
+      if (state[slot] != DELETED && idHi[slot] == hi && idLo[slot] == lo) {
+        return slot;
+      }
+      slot = slot + 1 == capacity ? 0 : slot + 1;
+    }
+    return -1;
+  }
+
+  private int insertionSlot(long hi, long lo) {
+    int slot = home(hi, lo);
+    while (state[slot] == LIVE) {
+      slot = slot + 1 == capacity ? 0 : slot + 1;
+    }
+    return slot;
+  }
+
+  private void allocate(int newCapacity) {
+    capacity = newCapacity;
+    state = new byte[newCapacity];
+    pass = new int[newCapacity];
+    idHi = new long[newCapacity];
+    idLo = new long[newCapacity];
+    resGrp = new int[newCapacity];
+    owner = new int[newCapacity];
+    apdUrl = new int[newCapacity];
+    resServerUrl = new int[newCapacity];
+    accessPolicy = new int[newCapacity];
+  }
+
+  private void resize(int newCapacity) {
+    byte[] oldState = state;
+    int[] oldPass = pass;
+    long[] oldIdHi = idHi;
+    long[] oldIdLo = idLo;
+    int[] oldResGrp = resGrp;
+    int[] oldOwner = owner;
+    int[] oldApdUrl = apdUrl;
+    int[] oldResServerUrl = resServerUrl;
+    int[] oldAccessPolicy = accessPolicy;
+    int oldCapacity = capacity;
+
+    allocate(newCapacity);
+    deleted = 0;
+
+    for (int i = 0; i < oldCapacity; i++) {
+      if (oldState[i] == LIVE) {
+        int slot = insertionSlot(oldIdHi[i], oldIdLo[i]);
+        state[slot] = LIVE;
+        pass[slot] = oldPass[i];
+        idHi[slot] = oldIdHi[i];
+        idLo[slot] = oldIdLo[i];
+        resGrp[slot] = oldResGrp[i];
+        owner[slot] = oldOwner[i];
+        apdUrl[slot] = oldApdUrl[i];
+        resServerUrl[slot] = oldResServerUrl[i];
+        accessPolicy[slot] = oldAccessPolicy[i];
+      }
+    }
+  }
+
+  /** Pool of distinct values, each identified by an index. Values are never removed. */
+  private static final class Pool<T> {
+    private final List<T> values = new ArrayList<T>();
+    private final Map<T, Integer> ids = new HashMap<T, Integer>();
+
+    int intern(T value) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = values.size();
+        values.add(value);
+        ids.put(value, id);
+      }
+      return id;
+    }
+
+    T get(int id) {
+      return values.get(id);
+    }
+  }
+}
@@ -0,0 +1,363 @@
+package iudx.aaa.server.policy;
+
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_ACCESS_POLICY_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_APD_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_USER_ID_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RESOURCE_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_GROUP_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_URL_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_SUCCESS_URN;
+import static iudx.aaa.server.policy.Constants.CATALOGUE_CACHE_ADDRESS;
+import static iudx.aaa.server.policy.Constants.CAT_SNAPSHOT_PAGE_SIZE;
+import static iudx.aaa.server.policy.Constants.CAT_SNAPSHOT_REFRESH_SECONDS;
+import static iudx.aaa.server.policy.Constants.DEFAULT_CAT_SNAPSHOT_PAGE_SIZE;
+import static iudx.aaa.server.policy.Constants.DEFAULT_CAT_SNAPSHOT_REFRESH_SECONDS;
+import static iudx.aaa.server.policy.Constants.ID;
+import static iudx.aaa.server.policy.Constants.INTERNALERROR;
+import static iudx.aaa.server.policy.Constants.RESULTS;
+import static iudx.aaa.server.policy.Constants.TYPE;
+import static iudx.aaa.server.policy.Constants.UUID_REGEX;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.ResourceObj;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import iudx.aaa.server.apiserver.util.WebClientPools;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Local snapshot of the resources on the catalogue, so that resource token requests do not need to
+ * call the catalogue. {@link CatalogueClient} looks up resources in the snapshot first, and calls
+ * the catalogue only for resources that are not in it.
+ *
+ * <p>The snapshot is built by paging through all resource servers, providers and resources on the
+ * catalogue using the search API. It is synced again every <tt>snapshotRefreshIntervalSeconds</tt>;
+ * each page is applied to the {@link CatalogueIndex} as it arrives, so the snapshot keeps serving
+ * lookups during a sync. Resources that are no longer on the catalogue are removed once a sync
+ * completes. If a sync fails, the snapshot is left as is until the next sync. Resources with
+ * missing or invalid details are not added to the snapshot, so that the live catalogue lookup
+ * returns the appropriate error for them.
+ *
+ * <p>The catalogue must allow paging through all resources with <tt>offset</tt> and
+ * <tt>limit</tt>, which may require raising the maximum result window of the catalogue's search
+ * index.
+ *
+ * <p>An item evicted from the {@link CatalogueCache} through {@link
+ * Constants#CATALOGUE_CACHE_ADDRESS} is also removed from the snapshot until the next sync.
+ *
+ * <p>The number of resources in the snapshot is exported through Micrometer as
+ * <tt>aaa.policy.catalogue.snapshot.size</tt>, and the number of lookups as
+ * <tt>aaa.policy.catalogue.snapshot</tt> tagged with the <tt>result</tt> (<em>hit</em> or
+ * <em>miss</em>). All metrics are tagged with the deployment ID of the verticle.
+ *
+ * <p>The snapshot must only be used on the context of the verticle that created it.
+ */
+public class CatalogueSnapshot {
+  private static final Logger LOGGER = LogManager.getLogger(CatalogueSnapshot.class);
+
+  public static final String CAT_SEARCH_ENDPOINT = "/search";
+  public static final String CAT_SEARCH_PROPERTY = "property";
+  public static final String CAT_SEARCH_VALUE = "value";
+  public static final String CAT_SEARCH_FILTER = "filter";
+  public static final String CAT_SEARCH_OFFSET = "offset";
+  public static final String CAT_SEARCH_LIMIT = "limit";
+  public static final String CAT_RESP_TOTAL_HITS = "totalHits";
+  public static final String CAT_RESP_PROVIDER_KEY = "provider";
+  public static final String CAT_RESP_RES_SERVER_KEY = "resourceServer";
+
+  private static final List<String> RES_SERVER_FILTER = List.of(ID, CAT_RESP_RES_SERVER_URL_KEY);
+  private static final List<String> PROVIDER_FILTER = List.of(ID, CAT_RESP_PROVIDER_USER_ID_KEY);
+  private static final List<String> RESOURCE_FILTER =
+      List.of(
+          ID,
+          CAT_RESP_RES_GROUP_KEY,
+          CAT_RESP_APD_KEY,
+          CAT_RESP_ACCESS_POLICY_KEY,
+          CAT_RESP_PROVIDER_KEY,
+          CAT_RESP_RES_SERVER_KEY);
+
+  private static final String METRICS_SIZE = "aaa.policy.catalogue.snapshot.size";
+  private static final String METRICS_LOOKUPS = "aaa.policy.catalogue.snapshot";
+
+  private final Vertx vertx;
+  private final WebClientPools pools;
+  private final String catHost;
+  private final Integer catPort;
+  private final String catBasePath;
+  private final int pageSize;
+  private final long refreshIntervalMs;
+
+  private final CatalogueIndex index = new CatalogueIndex();
+  private final MessageConsumer<JsonObject> consumer;
+  private final Counter hits;
+  private final Counter misses;
+
+  private long timerId = -1;
+  private Future<Void> currentSync;
+
+  /**
+   * Create the snapshot. Nothing is fetched from the catalogue until {@link #start()} is called.
+   *
+   * @param vertx the Vert.x instance
+   * @param pools the HTTP connection pools used to call the catalogue
+   * @param options the <tt>catalogueOptions</tt> config object
+   */
+  public CatalogueSnapshot(Vertx vertx, WebClientPools pools, JsonObject options) {
+    this.vertx = vertx;
+    this.pools = pools;
+    this.catHost = options.getString("catServerHost");
+    this.catPort = Integer.parseInt(options.getString("catServerPort"));
+    this.catBasePath = options.getString("catServerBasePath");
+    this.pageSize = options.getInteger(CAT_SNAPSHOT_PAGE_SIZE, DEFAULT_CAT_SNAPSHOT_PAGE_SIZE);
+    this.refreshIntervalMs =
+        TimeUnit.SECONDS.toMillis(
+            options.getLong(CAT_SNAPSHOT_REFRESH_SECONDS, DEFAULT_CAT_SNAPSHOT_REFRESH_SECONDS));
+
+    if (pageSize <= 0 || refreshIntervalMs <= 0) {
+      throw new IllegalArgumentException("Invalid catalogue snapshot configuration");
+    }
+
+    MeterRegistry registry = EvictingCache.meterRegistry();
+
+    String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+    String instance = Integer.toHexString(System.identityHashCode(this));
+    Gauge.builder(METRICS_SIZE, index, CatalogueIndex::size)
+        .tag("deployment", deploymentId)
+        .tag("instance", instance)
+        .register(registry);
+    hits =
+        Counter.builder(METRICS_LOOKUPS)
+            .tag("result", "hit")
+            .tag("deployment", deploymentId)
+            .register(registry);
+    misses =
+        Counter.builder(METRICS_LOOKUPS)
+            .tag("result", "miss")
+            .tag("deployment", deploymentId)
+            .register(registry);
+
+    consumer =
+        vertx.eventBus().consumer(CATALOGUE_CACHE_ADDRESS, msg -> evict(msg.body().getString(ID)));
+  }
+
+  /** Build the snapshot and sync it periodically. Lookups are served as resources are added. */
+  public void start() {
+    sync();
+    timerId = vertx.setPeriodic(refreshIntervalMs, id -> sync());
+  }
+
+  /**
+   * Stop syncing the snapshot. Called when the verticle is undeployed.
+   *
+   * @return a Future that completes once the eviction consumer is unregistered
+   */
+  public Future<Void> close() {
+    if (timerId != -1) {
+      vertx.cancelTimer(timerId);
+      timerId = -1;
+    }
+    return consumer.unregister();
+  }
+
+  /**
+   * Get the details of a resource from the snapshot.
+   *
+   * @param itemId the resource ID
+   * @return the resource details, or <tt>null</tt> if the resource is not in the snapshot
+   */
+  public ResourceObj get(UUID itemId) {
+    ResourceObj resource = index.get(itemId);
+    if (resource == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return resource;
+  }
+
+  /**
+   * Sync the snapshot with the catalogue. If a sync is running, the same sync is returned.
+   *
+   * @return a future that completes once the sync is complete
+   */
+  Future<Void> sync() {
+    if (currentSync != null) {
+      return currentSync;
+    }
+
+    Promise<Void> promise = Promise.promise();
+    currentSync = promise.future();
+
+    long startTime = System.currentTimeMillis();
+    Map<String, String> resServerUrls = new HashMap<String, String>();
+    Map<String, UUID> owners = new HashMap<String, UUID>();
+    int[] skipped = {0};
+
+    index.beginPass();
+
+    search(CAT_RESP_RES_SERVER_TYPE, RES_SERVER_FILTER, 0, rs -> addResServer(rs, resServerUrls))
+        .compose(
+            v ->
+                search(CAT_RESP_PROVIDER_TYPE, PROVIDER_FILTER, 0, p -> addOwner(p, owners)))
+        .compose(
+            v ->
+                search(
+                    CAT_RESP_RESOURCE_TYPE,
+                    RESOURCE_FILTER,
+                    0,
+                    item -> {
+                      if (!addResource(item, resServerUrls, owners)) {
+                        skipped[0]++;
+                      }
+                    }))
+        .onSuccess(
+            v -> {
+              int removed = index.endPass();
+              LOGGER.info(
+                  "Info: Catalogue snapshot synced in {} ms; {} resources, {} removed, {} skipped",
+                  System.currentTimeMillis() - startTime,
+                  index.size(),
+                  removed,
+                  skipped[0]);
+            })
+        .onFailure(
+            err -> LOGGER.error("Fail: Catalogue snapshot sync failed; {}", err.getMessage()))
+        .onComplete(
+            res -> {
+              currentSync = null;
+              promise.handle(res);
+            });
+
+    return promise.future();
+  }
+
+  /**
+   * Page through all items of a type on the catalogue.
+   *
+   * @param type the item type
+   * @param filter the fields of the items to fetch
+   * @param offset the offset of the page to fetch
+   * @param onItem called for each item
+   * @return a future that completes once all pages have been fetched
+   */
+  private Future<Void> search(
+      String type, List<String> filter, int offset, Consumer<JsonObject> onItem) {
+    return pools
+        .send(
+            catHost,
+            client ->
+                client
+                    .get(catPort, catHost, catBasePath + CAT_SEARCH_ENDPOINT)
+                    .addQueryParam(CAT_SEARCH_PROPERTY, "[" + TYPE + "]")
+                    .addQueryParam(CAT_SEARCH_VALUE, "[[" + type + "]]")
+                    .addQueryParam(CAT_SEARCH_FILTER, "[" + String.join(",", filter) + "]")
+                    .addQueryParam(CAT_SEARCH_OFFSET, String.valueOf(offset))
+                    .addQueryParam(CAT_SEARCH_LIMIT, String.valueOf(pageSize))
+                    .send())
+        .compose(
+            res -> {
+              if (res.statusCode() != 200
+                  || !CAT_SUCCESS_URN.equals(res.bodyAsJsonObject().getString(TYPE))) {
+                LOGGER.error(
+                    "Failed Catalogue search for {} : {} {}",
+                    type,
+                    res.statusCode(),
+                    res.bodyAsString());
+                return Future.failedFuture(INTERNALERROR);
+              }
+
+              JsonObject body = res.bodyAsJsonObject();
+              JsonArray results = body.getJsonArray(RESULTS, new JsonArray());
+
+              if (offset == 0 && type.equals(CAT_RESP_RESOURCE_TYPE)) {
+                index.ensureCapacity(body.getInteger(CAT_RESP_TOTAL_HITS, 0));
+              }
+
+              for (int i = 0; i < results.size(); i++) {
+                onItem.accept(results.getJsonObject(i));
+              }
+
+              if (results.size() < pageSize) {
+                return Future.succeededFuture();
+              }
+              return search(type, filter, offset + pageSize, onItem);
+            });
+  }
+
+  private static void addResServer(JsonObject item, Map<String, String> resServerUrls) {
+    String url = item.getString(CAT_RESP_RES_SERVER_URL_KEY, "");
+    if (item.containsKey(ID) && !url.isEmpty()) {
+      resServerUrls.put(item.getString(ID), url);
+    }
+  }
+
+  private static void addOwner(JsonObject item, Map<String, UUID> owners) {
+    String ownerId = item.getString(CAT_RESP_PROVIDER_USER_ID_KEY, "");
+    if (item.containsKey(ID) && ownerId.matches(UUID_REGEX)) {
+      owners.put(item.getString(ID), UUID.fromString(ownerId));
+    }
+  }
+
+  /**
+   * Add a resource to the index if all the required details are present.
+   *
+   * @return <tt>true</tt> if the resource was added
+   */
+  private boolean addResource(
+      JsonObject item, Map<String, String> resServerUrls, Map<String, UUID> owners) {
+    String id = item.getString(ID, "");
+    String resGrpId = item.getString(CAT_RESP_RES_GROUP_KEY, "");
+    String apdUrl = item.getString(CAT_RESP_APD_KEY);
+    String accessPolicy = item.getString(CAT_RESP_ACCESS_POLICY_KEY);
+    String resServerUrl = resServerUrls.get(item.getString(CAT_RESP_RES_SERVER_KEY, ""));
+    UUID ownerId = owners.get(item.getString(CAT_RESP_PROVIDER_KEY, ""));
+
+    if (!id.matches(UUID_REGEX)
+        || !resGrpId.matches(UUID_REGEX)
+        || apdUrl == null
+        || accessPolicy == null
+        || resServerUrl == null
+        || ownerId == null) {
+      return false;
+    }
+
+    index.put(
+        UUID.fromString(id),
+        UUID.fromString(resGrpId),
+        ownerId,
+        apdUrl,
+        resServerUrl,
+        accessPolicy);
+    return true;
+  }
+
+  private void evict(String itemId) {
+    if (itemId != null && itemId.matches(UUID_REGEX)) {
+      index.remove(UUID.fromString(itemId));
+    }
+  }
+
+  int size() {
+    return index.size();
+  }
+
+  long memoryBytes() {
+    return index.memoryBytes();
+  }
+}
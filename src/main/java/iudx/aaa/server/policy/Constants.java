@@ -8,6 +8,7 @@ public class Constants {
   public static final String POLICY_SERVICE_ADDRESS = "iudx.aaa.policy.service";
   public static final int DB_RECONNECT_ATTEMPTS = 5;
   public static final long DB_RECONNECT_INTERVAL_MS = 10000;
+  public static final String CATALOGUE_CACHE_ADDRESS = "iudx.aaa.policy.catalogue.cache.evict";
 
   public static final String UUID_REGEX =
       "^[0-9a-f]{8}\\b-[0-9a-f]{4}\\b-[0-9a-f]{4}\\b-[0-9a-f]{4}\\b-[0-9a-f]{12}$";
@@ -26,6 +27,18 @@ public class Constants {
 
   /* Catalogue related constants */
 
+  public static final String CAT_CACHE_SIZE = "cacheSize";
+  public static final String CAT_CACHE_TTL_SECONDS = "cacheTtlSeconds";
+  public static final String CAT_NEGATIVE_CACHE_TTL_SECONDS = "negativeCacheTtlSeconds";
+  public static final long DEFAULT_CAT_CACHE_SIZE = 10000;
+  public static final long DEFAULT_CAT_CACHE_TTL_SECONDS = 300;
+  public static final long DEFAULT_CAT_NEGATIVE_CACHE_TTL_SECONDS = 30;
+  public static final String CAT_SNAPSHOT_ENABLED = "snapshotEnabled";
+  public static final String CAT_SNAPSHOT_REFRESH_SECONDS = "snapshotRefreshIntervalSeconds";
+  public static final String CAT_SNAPSHOT_PAGE_SIZE = "snapshotPageSize";
+  public static final long DEFAULT_CAT_SNAPSHOT_REFRESH_SECONDS = 3600;
+  public static final int DEFAULT_CAT_SNAPSHOT_PAGE_SIZE = 1000;
+
   public static final String CALL_APD_APDURL = "apdUrl";
   public static final String CALL_APD_USERID = "userId";
   public static final String CALL_APD_ITEM_ID = "itemId";
@@ -40,6 +53,8 @@ public class Constants {
 
   public static final String ITEMNOTFOUND = "Item does not exist";
   public static final String ERR_NOT_VALID_RESOURCE = "Requested item is not a valid resource";
+  public static final String ERR_NOT_VALID_RESOURCE_GROUP =
+      "Requested item is not a valid resource group";
   public static final String NO_RES_SERVER = "Res server does not exist";
   // Title
   public static final String SUCC_TITLE_LIST_DELEGS = "Delegations";
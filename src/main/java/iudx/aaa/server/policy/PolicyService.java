@@ -44,7 +44,8 @@ public interface PolicyService {
   }
 
   /**
-   * The verifyResourceAccess implements the resource access operation.
+   * The verifyResourceAccess implements the resource access operation, for resources and resource
+   * groups.
    *
    * @param request which is a JsonObject
    * @return Future of type JsonObject
@@ -52,6 +53,17 @@ public interface PolicyService {
   Future<JsonObject> verifyResourceAccess(
       RequestToken request, DelegationInformation delegInfo, User user);
 
+  /**
+   * prefetchResource starts fetching the details of a resource or resource group from the
+   * catalogue ahead of a token request, so that a later {@link #verifyResourceAccess} for the item
+   * is served from the catalogue cache or joins the lookup in flight. The result of the lookup is
+   * not returned, and any failure is left to be reported by {@link #verifyResourceAccess}.
+   *
+   * @param itemId the item ID of the resource or resource group
+   * @return Future of type Void, completed without waiting for the lookup
+   */
+  Future<Void> prefetchResource(String itemId);
+
   /**
    * listDelegation implements the ability for a provider/consumer to view the delegations they have
    * created. Additionally, delegates may view the delegations assigned to them by
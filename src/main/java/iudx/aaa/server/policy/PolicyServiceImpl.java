@@ -1,5 +1,7 @@
 package iudx.aaa.server.policy;
 
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_ADDRESS;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_IDS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_ALREADY_EXISTS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_ROLE;
@@ -57,6 +59,7 @@ import static iudx.aaa.server.token.Constants.ACCESS_DENIED;
 
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgPool;
@@ -68,6 +71,7 @@ import iudx.aaa.server.apiserver.CreateDelegationRequest;
 import iudx.aaa.server.apiserver.DelegationInformation;
 import iudx.aaa.server.apiserver.DelegationStatus;
 import iudx.aaa.server.apiserver.DeleteDelegationRequest;
+import iudx.aaa.server.apiserver.ItemType;
 import iudx.aaa.server.apiserver.RequestToken;
 import iudx.aaa.server.apiserver.ResourceObj;
 import iudx.aaa.server.apiserver.Response;
@@ -109,6 +113,7 @@ public class PolicyServiceImpl implements PolicyService {
   private final RegistrationService registrationService;
   private final ApdService apdService;
   private final CatalogueClient catalogueClient;
+  private final EventBus eventBus;
 
   // Create the pooled client
   /* for converting getUserDetails's JsonObject to map */
@@ -124,10 +129,31 @@ public class PolicyServiceImpl implements PolicyService {
       RegistrationService registrationService,
       ApdService apdService,
       CatalogueClient catalogueClient) {
+    this(pool, registrationService, apdService, catalogueClient, null);
+  }
+
+  /**
+   * Create the policy service, publishing the IDs of deleted delegations on {@link
+   * Constants#DELEGATION_CACHE_ADDRESS} so that they are evicted from the delegation caches of the
+   * API server.
+   *
+   * @param pool the Postgres pool
+   * @param registrationService the registration service
+   * @param apdService the APD service
+   * @param catalogueClient the catalogue client
+   * @param eventBus the event bus, or <tt>null</tt> to not publish evictions
+   */
+  public PolicyServiceImpl(
+      PgPool pool,
+      RegistrationService registrationService,
+      ApdService apdService,
+      CatalogueClient catalogueClient,
+      EventBus eventBus) {
     this.pool = pool;
     this.registrationService = registrationService;
     this.apdService = apdService;
     this.catalogueClient = catalogueClient;
+    this.eventBus = eventBus;
   }
 
   /**
@@ -327,7 +353,10 @@ public class PolicyServiceImpl implements PolicyService {
     }
 
     UUID itemId = UUID.fromString(itemIdStr);
-    Future<ResourceObj> resourceDetails = catalogueClient.getResourceDetails(itemId);
+    Future<ResourceObj> resourceDetails =
+        ItemType.RESOURCE_GROUP.equals(request.getItemType())
+            ? catalogueClient.getResourceGroupDetails(itemId)
+            : catalogueClient.getResourceDetails(itemId);
 
     Future<JsonObject> verifyAccessByRole =
         resourceDetails.compose(
@@ -364,6 +393,19 @@ public class PolicyServiceImpl implements PolicyService {
     return promiseHandler.future();
   }
 
+  @Override
+  public Future<Void> prefetchResource(String itemId) {
+    if (itemId == null || !itemId.matches(UUID_REGEX)) {
+      return Future.succeededFuture();
+    }
+
+    /* the lookup is cached or coalesced by the catalogue client, so the result is not needed */
+    catalogueClient
+        .getItemDetails(UUID.fromString(itemId))
+        .onFailure(err -> LOGGER.debug("Info : Catalogue prefetch failed : {}", err.getMessage()));
+    return Future.succeededFuture();
+  }
+
   @Override
   public Future<JsonObject> listDelegation(User user) {
     LOGGER.debug("Info : {} : Request received", LOGGER.getName());
@@ -499,6 +541,13 @@ public class PolicyServiceImpl implements PolicyService {
                             .execute(Tuple.of(ids.toArray(UUID[]::new)))))
         .onSuccess(
             res -> {
+              if (eventBus != null) {
+                JsonArray deleted =
+                    new JsonArray(ids.stream().map(UUID::toString).collect(Collectors.toList()));
+                eventBus.publish(
+                    DELEGATION_CACHE_ADDRESS, new JsonObject().put(DELEGATION_CACHE_IDS, deleted));
+              }
+
               Response r =
                   new Response.ResponseBuilder()
                       .type(URN_SUCCESS)
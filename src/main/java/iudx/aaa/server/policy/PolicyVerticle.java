@@ -1,21 +1,29 @@
 package iudx.aaa.server.policy;
 
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_CLIENT;
 import static iudx.aaa.server.policy.Constants.APD_SERVICE_ADDRESS;
+import static iudx.aaa.server.policy.Constants.CAT_CACHE_SIZE;
+import static iudx.aaa.server.policy.Constants.CAT_CACHE_TTL_SECONDS;
+import static iudx.aaa.server.policy.Constants.CAT_NEGATIVE_CACHE_TTL_SECONDS;
+import static iudx.aaa.server.policy.Constants.CAT_SNAPSHOT_ENABLED;
 import static iudx.aaa.server.policy.Constants.DB_RECONNECT_ATTEMPTS;
 import static iudx.aaa.server.policy.Constants.DB_RECONNECT_INTERVAL_MS;
+import static iudx.aaa.server.policy.Constants.DEFAULT_CAT_CACHE_SIZE;
+import static iudx.aaa.server.policy.Constants.DEFAULT_CAT_CACHE_TTL_SECONDS;
+import static iudx.aaa.server.policy.Constants.DEFAULT_CAT_NEGATIVE_CACHE_TTL_SECONDS;
 import static iudx.aaa.server.policy.Constants.POLICY_SERVICE_ADDRESS;
 import static iudx.aaa.server.policy.Constants.REGISTRATION_SERVICE_ADDRESS;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
 import iudx.aaa.server.apd.ApdService;
+import iudx.aaa.server.apiserver.util.WebClientPools;
 import iudx.aaa.server.registration.RegistrationService;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
@@ -45,10 +53,13 @@ public class PolicyVerticle extends AbstractVerticle {
   private PoolOptions poolOptions;
   private PgConnectOptions connectOptions;
   private JsonObject catalogueOptions;
+  private WebClientPools catalogueClientPools;
   private PolicyService policyService;
   private RegistrationService registrationService;
   private ApdService apdService;
   private CatalogueClient catalogueClient;
+  private CatalogueCache catalogueCache;
+  private CatalogueSnapshot catalogueSnapshot;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
   private static final Logger LOGGER = LogManager.getLogger(PolicyVerticle.class);
@@ -97,14 +108,34 @@ public class PolicyVerticle extends AbstractVerticle {
     WebClientOptions clientOptions =
         new WebClientOptions().setSsl(true).setVerifyHost(true).setTrustAll(false);
 
-    WebClient webClientForCatClient = WebClient.create(vertx, clientOptions);
+    catalogueClientPools =
+        new WebClientPools(
+            vertx,
+            "catalogue",
+            clientOptions,
+            catalogueOptions.getJsonObject(CONFIG_HTTP_CLIENT, new JsonObject()));
 
     /* Create the client pool */
     PgPool pool = PgPool.pool(vertx, connectOptions, poolOptions);
     registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
     apdService = ApdService.createProxy(vertx, APD_SERVICE_ADDRESS);
-    catalogueClient = new CatalogueClient(webClientForCatClient, catalogueOptions);
-    policyService = new PolicyServiceImpl(pool, registrationService, apdService, catalogueClient);
+    catalogueCache =
+        new CatalogueCache(
+            vertx,
+            catalogueOptions.getLong(CAT_CACHE_SIZE, DEFAULT_CAT_CACHE_SIZE),
+            catalogueOptions.getLong(CAT_CACHE_TTL_SECONDS, DEFAULT_CAT_CACHE_TTL_SECONDS),
+            catalogueOptions.getLong(
+                CAT_NEGATIVE_CACHE_TTL_SECONDS, DEFAULT_CAT_NEGATIVE_CACHE_TTL_SECONDS));
+    if (catalogueOptions.getBoolean(CAT_SNAPSHOT_ENABLED, false)) {
+      catalogueSnapshot = new CatalogueSnapshot(vertx, catalogueClientPools, catalogueOptions);
+      catalogueSnapshot.start();
+    }
+    catalogueClient =
+        new CatalogueClient(
+            vertx, catalogueClientPools, catalogueOptions, catalogueCache, catalogueSnapshot);
+    policyService =
+        new PolicyServiceImpl(
+            pool, registrationService, apdService, catalogueClient, vertx.eventBus());
 
     binder = new ServiceBinder(vertx);
     consumer =
@@ -115,6 +146,11 @@ public class PolicyVerticle extends AbstractVerticle {
 
   @Override
   public void stop() {
+    catalogueCache.close();
+    if (catalogueSnapshot != null) {
+      catalogueSnapshot.close();
+    }
+    catalogueClientPools.close();
     binder.unregister(consumer);
   }
 }
@@ -25,9 +25,36 @@ public class Constants {
   public static final String KC_ADMIN_CLIENT_ID = "keycloakAdminClientId";
   public static final String KC_ADMIN_CLIENT_SEC = "keycloakAdminClientSecret";
   public static final String KC_ADMIN_POOLSIZE = "keycloakAdminPoolSize";
+  public static final String KC_ADMIN_MAX_CONCURRENCY = "keycloakAdminMaxConcurrency";
+  public static final String KC_ADMIN_PAGE_SIZE = "keycloakAdminPageSize";
+  public static final int DEFAULT_KC_ADMIN_PAGE_SIZE = 100;
   public static final String CONFIG_COS_URL = "cosDomain";
   public static final String CONFIG_OMITTED_SERVERS = "serversOmittedFromRevoke";
 
+  /* User details cache, see UserDetailsCache */
+  public static final String CONFIG_USER_DETAILS_CACHE_SIZE = "userDetailsCacheSize";
+  public static final String CONFIG_USER_DETAILS_CACHE_TTL = "userDetailsCacheTtlSeconds";
+  public static final String CONFIG_USER_DETAILS_CACHE_NEGATIVE_TTL =
+      "userDetailsCacheNegativeTtlSeconds";
+  public static final long DEFAULT_USER_DETAILS_CACHE_SIZE = 10000;
+  public static final long DEFAULT_USER_DETAILS_CACHE_TTL = 300;
+  public static final long DEFAULT_USER_DETAILS_CACHE_NEGATIVE_TTL = 60;
+  public static final String USER_DETAILS_CACHE_ADDRESS = "iudx.aaa.user.details.cache.evict";
+  public static final String USER_DETAILS_CACHE_IDS = "ids";
+
+  /* Local replica of Keycloak users, see UserReplica and UserReplicaSync */
+  public static final String CONFIG_USER_REPLICA_ENABLED = "userReplicaEnabled";
+  public static final String CONFIG_USER_REPLICA_MAX_STALENESS = "userReplicaMaxStalenessSeconds";
+  public static final String CONFIG_USER_REPLICA_SYNC_INTERVAL = "userReplicaSyncIntervalSeconds";
+  public static final String CONFIG_USER_REPLICA_FULL_SYNC_INTERVAL =
+      "userReplicaFullSyncIntervalSeconds";
+  public static final long DEFAULT_USER_REPLICA_MAX_STALENESS = 300;
+  public static final long DEFAULT_USER_REPLICA_SYNC_INTERVAL = 30;
+  public static final long DEFAULT_USER_REPLICA_FULL_SYNC_INTERVAL = 86400;
+  public static final long USER_REPLICA_SYNC_LEASE_MS = 600000;
+  /* events are read again from this long before a full sync, in case the clocks differ */
+  public static final long USER_REPLICA_EVENT_CURSOR_MARGIN_MS = 300000;
+
   public static final int CLIENT_SECRET_BYTES = 20;
 
   /* Response fields */
@@ -118,9 +145,6 @@ public class Constants {
           + " (user_id, client_id, client_secret, client_name, created_at, updated_at)"
           + " VALUES ($1::uuid, $2::uuid, $3::text, $4::text, NOW(), NOW())";
 
-  public static final String SQL_GET_RS_IDS_BY_URL =
-      "SELECT id, url FROM resource_server WHERE url = ANY($1::text[])";
-
   public static final String SQL_GET_ALL_RS = "SELECT id, name, url, owner_id FROM resource_server";
 
   public static final String SQL_GET_CLIENTS_FORMATTED =
@@ -158,4 +182,52 @@ public class Constants {
   public static final String SQL_CHECK_PENDING_REJECTED_PROVIDER_ROLES =
       "SELECT resource_server_id, status FROM roles WHERE role = 'PROVIDER' AND (status = 'PENDING' OR status = 'REJECTED')"
           + " AND resource_server_id = ANY($1::UUID[]) AND user_id = $2::UUID";
+
+  /* Local replica of Keycloak users */
+  public static final String SQL_GET_REPLICA_USERS_BY_ID =
+      "SELECT u.id, u.email, u.first_name, u.last_name FROM keycloak_users u"
+          + " JOIN keycloak_user_sync s"
+          + " ON s.last_sync_at > NOW() - $2::bigint * INTERVAL '1 second'"
+          + " WHERE u.id = ANY($1::uuid[])";
+
+  public static final String SQL_GET_REPLICA_USERS_BY_EMAIL =
+      "SELECT u.id, u.email, u.first_name, u.last_name FROM keycloak_users u"
+          + " JOIN keycloak_user_sync s"
+          + " ON s.last_sync_at > NOW() - $2::bigint * INTERVAL '1 second'"
+          + " WHERE lower(u.email) = ANY($1::text[])";
+
+  /* The sync is leased; another instance takes over if the lease expires */
+  public static final String SQL_CLAIM_USER_REPLICA_SYNC =
+      "UPDATE keycloak_user_sync SET locked_until = NOW() + $1::bigint * INTERVAL '1 millisecond'"
+          + " WHERE id = 1 AND (locked_until IS NULL OR locked_until < NOW())"
+          + " RETURNING event_cursor, NOW()::timestamp AS started_at,"
+          + " (EXTRACT(EPOCH FROM NOW()) * 1000)::bigint AS started_at_ms,"
+          + " (last_full_sync_at IS NULL"
+          + " OR last_full_sync_at < NOW() - $2::bigint * INTERVAL '1 second') AS full_sync_due";
+
+  public static final String SQL_RENEW_USER_REPLICA_SYNC =
+      "UPDATE keycloak_user_sync SET locked_until = NOW() + $1::bigint * INTERVAL '1 millisecond'"
+          + " WHERE id = 1";
+
+  public static final String SQL_COMPLETE_USER_REPLICA_SYNC =
+      "UPDATE keycloak_user_sync SET event_cursor = $1::bigint, last_sync_at = $2::timestamp,"
+          + " last_full_sync_at = CASE WHEN $3::boolean THEN $2::timestamp"
+          + " ELSE last_full_sync_at END, locked_until = NULL WHERE id = 1";
+
+  public static final String SQL_RELEASE_USER_REPLICA_SYNC =
+      "UPDATE keycloak_user_sync SET locked_until = NULL WHERE id = 1";
+
+  public static final String SQL_UPSERT_REPLICA_USER =
+      "INSERT INTO keycloak_users (id, email, first_name, last_name, synced_at)"
+          + " VALUES ($1::uuid, $2::text, $3::text, $4::text, $5::timestamp)"
+          + " ON CONFLICT (id) DO UPDATE SET email = EXCLUDED.email,"
+          + " first_name = EXCLUDED.first_name, last_name = EXCLUDED.last_name,"
+          + " synced_at = EXCLUDED.synced_at";
+
+  public static final String SQL_DELETE_REPLICA_USERS =
+      "DELETE FROM keycloak_users WHERE id = ANY($1::uuid[])";
+
+  /* users not seen in a full sync are no longer on Keycloak */
+  public static final String SQL_DELETE_UNSYNCED_REPLICA_USERS =
+      "DELETE FROM keycloak_users WHERE synced_at < $1::timestamp";
 }
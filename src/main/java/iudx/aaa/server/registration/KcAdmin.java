@@ -1,61 +1,321 @@
 package iudx.aaa.server.registration;
 
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_MAX_POOL_SIZE;
+import static iudx.aaa.server.registration.Constants.DEFAULT_KC_ADMIN_PAGE_SIZE;
+
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import jakarta.ws.rs.NotFoundException;
-import jakarta.ws.rs.ProcessingException;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import iudx.aaa.server.apiserver.util.WebClientPools;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.jboss.resteasy.client.jaxrs.ResteasyClient;
-import org.jboss.resteasy.client.jaxrs.internal.ResteasyClientBuilderImpl;
-import org.keycloak.OAuth2Constants;
-import org.keycloak.admin.client.Keycloak;
-import org.keycloak.admin.client.KeycloakBuilder;
-import org.keycloak.admin.client.resource.RealmResource;
-import org.keycloak.admin.client.resource.UserResource;
-import org.keycloak.admin.client.resource.UsersResource;
-import org.keycloak.representations.idm.UserRepresentation;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * Keycloak Admin Client to allow a client that has admin capabilities to connect to Keycloak and
- * read/modify entities on Keycloak.
+ * read entities on Keycloak.
+ *
+ * <p>The client calls the Keycloak admin REST API using the Vert.x {@link WebClient}, so no call
+ * blocks the event loop. The service account token of the admin client is obtained using the
+ * client credentials grant and is reused until shortly before it expires. Concurrent calls made
+ * while the token is being obtained share a single token request. If Keycloak rejects the token,
+ * e.g. because the session was removed, a new token is obtained and the call is retried once.
+ *
+ * <p>At most <tt>maxConcurrency</tt> admin API calls are in progress at a time, the rest wait in a
+ * queue. Bulk lookups of many users look up each user separately, unless paging through all users
+ * of the realm takes fewer calls, in which case the users are picked out of the pages. Users not
+ * found in the pages, e.g. because they were created during the paging, are then looked up
+ * separately.
+ *
+ * <p>The client must only be used on the context of the verticle that created it.
  */
 public class KcAdmin {
 
-  Keycloak keycloak;
-  String realm;
+  private static final Logger LOGGER = LogManager.getLogger(KcAdmin.class);
+
+  private static final String TOKEN_PATH = "/realms/%s/protocol/openid-connect/token";
+  private static final String USERS_PATH = "/admin/realms/%s/users";
+  private static final String USERS_COUNT_PATH = "/admin/realms/%s/users/count";
+  private static final String EVENTS_PATH = "/admin/realms/%s/events";
+  private static final String ADMIN_EVENTS_PATH = "/admin/realms/%s/admin-events";
+  private static final String EVENTS_CONFIG_PATH = "/admin/realms/%s/events/config";
+
+  /* user events that may change the email or name of a user */
+  private static final List<String> USER_EVENT_TYPES =
+      List.of("REGISTER", "UPDATE_PROFILE", "UPDATE_EMAIL", "DELETE_ACCOUNT");
+
+  /* the token is refreshed this long before it expires, or halfway through if it is short-lived */
+  private static final long TOKEN_EXPIRY_MARGIN_MS = 30000;
+
+  /* the number of users in the realm is only used to choose how bulk lookups are made */
+  private static final long USER_COUNT_TTL_MS = 60000;
+
+  private final WebClientPools pools;
+  private final String host;
+  private final int port;
+  private final boolean ssl;
+  private final String basePath;
+  private final String realm;
+  private final String clientId;
+  private final String clientSecret;
+  private final int maxConcurrency;
+  private final int pageSize;
+
+  private String accessToken;
+  private long accessTokenExpiry;
+  private Future<String> tokenRequest;
+
+  private int userCount;
+  private long userCountExpiry;
+
+  private int activeCalls;
+  private final Deque<Runnable> waitingCalls = new ArrayDeque<Runnable>();
 
   /**
    * Create an instance of the Keycloak Admin client. Verticles can call the constructor with params
    * from it's config.
    *
+   * @param vertx the Vert.x instance
    * @param serverUrl the Keycloak URL. Must be of the format (http/https)://(domain)/auth
    * @param realm the name of the keycloak realm. The realm must have the required roles configured
    * @param clientId the client ID of the admin client
    * @param clientSecret the client secret of the admin client
-   * @param poolSize the pool size for the resteasy connection pool
+   * @param poolSize the maximum number of connections to Keycloak, also used as the maximum number
+   *     of concurrent admin API calls
    */
   public KcAdmin(
-      String serverUrl, String realm, String clientId, String clientSecret, int poolSize) {
+      Vertx vertx,
+      String serverUrl,
+      String realm,
+      String clientId,
+      String clientSecret,
+      int poolSize) {
+    this(
+        vertx,
+        serverUrl,
+        realm,
+        clientId,
+        clientSecret,
+        poolSize,
+        poolSize,
+        DEFAULT_KC_ADMIN_PAGE_SIZE);
+  }
+
+  /**
+   * Create an instance of the Keycloak Admin client with limits for bulk lookups.
+   *
+   * @param vertx the Vert.x instance
+   * @param serverUrl the Keycloak URL. Must be of the format (http/https)://(domain)/auth
+   * @param realm the name of the keycloak realm. The realm must have the required roles configured
+   * @param clientId the client ID of the admin client
+   * @param clientSecret the client secret of the admin client
+   * @param poolSize the maximum number of connections to Keycloak
+   * @param maxConcurrency the maximum number of concurrent admin API calls
+   * @param pageSize the number of users fetched per call when paging through the users
+   */
+  public KcAdmin(
+      Vertx vertx,
+      String serverUrl,
+      String realm,
+      String clientId,
+      String clientSecret,
+      int poolSize,
+      int maxConcurrency,
+      int pageSize) {
+    if (maxConcurrency <= 0 || pageSize <= 0) {
+      throw new IllegalArgumentException("Invalid Keycloak admin client configuration");
+    }
+
+    URI uri = URI.create(serverUrl);
+    this.ssl = "https".equalsIgnoreCase(uri.getScheme());
+    this.host = uri.getHost();
+    this.port = uri.getPort() != -1 ? uri.getPort() : (ssl ? 443 : 80);
+
+    String path = uri.getPath() == null ? "" : uri.getPath();
+    this.basePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
 
-    /* NOTE: Not sure if it's 'correct' to use ResteasyClientBuilderImpl, but there doesn't seem to
-     * be any other way to get the connectionPoolSize option using this.
-     *
-     *  See here - https://stackoverflow.com/a/65853591
-     */
-    ResteasyClient client = new ResteasyClientBuilderImpl().connectionPoolSize(poolSize).build();
     this.realm = realm;
-    keycloak =
-        KeycloakBuilder.builder()
-            .serverUrl(serverUrl)
-            .realm(realm)
-            .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
-            .clientId(clientId)
-            .clientSecret(clientSecret)
-            .resteasyClient(client)
-            .build();
+    this.clientId = clientId;
+    this.clientSecret = clientSecret;
+    this.maxConcurrency = maxConcurrency;
+    this.pageSize = pageSize;
+
+    this.pools =
+        new WebClientPools(
+            vertx,
+            "keycloak",
+            new WebClientOptions(),
+            new JsonObject().put(CONFIG_HTTP_MAX_POOL_SIZE, poolSize));
+  }
+
+  /**
+   * Get the service account token of the admin client, requesting a new one if there is no token
+   * or it is about to expire.
+   *
+   * @return a future of the access token
+   */
+  private Future<String> token() {
+    if (accessToken != null && System.nanoTime() < accessTokenExpiry) {
+      return Future.succeededFuture(accessToken);
+    }
+
+    if (tokenRequest != null) {
+      return tokenRequest;
+    }
+
+    MultiMap form =
+        MultiMap.caseInsensitiveMultiMap()
+            .add("grant_type", "client_credentials")
+            .add("client_id", clientId)
+            .add("client_secret", clientSecret);
+
+    Promise<String> promise = Promise.promise();
+    tokenRequest = promise.future();
+
+    pools
+        .send(
+            host,
+            client ->
+                client
+                    .post(port, host, basePath + String.format(TOKEN_PATH, realm))
+                    .ssl(ssl)
+                    .sendForm(form))
+        .recover(err -> connectionError(err))
+        .compose(
+            res -> {
+              if (res.statusCode() == 404) {
+                return Future.failedFuture("Realm may not exist");
+              } else if (res.statusCode() != 200) {
+                LOGGER.error(
+                    "Failed Keycloak token request : {} {}", res.statusCode(), res.bodyAsString());
+                return Future.failedFuture(
+                    "Keycloak token request failed with status " + res.statusCode());
+              }
+
+              JsonObject body = res.bodyAsJsonObject();
+              long validMs = TimeUnit.SECONDS.toMillis(body.getLong("expires_in", 0L));
+              validMs = Math.max(validMs - TOKEN_EXPIRY_MARGIN_MS, validMs / 2);
+
+              accessToken = body.getString("access_token");
+              accessTokenExpiry = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(validMs);
+              return Future.succeededFuture(accessToken);
+            })
+        .onComplete(
+            res -> {
+              tokenRequest = null;
+              promise.handle(res);
+            });
+
+    return promise.future();
+  }
+
+  private static <T> Future<T> connectionError(Throwable err) {
+    return Future.failedFuture("Error in Keycloak connection : " + err.getMessage());
+  }
+
+  /**
+   * Run a call once fewer than <tt>maxConcurrency</tt> calls are in progress.
+   *
+   * @param call starts the call
+   * @return a future of the result of the call
+   */
+  private <T> Future<T> limit(Supplier<Future<T>> call) {
+    Promise<T> promise = Promise.promise();
+
+    Runnable run =
+        () -> {
+          activeCalls++;
+          call.get()
+              .onComplete(
+                  res -> {
+                    activeCalls--;
+                    Runnable next = waitingCalls.poll();
+                    if (next != null) {
+                      next.run();
+                    }
+                    promise.handle(res);
+                  });
+        };
+
+    if (activeCalls < maxConcurrency) {
+      run.run();
+    } else {
+      waitingCalls.add(run);
+    }
+    return promise.future();
+  }
+
+  /**
+   * Call the Keycloak admin API with the service account token. If the token is rejected, a new
+   * token is obtained and the call is made once more.
+   *
+   * @param request creates the request, without the token, using the web client
+   * @return a future of the response
+   */
+  private Future<HttpResponse<Buffer>> adminCall(
+      Function<WebClient, HttpRequest<Buffer>> request) {
+    return limit(() -> adminCall(request, true));
+  }
+
+  private Future<HttpResponse<Buffer>> adminCall(
+      Function<WebClient, HttpRequest<Buffer>> request, boolean retry) {
+    return token()
+        .compose(
+            token ->
+                pools
+                    .send(
+                        host,
+                        client ->
+                            request.apply(client).ssl(ssl).bearerTokenAuthentication(token).send())
+                    .recover(err -> connectionError(err))
+                    .compose(
+                        res -> {
+                          if (res.statusCode() == 401 && retry) {
+                            if (token.equals(accessToken)) {
+                              accessToken = null;
+                            }
+                            return adminCall(request, false);
+                          }
+                          return Future.succeededFuture(res);
+                        }));
+  }
+
+  private Future<JsonObject> getUser(String id) {
+    String path = basePath + String.format(USERS_PATH, realm) + "/" + id;
+
+    return adminCall(client -> client.get(port, host, path))
+        .compose(
+            res -> {
+              if (res.statusCode() == 200) {
+                return Future.succeededFuture(res.bodyAsJsonObject());
+              } else if (res.statusCode() == 404) {
+                /* user does not exist on Keycloak */
+                return Future.succeededFuture(new JsonObject());
+              }
+              LOGGER.error("Failed Keycloak user lookup : {} {}", res.statusCode(), id);
+              return Future.failedFuture(
+                  "Keycloak user lookup failed with status " + res.statusCode());
+            });
   }
 
   /**
@@ -66,86 +326,236 @@ public class KcAdmin {
    * @return a future of String type containing the email address
    */
   public Future<String> getEmailId(String id) {
-    Promise<String> p = Promise.promise();
-    RealmResource realmResource;
-    UsersResource usersResource;
-
-    try {
-      realmResource = keycloak.realm(realm);
-      usersResource = realmResource.users();
-      usersResource.count();
-    } catch (ProcessingException e) {
-      p.fail("Error in Keycloak connection : " + e.getMessage());
-      return p.future();
-    } catch (NotFoundException e) {
-      p.fail("Realm may not exist");
-      return p.future();
-    } catch (Exception e) {
-      p.fail(e.getMessage());
-      return p.future();
+    return getUser(id).map(user -> user.isEmpty() ? "" : user.getString("email"));
+  }
+
+  /**
+   * Get all users of the realm for a bulk lookup, if paging through them takes fewer calls than
+   * looking up each user separately.
+   *
+   * @param lookups the number of users to be looked up
+   * @return a future of the users in the brief representation, or an empty list if the users
+   *     should be looked up separately
+   */
+  private Future<List<JsonObject>> pagedUsers(int lookups) {
+    /* a single page can't be cheaper than a single lookup */
+    if (lookups <= 1) {
+      return Future.succeededFuture(List.of());
+    }
+
+    return countUsers()
+        .compose(
+            count -> {
+              int pages = (count + pageSize - 1) / pageSize;
+              return pages < lookups ? scanUsers(pages) : Future.succeededFuture(List.of());
+            });
+  }
+
+  /**
+   * Get the number of users in the realm. The count is reused for a minute.
+   *
+   * @return a future of the number of users
+   */
+  private Future<Integer> countUsers() {
+    if (System.nanoTime() < userCountExpiry) {
+      return Future.succeededFuture(userCount);
     }
 
-    try {
-      UserResource u = usersResource.get(id);
-      String email = u.toRepresentation().getEmail();
-      p.complete(email);
-    } catch (NotFoundException e) {
-      // TODO log that the user did not exist on KC
-      p.complete("");
-    } catch (Exception e) {
-      p.fail(e.getMessage());
+    String path = basePath + String.format(USERS_COUNT_PATH, realm);
+
+    return adminCall(client -> client.get(port, host, path))
+        .compose(
+            res -> {
+              if (res.statusCode() != 200) {
+                LOGGER.error("Failed Keycloak user count : {}", res.statusCode());
+                return Future.failedFuture(
+                    "Keycloak user count failed with status " + res.statusCode());
+              }
+
+              userCount = Integer.parseInt(res.bodyAsString().trim());
+              userCountExpiry =
+                  System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(USER_COUNT_TTL_MS);
+              return Future.succeededFuture(userCount);
+            });
+  }
+
+  /**
+   * Page through all users of the realm, fetching the pages concurrently.
+   *
+   * @param pages the number of pages to fetch
+   * @return a future of the users in the brief representation
+   */
+  private Future<List<JsonObject>> scanUsers(int pages) {
+    List<Future<List<JsonObject>>> pageFutures = new ArrayList<Future<List<JsonObject>>>();
+    for (int i = 0; i < pages; i++) {
+      pageFutures.add(getUsers(i * pageSize, pageSize));
     }
 
-    return p.future();
+    return Future.all(pageFutures)
+        .map(
+            done ->
+                pageFutures.stream()
+                    .flatMap(page -> page.result().stream())
+                    .collect(Collectors.toList()));
+  }
+
+  /**
+   * Get a page of the users of the realm, in the order Keycloak lists them.
+   *
+   * @param first the offset of the first user of the page
+   * @param max the maximum number of users in the page
+   * @return a future of the users in the brief representation, i.e. with the keycloak ID,
+   *     username, email and name
+   */
+  public Future<List<JsonObject>> getUsers(int first, int max) {
+    String path = basePath + String.format(USERS_PATH, realm);
+
+    return listCall(
+        "user paging",
+        client ->
+            client
+                .get(port, host, path)
+                .addQueryParam("first", String.valueOf(first))
+                .addQueryParam("max", String.valueOf(max))
+                .addQueryParam("briefRepresentation", "true"));
+  }
+
+  /**
+   * Get a page of the events in which users registered, updated their profile or email, or deleted
+   * their account, newest first. Keycloak records these events only if saving events is enabled on
+   * the realm.
+   *
+   * @param first the offset of the first event of the page
+   * @param max the maximum number of events in the page
+   * @return a future of the events, each with the <tt>time</tt> in epoch milliseconds and the
+   *     <tt>userId</tt>
+   */
+  public Future<List<JsonObject>> getUserEvents(int first, int max) {
+    String path = basePath + String.format(EVENTS_PATH, realm);
+
+    return listCall(
+        "event paging",
+        client -> {
+          HttpRequest<Buffer> request =
+              client
+                  .get(port, host, path)
+                  .addQueryParam("first", String.valueOf(first))
+                  .addQueryParam("max", String.valueOf(max));
+          USER_EVENT_TYPES.forEach(type -> request.addQueryParam("type", type));
+          return request;
+        });
+  }
+
+  /**
+   * Get a page of the admin events on users, i.e. users created, updated or deleted through the
+   * admin API or console, newest first. Keycloak records these events only if saving admin events
+   * is enabled on the realm.
+   *
+   * @param first the offset of the first event of the page
+   * @param max the maximum number of events in the page
+   * @return a future of the events, each with the <tt>time</tt> in epoch milliseconds and the
+   *     <tt>resourcePath</tt> of the user, e.g. <tt>users/{keycloak ID}</tt>
+   */
+  public Future<List<JsonObject>> getUserAdminEvents(int first, int max) {
+    String path = basePath + String.format(ADMIN_EVENTS_PATH, realm);
+
+    return listCall(
+        "admin event paging",
+        client ->
+            client
+                .get(port, host, path)
+                .addQueryParam("resourceTypes", "USER")
+                .addQueryParam("first", String.valueOf(first))
+                .addQueryParam("max", String.valueOf(max)));
+  }
+
+  /**
+   * Check if the realm saves the events read by {@link #getUserEvents(int, int)} and {@link
+   * #getUserAdminEvents(int, int)}, i.e. if saving events is enabled for all the user event types
+   * needed and saving admin events is enabled.
+   *
+   * @return a future of <tt>true</tt> if both the user events and admin events are saved
+   */
+  public Future<Boolean> userEventsSaved() {
+    String path = basePath + String.format(EVENTS_CONFIG_PATH, realm);
+
+    return adminCall(client -> client.get(port, host, path))
+        .compose(
+            res -> {
+              if (res.statusCode() != 200) {
+                LOGGER.error("Failed Keycloak event config : {}", res.statusCode());
+                return Future.failedFuture(
+                    "Keycloak event config failed with status " + res.statusCode());
+              }
+
+              JsonObject config = res.bodyAsJsonObject();
+              /* no event types listed means that all event types are saved */
+              List<?> types = config.getJsonArray("enabledEventTypes", new JsonArray()).getList();
+              boolean userEvents =
+                  config.getBoolean("eventsEnabled", false)
+                      && (types.isEmpty() || types.containsAll(USER_EVENT_TYPES));
+              return Future.succeededFuture(
+                  userEvents && config.getBoolean("adminEventsEnabled", false));
+            });
+  }
+
+  private Future<List<JsonObject>> listCall(
+      String operation, Function<WebClient, HttpRequest<Buffer>> request) {
+    return adminCall(request)
+        .compose(
+            res -> {
+              if (res.statusCode() != 200) {
+                LOGGER.error("Failed Keycloak {} : {}", operation, res.statusCode());
+                return Future.failedFuture(
+                    "Keycloak " + operation + " failed with status " + res.statusCode());
+              }
+              return Future.succeededFuture(
+                  res.bodyAsJsonArray().stream()
+                      .map(item -> (JsonObject) item)
+                      .collect(Collectors.toList()));
+            });
   }
 
   /**
    * Get email and name details for a list of users in JSON format in a map. If the user is not
-   * found, an empty JSON object is used as the value.
+   * found, an empty JSON object is used as the value. The users are looked up concurrently, or
+   * picked out of the pages of all users of the realm if that takes fewer calls.
    *
    * @param ids List of String UUIDs of keycloak IDs
    * @return map of keycloak ID to JSON object with name, email
    */
   public Future<Map<String, JsonObject>> getDetails(List<String> ids) {
-    Promise<Map<String, JsonObject>> p = Promise.promise();
-    RealmResource realmResource;
-    UsersResource usersResource;
-
-    Map<String, JsonObject> map = new HashMap<String, JsonObject>();
-    try {
-      realmResource = keycloak.realm(realm);
-      usersResource = realmResource.users();
-      usersResource.count();
-    } catch (ProcessingException e) {
-      p.fail("Error in Keycloak connection : " + e.getMessage());
-      return p.future();
-    } catch (NotFoundException e) {
-      p.fail("Realm may not exist");
-      return p.future();
-    } catch (Exception e) {
-      p.fail(e.getMessage());
-      return p.future();
-    }
+    List<String> unique = ids.stream().distinct().collect(Collectors.toList());
 
-    for (String id : ids) {
-      JsonObject j = new JsonObject();
-      try {
-        UserRepresentation u = usersResource.get(id).toRepresentation();
-        j.put("email", u.getEmail());
-        j.put(
-            "name",
-            new JsonObject().put("firstName", u.getFirstName()).put("lastName", u.getLastName()));
-      } catch (NotFoundException e) {
-        // TODO log that the user did not exist on KC
-        // JsonObject j will be empty
-      } catch (Exception e) {
-        p.fail(e.getMessage());
-      }
-      map.put(id, j);
-    }
+    return pagedUsers(unique.size())
+        .compose(
+            users -> {
+              Map<String, JsonObject> paged =
+                  users.stream()
+                      .collect(Collectors.toMap(u -> u.getString("id"), u -> u, (a, b) -> a));
+              Map<String, JsonObject> map = new HashMap<String, JsonObject>();
+
+              @SuppressWarnings("rawtypes")
+              List<Future> lookups = new ArrayList<Future>();
+              for (String id : unique) {
+                if (paged.containsKey(id)) {
+                  map.put(id, details(paged.get(id)));
+                } else {
+                  lookups.add(getUser(id).onSuccess(user -> map.put(id, details(user))));
+                }
+              }
 
-    p.complete(map);
-    return p.future();
+              return CompositeFuture.all(lookups).map(done -> map);
+            });
+  }
+
+  private static JsonObject details(JsonObject user) {
+    JsonObject j = new JsonObject();
+    if (!user.isEmpty()) {
+      j.put("email", user.getString("email"));
+      j.put("name", name(user));
+    }
+    return j;
   }
 
   /**
@@ -154,46 +564,87 @@ public class KcAdmin {
    * exist on Keycloak but may not have a user profile.
    *
    * @param email The email address of the user to be found
-   * @return
+   * @return a future of JSON object with the keycloak ID, name and email
    */
   public Future<JsonObject> findUserByEmail(String email) {
-    Promise<JsonObject> p = Promise.promise();
-    RealmResource realmResource;
-    UsersResource usersResource;
-
-    try {
-      realmResource = keycloak.realm(realm);
-      usersResource = realmResource.users();
-      usersResource.count();
-    } catch (ProcessingException e) {
-      p.fail("Error in Keycloak connection : " + e.getMessage());
-      return p.future();
-    } catch (NotFoundException e) {
-      p.fail("Realm may not exist");
-      return p.future();
-    } catch (Exception e) {
-      p.fail(e.getMessage());
-      return p.future();
-    }
+    String path = basePath + String.format(USERS_PATH, realm);
 
-    JsonObject res = new JsonObject();
     /*
      * Since in the realm we configure email as username, we can directly search for the user name
      */
-    List<UserRepresentation> users = usersResource.search(email, true);
+    return adminCall(
+            client ->
+                client
+                    .get(port, host, path)
+                    .addQueryParam("username", email)
+                    .addQueryParam("exact", "true"))
+        .compose(
+            res -> {
+              if (res.statusCode() != 200) {
+                LOGGER.error("Failed Keycloak user search : {}", res.statusCode());
+                return Future.failedFuture(
+                    "Keycloak user search failed with status " + res.statusCode());
+              }
 
-    if (users.isEmpty()) {
-      p.complete(res);
-      return p.future();
-    }
+              JsonArray users = res.bodyAsJsonArray();
+              if (users.isEmpty()) {
+                return Future.succeededFuture(new JsonObject());
+              }
+              return Future.succeededFuture(searchResult(users.getJsonObject(0)));
+            });
+  }
+
+  /**
+   * Find many users on Keycloak by email address. The users are looked up concurrently, or picked
+   * out of the pages of all users of the realm if that takes fewer calls.
+   *
+   * @param emails The email addresses of the users to be found
+   * @return a future of map of email address to the JSON object sent by {@link
+   *     #findUserByEmail(String)}
+   */
+  public Future<Map<String, JsonObject>> findUsersByEmail(Set<String> emails) {
+    return pagedUsers(emails.size())
+        .compose(
+            users -> {
+              /* usernames are the email addresses, which Keycloak keeps in lowercase */
+              Map<String, JsonObject> paged =
+                  users.stream()
+                      .filter(u -> u.getString("username") != null)
+                      .collect(
+                          Collectors.toMap(
+                              u -> u.getString("username").toLowerCase(), u -> u, (a, b) -> a));
+              Map<String, JsonObject> map = new HashMap<String, JsonObject>();
+
+              @SuppressWarnings("rawtypes")
+              List<Future> lookups = new ArrayList<Future>();
+              for (String email : emails) {
+                JsonObject user = paged.get(email.toLowerCase());
+                if (user != null) {
+                  map.put(email, searchResult(user));
+                } else {
+                  lookups.add(findUserByEmail(email).onSuccess(found -> map.put(email, found)));
+                }
+              }
+
+              return CompositeFuture.all(lookups).map(done -> map);
+            });
+  }
+
+  private static JsonObject searchResult(JsonObject user) {
+    return new JsonObject()
+        .put("keycloakId", user.getString("id"))
+        .put("email", user.getString("email"))
+        .put("name", name(user));
+  }
+
+  private static JsonObject name(JsonObject user) {
+    return new JsonObject()
+        .put("firstName", user.getString("firstName"))
+        .put("lastName", user.getString("lastName"));
+  }
 
-    UserRepresentation u = users.get(0);
-    res.put("keycloakId", u.getId());
-    res.put("email", u.getEmail());
-    res.put(
-        "name",
-        new JsonObject().put("firstName", u.getFirstName()).put("lastName", u.getLastName()));
-    p.complete(res);
-    return p.future();
+  /** Close the connections to Keycloak. Called when the verticle is undeployed. */
+  public void close() {
+    pools.close();
   }
 }
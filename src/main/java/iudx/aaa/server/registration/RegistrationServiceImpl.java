@@ -48,7 +48,6 @@ import static iudx.aaa.server.registration.Constants.SQL_GET_ALL_RS;
 import static iudx.aaa.server.registration.Constants.SQL_GET_CLIENTS_FORMATTED;
 import static iudx.aaa.server.registration.Constants.SQL_GET_PHONE;
 import static iudx.aaa.server.registration.Constants.SQL_GET_RS_AND_APDS_FOR_REVOKE;
-import static iudx.aaa.server.registration.Constants.SQL_GET_RS_IDS_BY_URL;
 import static iudx.aaa.server.registration.Constants.SQL_UPDATE_CLIENT_SECRET;
 import static iudx.aaa.server.registration.Constants.SUCC_TITLE_ADDED_ROLES;
 import static iudx.aaa.server.registration.Constants.SUCC_TITLE_CREATED_DEFAULT_CLIENT;
@@ -77,10 +76,12 @@ import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.apiserver.util.Urn;
 import iudx.aaa.server.token.TokenService;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -108,18 +109,62 @@ public class RegistrationServiceImpl implements RegistrationService {
   private static final Logger LOGGER = LogManager.getLogger(RegistrationServiceImpl.class);
 
   private PgPool pool;
+  private ServerRegistry serverRegistry;
   private KcAdmin kc;
   private TokenService tokenService;
+  private UserDetailsCache userDetailsCache;
+  private UserReplica userReplica;
   private static String COS_URL = "";
   private static List<String> SERVERS_OMITTED_FROM_TOKEN_REVOKE = new ArrayList<String>();
 
   private SecureRandom randomSource;
 
   public RegistrationServiceImpl(
-      PgPool pool, KcAdmin kc, TokenService tokenService, JsonObject options) {
+      PgPool pool,
+      ServerRegistry serverRegistry,
+      KcAdmin kc,
+      TokenService tokenService,
+      JsonObject options) {
+    this(pool, serverRegistry, kc, tokenService, options, null);
+  }
+
+  public RegistrationServiceImpl(
+      PgPool pool,
+      ServerRegistry serverRegistry,
+      KcAdmin kc,
+      TokenService tokenService,
+      JsonObject options,
+      UserDetailsCache userDetailsCache) {
+    this(pool, serverRegistry, kc, tokenService, options, userDetailsCache, null);
+  }
+
+  /**
+   * Constructor to instantiate {@link RegistrationServiceImpl} with a cache of user details and a
+   * local replica of the users on Keycloak.
+   *
+   * @param pool instance of {@link PgPool}
+   * @param serverRegistry instance of {@link ServerRegistry}
+   * @param kc instance of {@link KcAdmin}
+   * @param tokenService instance of {@link TokenService}
+   * @param options the config options of the service
+   * @param userDetailsCache instance of {@link UserDetailsCache}, or <tt>null</tt> if disabled
+   * @param userReplica instance of {@link UserReplica}, or <tt>null</tt> if users are always looked
+   *     up on Keycloak
+   */
+  public RegistrationServiceImpl(
+      PgPool pool,
+      ServerRegistry serverRegistry,
+      KcAdmin kc,
+      TokenService tokenService,
+      JsonObject options,
+      UserDetailsCache userDetailsCache,
+      UserReplica userReplica) {
     this.pool = pool;
+    this.serverRegistry = serverRegistry;
     this.kc = kc;
     this.tokenService = tokenService;
+    this.userDetailsCache = userDetailsCache;
+    this.userReplica = userReplica;
     COS_URL = options.getString(CONFIG_COS_URL);
     SERVERS_OMITTED_FROM_TOKEN_REVOKE =
         options.getJsonArray(CONFIG_OMITTED_SERVERS).stream()
@@ -194,16 +239,7 @@ public class RegistrationServiceImpl implements RegistrationService {
     }
 
     Future<String> email = kc.getEmailId(user.getUserId());
-    Collector<Row, ?, Map<String, UUID>> rsCollector =
-        Collectors.toMap(row -> row.getString("url"), row -> row.getUUID("id"));
-
-    Future<Map<String, UUID>> getRequestedRs =
-        pool.withConnection(
-            conn ->
-                conn.preparedQuery(SQL_GET_RS_IDS_BY_URL)
-                    .collecting(rsCollector)
-                    .execute(Tuple.of(allRequestedRs.toArray(String[]::new)))
-                    .map(res -> res.value()));
+    Future<Map<String, UUID>> getRequestedRs = serverRegistry.getResourceServerIds(allRequestedRs);
 
     Future<Void> checkEmailAndResourceServerUrls =
         CompositeFuture.all(email, getRequestedRs)
@@ -432,6 +468,10 @@ public class RegistrationServiceImpl implements RegistrationService {
                       .build();
               promiseHandler.complete(r.toJson());
 
+              if (userDetailsCache != null) {
+                userDetailsCache.invalidate(List.of(user.getUserId()));
+              }
+
               LOGGER.info("Added roles {} for {}", requestedRoles, user.getUserId());
             })
         .onFailure(
@@ -746,7 +786,30 @@ public class RegistrationServiceImpl implements RegistrationService {
 
     List<String> ids = unique.stream().map(i -> i.toString()).collect(Collectors.toList());
 
-    Future<Map<String, JsonObject>> details = kc.getDetails(ids);
+    /* only users that are not cached are looked up in the replica or on Keycloak */
+    Map<String, JsonObject> cached =
+        userDetailsCache == null ? Map.of() : userDetailsCache.getAll(ids);
+    List<String> uncached =
+        ids.stream().filter(id -> !cached.containsKey(id)).collect(Collectors.toList());
+
+    Future<Map<String, JsonObject>> details;
+    if (uncached.isEmpty()) {
+      details = Future.succeededFuture(cached);
+    } else {
+      details =
+          lookupDetails(uncached)
+              .map(
+                  fetched -> {
+                    if (userDetailsCache == null) {
+                      return fetched;
+                    }
+
+                    fetched.forEach((uid, jsonDet) -> userDetailsCache.put(uid, jsonDet));
+                    Map<String, JsonObject> all = new HashMap<String, JsonObject>(fetched);
+                    all.putAll(cached);
+                    return all;
+                  });
+    }
 
     details
         .onSuccess(
@@ -820,8 +883,7 @@ public class RegistrationServiceImpl implements RegistrationService {
 
               /*
                * We can choose to omit some servers from the revocation required during client secret regen
-               * by adding them to the config. (Currently no server needs to be revoked since we don't
-               * bother if a revocation succeeds (HTTP 200) or fails (any other status code, DNS error))
+               * by adding them to the config.
                */
               List<String> omittedServers = SERVERS_OMITTED_FROM_TOKEN_REVOKE;
               omittedServers.add(COS_URL);
@@ -849,12 +911,9 @@ public class RegistrationServiceImpl implements RegistrationService {
         .compose(
             revokedAll -> {
               /*
-               * TODO: callTokenRevoke only fails in case there's an internal error from the tokenRevoke
-               * service. It returns all succeeded futures of Boolean type, true if 200 OK, false if not. We
-               * currently do not check if the bool is true or false, we only know that the future has
-               * succeeded. Later on, we need to act on instances where the bool = false, i.e. the token
-               * revoke call to that particular server has failed. retry logic?, store info about revoke and
-               * expose an API to servers?
+               * callTokenRevoke only fails in case there's an internal error from the tokenRevoke
+               * service. The revocations are recorded by the token service and sent to the servers in
+               * the background, with retries, so a revocation that cannot be sent right now is not lost.
                */
               byte[] randBytes = new byte[CLIENT_SECRET_BYTES];
               randomSource.nextBytes(randBytes);
@@ -930,52 +989,48 @@ public class RegistrationServiceImpl implements RegistrationService {
       return promiseHandler.future();
     }
 
-    Map<String, Future<JsonObject>> kcInfoMap =
-        emailIds.stream().collect(Collectors.toMap(id -> id, id -> kc.findUserByEmail(id)));
-
-    @SuppressWarnings("rawtypes")
-    List<Future> kcFutures = new ArrayList<Future>(kcInfoMap.values());
+    Future<Map<String, JsonObject>> kcInfo = lookupUsersByEmail(emailIds);
 
     Future<Void> checkAllEmailsExist =
-        CompositeFuture.all(kcFutures)
-            .compose(
-                res -> {
-                  List<String> missingEmails =
-                      kcInfoMap.entrySet().stream()
-                          .filter(i -> i.getValue().result().isEmpty())
-                          .map(i -> i.getKey())
-                          .collect(Collectors.toList());
+        kcInfo.compose(
+            kcInfoMap -> {
+              List<String> missingEmails =
+                  kcInfoMap.entrySet().stream()
+                      .filter(i -> i.getValue().isEmpty())
+                      .map(i -> i.getKey())
+                      .collect(Collectors.toList());
 
-                  if (!missingEmails.isEmpty()) {
-                    Response resp =
-                        new ResponseBuilder()
-                            .type(Urn.URN_INVALID_INPUT)
-                            .status(400)
-                            .title(ERR_TITLE_EMAILS_NOT_AT_UAC_KEYCLOAK)
-                            .detail(ERR_DETAIL_EMAILS_NOT_AT_UAC_KEYCLOAK)
-                            .errorContext(
-                                new JsonObject()
-                                    .put(
-                                        ERR_CONTEXT_NOT_FOUND_EMAILS, new JsonArray(missingEmails)))
-                            .build();
-                    return Future.failedFuture(new ComposeException(resp));
-                  }
+              if (!missingEmails.isEmpty()) {
+                Response resp =
+                    new ResponseBuilder()
+                        .type(Urn.URN_INVALID_INPUT)
+                        .status(400)
+                        .title(ERR_TITLE_EMAILS_NOT_AT_UAC_KEYCLOAK)
+                        .detail(ERR_DETAIL_EMAILS_NOT_AT_UAC_KEYCLOAK)
+                        .errorContext(
+                            new JsonObject()
+                                .put(ERR_CONTEXT_NOT_FOUND_EMAILS, new JsonArray(missingEmails)))
+                        .build();
+                return Future.failedFuture(new ComposeException(resp));
+              }
 
-                  return Future.succeededFuture();
-                });
+              return Future.succeededFuture();
+            });
 
     Future<Void> insertIfNotExists =
         checkAllEmailsExist.compose(
             res -> {
               List<Tuple> tups = new ArrayList<Tuple>();
 
-              kcInfoMap.forEach(
-                  (emailId, fut) -> {
-                    UUID userId = UUID.fromString(fut.result().getString("keycloakId"));
-                    JsonObject emptyUserInfo = new JsonObject();
-                    Tuple tup = Tuple.of(userId, NIL_PHONE, emptyUserInfo);
-                    tups.add(tup);
-                  });
+              kcInfo
+                  .result()
+                  .forEach(
+                      (emailId, info) -> {
+                        UUID userId = UUID.fromString(info.getString("keycloakId"));
+                        JsonObject emptyUserInfo = new JsonObject();
+                        Tuple tup = Tuple.of(userId, NIL_PHONE, emptyUserInfo);
+                        tups.add(tup);
+                      });
 
               Future<RowSet<Row>> inserting =
                   pool.withTransaction(
@@ -1006,10 +1061,12 @@ public class RegistrationServiceImpl implements RegistrationService {
             res -> {
               JsonObject result = new JsonObject();
 
-              kcInfoMap.forEach(
-                  (emailId, fut) -> {
-                    result.put(emailId, fut.result());
-                  });
+              kcInfo
+                  .result()
+                  .forEach(
+                      (emailId, info) -> {
+                        result.put(emailId, info);
+                      });
               promiseHandler.complete(result);
             })
         .onFailure(
@@ -1178,10 +1235,10 @@ public class RegistrationServiceImpl implements RegistrationService {
 
     if (searchByUserId) {
       foundUser =
-          kc.getDetails(List.of(searchString))
+          lookupDetails(List.of(searchString))
               .compose(res -> Future.succeededFuture(res.get(searchString)));
     } else { // search by email
-      foundUser = kc.findUserByEmail(searchString);
+      foundUser = lookupUserByEmail(searchString);
     }
 
     Future<UUID> existsReturnUserId =
@@ -1254,4 +1311,18 @@ public class RegistrationServiceImpl implements RegistrationService {
 
     return promiseHandler.future();
   }
+
+  /* Users are looked up in the local replica if enabled, else on Keycloak */
+
+  private Future<Map<String, JsonObject>> lookupDetails(List<String> ids) {
+    return userReplica == null ? kc.getDetails(ids) : userReplica.getDetails(ids);
+  }
+
+  private Future<Map<String, JsonObject>> lookupUsersByEmail(Set<String> emails) {
+    return userReplica == null ? kc.findUsersByEmail(emails) : userReplica.findUsersByEmail(emails);
+  }
+
+  private Future<JsonObject> lookupUserByEmail(String email) {
+    return userReplica == null ? kc.findUserByEmail(email) : userReplica.findUserByEmail(email);
+  }
 }
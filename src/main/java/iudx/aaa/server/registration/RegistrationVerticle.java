@@ -2,6 +2,13 @@ package iudx.aaa.server.registration;
 
 import static iudx.aaa.server.registration.Constants.CONFIG_COS_URL;
 import static iudx.aaa.server.registration.Constants.CONFIG_OMITTED_SERVERS;
+import static iudx.aaa.server.registration.Constants.CONFIG_USER_DETAILS_CACHE_NEGATIVE_TTL;
+import static iudx.aaa.server.registration.Constants.CONFIG_USER_DETAILS_CACHE_SIZE;
+import static iudx.aaa.server.registration.Constants.CONFIG_USER_DETAILS_CACHE_TTL;
+import static iudx.aaa.server.registration.Constants.CONFIG_USER_REPLICA_ENABLED;
+import static iudx.aaa.server.registration.Constants.CONFIG_USER_REPLICA_FULL_SYNC_INTERVAL;
+import static iudx.aaa.server.registration.Constants.CONFIG_USER_REPLICA_MAX_STALENESS;
+import static iudx.aaa.server.registration.Constants.CONFIG_USER_REPLICA_SYNC_INTERVAL;
 import static iudx.aaa.server.registration.Constants.DATABASE_IP;
 import static iudx.aaa.server.registration.Constants.DATABASE_NAME;
 import static iudx.aaa.server.registration.Constants.DATABASE_PASSWORD;
@@ -12,8 +19,17 @@ import static iudx.aaa.server.registration.Constants.DATABASE_USERNAME;
 import static iudx.aaa.server.registration.Constants.DB_CONNECT_TIMEOUT;
 import static iudx.aaa.server.registration.Constants.DB_RECONNECT_ATTEMPTS;
 import static iudx.aaa.server.registration.Constants.DB_RECONNECT_INTERVAL_MS;
+import static iudx.aaa.server.registration.Constants.DEFAULT_KC_ADMIN_PAGE_SIZE;
+import static iudx.aaa.server.registration.Constants.DEFAULT_USER_DETAILS_CACHE_NEGATIVE_TTL;
+import static iudx.aaa.server.registration.Constants.DEFAULT_USER_DETAILS_CACHE_SIZE;
+import static iudx.aaa.server.registration.Constants.DEFAULT_USER_DETAILS_CACHE_TTL;
+import static iudx.aaa.server.registration.Constants.DEFAULT_USER_REPLICA_FULL_SYNC_INTERVAL;
+import static iudx.aaa.server.registration.Constants.DEFAULT_USER_REPLICA_MAX_STALENESS;
+import static iudx.aaa.server.registration.Constants.DEFAULT_USER_REPLICA_SYNC_INTERVAL;
 import static iudx.aaa.server.registration.Constants.KC_ADMIN_CLIENT_ID;
 import static iudx.aaa.server.registration.Constants.KC_ADMIN_CLIENT_SEC;
+import static iudx.aaa.server.registration.Constants.KC_ADMIN_MAX_CONCURRENCY;
+import static iudx.aaa.server.registration.Constants.KC_ADMIN_PAGE_SIZE;
 import static iudx.aaa.server.registration.Constants.KC_ADMIN_POOLSIZE;
 import static iudx.aaa.server.registration.Constants.KEYCLOAK_REALM;
 import static iudx.aaa.server.registration.Constants.KEYCLOAK_URL;
@@ -25,6 +41,7 @@ import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.token.TokenService;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
@@ -59,6 +76,7 @@ public class RegistrationVerticle extends AbstractVerticle {
   private int keycloakAdminPoolSize;
 
   private PgPool pool;
+  private ServerRegistry serverRegistry;
   private PoolOptions poolOptions;
   private PgConnectOptions connectOptions;
   private static JsonObject options;
@@ -67,6 +85,10 @@ public class RegistrationVerticle extends AbstractVerticle {
   private RegistrationService registrationService;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
+  private KcAdmin kcadmin;
+  private UserDetailsCache userDetailsCache;
+  private UserReplica userReplica;
+  private UserReplicaSync userReplicaSync;
   private static final Logger LOGGER = LogManager.getLogger(RegistrationVerticle.class);
 
   private TokenService tokenService;
@@ -125,17 +147,58 @@ public class RegistrationVerticle extends AbstractVerticle {
 
     /* Create the client pool */
     pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    serverRegistry = new ServerRegistry(vertx, pool, connectOptions);
+    serverRegistry.start();
 
-    KcAdmin kcadmin =
+    int keycloakAdminPageSize = config().getInteger(KC_ADMIN_PAGE_SIZE, DEFAULT_KC_ADMIN_PAGE_SIZE);
+    kcadmin =
         new KcAdmin(
+            vertx,
             keycloakUrl,
             keycloakRealm,
             keycloakAdminClientId,
             keycloakAdminClientSecret,
-            keycloakAdminPoolSize);
+            keycloakAdminPoolSize,
+            config().getInteger(KC_ADMIN_MAX_CONCURRENCY, keycloakAdminPoolSize),
+            keycloakAdminPageSize);
+
+    if (config().getBoolean(CONFIG_USER_REPLICA_ENABLED, false)) {
+      userReplica =
+          new UserReplica(
+              vertx,
+              pool,
+              kcadmin,
+              config()
+                  .getLong(CONFIG_USER_REPLICA_MAX_STALENESS, DEFAULT_USER_REPLICA_MAX_STALENESS));
+      userReplicaSync =
+          new UserReplicaSync(
+              vertx,
+              pool,
+              kcadmin,
+              config()
+                  .getLong(CONFIG_USER_REPLICA_SYNC_INTERVAL, DEFAULT_USER_REPLICA_SYNC_INTERVAL),
+              config()
+                  .getLong(
+                      CONFIG_USER_REPLICA_FULL_SYNC_INTERVAL,
+                      DEFAULT_USER_REPLICA_FULL_SYNC_INTERVAL),
+              keycloakAdminPageSize);
+      userReplicaSync.start();
+    }
+
+    userDetailsCache =
+        new UserDetailsCache(
+            vertx,
+            config().getLong(CONFIG_USER_DETAILS_CACHE_SIZE, DEFAULT_USER_DETAILS_CACHE_SIZE),
+            config().getLong(CONFIG_USER_DETAILS_CACHE_TTL, DEFAULT_USER_DETAILS_CACHE_TTL),
+            config()
+                .getLong(
+                    CONFIG_USER_DETAILS_CACHE_NEGATIVE_TTL,
+                    DEFAULT_USER_DETAILS_CACHE_NEGATIVE_TTL));
 
     tokenService = TokenService.createProxy(vertx, TOKEN_SERVICE_ADDRESS);
-    registrationService = new RegistrationServiceImpl(pool, kcadmin, tokenService, options);
+    registrationService =
+        new RegistrationServiceImpl(
+            pool, serverRegistry, kcadmin, tokenService, options, userDetailsCache, userReplica);
     binder = new ServiceBinder(vertx);
     consumer =
         binder
@@ -148,5 +211,11 @@ public class RegistrationVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    if (userReplicaSync != null) {
+      userReplicaSync.stop();
+    }
+    serverRegistry.close();
+    kcadmin.close();
+    userDetailsCache.close();
   }
 }
@@ -0,0 +1,137 @@
+package iudx.aaa.server.registration;
+
+import static iudx.aaa.server.registration.Constants.USER_DETAILS_CACHE_ADDRESS;
+import static iudx.aaa.server.registration.Constants.USER_DETAILS_CACHE_IDS;
+
+import com.google.common.base.Ticker;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded cache of the name and email of users as fetched from Keycloak by {@link
+ * RegistrationServiceImpl#getUserDetails(List)}, keyed by the user ID.
+ *
+ * <p>Details are cached for <tt>userDetailsCacheTtlSeconds</tt>. Users not found on Keycloak are
+ * cached as an empty JSON object for <tt>userDetailsCacheNegativeTtlSeconds</tt>, which is usually
+ * shorter, since the user may register on Keycloak soon after.
+ *
+ * <p>When a user adds roles, their details are evicted on every RegistrationVerticle instance in
+ * the cluster by publishing a JSON object with an array of user IDs in the <tt>ids</tt> key on
+ * {@link Constants#USER_DETAILS_CACHE_ADDRESS}. Changes made directly on Keycloak are seen once the
+ * TTL expires.
+ *
+ * <p>The number of lookups is exported through Micrometer as <tt>aaa.user.details.cache</tt>,
+ * tagged with the <tt>result</tt> (<em>hit</em> or <em>miss</em>) and the deployment ID of the
+ * verticle. Each hit is a user that was not looked up on Keycloak.
+ */
+public class UserDetailsCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(UserDetailsCache.class);
+  private static final String METRICS_NAME = "aaa.user.details.cache";
+
+  private final long ttlSeconds;
+  private final long negativeTtlSeconds;
+  private final EvictingCache<String, JsonObject> users;
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxSize maximum number of users held. A size of <tt>0</tt> disables caching
+   * @param ttlSeconds time in seconds for which the details of a user are cached
+   * @param negativeTtlSeconds time in seconds for which a user not found on Keycloak is cached. A
+   *     TTL of <tt>0</tt> disables caching of such users
+   */
+  public UserDetailsCache(Vertx vertx, long maxSize, long ttlSeconds, long negativeTtlSeconds) {
+    this(vertx, maxSize, ttlSeconds, negativeTtlSeconds, Ticker.systemTicker());
+  }
+
+  UserDetailsCache(
+      Vertx vertx, long maxSize, long ttlSeconds, long negativeTtlSeconds, Ticker ticker) {
+    if (maxSize < 0 || ttlSeconds < 0 || negativeTtlSeconds < 0) {
+      throw new IllegalArgumentException("Invalid user details cache configuration");
+    }
+
+    this.ttlSeconds = ttlSeconds;
+    this.negativeTtlSeconds = negativeTtlSeconds;
+    this.users =
+        new EvictingCache<String, JsonObject>(
+            vertx,
+            METRICS_NAME,
+            maxSize,
+            Math.max(ttlSeconds, negativeTtlSeconds),
+            ticker,
+            USER_DETAILS_CACHE_ADDRESS,
+            msg -> evictLocal(msg.getJsonArray(USER_DETAILS_CACHE_IDS, new JsonArray())));
+  }
+
+  /**
+   * Get the cached details of users.
+   *
+   * @param userIds the user IDs
+   * @return map of user ID to the details of the user, for the users that are cached. The details
+   *     are an empty JSON object if the user was not found on Keycloak
+   */
+  public Map<String, JsonObject> getAll(Collection<String> userIds) {
+    Map<String, JsonObject> result = new HashMap<String, JsonObject>();
+
+    for (String id : userIds) {
+      JsonObject cached = users.get(id);
+      if (cached != null) {
+        result.put(id, cached.copy());
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Cache the details of a user as fetched from Keycloak.
+   *
+   * @param userId the user ID
+   * @param details the name and email of the user, or an empty JSON object if the user was not
+   *     found
+   */
+  public void put(String userId, JsonObject details) {
+    long ttl = details.isEmpty() ? negativeTtlSeconds : ttlSeconds;
+    users.put(userId, details.copy(), ttl);
+  }
+
+  /**
+   * Evict the details of users on all instances in the cluster.
+   *
+   * @param userIds the user IDs
+   */
+  public void invalidate(List<String> userIds) {
+    users.publish(new JsonObject().put(USER_DETAILS_CACHE_IDS, new JsonArray(userIds)));
+  }
+
+  private void evictLocal(JsonArray ids) {
+    List<String> userIds = ids.stream().map(Object::toString).collect(Collectors.toList());
+    users.invalidateAll(userIds);
+    LOGGER.debug("Info: Evicted cached details of users {}", userIds);
+  }
+
+  /**
+   * Close the cache when the verticle is undeployed, see {@link EvictingCache#close()}.
+   *
+   * @return a Future that completes once the cache is closed
+   */
+  public Future<Void> close() {
+    return users.close();
+  }
+
+  long size() {
+    return users.size();
+  }
+}
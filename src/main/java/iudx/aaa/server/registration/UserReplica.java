@@ -0,0 +1,223 @@
+package iudx.aaa.server.registration;
+
+import static iudx.aaa.server.registration.Constants.SQL_GET_REPLICA_USERS_BY_EMAIL;
+import static iudx.aaa.server.registration.Constants.SQL_GET_REPLICA_USERS_BY_ID;
+import static iudx.aaa.server.registration.Constants.UUID_REGEX;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Looks up users in the local replica of the users on Keycloak, kept in the
+ * <tt>keycloak_users</tt> table by {@link UserReplicaSync}, so that user lookups do not need to
+ * call Keycloak. The lookups return the same details as the corresponding {@link KcAdmin} lookups.
+ *
+ * <p>The replica is only used if it was synced within the last
+ * <tt>userReplicaMaxStalenessSeconds</tt>. If the sync has fallen behind, or the replica cannot be
+ * read, all users are looked up on Keycloak. Users not in the replica, e.g. users who registered
+ * after the last sync, are also looked up on Keycloak.
+ *
+ * <p>The number of lookups is exported through Micrometer as <tt>aaa.user.replica</tt>, tagged with
+ * the <tt>result</tt> (<em>hit</em> or <em>miss</em>) and the deployment ID of the verticle. Each
+ * hit is a user that was not looked up on Keycloak.
+ */
+public class UserReplica {
+
+  private static final Logger LOGGER = LogManager.getLogger(UserReplica.class);
+  private static final String METRICS_NAME = "aaa.user.replica";
+
+  private final PgPool pool;
+  private final KcAdmin kc;
+  private final long maxStalenessSeconds;
+  private final Counter hits;
+  private final Counter misses;
+
+  /**
+   * Create the replica lookups.
+   *
+   * @param vertx the Vert.x instance
+   * @param pool the Postgres pool
+   * @param kc the Keycloak admin client used for users not found in the replica
+   * @param maxStalenessSeconds time in seconds since the last sync after which the replica is not
+   *     used
+   */
+  public UserReplica(Vertx vertx, PgPool pool, KcAdmin kc, long maxStalenessSeconds) {
+    if (maxStalenessSeconds <= 0) {
+      throw new IllegalArgumentException("Invalid user replica configuration");
+    }
+
+    this.pool = pool;
+    this.kc = kc;
+    this.maxStalenessSeconds = maxStalenessSeconds;
+
+    MeterRegistry registry = EvictingCache.meterRegistry();
+
+    String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+    hits =
+        Counter.builder(METRICS_NAME)
+            .tag("result", "hit")
+            .tag("deployment", deploymentId)
+            .register(registry);
+    misses =
+        Counter.builder(METRICS_NAME)
+            .tag("result", "miss")
+            .tag("deployment", deploymentId)
+            .register(registry);
+  }
+
+  /**
+   * Get email and name details for a list of users, as sent by {@link KcAdmin#getDetails(List)}.
+   *
+   * @param ids List of String UUIDs of keycloak IDs
+   * @return map of keycloak ID to JSON object with name, email. If the user is not found, an empty
+   *     JSON object is used as the value
+   */
+  public Future<Map<String, JsonObject>> getDetails(List<String> ids) {
+    List<String> unique = ids.stream().distinct().collect(Collectors.toList());
+    UUID[] uuids =
+        unique.stream()
+            .filter(id -> id.matches(UUID_REGEX))
+            .map(UUID::fromString)
+            .toArray(UUID[]::new);
+
+    return readReplica(
+            SQL_GET_REPLICA_USERS_BY_ID,
+            Tuple.of(uuids, maxStalenessSeconds),
+            row -> row.getUUID("id").toString(),
+            UserReplica::details)
+        .compose(
+            found -> {
+              Map<String, JsonObject> map = new HashMap<String, JsonObject>(found);
+              List<String> missing =
+                  unique.stream().filter(id -> !found.containsKey(id)).collect(Collectors.toList());
+
+              count(found.size(), missing.size());
+              if (missing.isEmpty()) {
+                return Future.succeededFuture(map);
+              }
+
+              return kc.getDetails(missing)
+                  .map(
+                      fetched -> {
+                        map.putAll(fetched);
+                        return map;
+                      });
+            });
+  }
+
+  /**
+   * Find many users by email address, as sent by {@link KcAdmin#findUsersByEmail(Set)}. Email
+   * addresses are matched case-insensitively.
+   *
+   * @param emails The email addresses of the users to be found
+   * @return a future of map of email address to JSON object with the keycloak ID, name and email,
+   *     or an empty JSON object if the user is not found
+   */
+  public Future<Map<String, JsonObject>> findUsersByEmail(Set<String> emails) {
+    String[] lowercase = emails.stream().map(String::toLowerCase).distinct().toArray(String[]::new);
+
+    return readReplica(
+            SQL_GET_REPLICA_USERS_BY_EMAIL,
+            Tuple.of(lowercase, maxStalenessSeconds),
+            row -> row.getString("email").toLowerCase(),
+            UserReplica::searchResult)
+        .compose(
+            found -> {
+              Map<String, JsonObject> map = new HashMap<String, JsonObject>();
+              Set<String> missing = new HashSet<String>();
+              for (String email : emails) {
+                JsonObject user = found.get(email.toLowerCase());
+                if (user != null) {
+                  map.put(email, user.copy());
+                } else {
+                  missing.add(email);
+                }
+              }
+
+              count(map.size(), missing.size());
+              if (missing.isEmpty()) {
+                return Future.succeededFuture(map);
+              }
+
+              return kc.findUsersByEmail(missing)
+                  .map(
+                      fetched -> {
+                        map.putAll(fetched);
+                        return map;
+                      });
+            });
+  }
+
+  /**
+   * Find a user by email address, as sent by {@link KcAdmin#findUserByEmail(String)}.
+   *
+   * @param email The email address of the user to be found
+   * @return a future of JSON object with the keycloak ID, name and email, or an empty JSON object
+   *     if the user is not found
+   */
+  public Future<JsonObject> findUserByEmail(String email) {
+    return findUsersByEmail(Set.of(email)).map(users -> users.get(email));
+  }
+
+  /**
+   * Read users from the replica. If the replica is stale, no users are returned; if it cannot be
+   * read, the failure is logged and no users are returned, so that Keycloak is used instead.
+   */
+  private Future<Map<String, JsonObject>> readReplica(
+      String query, Tuple tuple, Function<Row, String> key, Function<Row, JsonObject> value) {
+    return pool.preparedQuery(query)
+        .execute(tuple)
+        .map(
+            rows -> {
+              Map<String, JsonObject> users = new HashMap<String, JsonObject>();
+              for (Row row : rows) {
+                users.putIfAbsent(key.apply(row), value.apply(row));
+              }
+              return users;
+            })
+        .recover(
+            err -> {
+              LOGGER.warn("Fail: Could not read user replica; {}", err.getMessage());
+              return Future.succeededFuture(Map.of());
+            });
+  }
+
+  private void count(int found, int missing) {
+    hits.increment(found);
+    misses.increment(missing);
+  }
+
+  private static JsonObject name(Row row) {
+    return new JsonObject()
+        .put("firstName", row.getString("first_name"))
+        .put("lastName", row.getString("last_name"));
+  }
+
+  private static JsonObject details(Row row) {
+    return new JsonObject().put("email", row.getString("email")).put("name", name(row));
+  }
+
+  private static JsonObject searchResult(Row row) {
+    return new JsonObject()
+        .put("keycloakId", row.getUUID("id").toString())
+        .put("email", row.getString("email"))
+        .put("name", name(row));
+  }
+}
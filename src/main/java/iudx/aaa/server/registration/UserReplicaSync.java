@@ -0,0 +1,436 @@
+package iudx.aaa.server.registration;
+
+import static iudx.aaa.server.registration.Constants.SQL_CLAIM_USER_REPLICA_SYNC;
+import static iudx.aaa.server.registration.Constants.SQL_COMPLETE_USER_REPLICA_SYNC;
+import static iudx.aaa.server.registration.Constants.SQL_DELETE_REPLICA_USERS;
+import static iudx.aaa.server.registration.Constants.SQL_DELETE_UNSYNCED_REPLICA_USERS;
+import static iudx.aaa.server.registration.Constants.SQL_RELEASE_USER_REPLICA_SYNC;
+import static iudx.aaa.server.registration.Constants.SQL_RENEW_USER_REPLICA_SYNC;
+import static iudx.aaa.server.registration.Constants.SQL_UPSERT_REPLICA_USER;
+import static iudx.aaa.server.registration.Constants.USER_DETAILS_CACHE_ADDRESS;
+import static iudx.aaa.server.registration.Constants.USER_DETAILS_CACHE_IDS;
+import static iudx.aaa.server.registration.Constants.USER_REPLICA_EVENT_CURSOR_MARGIN_MS;
+import static iudx.aaa.server.registration.Constants.USER_REPLICA_SYNC_LEASE_MS;
+import static iudx.aaa.server.registration.Constants.UUID_REGEX;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps the local replica of the users on Keycloak in the <tt>keycloak_users</tt> table in sync
+ * with Keycloak, so that {@link UserReplica} can look up users without calling Keycloak.
+ *
+ * <p>Every <tt>userReplicaSyncIntervalSeconds</tt>, the sync is claimed by leasing the single row
+ * of the <tt>keycloak_user_sync</tt> table, so that only one RegistrationVerticle instance in the
+ * cluster syncs at a time. The lease is held for {@link Constants#USER_REPLICA_SYNC_LEASE_MS} and
+ * is renewed after every page of a full sync; if the instance dies while syncing, another instance
+ * takes over once the lease expires.
+ *
+ * <p>If there was no full sync in the last <tt>userReplicaFullSyncIntervalSeconds</tt>, all users
+ * of the realm are paged through and upserted, and users not seen in the pages are deleted. Users
+ * missed because the realm changed during the paging are looked up on Keycloak until the next full
+ * sync. Otherwise, the user events and admin events on users since the event cursor are read, and
+ * only the users they refer to are fetched again, deleting those that are no longer on Keycloak.
+ * Their cached details are also evicted from the {@link UserDetailsCache}.
+ *
+ * <p>Keycloak records these events only if saving events and admin events is enabled on the realm,
+ * which is not the default. The event config of the realm is read once, at the first sync. If the
+ * events are not saved, changes are only seen at full syncs, so the replica is only synced by full
+ * syncs, and {@link UserReplica} falls back to Keycloak once the last full sync is older than
+ * <tt>userReplicaMaxStalenessSeconds</tt>.
+ *
+ * <p>Once a sync completes, the replica is marked as synced as of the time the sync was claimed,
+ * which {@link UserReplica} uses to bound the staleness of the replica.
+ *
+ * <p>The number of syncs is exported through Micrometer as <tt>aaa.user.replica.sync</tt>, tagged
+ * with the <tt>result</tt> (<em>success</em> or <em>failure</em>) and the deployment ID of the
+ * verticle. Syncs skipped because another instance held the lease are not counted.
+ */
+public class UserReplicaSync {
+
+  private static final Logger LOGGER = LogManager.getLogger(UserReplicaSync.class);
+  private static final String METRICS_NAME = "aaa.user.replica.sync";
+
+  /* admin events on a user, or on its role mappings, groups etc., have the user in the path */
+  private static final Pattern USER_RESOURCE_PATH = Pattern.compile("^users/([^/]+)");
+
+  private final Vertx vertx;
+  private final PgPool pool;
+  private final KcAdmin kc;
+  private final long syncIntervalMs;
+  private final long fullSyncIntervalSeconds;
+  private final int pageSize;
+
+  private final Counter syncSuccess;
+  private final Counter syncFailure;
+
+  private long timerId = -1;
+  private boolean running = false;
+  /* whether the realm saves the events read by an incremental sync, null until it is known */
+  private Boolean eventsSaved;
+
+  /**
+   * Create the sync. Nothing is synced until {@link #start()} is called.
+   *
+   * @param vertx the Vert.x instance
+   * @param pool the Postgres pool
+   * @param kc the Keycloak admin client
+   * @param syncIntervalSeconds interval in seconds at which the replica is synced
+   * @param fullSyncIntervalSeconds interval in seconds at which all users are synced, instead of
+   *     only the users changed since the last sync
+   * @param pageSize the number of users or events fetched per call to Keycloak
+   */
+  public UserReplicaSync(
+      Vertx vertx,
+      PgPool pool,
+      KcAdmin kc,
+      long syncIntervalSeconds,
+      long fullSyncIntervalSeconds,
+      int pageSize) {
+    if (syncIntervalSeconds <= 0 || fullSyncIntervalSeconds <= 0 || pageSize <= 0) {
+      throw new IllegalArgumentException("Invalid user replica sync configuration");
+    }
+
+    this.vertx = vertx;
+    this.pool = pool;
+    this.kc = kc;
+    this.syncIntervalMs = TimeUnit.SECONDS.toMillis(syncIntervalSeconds);
+    this.fullSyncIntervalSeconds = fullSyncIntervalSeconds;
+    this.pageSize = pageSize;
+
+    MeterRegistry registry = EvictingCache.meterRegistry();
+
+    String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+    syncSuccess =
+        Counter.builder(METRICS_NAME)
+            .tag("result", "success")
+            .tag("deployment", deploymentId)
+            .register(registry);
+    syncFailure =
+        Counter.builder(METRICS_NAME)
+            .tag("result", "failure")
+            .tag("deployment", deploymentId)
+            .register(registry);
+  }
+
+  /** Sync the replica now and periodically. */
+  public void start() {
+    poll();
+    timerId = vertx.setPeriodic(syncIntervalMs, id -> poll());
+  }
+
+  /** Stop syncing the replica. A sync in progress keeps the lease until it expires. */
+  public void stop() {
+    if (timerId != -1) {
+      vertx.cancelTimer(timerId);
+      timerId = -1;
+    }
+  }
+
+  private void poll() {
+    /* a slow sync must not overlap with the next one */
+    if (running) {
+      return;
+    }
+    running = true;
+
+    sync()
+        .onComplete(
+            res -> {
+              running = false;
+              if (res.failed()) {
+                LOGGER.error("Fail: User replica sync failed; {}", res.cause().getMessage());
+              }
+            });
+  }
+
+  /**
+   * Claim the sync and sync the replica with Keycloak.
+   *
+   * @return a future with <tt>true</tt> if the replica was synced, or <tt>false</tt> if another
+   *     instance holds the lease, or if only an incremental sync was due and the realm does not
+   *     save events. The future fails if the sync failed
+   */
+  Future<Boolean> sync() {
+    return pool.preparedQuery(SQL_CLAIM_USER_REPLICA_SYNC)
+        .execute(Tuple.of(USER_REPLICA_SYNC_LEASE_MS, fullSyncIntervalSeconds))
+        .compose(
+            rows -> {
+              if (rows.rowCount() == 0) {
+                return Future.succeededFuture(false);
+              }
+
+              Row claim = rows.iterator().next();
+              LocalDateTime startedAt = claim.getLocalDateTime("started_at");
+
+              if (claim.getBoolean("full_sync_due")) {
+                /* changes made during the full sync are read from the events in the next sync */
+                long fullCursor =
+                    claim.getLong("started_at_ms") - USER_REPLICA_EVENT_CURSOR_MARGIN_MS;
+                return complete(fullSync(startedAt).map(fullCursor), startedAt, true);
+              }
+
+              long eventCursor = claim.getLong("event_cursor");
+              return eventsSaved()
+                  .compose(
+                      saved -> {
+                        /* without events, the sync would mark the replica fresh with no changes */
+                        if (!saved) {
+                          return pool.query(SQL_RELEASE_USER_REPLICA_SYNC).execute().map(false);
+                        }
+                        return complete(incrementalSync(eventCursor, startedAt), startedAt, false);
+                      });
+            });
+  }
+
+  /** Mark the replica as synced once the sync succeeds, or release the lease if it fails. */
+  private Future<Boolean> complete(Future<Long> cursor, LocalDateTime startedAt, boolean full) {
+    return cursor
+        .compose(
+            next ->
+                pool.preparedQuery(SQL_COMPLETE_USER_REPLICA_SYNC)
+                    .execute(Tuple.of(next, startedAt, full)))
+        .map(
+            done -> {
+              syncSuccess.increment();
+              LOGGER.info("Info: {} user replica sync complete", full ? "Full" : "Event");
+              return true;
+            })
+        .recover(
+            err -> {
+              syncFailure.increment();
+              return pool.query(SQL_RELEASE_USER_REPLICA_SYNC)
+                  .execute()
+                  .transform(released -> Future.<Boolean>failedFuture(err));
+            });
+  }
+
+  /**
+   * Check if the realm saves the events read by an incremental sync. The result is kept once it is
+   * known; if the event config cannot be read, the events are taken as not saved for this sync.
+   */
+  private Future<Boolean> eventsSaved() {
+    if (eventsSaved != null) {
+      return Future.succeededFuture(eventsSaved);
+    }
+
+    return kc.userEventsSaved()
+        .map(
+            saved -> {
+              if (!saved) {
+                LOGGER.warn(
+                    "Info: Keycloak realm does not save user and admin events; the user replica"
+                        + " is only synced by full syncs");
+              }
+              eventsSaved = saved;
+              return saved;
+            })
+        .recover(
+            err -> {
+              LOGGER.warn("Fail: Could not read Keycloak event config; {}", err.getMessage());
+              return Future.succeededFuture(false);
+            });
+  }
+
+  private Future<Void> fullSync(LocalDateTime startedAt) {
+    return syncPage(0, startedAt)
+        .compose(
+            v -> pool.preparedQuery(SQL_DELETE_UNSYNCED_REPLICA_USERS).execute(Tuple.of(startedAt)))
+        .mapEmpty();
+  }
+
+  private Future<Void> syncPage(int first, LocalDateTime startedAt) {
+    return kc.getUsers(first, pageSize)
+        .compose(
+            users -> {
+              List<Tuple> batch = new ArrayList<Tuple>();
+              for (JsonObject user : users) {
+                String id = user.getString("id");
+                if (id != null && id.matches(UUID_REGEX)) {
+                  batch.add(
+                      upsertTuple(
+                          id,
+                          user.getString("email"),
+                          user.getString("firstName"),
+                          user.getString("lastName"),
+                          startedAt));
+                }
+              }
+
+              Future<Void> page =
+                  upsert(pool, batch)
+                      .compose(
+                          v ->
+                              pool.preparedQuery(SQL_RENEW_USER_REPLICA_SYNC)
+                                  .execute(Tuple.of(USER_REPLICA_SYNC_LEASE_MS)))
+                      .mapEmpty();
+
+              if (users.size() < pageSize) {
+                return page;
+              }
+              return page.compose(v -> syncPage(first + pageSize, startedAt));
+            });
+  }
+
+  /**
+   * Read the events since the cursor and fetch the users they refer to again.
+   *
+   * @return a future with the time of the latest event read, to be used as the next cursor
+   */
+  private Future<Long> incrementalSync(long cursor, LocalDateTime startedAt) {
+    Set<String> userIds = new HashSet<String>();
+
+    Future<Long> events =
+        readEvents(kc::getUserEvents, cursor, 0, userIds, event -> event.getString("userId"));
+    Future<Long> adminEvents =
+        readEvents(
+            kc::getUserAdminEvents,
+            cursor,
+            0,
+            userIds,
+            event -> {
+              Matcher matcher = USER_RESOURCE_PATH.matcher(event.getString("resourcePath", ""));
+              return matcher.find() ? matcher.group(1) : null;
+            });
+
+    return Future.all(events, adminEvents)
+        .compose(
+            done -> {
+              long next = Math.max(events.result(), adminEvents.result());
+              return refresh(new ArrayList<String>(userIds), startedAt).map(next);
+            });
+  }
+
+  /**
+   * Page through events, newest first, until an event at or before the cursor is reached.
+   *
+   * @param page fetches a page of events given the offset and the page size
+   * @param cursor the time in epoch milliseconds up to which events were read in the last sync
+   * @param first the offset of the page
+   * @param userIds the IDs of the users referred to by the events are added to this set
+   * @param userId gets the ID of the user referred to by an event
+   * @return a future with the time of the latest event read, or the cursor if there were no new
+   *     events
+   */
+  private Future<Long> readEvents(
+      BiFunction<Integer, Integer, Future<List<JsonObject>>> page,
+      long cursor,
+      int first,
+      Set<String> userIds,
+      Function<JsonObject, String> userId) {
+    return page.apply(first, pageSize)
+        .compose(
+            events -> {
+              long latest = cursor;
+              boolean reachedCursor = events.size() < pageSize;
+
+              for (JsonObject event : events) {
+                long time = event.getLong("time", 0L);
+                if (time <= cursor) {
+                  reachedCursor = true;
+                  continue;
+                }
+
+                latest = Math.max(latest, time);
+                String id = userId.apply(event);
+                if (id != null && id.matches(UUID_REGEX)) {
+                  userIds.add(id);
+                }
+              }
+
+              if (reachedCursor) {
+                return Future.succeededFuture(latest);
+              }
+
+              long pageLatest = latest;
+              return readEvents(page, cursor, first + pageSize, userIds, userId)
+                  .map(older -> Math.max(pageLatest, older));
+            });
+  }
+
+  /** Fetch users from Keycloak and upsert them, deleting those that are no longer on Keycloak. */
+  private Future<Void> refresh(List<String> userIds, LocalDateTime startedAt) {
+    if (userIds.isEmpty()) {
+      return Future.succeededFuture();
+    }
+
+    return kc.getDetails(userIds)
+        .compose(
+            details -> {
+              List<Tuple> batch = new ArrayList<Tuple>();
+              List<UUID> deleted = new ArrayList<UUID>();
+
+              details.forEach(
+                  (id, user) -> {
+                    if (user.isEmpty()) {
+                      deleted.add(UUID.fromString(id));
+                      return;
+                    }
+                    JsonObject name = user.getJsonObject("name", new JsonObject());
+                    batch.add(
+                        upsertTuple(
+                            id,
+                            user.getString("email"),
+                            name.getString("firstName"),
+                            name.getString("lastName"),
+                            startedAt));
+                  });
+
+              return pool.withTransaction(
+                  conn ->
+                      upsert(conn, batch)
+                          .compose(
+                              v ->
+                                  conn.preparedQuery(SQL_DELETE_REPLICA_USERS)
+                                      .execute(Tuple.of(deleted.toArray(UUID[]::new))))
+                          .mapEmpty());
+            })
+        .onSuccess(
+            v ->
+                vertx
+                    .eventBus()
+                    .publish(
+                        USER_DETAILS_CACHE_ADDRESS,
+                        new JsonObject().put(USER_DETAILS_CACHE_IDS, new JsonArray(userIds))))
+        .mapEmpty();
+  }
+
+  private static Tuple upsertTuple(
+      String id, String email, String firstName, String lastName, LocalDateTime syncedAt) {
+    return Tuple.tuple()
+        .addUUID(UUID.fromString(id))
+        .addString(email)
+        .addString(firstName)
+        .addString(lastName)
+        .addLocalDateTime(syncedAt);
+  }
+
+  private static Future<Void> upsert(SqlClient client, List<Tuple> batch) {
+    if (batch.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    return client.preparedQuery(SQL_UPSERT_REPLICA_USER).executeBatch(batch).mapEmpty();
+  }
+}
@@ -8,6 +8,9 @@ public class Constants {
   public static final String TOKEN_SERVICE_ADDRESS = "iudx.aaa.token.service";
   public static final String POLICY_SERVICE_ADDRESS = "iudx.aaa.policy.service";
   public static final String REGISTRATION_SERVICE_ADDRESS = "iudx.aaa.registration.service";
+  public static final String IDENTITY_TOKEN_CACHE_ADDRESS = "iudx.aaa.token.identity.cache.evict";
+  public static final String SHARED_SIGNING_KEYS = "iudx.aaa.token.signingKeys";
+  public static final String TOKEN_POOL_NAME = "iudx.aaa.token.pool";
 
   public static final int BCRYPT_SALT_LEN = 16;
   public static final int BCRYPT_LOG_COST = 12;
@@ -17,6 +20,7 @@ public class Constants {
 
   public static final String RS_REVOKE_URI = "/admin/revokeToken";
   public static final String RS_REVOKE_BODY_SUB = "sub";
+  public static final String RS_REVOKE_BODY_REQUESTED_AT = "requestedAt";
   public static final int DEFAULT_HTTPS_PORT = 443;
 
   /* Configuration & related */
@@ -29,7 +33,39 @@ public class Constants {
   public static final String POOLSIZE = "poolSize";
   public static final String KEYSTORE_PATH = "keystorePath";
   public static final String KEYSTPRE_PASSWORD = "keystorePassword";
+  public static final String ACTIVE_KEY_ALIAS = "activeKeyAlias";
+  public static final String DEFAULT_ACTIVE_KEY_ALIAS = "ES256";
   public static final String COS_DOMAIN = "cosDomain";
+  public static final String IDENTITY_TOKEN_CACHE_SIZE = "identityTokenCacheSize";
+  public static final String IDENTITY_TOKEN_REUSE_FRACTION = "identityTokenReuseFraction";
+  public static final long DEFAULT_IDENTITY_TOKEN_CACHE_SIZE = 10000;
+  public static final double DEFAULT_IDENTITY_TOKEN_REUSE_FRACTION = 0.25;
+  public static final String INTROSPECT_CACHE_SIZE = "introspectCacheSize";
+  public static final String INTROSPECT_CACHE_TTL_SECONDS = "introspectCacheTtlSeconds";
+  public static final String INTROSPECT_CACHE_METRICS = "introspectCacheMetrics";
+  public static final long DEFAULT_INTROSPECT_CACHE_SIZE = 10000;
+  public static final long DEFAULT_INTROSPECT_CACHE_TTL_SECONDS = 300;
+  public static final String BATCH_TOKEN_CONCURRENCY = "batchTokenConcurrency";
+  public static final int DEFAULT_BATCH_TOKEN_CONCURRENCY = 10;
+  public static final String REVOCATION_OPTIONS = "revocationOptions";
+  public static final String REVOCATION_POLL_INTERVAL_MS = "pollIntervalMs";
+  public static final String REVOCATION_BATCH_SIZE = "batchSize";
+  public static final String REVOCATION_HOST_CONCURRENCY = "hostConcurrency";
+  public static final String REVOCATION_MAX_ATTEMPTS = "maxAttempts";
+  public static final String REVOCATION_RETRY_BASE_MS = "retryBaseMs";
+  public static final String REVOCATION_RETRY_MAX_MS = "retryMaxMs";
+  public static final String REVOCATION_REQUEST_TIMEOUT_MS = "requestTimeoutMs";
+  public static final long DEFAULT_REVOCATION_POLL_INTERVAL_MS = 5000;
+  public static final int DEFAULT_REVOCATION_BATCH_SIZE = 100;
+  public static final int DEFAULT_REVOCATION_HOST_CONCURRENCY = 4;
+  public static final int DEFAULT_REVOCATION_MAX_ATTEMPTS = 10;
+  public static final long DEFAULT_REVOCATION_RETRY_BASE_MS = 5000;
+  public static final long DEFAULT_REVOCATION_RETRY_MAX_MS = 60 * 60 * 1000;
+  public static final long DEFAULT_REVOCATION_REQUEST_TIMEOUT_MS = 10000;
+  public static final int REVOCATION_CONNECT_TIMEOUT_MS = 5000;
+  public static final int REVOCATION_IDLE_TIMEOUT_SECONDS = 30;
+  /* time for which a claimed revocation is not picked up by another dispatcher */
+  public static final long REVOCATION_LEASE_MS = 60 * 1000;
 
   public static final int PG_CONNECTION_TIMEOUT = 10000;
   public static final int DB_RECONNECT_ATTEMPTS = 5;
@@ -37,6 +73,9 @@ public class Constants {
 
   /* General */
   public static final String STATUS = "status";
+  public static final String ATTEMPTS = "attempts";
+  public static final String REQUESTED_AT = "requestedAt";
+  public static final String NEXT_ATTEMPT_AT = "nextAttemptAt";
   public static final String ALLOW = "allow";
   public static final String DENY = "deny";
   public static final String SUCCESS = "success";
@@ -88,6 +127,11 @@ public class Constants {
   public static final String RG = "rg";
   public static final String INTROSPECT_USERINFO = "userInfo";
 
+  /* JWT header */
+  public static final String TYP = "typ";
+  public static final String ALG = "alg";
+  public static final String KID = "kid";
+
   public static final String CREATE_TOKEN_DID = "delegatorUserId";
   public static final String CREATE_TOKEN_DRL = "delegatorRole";
   public static final String CREATE_TOKEN_RG = "resourceGroupId";
@@ -132,11 +176,14 @@ public class Constants {
   public static final String CANNOT_REVOKE_ON_AUTH = "Cannot revoke tokens on auth server";
   public static final String ACCESS_DENIED = "Access evaluation failed";
   public static final String TOKEN_SUCCESS = "Token created";
+  public static final String TOKENS_INTROSPECTED = "Tokens introspected";
+  public static final String TOKENS_PROCESSED = "Batch token request processed";
   public static final String ERR_TITLE_APD_INTERACT_REQUIRED = "APD interaction required";
   public static final String ERR_DETAIL_APD_INTERACT_REQUIRED =
       "The APD requires extra information to grant access."
           + " Please use the apdToken and visit the link to interact with the APD";
-  public static final String TOKEN_REVOKED = "Token revoked";
+  public static final String TOKEN_REVOKE_REQUESTED = "Token revocation requested";
+  public static final String TOKEN_REVOCATIONS = "Pending and failed token revocations";
   public static final String TOKEN_AUTHENTICATED = "Token authenticated";
   public static final String INVALID_USERID = "Empty/null userId";
 
@@ -150,11 +197,6 @@ public class Constants {
   public static final String ERR_DOES_NOT_HAVE_ROLE_FOR_RS =
       "User does not have requested role for requested resource server";
 
-  public static final String ERR_TITLE_NO_RES_GRP_TOKEN =
-      "Cannot get token for item type resource group";
-  public static final String ERR_DETAIL_NO_RES_GRP_TOKEN =
-      "Item type resource_group not allowed; please get token at resource level";
-
   public static final String ERR_TITLE_ROLE_NOT_OWNED = "Requested role not owned by user";
   public static final String ERR_DETAIL_ROLE_NOT_OWNED =
       "The requested role is not owned by the user";
@@ -190,10 +232,6 @@ public class Constants {
 
   public static final String GET_CLIENT = "SELECT client_id FROM user_clients WHERE user_id = $1";
 
-  public static final String GET_URL =
-      "SELECT EXISTS (SELECT 1 FROM resource_server WHERE url = $1::text"
-          + " UNION SELECT 1 FROM apds WHERE url = $1::text AND status = 'ACTIVE')";
-
   public static final String GET_RS =
       "SELECT resource_server.id FROM resource_server LEFT JOIN resource_server_admins"
           + " ON resource_server.id = resource_server_admins.resource_server_id"
@@ -203,9 +241,44 @@ public class Constants {
 
   public static final String CHECK_APD_EXISTS_BY_URL = "SELECT id FROM apds WHERE url = $1";
 
-  public static final String CHECK_RS_EXISTS_BY_URL =
-      "SELECT id FROM resource_server WHERE url = $1";
-
   public static final String CHECK_APD_OWNER =
       "SELECT owner_id AS owner FROM apds WHERE url = $1 AND owner_id = $2::uuid";
+
+  /* Token revocation outbox */
+  public static final String SQL_ENQUEUE_REVOCATION =
+      "INSERT INTO token_revocation_outbox (user_id, url, status, attempts, requested_at,"
+          + " next_attempt_at, created_at, updated_at)"
+          + " VALUES ($1::uuid, $2::text, 'PENDING', 0, NOW(), NOW(), NOW(), NOW())"
+          + " ON CONFLICT (user_id, url) DO UPDATE SET status = 'PENDING', attempts = 0,"
+          + " last_error = NULL, requested_at = NOW(), next_attempt_at = NOW(), updated_at = NOW()";
+
+  public static final String SQL_GET_REVOCATIONS_OF_USER =
+      "SELECT url, status, attempts, requested_at, next_attempt_at FROM token_revocation_outbox"
+          + " WHERE user_id = $1::uuid ORDER BY requested_at";
+
+  /* The claimed rows are leased; they are picked up again if the lease expires */
+  public static final String SQL_CLAIM_REVOCATIONS =
+      "UPDATE token_revocation_outbox SET attempts = attempts + 1,"
+          + " next_attempt_at = NOW() + $2::bigint * INTERVAL '1 millisecond', updated_at = NOW()"
+          + " WHERE id IN (SELECT id FROM token_revocation_outbox WHERE status = 'PENDING'"
+          + " AND next_attempt_at <= NOW() ORDER BY next_attempt_at LIMIT $1::integer"
+          + " FOR UPDATE SKIP LOCKED)"
+          + " RETURNING id, user_id, url, attempts, requested_at,"
+          + " CEIL(EXTRACT(EPOCH FROM requested_at::timestamptz))::bigint AS requested_at_epoch";
+
+  /* requested_at is checked so that a revocation requested while sending is not lost */
+  public static final String SQL_DELETE_REVOCATION =
+      "DELETE FROM token_revocation_outbox WHERE id = $1::uuid AND requested_at = $2";
+
+  public static final String SQL_RETRY_REVOCATION =
+      "UPDATE token_revocation_outbox SET"
+          + " next_attempt_at = NOW() + $3::bigint * INTERVAL '1 millisecond',"
+          + " last_error = $4::text, updated_at = NOW() WHERE id = $1::uuid AND requested_at = $2";
+
+  public static final String SQL_FAIL_REVOCATION =
+      "UPDATE token_revocation_outbox SET status = 'FAILED', last_error = $3::text,"
+          + " updated_at = NOW() WHERE id = $1::uuid AND requested_at = $2";
+
+  public static final String SQL_COUNT_REVOCATIONS =
+      "SELECT status, COUNT(*) AS count FROM token_revocation_outbox GROUP BY status";
 }
@@ -0,0 +1,210 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.CLAIM_EXPIRY;
+import static iudx.aaa.server.token.Constants.IDENTITY_TOKEN_CACHE_ADDRESS;
+import static iudx.aaa.server.token.Constants.RS_URL;
+import static iudx.aaa.server.token.Constants.USER_ID;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import iudx.aaa.server.apiserver.DelegationInformation;
+import iudx.aaa.server.apiserver.Roles;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Bounded cache of identity tokens (tokens with <tt>itemType</tt> <em>resource_server</em>).
+ *
+ * <p>An identity token depends only on the user, the role, the resource server and, for delegates,
+ * the delegation. A token is handed out again while less than a configured fraction of {@link
+ * Constants#CLAIM_EXPIRY} has passed since it was issued, after which the entry expires and a new
+ * token is minted. The authorization checks for the request are still performed on every cache
+ * hit, so a change in the user's roles or delegations takes effect immediately and the stale entry
+ * is dropped.
+ *
+ * <p>When tokens are revoked for a user on a resource server, the entries for that user and server
+ * are evicted on every TokenVerticle instance in the cluster by publishing on {@link
+ * Constants#IDENTITY_TOKEN_CACHE_ADDRESS}.
+ *
+ * <p>Hit, miss and eviction counts are exported through Micrometer under the cache name
+ * <tt>aaa.token.identity</tt>, tagged with the deployment ID of the verticle and the instance.
+ */
+public class IdentityTokenCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(IdentityTokenCache.class);
+  private static final String METRICS_NAME = "aaa.token.identity";
+
+  private final Vertx vertx;
+  private final Cache<Key, JsonObject> cache;
+  private final MessageConsumer<JsonObject> consumer;
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxSize maximum number of tokens held. A size of <tt>0</tt> disables caching
+   * @param reuseFraction the fraction of {@link Constants#CLAIM_EXPIRY} for which a token is reused
+   */
+  public IdentityTokenCache(Vertx vertx, long maxSize, double reuseFraction) {
+    this(vertx, maxSize, reuseFraction, Ticker.systemTicker());
+  }
+
+  IdentityTokenCache(Vertx vertx, long maxSize, double reuseFraction, Ticker ticker) {
+    if (maxSize < 0 || reuseFraction < 0 || reuseFraction > 1) {
+      throw new IllegalArgumentException("Invalid identity token cache configuration");
+    }
+
+    this.vertx = vertx;
+    long reuseSeconds = (long) (CLAIM_EXPIRY * reuseFraction);
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(reuseSeconds == 0 ? 0 : maxSize)
+            .expireAfterWrite(reuseSeconds, TimeUnit.SECONDS)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    if (registry != null) {
+      /* instances of a deployment share its ID, so each instance's cache is tagged separately */
+      String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+      String instance = Integer.toHexString(System.identityHashCode(this));
+      GuavaCacheMetrics.monitor(
+          registry, cache, METRICS_NAME, "deployment", deploymentId, "instance", instance);
+    }
+
+    consumer =
+        vertx
+            .eventBus()
+            .consumer(
+                IDENTITY_TOKEN_CACHE_ADDRESS,
+                msg -> evictLocal(msg.body().getString(USER_ID), msg.body().getString(RS_URL)));
+  }
+
+  /**
+   * Create the cache key for an identity token request.
+   *
+   * @param userId the user requesting the token
+   * @param role the role of the user
+   * @param rsUrl the resource server URL
+   * @param delegInfo the delegation information, used only if the role is <em>delegate</em>
+   * @return the key
+   */
+  static Key key(String userId, Roles role, String rsUrl, DelegationInformation delegInfo) {
+    String delegationId =
+        role.equals(Roles.DELEGATE) && delegInfo != null ? delegInfo.getDelegationId() : "";
+    return new Key(userId, role, rsUrl, delegationId);
+  }
+
+  /**
+   * Get a cached token.
+   *
+   * @param key the key
+   * @return a copy of the cached token response, or <tt>null</tt> if there is none
+   */
+  public JsonObject get(Key key) {
+    JsonObject jwt = cache.getIfPresent(key);
+    return jwt == null ? null : jwt.copy();
+  }
+
+  /**
+   * Cache a newly minted token.
+   *
+   * @param key the key
+   * @param jwt the token response as created by {@link TokenServiceImpl#getJwt(JsonObject)}
+   */
+  public void put(Key key, JsonObject jwt) {
+    cache.put(key, jwt.copy());
+  }
+
+  /**
+   * Drop a single entry, e.g. when the authorization checks no longer pass for it.
+   *
+   * @param key the key
+   */
+  public void invalidate(Key key) {
+    cache.invalidate(key);
+  }
+
+  /**
+   * Evict tokens of a user for a resource server on all instances in the cluster.
+   *
+   * @param userId the user ID
+   * @param rsUrl the resource server URL
+   */
+  public void invalidate(String userId, String rsUrl) {
+    evictLocal(userId, rsUrl);
+    vertx
+        .eventBus()
+        .publish(
+            IDENTITY_TOKEN_CACHE_ADDRESS, new JsonObject().put(USER_ID, userId).put(RS_URL, rsUrl));
+  }
+
+  private void evictLocal(String userId, String rsUrl) {
+    if (userId == null || rsUrl == null) {
+      return;
+    }
+    cache.asMap().keySet().removeIf(k -> k.userId.equals(userId) && k.rsUrl.equals(rsUrl));
+    LOGGER.debug("Info: Evicted cached identity tokens for {} on {}", userId, rsUrl);
+  }
+
+  /**
+   * Stop listening for evictions. Called when the verticle is undeployed.
+   *
+   * @return a Future that completes once the consumer is unregistered
+   */
+  public Future<Void> close() {
+    cache.invalidateAll();
+    return consumer.unregister();
+  }
+
+  long size() {
+    cache.cleanUp();
+    return cache.size();
+  }
+
+  /** Cache key. */
+  public static final class Key {
+    private final String userId;
+    private final Roles role;
+    private final String rsUrl;
+    private final String delegationId;
+
+    private Key(String userId, Roles role, String rsUrl, String delegationId) {
+      this.userId = userId;
+      this.role = role;
+      this.rsUrl = rsUrl;
+      this.delegationId = delegationId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return userId.equals(other.userId)
+          && role == other.role
+          && rsUrl.equals(other.rsUrl)
+          && delegationId.equals(other.delegationId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(userId, role, rsUrl, delegationId);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.JWT_ALGORITHM;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.ECKey;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.JksOptions;
+import io.vertx.core.shareddata.Shareable;
+import io.vertx.ext.auth.PubSecKeyOptions;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The ES256 key material of the JWT keystore, loaded once when a verticle starts.
+ *
+ * <p>Every ES256 (P-256) key entry in the keystore is a signing key, identified by its alias. The
+ * alias is used as the <tt>kid</tt> of the key in the JWKS and in the header of the tokens signed
+ * with it. JKS and PKCS12 keystores store aliases in lower case, so the active alias is matched
+ * ignoring case, and the <tt>kid</tt> is always the alias as stored in the keystore. Only the <em>active</em> key is used to sign new tokens, while all keys are used to
+ * verify tokens and are published in the JWKS. Keys can then be rotated without downtime:
+ *
+ * <ol>
+ *   <li>Add a new key entry to the keystore and restart. The new key is published in the JWKS.
+ *   <li>Once resource servers and APDs have picked up the new JWKS, make the new alias active and
+ *       restart. New tokens are signed with the new key.
+ *   <li>Once all tokens signed with the old key have expired, remove the old key entry.
+ * </ol>
+ *
+ * <p>The keys are immutable once loaded, so a single instance is shared by all instances of the
+ * Token Verticle.
+ */
+public class SigningKeys implements Shareable {
+
+  private static final Logger LOGGER = LogManager.getLogger(SigningKeys.class);
+
+  private final String activeKid;
+  private final PrivateKey activeKey;
+  private final Map<String, ECPublicKey> publicKeys;
+  private final JsonObject jwks;
+  private final String certificate;
+
+  /**
+   * Load the signing keys from the JWT keystore.
+   *
+   * @param vertx the Vert.x instance used to resolve the keystore path
+   * @param keystorePath path to the JKS keystore
+   * @param keystorePassword password of the keystore and its keys
+   * @param activeAlias alias of the key used to sign new tokens, in any case
+   * @return the signing keys
+   * @throws GeneralSecurityException if the keystore cannot be loaded or the active key is missing
+   */
+  public static SigningKeys load(
+      Vertx vertx, String keystorePath, String keystorePassword, String activeAlias)
+      throws GeneralSecurityException {
+    KeyStore ks;
+    try {
+      ks = new JksOptions().setPath(keystorePath).setPassword(keystorePassword).loadKeyStore(vertx);
+    } catch (Exception e) {
+      throw new GeneralSecurityException("Could not load JWT keystore", e);
+    }
+    return new SigningKeys(ks, keystorePassword, activeAlias);
+  }
+
+  SigningKeys(KeyStore ks, String keystorePassword, String activeAlias)
+      throws GeneralSecurityException {
+    char[] password = keystorePassword.toCharArray();
+    Map<String, ECPublicKey> keys = new LinkedHashMap<String, ECPublicKey>();
+    JsonArray jwkArray = new JsonArray();
+    String activeAliasInKs = null;
+    PrivateKey active = null;
+    Certificate activeCert = null;
+
+    for (String alias : Collections.list(ks.aliases())) {
+      if (!ks.isKeyEntry(alias)) {
+        continue;
+      }
+
+      Key key = ks.getKey(alias, password);
+      Certificate cert = ks.getCertificate(alias);
+      if (!(key instanceof ECPrivateKey)
+          || cert == null
+          || !(cert.getPublicKey() instanceof ECPublicKey)
+          || ((ECPublicKey) cert.getPublicKey()).getParams().getCurve().getField().getFieldSize()
+              != 256) {
+        LOGGER.warn("Ignoring keystore entry {}; not an ES256 key", alias);
+        continue;
+      }
+
+      keys.put(alias, (ECPublicKey) cert.getPublicKey());
+      try {
+        ECKey ecKey = ECKey.load(ks, alias, password);
+        jwkArray.add(
+            new JsonObject(
+                new ECKey.Builder(ecKey).keyID(alias).build().toPublicJWK().toJSONObject()));
+      } catch (JOSEException e) {
+        throw new GeneralSecurityException("Could not create JWK for alias " + alias, e);
+      }
+
+      if (alias.equalsIgnoreCase(activeAlias)) {
+        activeAliasInKs = alias;
+        active = (PrivateKey) key;
+        activeCert = cert;
+      }
+    }
+
+    if (active == null) {
+      throw new GeneralSecurityException("No ES256 key found for active alias " + activeAlias);
+    }
+
+    this.activeKid = activeAliasInKs;
+    this.activeKey = active;
+    this.publicKeys = Collections.unmodifiableMap(keys);
+    this.jwks = new JsonObject().put("keys", jwkArray);
+    this.certificate =
+        "-----BEGIN CERTIFICATE-----\n"
+            + Base64.getEncoder().encodeToString(activeCert.getEncoded())
+            + "\n-----END CERTIFICATE-----";
+
+    LOGGER.info("Loaded signing keys {}; active key {}", keys.keySet(), activeKid);
+  }
+
+  /**
+   * Get the <tt>kid</tt> of the key used to sign new tokens.
+   *
+   * @return the alias of the active key
+   */
+  public String activeKid() {
+    return activeKid;
+  }
+
+  /**
+   * Get the private key used to sign new tokens.
+   *
+   * @return the active private key
+   */
+  public PrivateKey activeKey() {
+    return activeKey;
+  }
+
+  /**
+   * Get the key options for a JWT provider that verifies tokens signed with any of the keys. Each
+   * key has its alias as ID, so that tokens are verified using the key named in their
+   * <tt>kid</tt> header.
+   *
+   * @return list of public key options
+   */
+  public List<PubSecKeyOptions> verificationKeys() {
+    Base64.Encoder mime = Base64.getMimeEncoder();
+    List<PubSecKeyOptions> options = new ArrayList<PubSecKeyOptions>();
+    for (Map.Entry<String, ECPublicKey> entry : publicKeys.entrySet()) {
+      PublicKey key = entry.getValue();
+      String pem =
+          "-----BEGIN PUBLIC KEY-----\n"
+              + mime.encodeToString(key.getEncoded())
+              + "\n-----END PUBLIC KEY-----";
+      options.add(
+          new PubSecKeyOptions().setAlgorithm(JWT_ALGORITHM).setId(entry.getKey()).setBuffer(pem));
+    }
+    return options;
+  }
+
+  /**
+   * Get the public keys as a JSON Web Key Set.
+   *
+   * @return the JWKS, with one key per alias
+   */
+  public JsonObject jwks() {
+    return jwks.copy();
+  }
+
+  /**
+   * Get the PEM encoded certificate of the active key.
+   *
+   * @return the certificate
+   */
+  public String certificate() {
+    return certificate;
+  }
+}
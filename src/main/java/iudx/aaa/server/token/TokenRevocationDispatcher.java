@@ -0,0 +1,320 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.*;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.util.EvictingCache;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Sends the token revocations recorded in the <tt>token_revocation_outbox</tt> table to resource
+ * servers and APDs in the background.
+ *
+ * <p>Due revocations are claimed in batches using <tt>FOR UPDATE SKIP LOCKED</tt>, so that several
+ * dispatchers (one per Token Verticle instance) never send the same revocation at the same time. A
+ * claimed revocation is leased for {@link Constants#REVOCATION_LEASE_MS}; if the dispatcher dies
+ * while sending it, it is picked up again once the lease expires. The revocations of a batch are
+ * grouped by server and sent with at most <tt>hostConcurrency</tt> concurrent requests per server,
+ * over keep-alive connections, using one admin token per server.
+ *
+ * <p>Each request to a server times out after <tt>requestTimeoutMs</tt>, which is shorter than the
+ * lease, so a server that accepts the connection but never answers does not stall the revocations
+ * of other servers. A timed out request counts as a failed attempt.
+ *
+ * <p>A revocation accepted by the server is deleted from the outbox. A failed revocation is retried
+ * with exponential backoff, starting at <tt>retryBaseMs</tt> and capped at <tt>retryMaxMs</tt>,
+ * and is marked as <tt>FAILED</tt> after <tt>maxAttempts</tt> attempts. If the user requests
+ * revocation again while a revocation is being sent, the outbox entry is reset and is not deleted
+ * or updated by the in-flight attempt.
+ *
+ * <p>The revocation carries the time at which the user last requested it, so that a revocation
+ * delivered after retries does not revoke tokens issued after the request. Once a server accepts a
+ * revocation, the identity tokens of the user for the server are evicted from the {@link
+ * IdentityTokenCache} on all instances again, since a server that revokes as of the time it
+ * receives the revocation also revokes tokens cached while it was being sent.
+ *
+ * <p>The number of revocations sent is exported through Micrometer as
+ * <tt>aaa.token.revocation.sent</tt>, tagged with the <tt>result</tt>, and the number of pending
+ * and failed revocations as <tt>aaa.token.revocation.outbox</tt>, tagged with the
+ * <tt>status</tt>. All metrics are tagged with the deployment ID of the verticle.
+ */
+public class TokenRevocationDispatcher {
+
+  private static final Logger LOGGER = LogManager.getLogger(TokenRevocationDispatcher.class);
+  private static final String METRICS_SENT = "aaa.token.revocation.sent";
+  private static final String METRICS_OUTBOX = "aaa.token.revocation.outbox";
+
+  private final Vertx vertx;
+  private final PgPool pgPool;
+  private final TokenRevokeService revokeService;
+  private final IdentityTokenCache identityTokenCache;
+  private final Function<String, Future<JsonObject>> adminTokens;
+
+  private final long pollIntervalMs;
+  private final int batchSize;
+  private final int hostConcurrency;
+  private final int maxAttempts;
+  private final long retryBaseMs;
+  private final long retryMaxMs;
+
+  private final Counter sentSuccess;
+  private final Counter sentFailure;
+  private final AtomicLong pendingCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+
+  private long timerId = -1;
+  private boolean running = false;
+
+  /**
+   * Create the dispatcher. The dispatcher must be created and started on the context of the
+   * verticle, since the admin tokens are signed on that context.
+   *
+   * @param vertx the Vert.x instance
+   * @param pgPool the Postgres pool
+   * @param revokeService the service used to send revocations to servers
+   * @param identityTokenCache the identity token cache, evicted once a revocation is accepted
+   * @param adminTokens function to get the auth server token for a server URL, as returned by
+   *     {@link TokenService#getAuthServerToken(String)}
+   * @param options the <tt>revocationOptions</tt> config object. Missing options take the default
+   *     values
+   */
+  public TokenRevocationDispatcher(
+      Vertx vertx,
+      PgPool pgPool,
+      TokenRevokeService revokeService,
+      IdentityTokenCache identityTokenCache,
+      Function<String, Future<JsonObject>> adminTokens,
+      JsonObject options) {
+    this.vertx = vertx;
+    this.pgPool = pgPool;
+    this.revokeService = revokeService;
+    this.identityTokenCache = identityTokenCache;
+    this.adminTokens = adminTokens;
+
+    pollIntervalMs =
+        options.getLong(REVOCATION_POLL_INTERVAL_MS, DEFAULT_REVOCATION_POLL_INTERVAL_MS);
+    batchSize = options.getInteger(REVOCATION_BATCH_SIZE, DEFAULT_REVOCATION_BATCH_SIZE);
+    hostConcurrency =
+        options.getInteger(REVOCATION_HOST_CONCURRENCY, DEFAULT_REVOCATION_HOST_CONCURRENCY);
+    maxAttempts = options.getInteger(REVOCATION_MAX_ATTEMPTS, DEFAULT_REVOCATION_MAX_ATTEMPTS);
+    retryBaseMs = options.getLong(REVOCATION_RETRY_BASE_MS, DEFAULT_REVOCATION_RETRY_BASE_MS);
+    retryMaxMs = options.getLong(REVOCATION_RETRY_MAX_MS, DEFAULT_REVOCATION_RETRY_MAX_MS);
+
+    if (pollIntervalMs <= 0
+        || batchSize <= 0
+        || hostConcurrency <= 0
+        || maxAttempts <= 0
+        || retryBaseMs <= 0
+        || retryMaxMs < retryBaseMs) {
+      throw new IllegalArgumentException("Invalid token revocation configuration");
+    }
+
+    MeterRegistry registry = EvictingCache.meterRegistry();
+
+    /* meters with the same tags are shared, so the instances of a deployment add up their counts */
+    String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+    sentSuccess =
+        Counter.builder(METRICS_SENT)
+            .tag("result", "success")
+            .tag("deployment", deploymentId)
+            .register(registry);
+    sentFailure =
+        Counter.builder(METRICS_SENT)
+            .tag("result", "failure")
+            .tag("deployment", deploymentId)
+            .register(registry);
+    Gauge.builder(METRICS_OUTBOX, pendingCount, AtomicLong::get)
+        .tag("status", "pending")
+        .tag("deployment", deploymentId)
+        .register(registry);
+    Gauge.builder(METRICS_OUTBOX, failedCount, AtomicLong::get)
+        .tag("status", "failed")
+        .tag("deployment", deploymentId)
+        .register(registry);
+  }
+
+  /** Start polling the outbox for due revocations. */
+  public void start() {
+    timerId = vertx.setPeriodic(pollIntervalMs, id -> poll());
+  }
+
+  /** Stop polling the outbox. Revocations being sent are leased and retried later if required. */
+  public void stop() {
+    if (timerId != -1) {
+      vertx.cancelTimer(timerId);
+      timerId = -1;
+    }
+  }
+
+  private void poll() {
+    /* a slow cycle must not overlap with the next one */
+    if (running) {
+      return;
+    }
+    running = true;
+
+    dispatch()
+        .compose(claimed -> updateCounts().map(claimed))
+        .onComplete(
+            res -> {
+              running = false;
+              if (res.failed()) {
+                LOGGER.error(
+                    "Fail: Token revocation dispatch failed; {}", res.cause().getMessage());
+                return;
+              }
+
+              /* a full batch means there may be more due revocations; don't wait for the timer */
+              if (res.result() == batchSize && timerId != -1) {
+                vertx.runOnContext(v -> poll());
+              }
+            });
+  }
+
+  /**
+   * Claim a batch of due revocations and send them.
+   *
+   * @return a future with the number of revocations claimed. The future fails only if the outbox
+   *     could not be read or updated
+   */
+  Future<Integer> dispatch() {
+    return pgPool
+        .preparedQuery(SQL_CLAIM_REVOCATIONS)
+        .execute(Tuple.of(batchSize, REVOCATION_LEASE_MS))
+        .compose(
+            rows -> {
+              Map<String, Deque<Row>> byServer = new LinkedHashMap<String, Deque<Row>>();
+              for (Row row : rows) {
+                byServer.computeIfAbsent(row.getString(URL), url -> new ArrayDeque<Row>()).add(row);
+              }
+
+              @SuppressWarnings("rawtypes")
+              List<Future> servers = new ArrayList<Future>();
+              byServer.forEach((url, pending) -> servers.add(sendToServer(url, pending)));
+
+              return CompositeFuture.all(servers).map(rows.rowCount());
+            });
+  }
+
+  private Future<Void> sendToServer(String url, Deque<Row> pending) {
+    return adminTokens
+        .apply(url)
+        .compose(
+            token -> {
+              String adminToken = token.getString(ACCESS_TOKEN);
+              int workers = Math.min(hostConcurrency, pending.size());
+
+              @SuppressWarnings("rawtypes")
+              List<Future> futures = new ArrayList<Future>();
+              for (int i = 0; i < workers; i++) {
+                futures.add(sendNext(url, adminToken, pending));
+              }
+              return CompositeFuture.all(futures).<Void>mapEmpty();
+            });
+  }
+
+  /**
+   * Send the pending revocations of a server one after another. Several of these run concurrently
+   * for a server, taking revocations from the same queue.
+   */
+  private Future<Void> sendNext(String url, String adminToken, Deque<Row> pending) {
+    Row row = pending.poll();
+    if (row == null) {
+      return Future.succeededFuture();
+    }
+
+    JsonObject request =
+        new JsonObject()
+            .put(USER_ID, row.getUUID("user_id").toString())
+            .put(RS_URL, url)
+            .put(RS_REVOKE_BODY_REQUESTED_AT, row.getLong("requested_at_epoch"));
+
+    return revokeService
+        .httpRevokeRequest(request, adminToken)
+        .compose(sent -> onSent(row), err -> onFailed(row, err))
+        .compose(v -> sendNext(url, adminToken, pending));
+  }
+
+  private Future<Void> onSent(Row row) {
+    sentSuccess.increment();
+    LOGGER.info(LOG_REVOKE_REQ);
+    identityTokenCache.invalidate(row.getUUID("user_id").toString(), row.getString(URL));
+    return pgPool
+        .preparedQuery(SQL_DELETE_REVOCATION)
+        .execute(Tuple.of(row.getUUID("id"), row.getLocalDateTime("requested_at")))
+        .mapEmpty();
+  }
+
+  private Future<Void> onFailed(Row row, Throwable err) {
+    sentFailure.increment();
+    int attempts = row.getInteger("attempts");
+    String error = String.valueOf(err.getMessage());
+    Tuple tuple = Tuple.of(row.getUUID("id"), row.getLocalDateTime("requested_at"));
+
+    if (attempts >= maxAttempts) {
+      LOGGER.error(
+          "Fail: {} on {} after {} attempts; {}",
+          FAILED_REVOKE,
+          row.getString(URL),
+          attempts,
+          error);
+      return pgPool.preparedQuery(SQL_FAIL_REVOCATION).execute(tuple.addString(error)).mapEmpty();
+    }
+
+    LOGGER.warn("Fail: {} on {}, will retry; {}", FAILED_REVOKE, row.getString(URL), error);
+    return pgPool
+        .preparedQuery(SQL_RETRY_REVOCATION)
+        .execute(tuple.addLong(retryDelay(attempts)).addString(error))
+        .mapEmpty();
+  }
+
+  /**
+   * Get the delay before the next attempt of a revocation.
+   *
+   * @param attempts the number of attempts made so far
+   * @return the delay in milliseconds
+   */
+  long retryDelay(int attempts) {
+    int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+    return Math.min(retryMaxMs, retryBaseMs * (1L << doublings));
+  }
+
+  private Future<Void> updateCounts() {
+    return pgPool
+        .query(SQL_COUNT_REVOCATIONS)
+        .execute()
+        .map(
+            rows -> {
+              long pending = 0;
+              long failed = 0;
+              for (Row row : rows) {
+                if ("PENDING".equals(row.getString(STATUS))) {
+                  pending = row.getLong("count");
+                } else {
+                  failed = row.getLong("count");
+                }
+              }
+              pendingCount.set(pending);
+              failedCount.set(failed);
+              return null;
+            });
+  }
+}
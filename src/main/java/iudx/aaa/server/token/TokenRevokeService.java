@@ -18,6 +18,7 @@ import org.apache.logging.log4j.Logger;
 public class TokenRevokeService {
   private static final Logger LOGGER = LogManager.getLogger(TokenRevokeService.class);
   private WebClient client;
+  private final long requestTimeoutMs;
 
   /**
    * Constructor initializing WebClient.
@@ -25,17 +26,56 @@ public class TokenRevokeService {
    * @param vertx which is a Vert.x instance
    */
   public TokenRevokeService(Vertx vertx) {
+    this(vertx, DEFAULT_REVOCATION_HOST_CONCURRENCY);
+  }
+
+  /**
+   * Constructor initializing WebClient with a bounded pool of keep-alive connections per server.
+   *
+   * @param vertx which is a Vert.x instance
+   * @param hostConcurrency maximum number of connections to a single server
+   */
+  public TokenRevokeService(Vertx vertx, int hostConcurrency) {
+    this(vertx, hostConcurrency, DEFAULT_REVOCATION_REQUEST_TIMEOUT_MS);
+  }
+
+  /**
+   * Constructor initializing WebClient with a bounded pool of keep-alive connections per server and
+   * a timeout for each revocation request. The timeout must be shorter than {@link
+   * Constants#REVOCATION_LEASE_MS}, so that a server that does not answer cannot hold up the
+   * revocations of other servers past their lease.
+   *
+   * @param vertx which is a Vert.x instance
+   * @param hostConcurrency maximum number of connections to a single server
+   * @param requestTimeoutMs time in milliseconds after which a request that has received no
+   *     response fails
+   */
+  public TokenRevokeService(Vertx vertx, int hostConcurrency, long requestTimeoutMs) {
+    if (requestTimeoutMs <= 0 || requestTimeoutMs >= REVOCATION_LEASE_MS) {
+      throw new IllegalArgumentException("Invalid token revocation request timeout");
+    }
+    this.requestTimeoutMs = requestTimeoutMs;
 
     WebClientOptions clientOptions =
-        new WebClientOptions().setSsl(true).setVerifyHost(true).setTrustAll(false);
+        new WebClientOptions()
+            .setSsl(true)
+            .setVerifyHost(true)
+            .setTrustAll(false)
+            .setKeepAlive(true)
+            .setMaxPoolSize(hostConcurrency)
+            .setConnectTimeout(REVOCATION_CONNECT_TIMEOUT_MS)
+            .setIdleTimeout(REVOCATION_IDLE_TIMEOUT_SECONDS);
 
     this.client = WebClient.create(vertx, clientOptions);
   }
 
   /**
-   * Handles token revocation
+   * Handles token revocation. The time at which the user requested the revocation is sent along, so
+   * that a delayed or retried delivery revokes only the tokens issued before the request. A server
+   * that does not read the time revokes the tokens issued before it receives the request.
    *
-   * @param request is a JSON object containing the user ID and URL of server to revoke at
+   * @param request is a JSON object containing the user ID and URL of server to revoke at, and
+   *     optionally the time of the revocation request in epoch seconds
    * @param adminToken is the admin token to be presented at the server
    * @return Future of type JsonObject
    */
@@ -46,6 +86,9 @@ public class TokenRevokeService {
 
     JsonObject rsPayload = new JsonObject();
     rsPayload.put(RS_REVOKE_BODY_SUB, request.getString(USER_ID));
+    if (request.containsKey(RS_REVOKE_BODY_REQUESTED_AT)) {
+      rsPayload.put(RS_REVOKE_BODY_REQUESTED_AT, request.getLong(RS_REVOKE_BODY_REQUESTED_AT));
+    }
 
     request.put(BODY, rsPayload).put(URI, RS_REVOKE_URI);
 
@@ -82,6 +125,7 @@ public class TokenRevokeService {
     client
         .request(HttpMethod.POST, options)
         .putHeader(TOKEN, token)
+        .timeout(requestTimeoutMs)
         .expect(ResponsePredicate.SC_OK)
         .expect(ResponsePredicate.JSON)
         .sendJsonObject(body)
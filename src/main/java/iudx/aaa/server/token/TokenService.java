@@ -11,6 +11,7 @@ import iudx.aaa.server.apiserver.IntrospectToken;
 import iudx.aaa.server.apiserver.RequestToken;
 import iudx.aaa.server.apiserver.RevokeToken;
 import iudx.aaa.server.apiserver.User;
+import java.util.List;
 
 /**
  * The Token Service.
@@ -53,7 +54,24 @@ public interface TokenService {
       RequestToken requestToken, DelegationInformation delegationInfo, User user);
 
   /**
-   * The revokeToken implements the token revocation operation.
+   * Create tokens for a batch of items for the same user, role and delegation. The items are
+   * resolved concurrently, with a bounded number of items being processed at a time. The
+   * <i>results</i> array of the response has, for each item in the same order as the request, the
+   * same JSON object that {@link #createToken(RequestToken, DelegationInformation, User)} would
+   * have returned (including the <i>status</i> field) along with the <i>itemId</i>. So a result may
+   * be a token, an APD interaction error with an APD token, or an error.
+   *
+   * @param requestTokens list of RequestToken objects
+   * @param delegationInfo which contains info if delegate called the API, else is null
+   * @param user which is User Object
+   * @return Future of type JsonObject
+   */
+  Future<JsonObject> createTokens(
+      List<RequestToken> requestTokens, DelegationInformation delegationInfo, User user);
+
+  /**
+   * The revokeToken implements the token revocation operation. The revocation is recorded and sent
+   * to the resource server/APD in the background, retrying until the server accepts it.
    *
    * @param revokeToken which is a RevokeToken Object
    * @param user which is User Object
@@ -61,6 +79,15 @@ public interface TokenService {
    */
   Future<JsonObject> revokeToken(RevokeToken revokeToken, User user);
 
+  /**
+   * List the token revocations of the user that have not yet been accepted by the resource
+   * server/APD, i.e. revocations that are pending or that have failed after all retries.
+   *
+   * @param user which is User Object
+   * @return Future of type JsonObject
+   */
+  Future<JsonObject> listRevocations(User user);
+
   /**
    * The validateToken implements the token validation / introspect operation with the database.
    *
@@ -69,6 +96,18 @@ public interface TokenService {
    */
   Future<JsonObject> validateToken(IntrospectToken introspectToken);
 
+  /**
+   * Introspect a batch of tokens. The tokens are verified concurrently and the user information
+   * for all identity tokens in the batch is fetched using a single call. The <i>results</i> array
+   * of the response has, for each token in the same order as the request, the same JSON object
+   * that {@link #validateToken(IntrospectToken)} would have returned (including the
+   * <i>status</i> field).
+   *
+   * @param introspectTokens list of IntrospectToken objects
+   * @return Future of type JsonObject
+   */
+  Future<JsonObject> validateTokens(List<IntrospectToken> introspectTokens);
+
   /**
    * Get an auth server JWT token. This token is used by the Auth server when calling other servers
    * to authenticate itself.
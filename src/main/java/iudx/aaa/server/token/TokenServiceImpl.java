@@ -5,11 +5,11 @@ import static iudx.aaa.server.registration.Constants.ERR_DETAIL_NO_APPROVED_ROLE
 import static iudx.aaa.server.registration.Constants.ERR_TITLE_NO_APPROVED_ROLES;
 import static iudx.aaa.server.token.Constants.*;
 
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.auth.JWTOptions;
 import io.vertx.ext.auth.authentication.TokenCredentials;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.pgclient.PgPool;
@@ -25,9 +25,14 @@ import iudx.aaa.server.apiserver.RevokeToken;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -47,22 +52,34 @@ public class TokenServiceImpl implements TokenService {
   private static final Logger LOGGER = LogManager.getLogger(TokenServiceImpl.class);
 
   private PgPool pgPool;
+  private ServerRegistry serverRegistry;
   private JWTAuth provider;
   private PolicyService policyService;
   private RegistrationService registrationService;
-  private TokenRevokeService revokeService;
+  private TokenSigner signer;
+  private IdentityTokenCache identityTokenCache;
+  private VerifiedTokenCache verifiedTokenCache;
+  private int batchTokenConcurrency;
 
   public TokenServiceImpl(
       PgPool pgPool,
+      ServerRegistry serverRegistry,
       PolicyService policyService,
       RegistrationService registrationService,
       JWTAuth provider,
-      TokenRevokeService revokeService) {
+      TokenSigner signer,
+      IdentityTokenCache identityTokenCache,
+      VerifiedTokenCache verifiedTokenCache,
+      int batchTokenConcurrency) {
     this.pgPool = pgPool;
+    this.serverRegistry = serverRegistry;
     this.policyService = policyService;
     this.registrationService = registrationService;
     this.provider = provider;
-    this.revokeService = revokeService;
+    this.signer = signer;
+    this.identityTokenCache = identityTokenCache;
+    this.verifiedTokenCache = verifiedTokenCache;
+    this.batchTokenConcurrency = batchTokenConcurrency;
   }
 
   /** {@inheritDoc} */
@@ -119,17 +136,7 @@ public class TokenServiceImpl implements TokenService {
       return promiseHandler.future();
     }
 
-    if (itemType.equals(ItemType.RESOURCE_GROUP)) {
-      Response r =
-          new ResponseBuilder()
-              .status(403)
-              .type(URN_INVALID_INPUT)
-              .title(ERR_TITLE_NO_RES_GRP_TOKEN)
-              .detail(ERR_DETAIL_NO_RES_GRP_TOKEN)
-              .build();
-      promiseHandler.complete(r.toJson());
-      return promiseHandler.future();
-    } else if (itemType.equals(ItemType.COS)) {
+    if (itemType.equals(ItemType.COS)) {
       if (!request.getRole().equals(Roles.COS_ADMIN)) {
         Response r =
             new ResponseBuilder()
@@ -168,15 +175,33 @@ public class TokenServiceImpl implements TokenService {
               .build();
       promiseHandler.complete(resp.toJson());
     } else if (itemType.equals(ItemType.RESOURCE_SERVER)) {
-      Future<JsonObject> checkIdenToken =
-          validateForIdentityToken(request.getItemId(), role, delegationInfo, user);
+      String rsUrl = request.getItemId();
+      IdentityTokenCache.Key cacheKey =
+          IdentityTokenCache.key(user.getUserId(), role, rsUrl, delegationInfo);
+      JsonObject cachedJwt = identityTokenCache.get(cacheKey);
+
+      Future<JsonObject> identityToken;
+      if (cachedJwt != null) {
+        /* authorization is checked again in case the user's roles or delegations have changed */
+        identityToken =
+            authorizeIdentityToken(rsUrl, role, delegationInfo, user)
+                .onFailure(fail -> identityTokenCache.invalidate(cacheKey))
+                .map(authorized -> cachedJwt);
+      } else {
+        identityToken =
+            validateForIdentityToken(rsUrl, role, delegationInfo, user)
+                .map(
+                    result -> {
+                      jsonRequest.mergeIn(result, true);
+                      JsonObject jwt = getJwt(jsonRequest);
+                      identityTokenCache.put(cacheKey, jwt);
+                      return jwt;
+                    });
+      }
 
-      checkIdenToken
+      identityToken
           .onSuccess(
-              result -> {
-                jsonRequest.mergeIn(result, true);
-                JsonObject jwt = getJwt(jsonRequest);
-
+              jwt -> {
                 LOGGER.info(LOG_TOKEN_SUCC);
 
                 Response resp =
@@ -199,8 +224,9 @@ public class TokenServiceImpl implements TokenService {
                 LOGGER.error(fail.getMessage());
                 promiseHandler.fail("Internal error");
               });
-    } else if (itemType.equals(ItemType.RESOURCE)) {
+    } else if (itemType.equals(ItemType.RESOURCE) || itemType.equals(ItemType.RESOURCE_GROUP)) {
 
+      /* a resource group token is evaluated once for the group, its iid is the group ID */
       policyService
           .verifyResourceAccess(request, delegationInfo, user)
           .onSuccess(
@@ -252,6 +278,93 @@ public class TokenServiceImpl implements TokenService {
     return promiseHandler.future();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> createTokens(
+      List<RequestToken> requests, DelegationInformation delegationInfo, User user) {
+    LOGGER.debug(REQ_RECEIVED);
+
+    Promise<JsonObject> promiseHandler = Promise.promise();
+
+    /* each worker takes the next pending item once its current item completes */
+    JsonObject[] results = new JsonObject[requests.size()];
+    Deque<Integer> pending = new ArrayDeque<Integer>();
+    for (int i = 0; i < requests.size(); i++) {
+      pending.add(i);
+    }
+
+    @SuppressWarnings("rawtypes")
+    List<Future> workers = new ArrayList<Future>();
+    int workerCount = Math.max(1, Math.min(batchTokenConcurrency, requests.size()));
+    for (int i = 0; i < workerCount; i++) {
+      workers.add(createTokensWorker(requests, pending, results, delegationInfo, user));
+    }
+
+    CompositeFuture.all(workers)
+        .onSuccess(
+            done -> {
+              Response resp =
+                  new ResponseBuilder()
+                      .status(200)
+                      .type(URN_SUCCESS)
+                      .title(TOKENS_PROCESSED)
+                      .arrayResults(new JsonArray(List.of(results)))
+                      .build();
+              promiseHandler.complete(resp.toJson());
+            })
+        .onFailure(
+            fail -> {
+              LOGGER.error(fail.getMessage());
+              promiseHandler.fail("Internal error");
+            });
+
+    return promiseHandler.future();
+  }
+
+  /**
+   * Create tokens for items taken from the pending queue one after the other, until the queue is
+   * empty. All callbacks run on the verticle's event loop, so the queue is not shared across
+   * threads.
+   *
+   * @param requests the token requests of the batch
+   * @param pending the indices of the requests that have not been picked up yet
+   * @param results the array in which the response for each request is set
+   * @param delegationInfo the delegation information, if any
+   * @param user the user
+   * @return a Future that completes once the queue is empty. An item that fails with an internal
+   *     error gets an error response in the results
+   */
+  private Future<Void> createTokensWorker(
+      List<RequestToken> requests,
+      Deque<Integer> pending,
+      JsonObject[] results,
+      DelegationInformation delegationInfo,
+      User user) {
+    Integer index = pending.poll();
+    if (index == null) {
+      return Future.succeededFuture();
+    }
+
+    RequestToken request = requests.get(index);
+    return createToken(request, delegationInfo, user)
+        .recover(
+            err -> {
+              /* an internal error fails only this item, the rest of the batch is still processed */
+              Response resp =
+                  new ResponseBuilder()
+                      .status(500)
+                      .title(INTERNAL_SVR_ERR)
+                      .detail(INTERNAL_SVR_ERR)
+                      .build();
+              return Future.succeededFuture(resp.toJson());
+            })
+        .compose(
+            result -> {
+              results[index] = result.put(ITEM_ID, request.getItemId());
+              return createTokensWorker(requests, pending, results, delegationInfo, user);
+            });
+  }
+
   /** {@inheritDoc} */
   @Override
   public Future<JsonObject> revokeToken(RevokeToken revokeToken, User user) {
@@ -287,9 +400,8 @@ public class TokenServiceImpl implements TokenService {
       return promiseHandler.future();
     }
 
-    Tuple tuple = Tuple.of(rsUrl);
-
-    pgSelelctQuery(GET_URL, tuple)
+    serverRegistry
+        .isResourceServerOrActiveApd(rsUrl)
         .onComplete(
             dbHandler -> {
               if (dbHandler.failed()) {
@@ -299,8 +411,7 @@ public class TokenServiceImpl implements TokenService {
               }
 
               if (dbHandler.succeeded()) {
-                JsonObject dbExistsRow = dbHandler.result().getJsonObject(0);
-                boolean flag = dbExistsRow.getBoolean(EXISTS);
+                boolean flag = dbHandler.result();
 
                 if (flag == Boolean.FALSE) {
                   LOGGER.error("Fail: {}", ERR_TITLE_INVALID_RS);
@@ -316,54 +427,33 @@ public class TokenServiceImpl implements TokenService {
                 }
                 LOGGER.debug("Info: ResourceServer URL validated");
 
-                JsonObject revokePayload =
-                    new JsonObject()
-                        .put(USER_ID, user.getUserId())
-                        .put(RS_URL, revokeToken.getRsUrl());
-
-                /* Here, we get the special admin token that is presented to other servers for token
-                 * revocation. The 'sub' field is the auth server domain instead of a UUID user ID.
-                 * The 'iss' field is the auth server domain as usual and 'aud' is the requested
-                 * resource server domain. The rest of the field are not important, so they are
-                 * either null or blank.
+                /* The revocation is sent to the server in the background by the
+                 * TokenRevocationDispatcher, which retries until the server accepts it. Repeated
+                 * requests for the same server are coalesced into a single outbox entry.
                  */
-
-                JsonObject adminTokenReq =
-                    new JsonObject()
-                        .put(USER_ID, CLAIM_ISSUER)
-                        .put(URL, rsUrl)
-                        .put(ROLE, "")
-                        .put(ITEM_TYPE, "")
-                        .put(ITEM_ID, "");
-                String adminToken = getJwt(adminTokenReq).getString(ACCESS_TOKEN);
-
-                revokeService
-                    .httpRevokeRequest(revokePayload, adminToken)
+                pgPool
+                    .preparedQuery(SQL_ENQUEUE_REVOCATION)
+                    .execute(Tuple.of(user.getUserId(), rsUrl))
                     .onComplete(
                         result -> {
-                          if (result.succeeded()) {
-                            LOGGER.info(LOG_REVOKE_REQ);
-                            Response resp =
-                                new ResponseBuilder()
-                                    .status(200)
-                                    .type(URN_SUCCESS)
-                                    .title(TOKEN_REVOKED)
-                                    .arrayResults(new JsonArray())
-                                    .build();
-                            promiseHandler.complete(resp.toJson());
-                            return;
-                          } else {
-                            LOGGER.error("Fail: {}; {}", FAILED_REVOKE, result.cause());
-                            Response resp =
-                                new ResponseBuilder()
-                                    .status(400)
-                                    .type(URN_INVALID_INPUT)
-                                    .title(FAILED_REVOKE)
-                                    .detail(FAILED_REVOKE)
-                                    .build();
-                            promiseHandler.complete(resp.toJson());
+                          if (result.failed()) {
+                            LOGGER.error(LOG_DB_ERROR, result.cause());
+                            promiseHandler.fail(INTERNAL_SVR_ERR);
                             return;
                           }
+
+                          LOGGER.info("Info: Token revocation recorded for {}", rsUrl);
+                          /* identity tokens issued before revocation must not be handed out. They
+                           * are evicted again once the server accepts the revocation */
+                          identityTokenCache.invalidate(user.getUserId(), rsUrl);
+                          Response resp =
+                              new ResponseBuilder()
+                                  .status(200)
+                                  .type(URN_SUCCESS)
+                                  .title(TOKEN_REVOKE_REQUESTED)
+                                  .arrayResults(new JsonArray())
+                                  .build();
+                          promiseHandler.complete(resp.toJson());
                         });
               }
             });
@@ -371,6 +461,47 @@ public class TokenServiceImpl implements TokenService {
     return promiseHandler.future();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> listRevocations(User user) {
+
+    LOGGER.debug(REQ_RECEIVED);
+    Promise<JsonObject> promiseHandler = Promise.promise();
+
+    pgPool
+        .preparedQuery(SQL_GET_REVOCATIONS_OF_USER)
+        .execute(Tuple.of(user.getUserId()))
+        .onSuccess(
+            rows -> {
+              JsonArray revocations = new JsonArray();
+              for (Row row : rows) {
+                revocations.add(
+                    new JsonObject()
+                        .put(RS_URL, row.getString(URL))
+                        .put(STATUS, row.getString(STATUS).toLowerCase())
+                        .put(ATTEMPTS, row.getInteger(ATTEMPTS))
+                        .put(REQUESTED_AT, row.getLocalDateTime("requested_at").toString())
+                        .put(NEXT_ATTEMPT_AT, row.getLocalDateTime("next_attempt_at").toString()));
+              }
+
+              Response resp =
+                  new ResponseBuilder()
+                      .status(200)
+                      .type(URN_SUCCESS)
+                      .title(TOKEN_REVOCATIONS)
+                      .arrayResults(revocations)
+                      .build();
+              promiseHandler.complete(resp.toJson());
+            })
+        .onFailure(
+            err -> {
+              LOGGER.error(LOG_DB_ERROR, err);
+              promiseHandler.fail(INTERNAL_SVR_ERR);
+            });
+
+    return promiseHandler.future();
+  }
+
   /** {@inheritDoc} */
   @Override
   public Future<JsonObject> validateToken(IntrospectToken introspectToken) {
@@ -378,7 +509,103 @@ public class TokenServiceImpl implements TokenService {
     LOGGER.debug(REQ_RECEIVED);
     Promise<JsonObject> promiseHandler = Promise.promise();
 
-    String accessToken = introspectToken.getAccessToken();
+    verifyToken(introspectToken.getAccessToken())
+        .compose(tokenJson -> addUserInfoToIntrospect(tokenJson))
+        .onSuccess(res -> promiseHandler.complete(introspectSuccess(res)))
+        .onFailure(
+            fail -> {
+              if (fail instanceof ComposeException) {
+                ComposeException exp = (ComposeException) fail;
+                promiseHandler.complete(exp.getResponse().toJson());
+                return;
+              }
+              LOGGER.error(fail.getMessage());
+              promiseHandler.fail("Internal error");
+            });
+
+    return promiseHandler.future();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Future<JsonObject> validateTokens(List<IntrospectToken> introspectTokens) {
+
+    LOGGER.debug(REQ_RECEIVED);
+    Promise<JsonObject> promiseHandler = Promise.promise();
+
+    List<Future<JsonObject>> verified =
+        introspectTokens.stream()
+            .map(token -> verifyToken(token.getAccessToken()))
+            .collect(Collectors.toList());
+
+    /* join waits for all the verifications to complete, even if some have failed */
+    @SuppressWarnings("rawtypes")
+    List<Future> futures = new ArrayList<Future>(verified);
+    Future<JsonObject> userInfo =
+        CompositeFuture.join(futures)
+            .transform(
+                allVerified -> {
+                  List<String> userIds =
+                      verified.stream()
+                          .filter(Future::succeeded)
+                          .map(Future::result)
+                          .filter(this::isIdentityToken)
+                          .map(decodedToken -> decodedToken.getString(SUB))
+                          .distinct()
+                          .collect(Collectors.toList());
+
+                  /* a single call for the user details of all identity tokens in the batch */
+                  return registrationService.getUserDetails(userIds);
+                });
+
+    userInfo
+        .onSuccess(
+            details -> {
+              JsonArray results = new JsonArray();
+              for (Future<JsonObject> token : verified) {
+                if (token.succeeded()) {
+                  JsonObject decodedToken = token.result();
+                  if (isIdentityToken(decodedToken)) {
+                    decodedToken.put(
+                        INTROSPECT_USERINFO, details.getJsonObject(decodedToken.getString(SUB)));
+                  }
+                  results.add(introspectSuccess(decodedToken));
+                } else if (token.cause() instanceof ComposeException) {
+                  results.add(((ComposeException) token.cause()).getResponse().toJson());
+                } else {
+                  LOGGER.error(token.cause().getMessage());
+                  promiseHandler.fail("Internal error");
+                  return;
+                }
+              }
+
+              Response resp =
+                  new ResponseBuilder()
+                      .status(200)
+                      .type(URN_SUCCESS)
+                      .title(TOKENS_INTROSPECTED)
+                      .arrayResults(results)
+                      .build();
+              promiseHandler.complete(resp.toJson());
+            })
+        .onFailure(
+            fail -> {
+              LOGGER.error(fail.getMessage());
+              promiseHandler.fail("Internal error");
+            });
+
+    return promiseHandler.future();
+  }
+
+  /**
+   * Verify a token issued by the AAA server and decode it. Tokens that have already been verified
+   * are served from the {@link VerifiedTokenCache}.
+   *
+   * @param accessToken the JWT
+   * @return Future of the decoded token. Fails with a ComposeException if the token is missing or
+   *     invalid
+   */
+  private Future<JsonObject> verifyToken(String accessToken) {
     if (accessToken == null || accessToken.isBlank()) {
       LOGGER.error(LOG_PARSE_TOKEN);
       Response resp =
@@ -388,8 +615,13 @@ public class TokenServiceImpl implements TokenService {
               .title(MISSING_TOKEN)
               .detail(MISSING_TOKEN)
               .build();
-      promiseHandler.complete(resp.toJson());
-      return promiseHandler.future();
+      return Future.failedFuture(new ComposeException(resp));
+    }
+
+    /* A token that was verified earlier and has not expired does not need to be verified again */
+    JsonObject cachedToken = verifiedTokenCache.get(accessToken);
+    if (cachedToken != null) {
+      return Future.succeededFuture(cachedToken);
     }
 
     TokenCredentials authInfo = new TokenCredentials(accessToken);
@@ -399,52 +631,54 @@ public class TokenServiceImpl implements TokenService {
      * if not. Here, if it returns a failed future, we catch it using `recover` and create a
      * ComposeException so that the normal compose chain can work.
      */
-    Future<JsonObject> decodedToken =
-        provider
-            .authenticate(authInfo)
-            .recover(
-                jwtError -> {
-                  LOGGER.error("Fail: {}; {}", TOKEN_FAILED, jwtError.getLocalizedMessage());
-                  Response resp =
-                      new ResponseBuilder()
-                          .status(401)
-                          .type(URN_INVALID_AUTH_TOKEN)
-                          .title(TOKEN_FAILED)
-                          .arrayResults(new JsonArray().add(new JsonObject().put(STATUS, DENY)))
-                          .build();
-                  return Future.failedFuture(new ComposeException(resp));
-                })
-            .compose(
-                jwtDetails -> {
-                  JsonObject accessTokenJwt = jwtDetails.attributes().getJsonObject(ACCESS_TOKEN);
-                  return Future.succeededFuture(accessTokenJwt);
-                });
-
-    decodedToken
-        .compose(tokenJson -> addUserInfoToIntrospect(tokenJson))
-        .onSuccess(
-            res -> {
+    return provider
+        .authenticate(authInfo)
+        .recover(
+            jwtError -> {
+              LOGGER.error("Fail: {}; {}", TOKEN_FAILED, jwtError.getLocalizedMessage());
               Response resp =
                   new ResponseBuilder()
-                      .status(200)
-                      .type(URN_SUCCESS)
-                      .title(TOKEN_AUTHENTICATED)
-                      .objectResults(res)
+                      .status(401)
+                      .type(URN_INVALID_AUTH_TOKEN)
+                      .title(TOKEN_FAILED)
+                      .arrayResults(new JsonArray().add(new JsonObject().put(STATUS, DENY)))
                       .build();
-              promiseHandler.complete(resp.toJson());
+              return Future.failedFuture(new ComposeException(resp));
             })
-        .onFailure(
-            fail -> {
-              if (fail instanceof ComposeException) {
-                ComposeException exp = (ComposeException) fail;
-                promiseHandler.complete(exp.getResponse().toJson());
-                return;
-              }
-              LOGGER.error(fail.getMessage());
-              promiseHandler.fail("Internal error");
+        .compose(
+            jwtDetails -> {
+              JsonObject accessTokenJwt = jwtDetails.attributes().getJsonObject(ACCESS_TOKEN);
+              verifiedTokenCache.put(accessToken, accessTokenJwt);
+              return Future.succeededFuture(accessTokenJwt);
             });
+  }
 
-    return promiseHandler.future();
+  /**
+   * Create the introspection success response for a decoded token.
+   *
+   * @param decodedToken the decoded token, with user info if applicable
+   * @return the response JSON
+   */
+  private JsonObject introspectSuccess(JsonObject decodedToken) {
+    return new ResponseBuilder()
+        .status(200)
+        .type(URN_SUCCESS)
+        .title(TOKEN_AUTHENTICATED)
+        .objectResults(decodedToken)
+        .build()
+        .toJson();
+  }
+
+  /**
+   * Check if a decoded token is an identity token, i.e. the <tt>iid</tt> is like
+   * 'rs:server.url'.
+   *
+   * @param decodedToken the decoded JWT token
+   * @return true if the token is an identity token
+   */
+  private boolean isIdentityToken(JsonObject decodedToken) {
+    String[] iidParts = decodedToken.getString(IID, "").split(":");
+    return iidParts.length == 2 && iidParts[0].equals(ITEM_TYPE_MAP.inverse().get(RESOURCE_SVR));
   }
 
   /**
@@ -459,11 +693,9 @@ public class TokenServiceImpl implements TokenService {
    */
   private Future<JsonObject> addUserInfoToIntrospect(JsonObject decodedToken) {
     Promise<JsonObject> promise = Promise.promise();
-    String tokenIid = decodedToken.getString(IID, "");
-    String[] iidParts = tokenIid.split(":");
 
-    /* We only send userinfo for identity tokens now. Checking if `iid` is like 'rs:server.url' */
-    if (iidParts.length != 2 || !iidParts[0].equals(ITEM_TYPE_MAP.inverse().get(RESOURCE_SVR))) {
+    /* We only send userinfo for identity tokens now */
+    if (!isIdentityToken(decodedToken)) {
       promise.complete(decodedToken);
       return promise.future();
     }
@@ -490,40 +722,35 @@ public class TokenServiceImpl implements TokenService {
    */
   public JsonObject getJwt(JsonObject request) {
 
-    JWTOptions options =
-        new JWTOptions()
-            .setAlgorithm(JWT_ALGORITHM)
-            .setHeader(new JsonObject().put(ISS, CLAIM_ISSUER));
     long timestamp = System.currentTimeMillis() / 1000;
     long expiry = timestamp + CLAIM_EXPIRY;
     String itemType = request.getString(ITEM_TYPE).toLowerCase();
     String iid = ITEM_TYPE_MAP.inverse().get(itemType) + ":" + request.getString(ITEM_ID);
     String audience = request.getString(URL);
 
-    /* Populate the token claims */
-    JsonObject claims = new JsonObject();
-
-    claims
-        .put(SUB, request.getString(USER_ID))
-        .put(ISS, CLAIM_ISSUER)
-        .put(AUD, audience)
-        .put(EXP, expiry)
-        .put(IAT, timestamp)
-        .put(IID, iid)
-        .put(ROLE, request.getString(ROLE).toLowerCase())
-        .put(CONS, request.getJsonObject(CONSTRAINTS, new JsonObject()));
+    /* Populate the token claims, in the same order as they have always been serialized */
+    signer
+        .claims()
+        .claim(SUB, request.getString(USER_ID))
+        .claim(ISS, CLAIM_ISSUER)
+        .claim(AUD, audience)
+        .claim(EXP, expiry)
+        .claim(IAT, timestamp)
+        .claim(IID, iid)
+        .claim(ROLE, request.getString(ROLE).toLowerCase())
+        .claim(CONS, request.getJsonObject(CONSTRAINTS, new JsonObject()));
 
     if (request.containsKey(CREATE_TOKEN_RG)) {
-      claims.put(RG, request.getString(CREATE_TOKEN_RG));
+      signer.claim(RG, request.getString(CREATE_TOKEN_RG));
     }
     if (request.containsKey(CREATE_TOKEN_DID)) {
-      claims.put(DID, request.getString(CREATE_TOKEN_DID));
+      signer.claim(DID, request.getString(CREATE_TOKEN_DID));
     }
     if (request.containsKey(CREATE_TOKEN_DRL)) {
-      claims.put(DRL, request.getString(CREATE_TOKEN_DRL).toLowerCase());
+      signer.claim(DRL, request.getString(CREATE_TOKEN_DRL).toLowerCase());
     }
 
-    String token = provider.generateToken(claims, options);
+    String token = signer.sign();
 
     JsonObject tokenResp = new JsonObject();
     tokenResp.put(ACCESS_TOKEN, token).put("expiry", expiry).put("server", audience);
@@ -546,10 +773,6 @@ public class TokenServiceImpl implements TokenService {
    */
   public JsonObject getApdJwt(JsonObject request) {
 
-    JWTOptions options =
-        new JWTOptions()
-            .setAlgorithm(JWT_ALGORITHM)
-            .setHeader(new JsonObject().put(ISS, CLAIM_ISSUER));
     long timestamp = System.currentTimeMillis() / 1000;
     long expiry = timestamp + CLAIM_EXPIRY;
     String sessionId = request.getString(SESSION_ID);
@@ -557,17 +780,17 @@ public class TokenServiceImpl implements TokenService {
     String audience = request.getString(URL);
 
     /* Populate the token claims */
-    JsonObject claims = new JsonObject();
-    claims
-        .put(SUB, request.getString(USER_ID))
-        .put(ISS, CLAIM_ISSUER)
-        .put(AUD, audience)
-        .put(EXP, expiry)
-        .put(IAT, timestamp)
-        .put(SID, sessionId)
-        .put(LINK, link);
-
-    String token = provider.generateToken(claims, options);
+    String token =
+        signer
+            .claims()
+            .claim(SUB, request.getString(USER_ID))
+            .claim(ISS, CLAIM_ISSUER)
+            .claim(AUD, audience)
+            .claim(EXP, expiry)
+            .claim(IAT, timestamp)
+            .claim(SID, sessionId)
+            .claim(LINK, link)
+            .sign();
 
     JsonObject tokenResp = new JsonObject();
     tokenResp.put(APD_TOKEN, token).put("expiry", expiry).put("server", audience).put(LINK, link);
@@ -577,6 +800,10 @@ public class TokenServiceImpl implements TokenService {
   /** {@inheritDoc} */
   @Override
   public Future<JsonObject> getAuthServerToken(String audienceUrl) {
+    /* The 'sub' field is the auth server domain instead of a UUID user ID. The 'iss' field is the
+     * auth server domain as usual and 'aud' is the server being called. The rest of the fields are
+     * not important, so they are blank.
+     */
     JsonObject adminTokenReq =
         new JsonObject()
             .put(USER_ID, CLAIM_ISSUER)
@@ -632,12 +859,12 @@ public class TokenServiceImpl implements TokenService {
           new ComposeException(400, URN_INVALID_INPUT, ERR_COS_ADMIN_NO_RS, ERR_COS_ADMIN_NO_RS));
     }
 
-    Future<JsonArray> resServer = pgSelelctQuery(CHECK_RS_EXISTS_BY_URL, Tuple.of(url));
+    Future<Boolean> resServer = serverRegistry.resourceServerExists(url);
 
     Future<Void> checkUrlExists =
         resServer.compose(
-            res -> {
-              if (res.isEmpty()) {
+            exists -> {
+              if (!exists) {
                 return Future.failedFuture(
                     new ComposeException(
                         400, URN_INVALID_INPUT, ERR_TITLE_INVALID_RS, ERR_DETAIL_INVALID_RS));
@@ -647,38 +874,51 @@ public class TokenServiceImpl implements TokenService {
             });
 
     checkUrlExists
-        .compose(
-            res -> {
-              /*
-               * For delegates, we only need to check if the delegated URL is the same as requested URL
-               * because a delegation can be made only if the delegator has a role for that resource server
-               */
-              if (role.equals(Roles.DELEGATE)) {
-                if (delegInfo.getDelegatedRsUrl().equals(url)) {
-                  JsonObject result =
-                      new JsonObject()
-                          .put(URL, url)
-                          .put(CREATE_TOKEN_DID, delegInfo.getDelegatorUserId())
-                          .put(CREATE_TOKEN_DRL, delegInfo.getDelegatedRole().toString());
-                  return Future.succeededFuture(result);
-                }
-                return Future.failedFuture(
-                    new ComposeException(
-                        403, URN_INVALID_INPUT, ACCESS_DENIED, ERR_DOES_NOT_HAVE_ROLE_FOR_RS));
-              }
-
-              if (user.getResServersForRole(role).contains(url)) {
-                JsonObject result = new JsonObject().put(URL, url);
-                return Future.succeededFuture(result);
-              }
-
-              return Future.failedFuture(
-                  new ComposeException(
-                      403, URN_INVALID_INPUT, ACCESS_DENIED, ERR_DOES_NOT_HAVE_ROLE_FOR_RS));
-            })
+        .compose(res -> authorizeIdentityToken(url, role, delegInfo, user))
         .onSuccess(succ -> promise.complete(succ))
         .onFailure(fail -> promise.fail(fail));
 
     return promise.future();
   }
+
+  /**
+   * Check if the user is allowed to get an identity token for the resource server using the role
+   * (and delegation, if the role is delegate). This does not need the DB, and hence is also used to
+   * re-check authorization when a cached identity token is reused.
+   *
+   * @param url the server URL passed as the itemId in the request
+   * @param role the role requested by the user
+   * @param delegInfo the delegation information if the role is delegate
+   * @param user the User object
+   * @return Future of JsonObject containing the URL and delegation related fields to be added to
+   *     the token. Fails with a ComposeException if the user is not allowed
+   */
+  private Future<JsonObject> authorizeIdentityToken(
+      String url, Roles role, DelegationInformation delegInfo, User user) {
+    /*
+     * For delegates, we only need to check if the delegated URL is the same as requested URL
+     * because a delegation can be made only if the delegator has a role for that resource server
+     */
+    if (role.equals(Roles.DELEGATE)) {
+      if (delegInfo.getDelegatedRsUrl().equals(url)) {
+        JsonObject result =
+            new JsonObject()
+                .put(URL, url)
+                .put(CREATE_TOKEN_DID, delegInfo.getDelegatorUserId())
+                .put(CREATE_TOKEN_DRL, delegInfo.getDelegatedRole().toString());
+        return Future.succeededFuture(result);
+      }
+      return Future.failedFuture(
+          new ComposeException(
+              403, URN_INVALID_INPUT, ACCESS_DENIED, ERR_DOES_NOT_HAVE_ROLE_FOR_RS));
+    }
+
+    if (user.getResServersForRole(role).contains(url)) {
+      JsonObject result = new JsonObject().put(URL, url);
+      return Future.succeededFuture(result);
+    }
+
+    return Future.failedFuture(
+        new ComposeException(403, URN_INVALID_INPUT, ACCESS_DENIED, ERR_DOES_NOT_HAVE_ROLE_FOR_RS));
+  }
 }
@@ -0,0 +1,246 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.ALG;
+import static iudx.aaa.server.token.Constants.CLAIM_ISSUER;
+import static iudx.aaa.server.token.Constants.ISS;
+import static iudx.aaa.server.token.Constants.JWT_ALGORITHM;
+import static iudx.aaa.server.token.Constants.KID;
+import static iudx.aaa.server.token.Constants.TYP;
+
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+
+/**
+ * Dedicated ES256 signer used to mint AAA tokens.
+ *
+ * <p>The JWT header never changes for the lifetime of the server, so it is encoded once when the
+ * signer is created. Claims are written directly as JSON into a reusable buffer, base64url encoded
+ * into a reusable byte array and signed with a single {@link Signature} instance that emits the
+ * JOSE (R || S) signature format, so no DER transcoding or intermediate {@link JsonObject} is
+ * needed per token.
+ *
+ * <p>A signer holds mutable buffers and is <b>not</b> thread-safe. Each {@link TokenServiceImpl}
+ * instance owns its own signer and uses it only from its verticle's event loop.
+ *
+ * <p>Usage:
+ *
+ * <pre>
+ * String token = signer.claims().claim(SUB, userId).claim(EXP, expiry).sign();
+ * </pre>
+ */
+public class TokenSigner {
+
+  /* Emits the 64 byte R || S signature used by JWS, instead of DER */
+  private static final String SIGNATURE_ALGORITHM = "SHA256withECDSAinP1363Format";
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final byte[] encodedHeader;
+  private final Signature signature;
+  private final StringBuilder claims = new StringBuilder(512);
+
+  private byte[] encodedClaims = new byte[1024];
+  private byte[] token = new byte[1024];
+  private boolean firstClaim;
+
+  /**
+   * Create a signer.
+   *
+   * @param signingKey the ES256 (P-256) private key
+   * @param encodedHeader the base64url encoded JWT header
+   * @throws GeneralSecurityException if the key cannot be used for ES256 signing
+   */
+  public TokenSigner(PrivateKey signingKey, String encodedHeader) throws GeneralSecurityException {
+    this.encodedHeader = encodedHeader.getBytes(StandardCharsets.US_ASCII);
+    this.signature = Signature.getInstance(SIGNATURE_ALGORITHM);
+    this.signature.initSign(signingKey);
+  }
+
+  /**
+   * Create a signer using the active key of the JWT keystore. The <tt>kid</tt> header of the
+   * tokens is the alias of the active key, so that the key can be looked up in the JWKS.
+   *
+   * @param signingKeys the signing keys loaded from the keystore
+   * @return the signer
+   * @throws GeneralSecurityException if the key cannot be used for ES256 signing
+   */
+  public static TokenSigner create(SigningKeys signingKeys) throws GeneralSecurityException {
+    return new TokenSigner(signingKeys.activeKey(), encodedHeader(signingKeys.activeKid()));
+  }
+
+  /**
+   * Get the base64url encoded header for AAA tokens signed with a key. The header fields are in
+   * the same order as those of tokens created by the JWT provider.
+   *
+   * @param kid the ID of the signing key
+   * @return the encoded header
+   */
+  static String encodedHeader(String kid) {
+    JsonObject header =
+        new JsonObject()
+            .put(ISS, CLAIM_ISSUER)
+            .put(TYP, "JWT")
+            .put(ALG, JWT_ALGORITHM)
+            .put(KID, kid);
+    return ENCODER.encodeToString(header.encode().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Start writing the claims of a new token. Any claims written earlier and not signed are
+   * discarded.
+   *
+   * @return this signer
+   */
+  public TokenSigner claims() {
+    claims.setLength(0);
+    claims.append('{');
+    firstClaim = true;
+    return this;
+  }
+
+  /**
+   * Add a string claim. <tt>null</tt> values are written as JSON <tt>null</tt>.
+   *
+   * @param key the claim name
+   * @param value the claim value
+   * @return this signer
+   */
+  public TokenSigner claim(String key, String value) {
+    appendKey(key);
+    if (value == null) {
+      claims.append("null");
+    } else {
+      appendString(value);
+    }
+    return this;
+  }
+
+  /**
+   * Add a numeric claim.
+   *
+   * @param key the claim name
+   * @param value the claim value
+   * @return this signer
+   */
+  public TokenSigner claim(String key, long value) {
+    appendKey(key);
+    claims.append(value);
+    return this;
+  }
+
+  /**
+   * Add a JSON object claim.
+   *
+   * @param key the claim name
+   * @param value the claim value
+   * @return this signer
+   */
+  public TokenSigner claim(String key, JsonObject value) {
+    appendKey(key);
+    claims.append(value == null ? "null" : value.encode());
+    return this;
+  }
+
+  /**
+   * Sign the claims written since the last call to {@link #claims()}.
+   *
+   * @return the compact serialized JWT
+   * @throws IllegalStateException if signing fails
+   */
+  public String sign() {
+    claims.append('}');
+    byte[] raw = claims.toString().getBytes(StandardCharsets.UTF_8);
+
+    int claimsLen = encodedLength(raw.length);
+    if (encodedClaims.length < claimsLen) {
+      encodedClaims = new byte[claimsLen * 2];
+    }
+    ENCODER.encode(raw, encodedClaims);
+
+    byte[] sig;
+    try {
+      signature.update(encodedHeader);
+      signature.update((byte) '.');
+      signature.update(encodedClaims, 0, claimsLen);
+      sig = signature.sign();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Could not sign token", e);
+    }
+
+    int headerLen = encodedHeader.length;
+    int sigLen = encodedLength(sig.length);
+    int total = headerLen + 1 + claimsLen + 1 + sigLen;
+    if (token.length < total) {
+      token = new byte[total * 2];
+    }
+
+    System.arraycopy(encodedHeader, 0, token, 0, headerLen);
+    token[headerLen] = '.';
+    System.arraycopy(encodedClaims, 0, token, headerLen + 1, claimsLen);
+    token[headerLen + 1 + claimsLen] = '.';
+    byte[] encodedSig = ENCODER.encode(sig);
+    System.arraycopy(encodedSig, 0, token, headerLen + claimsLen + 2, sigLen);
+
+    /* clear claims so that a stray second sign() does not reuse them */
+    claims.setLength(0);
+    return new String(token, 0, total, StandardCharsets.US_ASCII);
+  }
+
+  private void appendKey(String key) {
+    if (!firstClaim) {
+      claims.append(',');
+    }
+    firstClaim = false;
+    appendString(key);
+    claims.append(':');
+  }
+
+  /**
+   * Append a JSON string, escaped the same way as the Jackson encoder used by {@link JsonObject}.
+   */
+  private void appendString(String value) {
+    claims.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          claims.append("\\\"");
+          break;
+        case '\\':
+          claims.append("\\\\");
+          break;
+        case '\n':
+          claims.append("\\n");
+          break;
+        case '\r':
+          claims.append("\\r");
+          break;
+        case '\t':
+          claims.append("\\t");
+          break;
+        case '\b':
+          claims.append("\\b");
+          break;
+        case '\f':
+          claims.append("\\f");
+          break;
+        default:
+          if (c < 0x20) {
+            claims.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+          } else {
+            claims.append(c);
+          }
+      }
+    }
+    claims.append('"');
+  }
+
+  /* base64 without padding */
+  private static int encodedLength(int len) {
+    return (len / 3) * 4 + (len % 3 == 0 ? 0 : len % 3 + 1);
+  }
+}
@@ -5,15 +5,17 @@ import static iudx.aaa.server.token.Constants.*;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.auth.KeyStoreOptions;
+import io.vertx.core.shareddata.LocalMap;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.auth.jwt.JWTAuthOptions;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
 import io.vertx.serviceproxy.ServiceBinder;
 import io.vertx.sqlclient.PoolOptions;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
+import java.security.GeneralSecurityException;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -42,13 +44,19 @@ public class TokenVerticle extends AbstractVerticle {
   private PoolOptions poolOptions;
   private PgConnectOptions connectOptions;
   private PgPool pgPool;
+  private ServerRegistry serverRegistry;
   private TokenService tokenService;
   private JWTAuth provider;
+  private SigningKeys signingKeys;
+  private TokenSigner signer;
+  private IdentityTokenCache identityTokenCache;
+  private VerifiedTokenCache verifiedTokenCache;
   private PolicyService policyService;
   private RegistrationService registrationService;
   private ServiceBinder binder;
   private MessageConsumer<JsonObject> consumer;
   private TokenRevokeService revokeService;
+  private TokenRevocationDispatcher revocationDispatcher;
 
   private static final Logger LOGGER = LogManager.getLogger(TokenVerticle.class);
 
@@ -71,7 +79,20 @@ public class TokenVerticle extends AbstractVerticle {
     poolSize = Integer.parseInt(config().getString(POOLSIZE));
     keystorePath = config().getString(KEYSTORE_PATH);
     keystorePassword = config().getString(KEYSTPRE_PASSWORD);
+    String activeKeyAlias = config().getString(ACTIVE_KEY_ALIAS, DEFAULT_ACTIVE_KEY_ALIAS);
     String issuer = config().getString(COS_DOMAIN, "");
+    long identityTokenCacheSize =
+        config().getLong(IDENTITY_TOKEN_CACHE_SIZE, DEFAULT_IDENTITY_TOKEN_CACHE_SIZE);
+    double identityTokenReuseFraction =
+        config().getDouble(IDENTITY_TOKEN_REUSE_FRACTION, DEFAULT_IDENTITY_TOKEN_REUSE_FRACTION);
+    long introspectCacheSize =
+        config().getLong(INTROSPECT_CACHE_SIZE, DEFAULT_INTROSPECT_CACHE_SIZE);
+    long introspectCacheTtl =
+        config().getLong(INTROSPECT_CACHE_TTL_SECONDS, DEFAULT_INTROSPECT_CACHE_TTL_SECONDS);
+    boolean introspectCacheMetrics = config().getBoolean(INTROSPECT_CACHE_METRICS, true);
+    int batchTokenConcurrency =
+        config().getInteger(BATCH_TOKEN_CONCURRENCY, DEFAULT_BATCH_TOKEN_CONCURRENCY);
+    JsonObject revocationOptions = config().getJsonObject(REVOCATION_OPTIONS, new JsonObject());
 
     if (issuer != null && !issuer.isBlank()) {
       CLAIM_ISSUER = issuer;
@@ -99,32 +120,92 @@ public class TokenVerticle extends AbstractVerticle {
 
     /* Pool options */
     if (poolOptions == null) {
-      poolOptions = new PoolOptions().setMaxSize(poolSize);
+      /* all instances share a single pool, so the pool size does not grow with the instances */
+      poolOptions =
+          new PoolOptions().setMaxSize(poolSize).setShared(true).setName(TOKEN_POOL_NAME);
     }
 
     /* Initializing the services */
+    signingKeys = sharedSigningKeys(activeKeyAlias);
     provider = jwtInitConfig();
-    revokeService = new TokenRevokeService(vertx);
+    signer = TokenSigner.create(signingKeys);
+    revokeService =
+        new TokenRevokeService(
+            vertx,
+            revocationOptions.getInteger(
+                REVOCATION_HOST_CONCURRENCY, DEFAULT_REVOCATION_HOST_CONCURRENCY),
+            revocationOptions.getLong(
+                REVOCATION_REQUEST_TIMEOUT_MS, DEFAULT_REVOCATION_REQUEST_TIMEOUT_MS));
+    identityTokenCache =
+        new IdentityTokenCache(vertx, identityTokenCacheSize, identityTokenReuseFraction);
+    verifiedTokenCache =
+        new VerifiedTokenCache(
+            vertx, introspectCacheSize, introspectCacheTtl, introspectCacheMetrics);
     pgPool = PgPool.pool(vertx, connectOptions, poolOptions);
+    serverRegistry = new ServerRegistry(vertx, pgPool, connectOptions);
+    serverRegistry.start();
     policyService = PolicyService.createProxy(vertx, POLICY_SERVICE_ADDRESS);
     registrationService = RegistrationService.createProxy(vertx, REGISTRATION_SERVICE_ADDRESS);
     tokenService =
-        new TokenServiceImpl(pgPool, policyService, registrationService, provider, revokeService);
+        new TokenServiceImpl(
+            pgPool,
+            serverRegistry,
+            policyService,
+            registrationService,
+            provider,
+            signer,
+            identityTokenCache,
+            verifiedTokenCache,
+            batchTokenConcurrency);
     binder = new ServiceBinder(vertx);
     consumer = binder.setAddress(TOKEN_SERVICE_ADDRESS).register(TokenService.class, tokenService);
 
+    revocationDispatcher =
+        new TokenRevocationDispatcher(
+            vertx,
+            pgPool,
+            revokeService,
+            identityTokenCache,
+            tokenService::getAuthServerToken,
+            revocationOptions);
+    revocationDispatcher.start();
+
     LOGGER.debug("Info : {} : Started", LOGGER.getName());
   }
 
+  /**
+   * Get the signing keys shared by all instances of the verticle, loading them if this is the first
+   * instance. Each instance signs tokens on its own event loop with its own {@link TokenSigner}, so
+   * signing scales with the number of instances without loading the keystore for each of them.
+   *
+   * @param activeKeyAlias alias of the key used to sign new tokens
+   * @return the signing keys
+   * @throws GeneralSecurityException if the keystore cannot be loaded
+   */
+  private SigningKeys sharedSigningKeys(String activeKeyAlias) throws GeneralSecurityException {
+    LocalMap<String, SigningKeys> shared = vertx.sharedData().getLocalMap(SHARED_SIGNING_KEYS);
+    String key = keystorePath + "#" + activeKeyAlias;
+
+    SigningKeys keys = shared.get(key);
+    if (keys == null) {
+      SigningKeys loaded = SigningKeys.load(vertx, keystorePath, keystorePassword, activeKeyAlias);
+      keys = shared.putIfAbsent(key, loaded);
+      if (keys == null) {
+        keys = loaded;
+      }
+    }
+    return keys;
+  }
+
   /**
    * Initializes {@link JWTAuth} to create a Authentication Provider instance for JWT token.
-   * Authentication Provider is used to generate and authenticate JWT token.
+   * Authentication Provider is used to authenticate JWT tokens signed with any of the signing keys.
    *
    * @return provider
    */
   public JWTAuth jwtInitConfig() {
     JWTAuthOptions config = new JWTAuthOptions();
-    config.setKeyStore(new KeyStoreOptions().setPath(keystorePath).setPassword(keystorePassword));
+    signingKeys.verificationKeys().forEach(config::addPubSecKey);
 
     JWTAuth provider = JWTAuth.create(vertx, config);
     return provider;
@@ -133,5 +214,8 @@ public class TokenVerticle extends AbstractVerticle {
   @Override
   public void stop() {
     binder.unregister(consumer);
+    revocationDispatcher.stop();
+    serverRegistry.close();
+    identityTokenCache.close();
   }
 }
@@ -0,0 +1,126 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.EXP;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded LRU cache of tokens that have been successfully verified during introspection, mapping
+ * the SHA-256 hash of the token to its decoded claims.
+ *
+ * <p>A token found in the cache has already had its signature verified, so repeat introspections
+ * of the same token skip signature verification. Entries are dropped after a configured TTL cap,
+ * and a cached token is never returned once its <tt>exp</tt> has passed, at which point it is
+ * verified (and rejected) by the JWT provider again.
+ *
+ * <p>If enabled, hit, miss and eviction counts are exported through Micrometer under the cache name
+ * <tt>aaa.token.introspect</tt>, tagged with the deployment ID of the verticle and the instance.
+ */
+public class VerifiedTokenCache {
+
+  private static final String METRICS_NAME = "aaa.token.introspect";
+
+  private final Cache<HashCode, JsonObject> cache;
+  private final LongSupplier epochSeconds;
+
+  /**
+   * Create the cache.
+   *
+   * @param vertx the Vert.x instance
+   * @param maxSize maximum number of tokens held. A size of <tt>0</tt> disables caching
+   * @param ttlCapSeconds maximum time in seconds for which a verified token is cached
+   * @param metricsEnabled whether cache metrics are exported
+   */
+  public VerifiedTokenCache(Vertx vertx, long maxSize, long ttlCapSeconds, boolean metricsEnabled) {
+    this(
+        vertx,
+        maxSize,
+        ttlCapSeconds,
+        metricsEnabled,
+        Ticker.systemTicker(),
+        () -> System.currentTimeMillis() / 1000);
+  }
+
+  VerifiedTokenCache(
+      Vertx vertx,
+      long maxSize,
+      long ttlCapSeconds,
+      boolean metricsEnabled,
+      Ticker ticker,
+      LongSupplier epochSeconds) {
+    if (maxSize < 0 || ttlCapSeconds < 0) {
+      throw new IllegalArgumentException("Invalid introspection cache configuration");
+    }
+
+    this.epochSeconds = epochSeconds;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(ttlCapSeconds == 0 ? 0 : maxSize)
+            .expireAfterWrite(ttlCapSeconds, TimeUnit.SECONDS)
+            .ticker(ticker)
+            .recordStats()
+            .build();
+
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    if (metricsEnabled && registry != null) {
+      /* instances of a deployment share its ID, so each instance's cache is tagged separately */
+      String deploymentId = String.valueOf(vertx.getOrCreateContext().deploymentID());
+      String instance = Integer.toHexString(System.identityHashCode(this));
+      GuavaCacheMetrics.monitor(
+          registry, cache, METRICS_NAME, "deployment", deploymentId, "instance", instance);
+    }
+  }
+
+  /**
+   * Get the decoded claims of a token that was verified earlier.
+   *
+   * @param token the JWT
+   * @return a copy of the decoded claims, or <tt>null</tt> if the token is not cached or has
+   *     expired
+   */
+  public JsonObject get(String token) {
+    HashCode key = hash(token);
+    JsonObject claims = cache.getIfPresent(key);
+    if (claims == null) {
+      return null;
+    }
+
+    Long exp = claims.getLong(EXP);
+    if (exp != null && epochSeconds.getAsLong() >= exp) {
+      cache.invalidate(key);
+      return null;
+    }
+    return claims.copy();
+  }
+
+  /**
+   * Cache the decoded claims of a token that has been verified. Tokens that have already expired
+   * are not cached.
+   *
+   * @param token the JWT
+   * @param claims the decoded claims
+   */
+  public void put(String token, JsonObject claims) {
+    Long exp = claims.getLong(EXP);
+    if (exp != null && epochSeconds.getAsLong() >= exp) {
+      return;
+    }
+    cache.put(hash(token), claims.copy());
+  }
+
+  private static HashCode hash(String token) {
+    return Hashing.sha256().hashString(token, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,37 @@
+-- Adding outbox table for token revocations that are sent to resource servers/APDs in the background
+
+CREATE TYPE token_revocation_status_enum AS ENUM (
+    'PENDING',
+    'FAILED'
+);
+
+ALTER TYPE token_revocation_status_enum OWNER TO ${flyway:user};
+
+CREATE TABLE token_revocation_outbox (
+    id uuid DEFAULT public.gen_random_uuid() NOT NULL,
+    user_id uuid NOT NULL,
+    url character varying NOT NULL,
+    status token_revocation_status_enum NOT NULL,
+    attempts integer NOT NULL DEFAULT 0,
+    last_error character varying,
+    requested_at timestamp without time zone NOT NULL,
+    next_attempt_at timestamp without time zone NOT NULL,
+    created_at timestamp without time zone NOT NULL,
+    updated_at timestamp without time zone NOT NULL
+);
+
+ALTER TABLE token_revocation_outbox OWNER TO ${flyway:user};
+
+ALTER TABLE ONLY token_revocation_outbox
+    ADD CONSTRAINT token_revocation_outbox_pkey PRIMARY KEY (id);
+
+-- pending revocations for the same user and server are coalesced into a single row
+ALTER TABLE ONLY token_revocation_outbox
+    ADD CONSTRAINT unique_token_revocation_user_url UNIQUE (user_id, url);
+
+ALTER TABLE ONLY token_revocation_outbox
+    ADD CONSTRAINT token_revocation_outbox_user_id_fkey FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE;
+
+CREATE INDEX idx_token_revocation_outbox_due ON token_revocation_outbox (next_attempt_at) WHERE status = 'PENDING';
+
+GRANT SELECT,INSERT,UPDATE,DELETE ON TABLE token_revocation_outbox TO ${authUser};
@@ -0,0 +1,20 @@
+-- Notifying listeners when resource servers or APDs change, so that in-memory registries are refreshed
+
+CREATE FUNCTION notify_server_registry() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    PERFORM pg_notify('aaa_server_registry', TG_TABLE_NAME);
+    RETURN NULL;
+END;
+$$;
+
+ALTER FUNCTION notify_server_registry() OWNER TO ${flyway:user};
+
+CREATE TRIGGER resource_server_registry_notify
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON resource_server
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_server_registry();
+
+CREATE TRIGGER apds_registry_notify
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON apds
+    FOR EACH STATEMENT EXECUTE FUNCTION notify_server_registry();
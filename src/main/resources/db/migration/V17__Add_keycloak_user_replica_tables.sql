@@ -0,0 +1,37 @@
+-- Adding a local replica of the users on Keycloak, so that user lookups need not call Keycloak
+
+CREATE TABLE keycloak_users (
+    id uuid NOT NULL,
+    email character varying,
+    first_name character varying,
+    last_name character varying,
+    synced_at timestamp without time zone NOT NULL
+);
+
+ALTER TABLE keycloak_users OWNER TO ${flyway:user};
+
+ALTER TABLE ONLY keycloak_users
+    ADD CONSTRAINT keycloak_users_pkey PRIMARY KEY (id);
+
+-- emails are looked up case-insensitively
+CREATE INDEX idx_keycloak_users_email ON keycloak_users (lower(email));
+
+-- single row holding the sync cursor and the lease of the instance running the sync
+CREATE TABLE keycloak_user_sync (
+    id integer NOT NULL DEFAULT 1,
+    event_cursor bigint NOT NULL DEFAULT 0,
+    last_sync_at timestamp without time zone,
+    last_full_sync_at timestamp without time zone,
+    locked_until timestamp without time zone,
+    CONSTRAINT keycloak_user_sync_single_row CHECK (id = 1)
+);
+
+ALTER TABLE keycloak_user_sync OWNER TO ${flyway:user};
+
+ALTER TABLE ONLY keycloak_user_sync
+    ADD CONSTRAINT keycloak_user_sync_pkey PRIMARY KEY (id);
+
+INSERT INTO keycloak_user_sync (id) VALUES (1);
+
+GRANT SELECT,INSERT,UPDATE,DELETE ON TABLE keycloak_users TO ${authUser};
+GRANT SELECT,UPDATE ON TABLE keycloak_user_sync TO ${authUser};
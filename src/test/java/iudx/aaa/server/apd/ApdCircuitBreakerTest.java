@@ -0,0 +1,172 @@
+package iudx.aaa.server.apd;
+
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_FAILURE_RATE;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_MIN_CALLS;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_OPEN_MS;
+import static iudx.aaa.server.apd.Constants.CONFIG_CB_WINDOW_SIZE;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_CALLS;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_FAILURE_RATE;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_STATE;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_TIMEOUT_RATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the APD circuit breaker. */
+public class ApdCircuitBreakerTest {
+
+  private static final String APD_URL = "apd.iudx.io";
+  private static final String OTHER_APD_URL = "other-apd.iudx.io";
+  private static final long OPEN_MS = 1000;
+
+  private final AtomicLong nanos = new AtomicLong();
+
+  private ApdCircuitBreaker breaker() {
+    JsonObject options =
+        new JsonObject()
+            .put(CONFIG_CB_WINDOW_SIZE, 4)
+            .put(CONFIG_CB_MIN_CALLS, 4)
+            .put(CONFIG_CB_FAILURE_RATE, 0.5)
+            .put(CONFIG_CB_OPEN_MS, OPEN_MS);
+    return new ApdCircuitBreaker(options, nanos::get);
+  }
+
+  private void advance(long millis) {
+    nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  private static void call(ApdCircuitBreaker breaker, boolean success) {
+    assertTrue(breaker.tryAcquire(APD_URL));
+    if (success) {
+      breaker.onSuccess(APD_URL);
+    } else {
+      breaker.onFailure(APD_URL, false);
+    }
+  }
+
+  private static String state(ApdCircuitBreaker breaker, String url) {
+    return breaker.health(url).getString(RESP_APD_HEALTH_STATE);
+  }
+
+  @Test
+  @DisplayName("Circuit opens only after the minimum calls once the failure rate is reached")
+  void opensAfterMinCalls() {
+    ApdCircuitBreaker breaker = breaker();
+
+    call(breaker, false);
+    call(breaker, false);
+    call(breaker, false);
+    assertEquals("closed", state(breaker, APD_URL));
+
+    call(breaker, true);
+    assertEquals("open", state(breaker, APD_URL));
+    assertFalse(breaker.tryAcquire(APD_URL));
+
+    /* other APDs are not affected */
+    assertTrue(breaker.tryAcquire(OTHER_APD_URL));
+    assertEquals("closed", state(breaker, OTHER_APD_URL));
+  }
+
+  @Test
+  @DisplayName("Circuit stays closed while the failure rate is below the threshold")
+  void staysClosedBelowThreshold() {
+    ApdCircuitBreaker breaker = breaker();
+
+    for (int i = 0; i < 10; i++) {
+      call(breaker, i % 4 != 0);
+    }
+
+    assertEquals("closed", state(breaker, APD_URL));
+    assertTrue(breaker.tryAcquire(APD_URL));
+  }
+
+  @Test
+  @DisplayName("Half open circuit lets a single probe through and closes if it succeeds")
+  void halfOpenProbeSucceeds() {
+    ApdCircuitBreaker breaker = breaker();
+    for (int i = 0; i < 4; i++) {
+      call(breaker, false);
+    }
+
+    advance(OPEN_MS - 1);
+    assertFalse(breaker.tryAcquire(APD_URL));
+
+    advance(1);
+    assertTrue(breaker.tryAcquire(APD_URL));
+    assertEquals("half_open", state(breaker, APD_URL));
+    assertFalse(breaker.tryAcquire(APD_URL));
+
+    breaker.onSuccess(APD_URL);
+    assertEquals("closed", state(breaker, APD_URL));
+    assertEquals(0, breaker.health(APD_URL).getInteger(RESP_APD_HEALTH_CALLS));
+    assertTrue(breaker.tryAcquire(APD_URL));
+  }
+
+  @Test
+  @DisplayName("Half open circuit opens again if the probe fails")
+  void halfOpenProbeFails() {
+    ApdCircuitBreaker breaker = breaker();
+    for (int i = 0; i < 4; i++) {
+      call(breaker, false);
+    }
+
+    advance(OPEN_MS);
+    assertTrue(breaker.tryAcquire(APD_URL));
+    breaker.onFailure(APD_URL, true);
+
+    assertEquals("open", state(breaker, APD_URL));
+    assertFalse(breaker.tryAcquire(APD_URL));
+
+    advance(OPEN_MS);
+    assertTrue(breaker.tryAcquire(APD_URL));
+  }
+
+  @Test
+  @DisplayName("Health has the failure and timeout rates of the recent calls")
+  void health() {
+    ApdCircuitBreaker breaker = breaker();
+
+    JsonObject unknown = breaker.health(APD_URL);
+    assertEquals("closed", unknown.getString(RESP_APD_HEALTH_STATE));
+    assertEquals(0, unknown.getInteger(RESP_APD_HEALTH_CALLS));
+
+    call(breaker, true);
+    call(breaker, true);
+    assertTrue(breaker.tryAcquire(APD_URL));
+    breaker.onFailure(APD_URL, true);
+
+    JsonObject health = breaker.health(APD_URL);
+    assertEquals("closed", health.getString(RESP_APD_HEALTH_STATE));
+    assertEquals(3, health.getInteger(RESP_APD_HEALTH_CALLS));
+    assertEquals(1.0 / 3, health.getDouble(RESP_APD_HEALTH_FAILURE_RATE), 1e-9);
+    assertEquals(1.0 / 3, health.getDouble(RESP_APD_HEALTH_TIMEOUT_RATE), 1e-9);
+
+    /* the oldest calls drop out of the window */
+    call(breaker, true);
+    call(breaker, true);
+    call(breaker, true);
+    health = breaker.health(APD_URL);
+    assertEquals(4, health.getInteger(RESP_APD_HEALTH_CALLS));
+    assertEquals(0.25, health.getDouble(RESP_APD_HEALTH_FAILURE_RATE), 1e-9);
+  }
+
+  @Test
+  @DisplayName("Invalid configuration is rejected")
+  void invalidConfig() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new ApdCircuitBreaker(
+                new JsonObject().put(CONFIG_CB_WINDOW_SIZE, 5).put(CONFIG_CB_MIN_CALLS, 10)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new ApdCircuitBreaker(new JsonObject().put(CONFIG_CB_FAILURE_RATE, 1.5)));
+  }
+}
@@ -0,0 +1,148 @@
+package iudx.aaa.server.apd;
+
+import static iudx.aaa.server.apd.Constants.APD_CONSTRAINTS;
+import static iudx.aaa.server.apd.Constants.APD_RESP_CACHE_TTL;
+import static iudx.aaa.server.apd.Constants.APD_RESP_DETAIL;
+import static iudx.aaa.server.apd.Constants.APD_RESP_SESSIONID;
+import static iudx.aaa.server.apd.Constants.APD_RESP_TYPE;
+import static iudx.aaa.server.apd.Constants.APD_URN_ALLOW;
+import static iudx.aaa.server.apd.Constants.APD_URN_DENY;
+import static iudx.aaa.server.apd.Constants.APD_URN_DENY_NEEDS_INT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.FakeTicker;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the APD decision cache. */
+@ExtendWith(VertxExtension.class)
+public class ApdDecisionCacheTest {
+
+  private static final String APD_URL = "apd.iudx.io";
+  private static final String OTHER_APD_URL = "other-apd.iudx.io";
+
+  private static JsonObject allow(long ttlSeconds) {
+    return new JsonObject()
+        .put(APD_RESP_TYPE, APD_URN_ALLOW)
+        .put(APD_CONSTRAINTS, new JsonObject().put("access", true))
+        .put(APD_RESP_CACHE_TTL, ttlSeconds);
+  }
+
+  @Test
+  @DisplayName("Allow decision is cached for the TTL sent by the APD, capped at the maximum TTL")
+  void apdTtl(Vertx vertx, VertxTestContext testContext) {
+    FakeTicker ticker = new FakeTicker();
+    ApdDecisionCache cache = new ApdDecisionCache(vertx, 10, 300, ticker);
+
+    String userId = UUID.randomUUID().toString();
+    String itemId = UUID.randomUUID().toString();
+    String longLivedItemId = UUID.randomUUID().toString();
+    JsonObject context = new JsonObject().put("purpose", "research");
+
+    cache.put(userId, itemId, APD_URL, context, allow(60));
+    cache.put(userId, longLivedItemId, APD_URL, context, allow(3600));
+
+    assertEquals(allow(60), cache.get(userId, itemId, APD_URL, context));
+    assertNull(cache.get(userId, itemId, APD_URL, new JsonObject()));
+    assertNull(cache.get(UUID.randomUUID().toString(), itemId, APD_URL, context));
+    assertNull(cache.get(userId, itemId, OTHER_APD_URL, context));
+
+    ticker.advance(60);
+    assertNull(cache.get(userId, itemId, APD_URL, context));
+    assertNotNull(cache.get(userId, longLivedItemId, APD_URL, context));
+
+    ticker.advance(240);
+    assertNull(cache.get(userId, longLivedItemId, APD_URL, context));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Deny decisions and allow decisions without a TTL are not cached")
+  void notCached(Vertx vertx, VertxTestContext testContext) {
+    ApdDecisionCache cache = new ApdDecisionCache(vertx, 10, 300);
+    String userId = UUID.randomUUID().toString();
+    String itemId = UUID.randomUUID().toString();
+    JsonObject context = new JsonObject();
+
+    cache.put(userId, itemId, APD_URL, context, new JsonObject().put(APD_RESP_TYPE, APD_URN_ALLOW));
+    cache.put(userId, itemId, APD_URL, context, allow(0));
+    cache.put(
+        userId,
+        itemId,
+        APD_URL,
+        context,
+        new JsonObject()
+            .put(APD_RESP_TYPE, APD_URN_DENY)
+            .put(APD_RESP_DETAIL, "Not allowed")
+            .put(APD_RESP_CACHE_TTL, 60));
+    cache.put(
+        userId,
+        itemId,
+        APD_URL,
+        context,
+        new JsonObject()
+            .put(APD_RESP_TYPE, APD_URN_DENY_NEEDS_INT)
+            .put(APD_RESP_DETAIL, "Needs interaction")
+            .put(APD_RESP_SESSIONID, UUID.randomUUID().toString())
+            .put(APD_RESP_CACHE_TTL, 60));
+
+    assertNull(cache.get(userId, itemId, APD_URL, context));
+    assertEquals(0, cache.size());
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Maximum TTL of 0 disables caching")
+  void disabled(Vertx vertx, VertxTestContext testContext) {
+    ApdDecisionCache cache = new ApdDecisionCache(vertx, 10, 0);
+    String userId = UUID.randomUUID().toString();
+    String itemId = UUID.randomUUID().toString();
+
+    cache.put(userId, itemId, APD_URL, new JsonObject(), allow(60));
+    assertNull(cache.get(userId, itemId, APD_URL, new JsonObject()));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Decisions of an APD are evicted from all caches")
+  void evict(Vertx vertx, VertxTestContext testContext) {
+    ApdDecisionCache cache = new ApdDecisionCache(vertx, 10, 300);
+    ApdDecisionCache otherInstance = new ApdDecisionCache(vertx, 10, 300);
+    String userId = UUID.randomUUID().toString();
+    String itemId = UUID.randomUUID().toString();
+    JsonObject context = new JsonObject();
+
+    cache.put(userId, itemId, APD_URL, context, allow(60));
+    cache.put(userId, itemId, OTHER_APD_URL, context, allow(60));
+    otherInstance.put(userId, itemId, APD_URL, context, allow(60));
+
+    cache.invalidate(APD_URL);
+    assertNull(cache.get(userId, itemId, APD_URL, context));
+    assertNotNull(cache.get(userId, itemId, OTHER_APD_URL, context));
+
+    /* eviction on the other instance arrives over the event bus */
+    vertx.setTimer(
+        100,
+        id ->
+            testContext.verify(
+                () -> {
+                  assertNull(otherInstance.get(userId, itemId, APD_URL, context));
+                  assertEquals(1, cache.size());
+                  cache
+                      .close()
+                      .compose(res -> otherInstance.close())
+                      .onComplete(testContext.succeedingThenComplete());
+                }));
+  }
+}
@@ -0,0 +1,75 @@
+package iudx.aaa.server.apd;
+
+import static iudx.aaa.server.apd.Constants.APD_CONSTRAINTS;
+import static iudx.aaa.server.apd.Constants.APD_RESP_DETAIL;
+import static iudx.aaa.server.apd.Constants.APD_RESP_TYPE;
+import static iudx.aaa.server.apd.Constants.APD_URN_ALLOW;
+import static iudx.aaa.server.apd.Constants.APD_URN_DENY;
+import static iudx.aaa.server.apd.Constants.CONFIG_WEBCLI_TIMEOUTMS;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks {@link ApdWebClient#checkApdResponse(int, Buffer)}, which checks every response sent
+ * by an APD to the verify API, for an allow response with constraints and a deny response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApdWebClientBenchmark {
+
+  private ApdWebClient apdWebClient;
+  private Buffer allow;
+  private Buffer deny;
+
+  @Setup
+  public void setup() {
+    /* the web client is not used to check responses */
+    apdWebClient = new ApdWebClient(null, new JsonObject().put(CONFIG_WEBCLI_TIMEOUTMS, 3000));
+
+    allow =
+        new JsonObject()
+            .put(APD_RESP_TYPE, APD_URN_ALLOW)
+            .put(APD_CONSTRAINTS, new JsonObject().put("access", new JsonObject().put("api", true)))
+            .toBuffer();
+    deny =
+        new JsonObject()
+            .put(APD_RESP_TYPE, APD_URN_DENY)
+            .put(APD_RESP_DETAIL, "Not allowed")
+            .toBuffer();
+  }
+
+  @Benchmark
+  public Future<JsonObject> allowResponse() {
+    return apdWebClient.checkApdResponse(200, allow);
+  }
+
+  @Benchmark
+  public Future<JsonObject> denyResponse() {
+    return apdWebClient.checkApdResponse(403, deny);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ApdWebClientBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -5,6 +5,7 @@ import static iudx.aaa.server.apd.Constants.APD_REQ_CONTEXT;
 import static iudx.aaa.server.apd.Constants.APD_REQ_ITEM;
 import static iudx.aaa.server.apd.Constants.APD_REQ_OWNER;
 import static iudx.aaa.server.apd.Constants.APD_REQ_USER;
+import static iudx.aaa.server.apd.Constants.APD_RESP_CACHE_TTL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_DETAIL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_SESSIONID;
 import static iudx.aaa.server.apd.Constants.APD_RESP_TYPE;
@@ -18,11 +19,11 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.WebClientPools;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -46,9 +47,14 @@ public class ApdWebClientTest {
 
     /*
      * Deploying with timeout 4000 instead of picking up from config file. Deploying with no SSL
-     * checks. Redirects are always not allowed.
+     * checks. Redirects are always not allowed. The circuit breaker window is large enough that the
+     * error cases do not open the circuit for the tests that follow.
      */
-    JsonObject apdWebCliConfig = new JsonObject().put(Constants.CONFIG_WEBCLI_TIMEOUTMS, 4000);
+    JsonObject apdWebCliConfig =
+        new JsonObject()
+            .put(Constants.CONFIG_WEBCLI_TIMEOUTMS, 4000)
+            .put(Constants.CONFIG_CB_WINDOW_SIZE, 100)
+            .put(Constants.CONFIG_CB_MIN_CALLS, 100);
 
     WebClientOptions webClientOptions =
         new WebClientOptions()
@@ -56,10 +62,11 @@ public class ApdWebClientTest {
             .setVerifyHost(false)
             .setTrustAll(false)
             .setFollowRedirects(false);
-    WebClient webClient = WebClient.create(vertx, webClientOptions);
+    WebClientPools webClientPools =
+        new WebClientPools(vertx, "apd", webClientOptions, new JsonObject());
 
     /* TestApdServiceVerticle starts on port 7331, so using this constructor */
-    apdWebClient = new ApdWebClient(webClient, apdWebCliConfig, 7331);
+    apdWebClient = new ApdWebClient(webClientPools, apdWebCliConfig, 7331);
 
     vertx.deployVerticle(
         verticle,
@@ -189,4 +196,25 @@ public class ApdWebClientTest {
             })
         .onSuccess(x -> testContext.completeNow());
   }
+
+  @Order(6)
+  @Test
+  @DisplayName("Test post verify allow with cache TTL")
+  void testPostVerifyAllowWCacheTtl(VertxTestContext testContext) {
+    JsonObject request =
+        new JsonObject()
+            .put(APD_REQ_USER, new JsonObject())
+            .put(APD_REQ_OWNER, new JsonObject())
+            .put(APD_REQ_ITEM, new JsonObject())
+            .put(APD_REQ_CONTEXT, new JsonObject().put("TestSuccessWCacheTtl", true));
+    testContext
+        .assertComplete(apdWebClient.callVerifyApdEndpoint("localhost", "token", request))
+        .compose(
+            r -> {
+              assertEquals(r.getString(APD_RESP_TYPE), APD_URN_ALLOW);
+              assertEquals(60, r.getInteger(APD_RESP_CACHE_TTL));
+              return Future.succeededFuture();
+            })
+        .onSuccess(x -> testContext.completeNow());
+  }
 }
@@ -2,6 +2,7 @@ package iudx.aaa.server.apd;
 
 import static iudx.aaa.server.apd.Constants.APD_CONSTRAINTS;
 import static iudx.aaa.server.apd.Constants.APD_NOT_ACTIVE;
+import static iudx.aaa.server.apd.Constants.APD_RESP_CACHE_TTL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_DETAIL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_LINK;
 import static iudx.aaa.server.apd.Constants.APD_RESP_SESSIONID;
@@ -42,6 +43,7 @@ import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
@@ -165,7 +167,12 @@ public class CallApdTest {
         .onSuccess(
             res -> {
               apdService =
-                  new ApdServiceImpl(pool, apdWebClient, registrationService, tokenService);
+                  new ApdServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      apdWebClient,
+                      registrationService,
+                      tokenService);
               testContext.completeNow();
             })
         .onFailure(fail -> testContext.failNow(fail.getMessage()));
@@ -608,4 +615,98 @@ public class CallApdTest {
                           testContext.completeNow();
                         })));
   }
+
+  @Test
+  @DisplayName("APD allow with cache TTL - APD called once for the same user, item and context")
+  void apdAllowCached(VertxTestContext testContext) {
+    Mockito.doAnswer(
+            i -> {
+              List<String> ids = i.getArgument(0);
+              JsonObject resp = new JsonObject();
+              for (String id : ids) {
+                resp.put(id, new JsonObject());
+              }
+              return Future.succeededFuture(resp);
+            })
+        .when(registrationService)
+        .getUserDetails(any());
+
+    Mockito.doAnswer(
+            i -> {
+              JsonObject resp =
+                  new JsonObject().put("accessToken", RandomStringUtils.randomAlphabetic(30));
+              return Future.succeededFuture(resp);
+            })
+        .when(tokenService)
+        .getAuthServerToken(any());
+
+    JsonObject apdConstraints = new JsonObject().put("access", true);
+    JsonObject webClientResp =
+        new JsonObject()
+            .put(APD_RESP_TYPE, APD_URN_ALLOW)
+            .put(APD_CONSTRAINTS, apdConstraints)
+            .put(APD_RESP_CACHE_TTL, 60);
+
+    ApdWebClient cachingWebClient = Mockito.mock(ApdWebClient.class);
+    Mockito.when(cachingWebClient.callVerifyApdEndpoint(any(), any(), any()))
+        .thenReturn(Future.succeededFuture(webClientResp));
+
+    ApdDecisionCache decisionCache = new ApdDecisionCache(vertxObj, 10, 300);
+    ApdService cachingApdService =
+        new ApdServiceImpl(
+            pool,
+            new ServerRegistry(vertxObj, pool, connectOptions),
+            cachingWebClient,
+            registrationService,
+            tokenService,
+            decisionCache);
+
+    UUID userId = UUID.randomUUID();
+    UUID ownerId = UUID.randomUUID();
+    String itemId = RandomStringUtils.randomAlphabetic(20).toLowerCase();
+    String itemType = RandomStringUtils.randomAlphabetic(10).toLowerCase();
+    String resSerUrl = RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".com";
+
+    JsonObject apdContext =
+        new JsonObject()
+            .put("userId", userId.toString())
+            .put("ownerId", ownerId.toString())
+            .put("apdUrl", ACTIVE_APD)
+            .put("itemId", itemId)
+            .put("itemType", itemType)
+            .put("resSerUrl", resSerUrl)
+            .put("context", new JsonObject());
+
+    JsonObject otherContext =
+        apdContext.copy().put("context", new JsonObject().put("purpose", "research"));
+
+    cachingApdService
+        .callApd(apdContext)
+        .compose(res -> cachingApdService.callApd(apdContext))
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(
+                              response.getString(CREATE_TOKEN_STATUS), CREATE_TOKEN_SUCCESS);
+                          assertEquals(response.getString(CREATE_TOKEN_CAT_ID), itemId);
+                          assertEquals(response.getString(CREATE_TOKEN_URL), resSerUrl);
+                          assertEquals(
+                              response.getJsonObject(CREATE_TOKEN_CONSTRAINTS), apdConstraints);
+                          Mockito.verify(cachingWebClient, Mockito.times(1))
+                              .callVerifyApdEndpoint(any(), any(), any());
+                        })))
+        .compose(res -> cachingApdService.callApd(otherContext))
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          /* a different context is a different request to the APD */
+                          Mockito.verify(cachingWebClient, Mockito.times(2))
+                              .callVerifyApdEndpoint(any(), any(), any());
+                          decisionCache.close().onComplete(testContext.succeedingThenComplete());
+                        })));
+  }
 }
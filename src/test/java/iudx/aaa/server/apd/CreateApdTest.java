@@ -30,6 +30,7 @@ import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.registration.Utils;
@@ -138,7 +139,12 @@ public class CreateApdTest {
         .onSuccess(
             succ -> {
               apdService =
-                  new ApdServiceImpl(pool, apdWebClient, registrationService, tokenService);
+                  new ApdServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      apdWebClient,
+                      registrationService,
+                      tokenService);
               testContext.completeNow();
             })
         .onFailure(fail -> testContext.failNow(fail.getMessage()));
@@ -2,6 +2,8 @@ package iudx.aaa.server.apd;
 
 import static iudx.aaa.server.apd.Constants.ERR_TITLE_INVALID_REQUEST_ID;
 import static iudx.aaa.server.apd.Constants.ERR_TITLE_NO_APPROVED_ROLES;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH;
+import static iudx.aaa.server.apd.Constants.RESP_APD_HEALTH_STATE;
 import static iudx.aaa.server.apd.Constants.RESP_APD_ID;
 import static iudx.aaa.server.apd.Constants.RESP_APD_NAME;
 import static iudx.aaa.server.apd.Constants.RESP_APD_OWNER;
@@ -25,6 +27,7 @@ import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.registration.Utils;
@@ -158,7 +161,12 @@ public class ListApdTest {
         .onSuccess(
             x -> {
               apdService =
-                  new ApdServiceImpl(pool, apdWebClient, registrationService, tokenService);
+                  new ApdServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      apdWebClient,
+                      registrationService,
+                      tokenService);
               testContext.completeNow();
             })
         .onFailure(
@@ -411,6 +419,9 @@ public class ListApdTest {
         .when(registrationService)
         .getUserDetails(Mockito.any());
 
+    Mockito.when(apdWebClient.getApdHealth(Mockito.any()))
+        .thenReturn(new JsonObject().put(RESP_APD_HEALTH_STATE, "closed"));
+
     Checkpoint checkActiveA = testContext.checkpoint();
     Checkpoint checkActiveB = testContext.checkpoint();
     Checkpoint checkInActiveA = testContext.checkpoint();
@@ -428,6 +439,10 @@ public class ListApdTest {
                         for (int i = 0; i < responseArr.size(); i++) {
                           JsonObject obj = responseArr.getJsonObject(i);
 
+                          assertEquals(
+                              obj.getJsonObject(RESP_APD_HEALTH).getString(RESP_APD_HEALTH_STATE),
+                              "closed");
+
                           if (obj.getString(RESP_APD_URL).equals(ACTIVE_A.toLowerCase())) {
                             assertEquals(
                                 obj.getString(RESP_APD_STATUS),
@@ -540,6 +555,7 @@ public class ListApdTest {
                         for (int i = 0; i < responseArr.size(); i++) {
                           JsonObject obj = responseArr.getJsonObject(i);
 
+                          assertTrue(!obj.containsKey(RESP_APD_HEALTH));
                           assertTrue(
                               !obj.getString(RESP_APD_STATUS)
                                   .equals(ApdStatus.INACTIVE.toString().toLowerCase()));
@@ -2,6 +2,7 @@ package iudx.aaa.server.apd;
 
 import static iudx.aaa.server.apd.Constants.APD_CONSTRAINTS;
 import static iudx.aaa.server.apd.Constants.APD_REQ_CONTEXT;
+import static iudx.aaa.server.apd.Constants.APD_RESP_CACHE_TTL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_DETAIL;
 import static iudx.aaa.server.apd.Constants.APD_RESP_LINK;
 import static iudx.aaa.server.apd.Constants.APD_RESP_SESSIONID;
@@ -29,7 +30,7 @@ import org.apache.logging.log4j.Logger;
  */
 public class TestApdServerVerticle extends AbstractVerticle {
 
-  public static final int VERIFY_ERRORS = 22;
+  public static final int VERIFY_ERRORS = 24;
   private Router router = Router.router(vertx);
   private int verifyErrorCounter = 0;
   private HttpServer server;
@@ -83,6 +84,14 @@ public class TestApdServerVerticle extends AbstractVerticle {
                     .setStatusCode(200)
                     .putHeader("Content-type", "application/json")
                     .end(jsonResponse.encode());
+              } else if (body.getJsonObject(APD_REQ_CONTEXT).containsKey("TestSuccessWCacheTtl")) {
+                HttpServerResponse response = context.response();
+                JsonObject jsonResponse =
+                    new JsonObject().put(APD_RESP_TYPE, APD_URN_ALLOW).put(APD_RESP_CACHE_TTL, 60);
+                response
+                    .setStatusCode(200)
+                    .putHeader("Content-type", "application/json")
+                    .end(jsonResponse.encode());
               } else {
                 HttpServerResponse response = context.response();
                 JsonObject jsonResponse = new JsonObject().put(APD_RESP_TYPE, APD_URN_ALLOW);
@@ -279,6 +288,24 @@ public class TestApdServerVerticle extends AbstractVerticle {
             .putHeader("Content-type", "application/json")
             .end(jsonResponse.encode());
         break;
+      case 22:
+        /* sending allow with a cache TTL that is not an integer */
+        jsonResponse =
+            new JsonObject().put(APD_RESP_TYPE, APD_URN_ALLOW).put(APD_RESP_CACHE_TTL, "60");
+        response
+            .setStatusCode(200)
+            .putHeader("Content-type", "application/json")
+            .end(jsonResponse.encode());
+        break;
+      case 23:
+        /* sending allow with a negative cache TTL */
+        jsonResponse =
+            new JsonObject().put(APD_RESP_TYPE, APD_URN_ALLOW).put(APD_RESP_CACHE_TTL, -1);
+        response
+            .setStatusCode(200)
+            .putHeader("Content-type", "application/json")
+            .end(jsonResponse.encode());
+        break;
       case VERIFY_ERRORS:
         /* sending nulls in response */
         jsonResponse = new JsonObject().put(APD_RESP_TYPE, null).put(APD_RESP_DETAIL, "something");
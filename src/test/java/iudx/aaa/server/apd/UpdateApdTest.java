@@ -29,6 +29,7 @@ import iudx.aaa.server.apiserver.ApdUpdateRequest;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.registration.Utils;
@@ -165,7 +166,12 @@ public class UpdateApdTest {
         .onSuccess(
             x -> {
               apdService =
-                  new ApdServiceImpl(pool, apdWebClient, registrationService, tokenService);
+                  new ApdServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      apdWebClient,
+                      registrationService,
+                      tokenService);
               testContext.completeNow();
             })
         .onFailure(
@@ -0,0 +1,91 @@
+package iudx.aaa.server.apiserver;
+
+import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
+import static iudx.aaa.server.apiserver.util.Urn.URN_SUCCESS;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.Response.ResponseBuilder;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks converting a {@link Response} to JSON, which is done for every API response. Uses a
+ * token response as a typical success response and an invalid input response as a typical error
+ * response.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+
+  private Response success;
+  private Response error;
+
+  @Setup
+  public void setup() {
+    JsonObject token =
+        new JsonObject()
+            .put("accessToken", "eyJ0eXAiOiJKV1QiLCJhbGciOiJFUzI1NiJ9." + UUID.randomUUID())
+            .put("expiry", System.currentTimeMillis() / 1000)
+            .put("server", "rs.iudx.io");
+
+    success =
+        new ResponseBuilder()
+            .status(200)
+            .type(URN_SUCCESS)
+            .title("Token created")
+            .objectResults(token)
+            .build();
+
+    error =
+        new ResponseBuilder()
+            .status(400)
+            .type(URN_INVALID_INPUT)
+            .title("Invalid input")
+            .detail("Invalid input")
+            .arrayResults(new JsonArray().add(new JsonObject().put("id", UUID.randomUUID())))
+            .build();
+  }
+
+  @Benchmark
+  public JsonObject successToJson() {
+    return success.toJson();
+  }
+
+  @Benchmark
+  public String successToJsonString() {
+    return success.toJsonString();
+  }
+
+  @Benchmark
+  public JsonObject errorToJson() {
+    return error.toJson();
+  }
+
+  @Benchmark
+  public String errorToJsonString() {
+    return error.toJsonString();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ResponseBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,67 @@
+package iudx.aaa.server.apiserver;
+
+import io.vertx.core.json.JsonArray;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks {@link User#getResServersForRole(Roles)}, which is called for most requests to check
+ * if the user has a role on a resource server, for a role the user has and one the user does not
+ * have.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+
+  private User user;
+
+  @Setup
+  public void setup() {
+    user =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .name("Foo", "Bar")
+            .roles(List.of(Roles.CONSUMER, Roles.PROVIDER))
+            .rolesToRsMapping(
+                Map.of(
+                    "consumer",
+                    new JsonArray().add("rs.iudx.io").add("rs.iudx.org").add("rs.example.com"),
+                    "provider",
+                    new JsonArray().add("rs.iudx.io")))
+            .build();
+  }
+
+  @Benchmark
+  public boolean ownedRole() {
+    return user.getResServersForRole(Roles.CONSUMER).contains("rs.example.com");
+  }
+
+  @Benchmark
+  public boolean missingRole() {
+    return user.getResServersForRole(Roles.DELEGATE).contains("rs.example.com");
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(UserBenchmark.class.getSimpleName()).build()).run();
+  }
+}
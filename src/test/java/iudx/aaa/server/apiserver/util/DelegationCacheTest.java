@@ -0,0 +1,154 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_ADDRESS;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_DELEGATORS;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_IDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.DelegationInformation;
+import iudx.aaa.server.apiserver.Roles;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the delegation cache. */
+@ExtendWith(VertxExtension.class)
+public class DelegationCacheTest {
+
+  private static DelegationInformation delegation(UUID delegationId) {
+    return new DelegationInformation(
+        delegationId, UUID.randomUUID(), Roles.PROVIDER, "rs.iudx.io");
+  }
+
+  @Test
+  @DisplayName("Delegation is cached for the delegate until the TTL expires")
+  void ttl(Vertx vertx) {
+    FakeTicker ticker = new FakeTicker();
+    DelegationCache cache = new DelegationCache(vertx, 10, 60, ticker);
+
+    UUID delegationId = UUID.randomUUID();
+    UUID userId = UUID.randomUUID();
+    DelegationInformation delegation = delegation(delegationId);
+
+    assertNull(cache.get(delegationId, userId));
+    cache.put(userId, delegation);
+
+    DelegationInformation cached = cache.get(delegationId, userId);
+    assertNotNull(cached);
+    assertEquals(delegation.toJson(), cached.toJson());
+
+    /* only the delegate can use the delegation */
+    assertNull(cache.get(delegationId, UUID.randomUUID()));
+
+    ticker.advance(59);
+    assertNotNull(cache.get(delegationId, userId));
+    ticker.advance(1);
+    assertNull(cache.get(delegationId, userId));
+
+    cache.close();
+  }
+
+  @Test
+  @DisplayName("Changes to a returned delegation do not change the cached delegation")
+  void copies(Vertx vertx) {
+    DelegationCache cache = new DelegationCache(vertx, 10, 60);
+
+    UUID delegationId = UUID.randomUUID();
+    UUID userId = UUID.randomUUID();
+    cache.put(userId, delegation(delegationId));
+
+    cache.get(delegationId, userId).setDelegatedRsUrl("other.iudx.io");
+    assertEquals("rs.iudx.io", cache.get(delegationId, userId).getDelegatedRsUrl());
+
+    cache.close();
+  }
+
+  @Test
+  @DisplayName("Deleted delegations are evicted when published on the event bus")
+  void eviction(Vertx vertx, VertxTestContext testContext) {
+    DelegationCache cache = new DelegationCache(vertx, 10, 60);
+
+    UUID deletedId = UUID.randomUUID();
+    UUID keptId = UUID.randomUUID();
+    UUID userId = UUID.randomUUID();
+    cache.put(userId, delegation(deletedId));
+    cache.put(userId, delegation(keptId));
+    assertEquals(2, cache.size());
+
+    vertx
+        .eventBus()
+        .publish(
+            DELEGATION_CACHE_ADDRESS,
+            new JsonObject().put(DELEGATION_CACHE_IDS, new JsonArray().add(deletedId.toString())));
+
+    /* the consumer runs on the event loop after the publish */
+    vertx.setTimer(
+        100,
+        id ->
+            testContext.verify(
+                () -> {
+                  assertNull(cache.get(deletedId, userId));
+                  assertNotNull(cache.get(keptId, userId));
+                  cache.close().onComplete(testContext.succeedingThenComplete());
+                }));
+  }
+
+  @Test
+  @DisplayName("Delegations of a delegator are evicted when published on the event bus")
+  void delegatorEviction(Vertx vertx, VertxTestContext testContext) {
+    DelegationCache cache = new DelegationCache(vertx, 10, 60);
+
+    DelegationInformation evicted = delegation(UUID.randomUUID());
+    DelegationInformation kept = delegation(UUID.randomUUID());
+    UUID evictedId = UUID.fromString(evicted.getDelegationId());
+    UUID keptId = UUID.fromString(kept.getDelegationId());
+    UUID userId = UUID.randomUUID();
+    cache.put(userId, evicted);
+    cache.put(userId, kept);
+
+    vertx
+        .eventBus()
+        .publish(
+            DELEGATION_CACHE_ADDRESS,
+            new JsonObject()
+                .put(
+                    DELEGATION_CACHE_DELEGATORS,
+                    new JsonArray().add(evicted.getDelegatorUserId())));
+
+    vertx.setTimer(
+        100,
+        id ->
+            testContext.verify(
+                () -> {
+                  assertNull(cache.get(evictedId, userId));
+                  assertNotNull(cache.get(keptId, userId));
+                  cache.close().onComplete(testContext.succeedingThenComplete());
+                }));
+  }
+
+  @Test
+  @DisplayName("A size or TTL of 0 disables the cache")
+  void disabled(Vertx vertx) {
+    DelegationCache noSize = new DelegationCache(vertx, 0, 60);
+    DelegationCache noTtl = new DelegationCache(vertx, 10, 0);
+
+    UUID delegationId = UUID.randomUUID();
+    UUID userId = UUID.randomUUID();
+    noSize.put(userId, delegation(delegationId));
+    noTtl.put(userId, delegation(delegationId));
+
+    assertNull(noSize.get(delegationId, userId));
+    assertNull(noTtl.get(delegationId, userId));
+
+    noSize.close();
+    noTtl.close();
+  }
+}
@@ -0,0 +1,24 @@
+package iudx.aaa.server.apiserver.util;
+
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Ticker for cache tests that only moves when advanced. */
+public class FakeTicker extends Ticker {
+  private final AtomicLong nanos = new AtomicLong();
+
+  @Override
+  public long read() {
+    return nanos.get();
+  }
+
+  /**
+   * Move the ticker forward.
+   *
+   * @param seconds the number of seconds to advance by
+   */
+  public void advance(long seconds) {
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+}
@@ -0,0 +1,89 @@
+package iudx.aaa.server.apiserver.util;
+
+import io.vertx.pgclient.impl.RowImpl;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.desc.ColumnDescriptor;
+import io.vertx.sqlclient.impl.RowDesc;
+import iudx.aaa.server.apiserver.Roles;
+import iudx.aaa.server.apiserver.User;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks collecting the role rows fetched by {@link FetchRoles} and building the {@link User}
+ * object from them, which is done for almost every authenticated request. The rows are those of a
+ * user with the consumer, provider and delegate roles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchRolesBenchmark {
+
+  /* the columns of the role queries, as described by Postgres in the result */
+  private static final List<String> COLUMNS = List.of("role", "rs_urls");
+  private static final RowDesc ROLE_COLUMNS =
+      new RowDesc(new ColumnDescriptor[COLUMNS.size()]) {
+        @Override
+        public int columnIndex(String column) {
+          return COLUMNS.indexOf(column);
+        }
+
+        @Override
+        public List<String> columnNames() {
+          return COLUMNS;
+        }
+      };
+
+  private final UUID userId = UUID.randomUUID();
+  private List<Row> rows;
+
+  @Setup
+  public void setup() {
+    rows =
+        List.of(
+            roleRow("CONSUMER", "rs.iudx.io", "rs.iudx.org", "rs.example.com"),
+            roleRow("PROVIDER", "rs.iudx.io"),
+            roleRow("DELEGATE", "rs.iudx.io", "rs.iudx.org"));
+  }
+
+  @Benchmark
+  public User collectRoles() {
+    UserBuilder userBuilder = new UserBuilder().userId(userId).name("Foo", "Bar");
+    return FetchRoles.toUser(
+        userBuilder,
+        new ArrayList<Roles>(),
+        rows.stream().collect(FetchRoles.roleToRsCollector));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FetchRolesBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+  /** A row with the <tt>role</tt> and <tt>rs_urls</tt> columns of the role queries. */
+  private static Row roleRow(String role, String... rsUrls) {
+    Row row = new RowImpl(ROLE_COLUMNS);
+    row.addString(role);
+    row.addValue(rsUrls);
+    return row;
+  }
+}
@@ -0,0 +1,247 @@
+package iudx.aaa.server.apiserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.ApdStatus;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.configuration.Configuration;
+import iudx.aaa.server.registration.Utils;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the in-memory resource server and APD registry. */
+@ExtendWith(VertxExtension.class)
+public class ServerRegistryTest {
+  private static Logger LOGGER = LogManager.getLogger(ServerRegistryTest.class);
+
+  private static final String SQL_UPDATE_APD_STATUS =
+      "UPDATE apds SET status = $1::apd_status_enum WHERE url = $2::text";
+
+  private static final String DUMMY_SERVER =
+      "dummy" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+  private static final String NEW_SERVER =
+      "dummy" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+  private static final String LATE_SERVER =
+      "dummy" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+  private static final String DUMMY_APD =
+      "apd" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+
+  private static Vertx vertxObj;
+  private static PgPool pool;
+  private static PgConnectOptions connectOptions;
+  private static Utils utils;
+  private static ServerRegistry registry;
+
+  @BeforeAll
+  @DisplayName("Deploying Verticle")
+  static void startVertx(Vertx vertx, VertxTestContext testContext) {
+    vertxObj = vertx;
+    JsonObject dbConfig = new Configuration().configLoader(2, vertx);
+
+    Map<String, String> schemaProp = Map.of("search_path", dbConfig.getString("databaseSchema"));
+    connectOptions =
+        new PgConnectOptions()
+            .setPort(Integer.parseInt(dbConfig.getString("databasePort")))
+            .setHost(dbConfig.getString("databaseIP"))
+            .setDatabase(dbConfig.getString("databaseName"))
+            .setUser(dbConfig.getString("databaseUserName"))
+            .setPassword(dbConfig.getString("databasePassword"))
+            .setProperties(schemaProp);
+    PoolOptions poolOptions =
+        new PoolOptions().setMaxSize(Integer.parseInt(dbConfig.getString("poolSize")));
+
+    pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    utils = new Utils(pool);
+    /* every miss reloads, so that servers added by the tests are found right away */
+    registry = new ServerRegistry(vertx, pool, connectOptions, 0);
+
+    utils
+        .createFakeResourceServer(DUMMY_SERVER, new UserBuilder().userId(UUID.randomUUID()).build())
+        .compose(
+            res ->
+                utils.createFakeApd(
+                    DUMMY_APD,
+                    new UserBuilder().userId(UUID.randomUUID()).build(),
+                    ApdStatus.ACTIVE))
+        .compose(res -> registry.start())
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
+  @AfterAll
+  public static void finish(VertxTestContext testContext) {
+    LOGGER.info("Finishing....");
+    registry.close();
+    utils
+        .deleteFakeResourceServer()
+        .compose(res -> utils.deleteFakeApd())
+        .compose(res -> utils.deleteFakeUser())
+        .onComplete(
+            x -> {
+              if (x.failed()) {
+                LOGGER.warn(x.cause().getMessage());
+              }
+              vertxObj.close(testContext.succeeding(response -> testContext.completeNow()));
+            });
+  }
+
+  /** Poll the registry until the APD has the expected status, or give up after some time. */
+  private static Future<ApdStatus> awaitApdStatus(Vertx vertx, ApdStatus expected, int tries) {
+    return registry
+        .getApdStatus(DUMMY_APD)
+        .compose(
+            status -> {
+              if (status.get().equals(expected) || tries == 0) {
+                return Future.succeededFuture(status.get());
+              }
+              Promise<Void> wait = Promise.promise();
+              vertx.setTimer(100, id -> wait.complete());
+              return wait.future().compose(v -> awaitApdStatus(vertx, expected, tries - 1));
+            });
+  }
+
+  @Test
+  @DisplayName("Registered servers are found and unknown servers are not")
+  void lookups(VertxTestContext testContext) {
+    String unknown = "unknown" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+
+    registry
+        .resourceServerExists(DUMMY_SERVER)
+        .compose(
+            exists -> {
+              assertTrue(exists);
+              return registry.resourceServerExists(unknown);
+            })
+        .compose(
+            exists -> {
+              assertFalse(exists);
+              return registry.getResourceServerIds(List.of(DUMMY_SERVER, unknown));
+            })
+        .compose(
+            ids -> {
+              assertEquals(1, ids.size());
+              assertTrue(ids.containsKey(DUMMY_SERVER));
+              return registry.getApdStatus(unknown);
+            })
+        .compose(
+            status -> {
+              assertEquals(Optional.empty(), status);
+              return registry.isResourceServerOrActiveApd(DUMMY_APD);
+            })
+        .onComplete(
+            testContext.succeeding(
+                valid ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(valid);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Server added after the registry was loaded is found")
+  void newServerFound(VertxTestContext testContext) {
+    registry
+        .resourceServerExists(DUMMY_SERVER)
+        .compose(
+            res ->
+                utils.createFakeResourceServer(
+                    NEW_SERVER, new UserBuilder().userId(UUID.randomUUID()).build()))
+        .compose(res -> registry.resourceServerExists(NEW_SERVER))
+        .onComplete(
+            testContext.succeeding(
+                exists ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(exists);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("APD status change is picked up through the database notification")
+  void statusChangeNotified(Vertx vertx, VertxTestContext testContext) {
+    awaitApdStatus(vertx, ApdStatus.ACTIVE, 0)
+        .compose(
+            status -> {
+              assertEquals(ApdStatus.ACTIVE, status);
+              return pool.preparedQuery(SQL_UPDATE_APD_STATUS)
+                  .execute(Tuple.of(ApdStatus.INACTIVE.toString(), DUMMY_APD));
+            })
+        .compose(res -> awaitApdStatus(vertx, ApdStatus.INACTIVE, 50))
+        .compose(
+            status -> {
+              assertEquals(ApdStatus.INACTIVE, status);
+              return registry.isResourceServerOrActiveApd(DUMMY_APD);
+            })
+        .compose(
+            valid -> {
+              assertFalse(valid);
+              return pool.preparedQuery(SQL_UPDATE_APD_STATUS)
+                  .execute(Tuple.of(ApdStatus.ACTIVE.toString(), DUMMY_APD));
+            })
+        .compose(res -> awaitApdStatus(vertx, ApdStatus.ACTIVE, 50))
+        .onComplete(
+            testContext.succeeding(
+                status ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(ApdStatus.ACTIVE, status);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Misses reload the tables at most once per interval")
+  void missReloadThrottled(Vertx vertx, VertxTestContext testContext) {
+    String unknown = "unknown" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+    /* not started, so only misses load the tables */
+    ServerRegistry throttled = new ServerRegistry(vertx, pool, connectOptions, 60000);
+
+    throttled
+        .resourceServerExists(unknown)
+        .compose(
+            exists -> {
+              assertFalse(exists);
+              return utils.createFakeResourceServer(
+                  LATE_SERVER, new UserBuilder().userId(UUID.randomUUID()).build());
+            })
+        .compose(res -> throttled.resourceServerExists(LATE_SERVER))
+        .compose(
+            exists -> {
+              /* answered from the load made for the first miss */
+              assertFalse(exists);
+              return registry.resourceServerExists(LATE_SERVER);
+            })
+        .onComplete(
+            testContext.succeeding(
+                exists ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(exists);
+                          throttled.close();
+                          testContext.completeNow();
+                        })));
+  }
+}
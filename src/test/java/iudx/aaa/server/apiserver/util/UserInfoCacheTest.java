@@ -0,0 +1,102 @@
+package iudx.aaa.server.apiserver.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the userinfo cache. */
+@ExtendWith(VertxExtension.class)
+public class UserInfoCacheTest {
+
+  private static final long NOW = 1700000000;
+
+  private static JsonObject userInfo() {
+    return new JsonObject()
+        .put("sub", UUID.randomUUID().toString())
+        .put("given_name", "Foo")
+        .put("family_name", "Bar");
+  }
+
+  @Test
+  @DisplayName("Userinfo is cached for the token until the TTL expires")
+  void ttl(Vertx vertx) {
+    FakeTicker ticker = new FakeTicker();
+    AtomicLong clock = new AtomicLong(NOW);
+    UserInfoCache cache = new UserInfoCache(vertx, 10, 60, ticker, clock::get);
+
+    JsonObject info = userInfo();
+    assertNull(cache.get("token"));
+    cache.put("token", info, NOW + 3600);
+
+    assertEquals(info, cache.get("token"));
+    assertNull(cache.get("other-token"));
+
+    ticker.advance(59);
+    clock.addAndGet(59);
+    assertNotNull(cache.get("token"));
+    ticker.advance(1);
+    clock.addAndGet(1);
+    assertNull(cache.get("token"));
+  }
+
+  @Test
+  @DisplayName("Userinfo is not served once the token expires")
+  void exp(Vertx vertx) {
+    FakeTicker ticker = new FakeTicker();
+    AtomicLong clock = new AtomicLong(NOW);
+    UserInfoCache cache = new UserInfoCache(vertx, 10, 60, ticker, clock::get);
+
+    cache.put("token", userInfo(), NOW + 10);
+    assertNotNull(cache.get("token"));
+
+    ticker.advance(10);
+    clock.addAndGet(10);
+    assertNull(cache.get("token"));
+    assertEquals(0, cache.size());
+
+    /* expired tokens are not cached */
+    cache.put("expired", userInfo(), NOW);
+    assertNull(cache.get("expired"));
+
+    /* without an exp, only the TTL applies */
+    cache.put("no-exp", userInfo(), null);
+    assertNotNull(cache.get("no-exp"));
+  }
+
+  @Test
+  @DisplayName("Changes to returned userinfo do not change the cached userinfo")
+  void copies(Vertx vertx) {
+    UserInfoCache cache = new UserInfoCache(vertx, 10, 60);
+
+    JsonObject info = userInfo();
+    JsonObject expected = info.copy();
+    cache.put("token", info, null);
+    info.put("given_name", "Changed");
+
+    JsonObject cached = cache.get("token");
+    assertEquals(expected, cached);
+    cached.put("family_name", "Changed");
+    assertEquals(expected, cache.get("token"));
+  }
+
+  @Test
+  @DisplayName("Size or TTL of 0 disables the cache")
+  void disabled(Vertx vertx) {
+    UserInfoCache noSize = new UserInfoCache(vertx, 0, 60);
+    noSize.put("token", userInfo(), null);
+    assertNull(noSize.get("token"));
+
+    UserInfoCache noTtl = new UserInfoCache(vertx, 10, 0);
+    noTtl.put("token", userInfo(), null);
+    assertNull(noTtl.get("token"));
+  }
+}
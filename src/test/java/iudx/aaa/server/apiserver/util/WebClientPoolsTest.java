@@ -0,0 +1,118 @@
+package iudx.aaa.server.apiserver.util;
+
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP2;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_CONNECT_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_HOSTS;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_IDLE_TIMEOUT;
+import static iudx.aaa.server.apiserver.util.Constants.CONFIG_HTTP_MAX_POOL_SIZE;
+import static iudx.aaa.server.apiserver.util.Constants.DEFAULT_HTTP_MAX_POOL_SIZE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the per-host HTTP connection pools. */
+@ExtendWith(VertxExtension.class)
+public class WebClientPoolsTest {
+
+  private static final String APD_HOST = "apd.iudx.io";
+  private static final String OTHER_HOST = "other-apd.iudx.io";
+
+  @Test
+  @DisplayName("Host options override the common options, which override the defaults")
+  void hostOptions(Vertx vertx) {
+    JsonObject config =
+        new JsonObject()
+            .put(CONFIG_HTTP_CONNECT_TIMEOUT, 2000)
+            .put(CONFIG_HTTP_IDLE_TIMEOUT, 30)
+            .put(
+                CONFIG_HTTP_HOSTS,
+                new JsonObject()
+                    .put(
+                        APD_HOST,
+                        new JsonObject()
+                            .put(CONFIG_HTTP_MAX_POOL_SIZE, 50)
+                            .put(CONFIG_HTTP2, true)));
+    WebClientPools pools =
+        new WebClientPools(vertx, "apd", new WebClientOptions().setSsl(true), config);
+
+    WebClientOptions apd = pools.options(APD_HOST);
+    assertEquals(50, apd.getMaxPoolSize());
+    assertEquals(2000, apd.getConnectTimeout());
+    assertEquals(30, apd.getIdleTimeout());
+    assertEquals(HttpVersion.HTTP_2, apd.getProtocolVersion());
+    assertTrue(apd.isUseAlpn());
+    assertTrue(apd.isSsl());
+
+    WebClientOptions other = pools.options(OTHER_HOST);
+    assertEquals(DEFAULT_HTTP_MAX_POOL_SIZE, other.getMaxPoolSize());
+    assertEquals(2000, other.getConnectTimeout());
+    assertEquals(HttpVersion.HTTP_1_1, other.getProtocolVersion());
+
+    pools.close();
+  }
+
+  @Test
+  @DisplayName("Each host gets its own web client")
+  void clientPerHost(Vertx vertx) {
+    WebClientPools pools =
+        new WebClientPools(vertx, "apd", new WebClientOptions(), new JsonObject());
+
+    assertSame(pools.client(APD_HOST), pools.client(APD_HOST));
+    assertNotSame(pools.client(APD_HOST), pools.client(OTHER_HOST));
+
+    pools.close();
+  }
+
+  @Test
+  @DisplayName("Invalid configuration is rejected on creation")
+  void invalidConfig(Vertx vertx) {
+    JsonObject config =
+        new JsonObject()
+            .put(
+                CONFIG_HTTP_HOSTS,
+                new JsonObject().put(APD_HOST, new JsonObject().put(CONFIG_HTTP_MAX_POOL_SIZE, 0)));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new WebClientPools(vertx, "apd", new WebClientOptions(), config));
+  }
+
+  @Test
+  @DisplayName("Requests are sent using the web client of the host")
+  void send(Vertx vertx, VertxTestContext testContext) {
+    WebClientPools pools =
+        new WebClientPools(vertx, "test", new WebClientOptions(), new JsonObject());
+
+    vertx
+        .createHttpServer()
+        .requestHandler(req -> req.response().end("ok"))
+        .listen(0)
+        .compose(
+            server ->
+                pools.send(
+                    "localhost",
+                    client -> client.get(server.actualPort(), "localhost", "/").send()))
+        .onComplete(
+            testContext.succeeding(
+                resp ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(200, resp.statusCode());
+                          assertEquals("ok", resp.bodyAsString());
+                          pools.close();
+                          testContext.completeNow();
+                        })));
+  }
+}
@@ -0,0 +1,143 @@
+package iudx.aaa.server.policy;
+
+import static iudx.aaa.server.policy.Constants.ERR_NOT_VALID_RESOURCE;
+import static iudx.aaa.server.policy.Constants.INTERNALERROR;
+import static iudx.aaa.server.policy.Constants.ITEMNOTFOUND;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.ItemType;
+import iudx.aaa.server.apiserver.ResourceObj;
+import iudx.aaa.server.apiserver.ResourceObj.ResourceObjBuilder;
+import iudx.aaa.server.apiserver.Response;
+import iudx.aaa.server.apiserver.Response.ResponseBuilder;
+import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.FakeTicker;
+import iudx.aaa.server.apiserver.util.Urn;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the catalogue cache. */
+@ExtendWith(VertxExtension.class)
+public class CatalogueCacheTest {
+
+  private static ResourceObj resource(UUID itemId) {
+    return new ResourceObjBuilder()
+        .id(itemId)
+        .itemType(ItemType.RESOURCE)
+        .ownerId(UUID.randomUUID())
+        .resGrpId(UUID.randomUUID())
+        .resServerUrl("rs.iudx.io")
+        .apdUrl("apd.iudx.io")
+        .accessType("SECURE")
+        .build();
+  }
+
+  private static Future<ResourceObj> invalid(UUID itemId, String title) {
+    Response r =
+        new ResponseBuilder()
+            .type(Urn.URN_INVALID_INPUT.toString())
+            .title(title)
+            .detail(itemId.toString())
+            .status(400)
+            .build();
+    return Future.failedFuture(new ComposeException(r));
+  }
+
+  @Test
+  @DisplayName("Resource is cached for the TTL and invalid items for the negative TTL")
+  void ttlAndNegativeTtl(Vertx vertx, VertxTestContext testContext) {
+    FakeTicker ticker = new FakeTicker();
+    CatalogueCache cache = new CatalogueCache(vertx, 10, 300, 30, ticker);
+
+    UUID resourceId = UUID.randomUUID();
+    UUID notFoundId = UUID.randomUUID();
+    UUID notResourceId = UUID.randomUUID();
+    ResourceObj resource = resource(resourceId);
+
+    cache.put(resourceId, Future.succeededFuture(resource));
+    cache.put(notFoundId, invalid(notFoundId, ITEMNOTFOUND));
+    cache.put(notResourceId, invalid(notResourceId, ERR_NOT_VALID_RESOURCE));
+
+    assertEquals(resource, cache.get(resourceId).result());
+
+    Future<ResourceObj> notFound = cache.get(notFoundId);
+    assertTrue(notFound.failed());
+    assertEquals(ITEMNOTFOUND, ((ComposeException) notFound.cause()).getResponse().getTitle());
+    assertNotNull(cache.get(notResourceId));
+
+    ticker.advance(30);
+    assertNull(cache.get(notFoundId));
+    assertNull(cache.get(notResourceId));
+    assertNotNull(cache.get(resourceId));
+
+    ticker.advance(270);
+    assertNull(cache.get(resourceId));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Other failures are not cached")
+  void errorsNotCached(Vertx vertx, VertxTestContext testContext) {
+    CatalogueCache cache = new CatalogueCache(vertx, 10, 300, 30);
+    UUID itemId = UUID.randomUUID();
+
+    cache.put(itemId, Future.failedFuture(INTERNALERROR));
+    cache.put(itemId, invalid(itemId, INTERNALERROR));
+    assertNull(cache.get(itemId));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Cache size of 0 disables caching")
+  void disabled(Vertx vertx, VertxTestContext testContext) {
+    CatalogueCache cache = new CatalogueCache(vertx, 0, 300, 30);
+    UUID itemId = UUID.randomUUID();
+
+    cache.put(itemId, Future.succeededFuture(resource(itemId)));
+    assertNull(cache.get(itemId));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Evicted item is removed from all caches")
+  void evict(Vertx vertx, VertxTestContext testContext) {
+    CatalogueCache cache = new CatalogueCache(vertx, 10, 300, 30);
+    CatalogueCache otherInstance = new CatalogueCache(vertx, 10, 300, 30);
+    UUID itemId = UUID.randomUUID();
+    UUID otherItemId = UUID.randomUUID();
+
+    cache.put(itemId, Future.succeededFuture(resource(itemId)));
+    cache.put(otherItemId, invalid(otherItemId, ITEMNOTFOUND));
+    otherInstance.put(itemId, Future.succeededFuture(resource(itemId)));
+
+    cache.invalidate(itemId);
+    assertNull(cache.get(itemId));
+    assertNotNull(cache.get(otherItemId));
+
+    /* eviction on the other instance arrives over the event bus */
+    vertx.setTimer(
+        100,
+        id ->
+            testContext.verify(
+                () -> {
+                  assertNull(otherInstance.get(itemId));
+                  assertEquals(1, cache.size());
+                  cache
+                      .close()
+                      .compose(res -> otherInstance.close())
+                      .onComplete(testContext.succeedingThenComplete());
+                }));
+  }
+}
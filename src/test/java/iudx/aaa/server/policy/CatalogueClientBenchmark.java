@@ -0,0 +1,152 @@
+package iudx.aaa.server.policy;
+
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RELATION_ENDPOINT;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_ACCESS_POLICY_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_APD_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_USER_ID_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RESOURCE_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_GROUP_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_URL_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_TYPE_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_SUCCESS_URN;
+import static iudx.aaa.server.policy.Constants.RESULTS;
+import static iudx.aaa.server.policy.Constants.TYPE;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClientOptions;
+import iudx.aaa.server.apiserver.ResourceObj;
+import iudx.aaa.server.apiserver.util.WebClientPools;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the latency of an uncached {@link CatalogueClient#getResourceDetails(UUID)} against a
+ * local stub catalogue that answers every request after <tt>delayMs</tt>. Since the
+ * <tt>/item</tt> and <tt>/relationship</tt> requests are sent concurrently, a lookup takes about
+ * <tt>delayMs</tt> instead of twice that when the requests were sent one after the other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogueClientBenchmark {
+
+  @Param({"5", "20"})
+  public long delayMs;
+
+  private Vertx vertx;
+  private Context context;
+  private CatalogueClient client;
+
+  @Setup
+  public void setup() throws Exception {
+    vertx = Vertx.vertx();
+
+    int port =
+        vertx
+            .createHttpServer()
+            .requestHandler(req -> vertx.setTimer(delayMs, id -> respond(req)))
+            .listen(0)
+            .toCompletionStage()
+            .toCompletableFuture()
+            .get()
+            .actualPort();
+
+    JsonObject options =
+        new JsonObject()
+            .put("catServerHost", "localhost")
+            .put("catServerPort", String.valueOf(port))
+            .put("catServerBasePath", "");
+
+    /* the client is used on a single context, as in the Policy Verticle */
+    context = vertx.getOrCreateContext();
+    CompletableFuture<CatalogueClient> created = new CompletableFuture<CatalogueClient>();
+    context.runOnContext(
+        v -> {
+          CatalogueCache cache = new CatalogueCache(vertx, 0, 0, 0);
+          WebClientPools pools =
+              new WebClientPools(vertx, "catalogue", new WebClientOptions(), new JsonObject());
+          created.complete(new CatalogueClient(vertx, pools, options, cache));
+        });
+    client = created.get();
+  }
+
+  @TearDown
+  public void tearDown() {
+    vertx.close();
+  }
+
+  private static void respond(HttpServerRequest req) {
+    JsonObject result;
+    if (req.path().equals(CAT_RELATION_ENDPOINT)) {
+      result =
+          new JsonObject()
+              .put(
+                  RESULTS,
+                  new JsonArray()
+                      .add(
+                          new JsonObject()
+                              .put(CAT_RESP_TYPE_KEY, new JsonArray().add(CAT_RESP_RES_SERVER_TYPE))
+                              .put(CAT_RESP_RES_SERVER_URL_KEY, "rs.iudx.io"))
+                      .add(
+                          new JsonObject()
+                              .put(CAT_RESP_TYPE_KEY, new JsonArray().add(CAT_RESP_PROVIDER_TYPE))
+                              .put(CAT_RESP_PROVIDER_USER_ID_KEY, UUID.randomUUID().toString())));
+    } else {
+      result =
+          new JsonObject()
+              .put(
+                  RESULTS,
+                  new JsonArray()
+                      .add(
+                          new JsonObject()
+                              .put(CAT_RESP_TYPE_KEY, new JsonArray().add(CAT_RESP_RESOURCE_TYPE))
+                              .put(CAT_RESP_APD_KEY, "apd.iudx.io")
+                              .put(CAT_RESP_ACCESS_POLICY_KEY, "SECURE")
+                              .put(CAT_RESP_RES_GROUP_KEY, UUID.randomUUID().toString())));
+    }
+    req.response().end(result.put(TYPE, CAT_SUCCESS_URN).encode());
+  }
+
+  @Benchmark
+  public ResourceObj getResourceDetails() throws Exception {
+    CompletableFuture<ResourceObj> resource = new CompletableFuture<ResourceObj>();
+    context.runOnContext(
+        v ->
+            client
+                .getResourceDetails(UUID.randomUUID())
+                .onSuccess(resource::complete)
+                .onFailure(resource::completeExceptionally));
+    return resource.get();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(
+            new OptionsBuilder().include(CatalogueClientBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
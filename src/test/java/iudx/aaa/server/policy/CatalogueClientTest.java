@@ -0,0 +1,246 @@
+package iudx.aaa.server.policy;
+
+import static iudx.aaa.server.policy.CatalogueClient.CAT_ITEM_ENDPOINT;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RELATION_ENDPOINT;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_ACCESS_POLICY_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_APD_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_USER_ID_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RESOURCE_GROUP_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RESOURCE_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_GROUP_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_URL_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_TYPE_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_SUCCESS_URN;
+import static iudx.aaa.server.policy.Constants.ERR_NOT_VALID_RESOURCE;
+import static iudx.aaa.server.policy.Constants.ERR_NOT_VALID_RESOURCE_GROUP;
+import static iudx.aaa.server.policy.Constants.ID;
+import static iudx.aaa.server.policy.Constants.ITEMNOTFOUND;
+import static iudx.aaa.server.policy.Constants.RESULTS;
+import static iudx.aaa.server.policy.Constants.TYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.ItemType;
+import iudx.aaa.server.apiserver.ResourceObj;
+import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.WebClientPools;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for {@link CatalogueClient} against a fake catalogue server. */
+@ExtendWith(VertxExtension.class)
+public class CatalogueClientTest {
+
+  private static final int CONCURRENT_LOOKUPS = 10;
+
+  private static final UUID RESOURCE_ID = UUID.randomUUID();
+  private static final UUID GROUP_ID = UUID.randomUUID();
+  private static final UUID MISSING_ID = UUID.randomUUID();
+
+  /* number of /item calls received per item ID, counted per test */
+  private static final Map<String, AtomicInteger> itemCalls =
+      new ConcurrentHashMap<String, AtomicInteger>();
+
+  private static JsonObject catalogueOptions;
+  private static WebClientPools webClientPools;
+
+  @BeforeAll
+  static void startCatalogue(Vertx vertx, VertxTestContext testContext) {
+    webClientPools =
+        new WebClientPools(vertx, "catalogue", new WebClientOptions(), new JsonObject());
+
+    vertx
+        .createHttpServer()
+        .requestHandler(req -> vertx.setTimer(100, id -> respond(req)))
+        .listen(0)
+        .onSuccess(
+            server ->
+                catalogueOptions =
+                    new JsonObject()
+                        .put("catServerHost", "localhost")
+                        .put("catServerPort", String.valueOf(server.actualPort()))
+                        .put("catServerBasePath", ""))
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
+  @AfterAll
+  static void finish(Vertx vertx, VertxTestContext testContext) {
+    vertx.close(testContext.succeedingThenComplete());
+  }
+
+  @BeforeEach
+  void resetCalls() {
+    itemCalls.clear();
+  }
+
+  /** Respond like the catalogue, after a delay so that lookups overlap. */
+  private static void respond(HttpServerRequest req) {
+    String itemId = req.getParam(ID);
+
+    if (req.path().equals(CAT_ITEM_ENDPOINT)) {
+      itemCalls.computeIfAbsent(itemId, id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    if (!itemId.equals(RESOURCE_ID.toString()) && !itemId.equals(GROUP_ID.toString())) {
+      JsonObject notFound = new JsonObject().put(TYPE, "urn:dx:cat:ItemNotFound");
+      req.response().setStatusCode(404).end(notFound.encode());
+      return;
+    }
+
+    JsonArray results;
+    if (req.path().equals(CAT_RELATION_ENDPOINT)) {
+      results =
+          new JsonArray()
+              .add(
+                  new JsonObject()
+                      .put(CAT_RESP_TYPE_KEY, new JsonArray().add(CAT_RESP_RES_SERVER_TYPE))
+                      .put(CAT_RESP_RES_SERVER_URL_KEY, "rs.iudx.io"))
+              .add(
+                  new JsonObject()
+                      .put(CAT_RESP_TYPE_KEY, new JsonArray().add(CAT_RESP_PROVIDER_TYPE))
+                      .put(CAT_RESP_PROVIDER_USER_ID_KEY, UUID.randomUUID().toString()));
+    } else if (itemId.equals(GROUP_ID.toString())) {
+      results =
+          new JsonArray()
+              .add(
+                  new JsonObject()
+                      .put(CAT_RESP_TYPE_KEY, new JsonArray().add(CAT_RESP_RESOURCE_GROUP_TYPE))
+                      .put(CAT_RESP_APD_KEY, "apd.iudx.io")
+                      .put(CAT_RESP_ACCESS_POLICY_KEY, "SECURE"));
+    } else {
+      results =
+          new JsonArray()
+              .add(
+                  new JsonObject()
+                      .put(CAT_RESP_TYPE_KEY, new JsonArray().add(CAT_RESP_RESOURCE_TYPE))
+                      .put(CAT_RESP_APD_KEY, "apd.iudx.io")
+                      .put(CAT_RESP_ACCESS_POLICY_KEY, "SECURE")
+                      .put(CAT_RESP_RES_GROUP_KEY, UUID.randomUUID().toString()));
+    }
+
+    req.response()
+        .end(new JsonObject().put(TYPE, CAT_SUCCESS_URN).put(RESULTS, results).encode());
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static CompositeFuture lookupConcurrently(CatalogueClient client, UUID itemId) {
+    List<Future> lookups = new ArrayList<Future>();
+    for (int i = 0; i < CONCURRENT_LOOKUPS; i++) {
+      lookups.add(client.getResourceDetails(itemId));
+    }
+    return CompositeFuture.join(lookups);
+  }
+
+  @Test
+  @DisplayName("Concurrent lookups for a resource share one catalogue call")
+  void concurrentLookupsCoalesced(Vertx vertx, VertxTestContext testContext) {
+    /* caching disabled, so only the in-flight call is shared */
+    CatalogueCache cache = new CatalogueCache(vertx, 0, 300, 30);
+    CatalogueClient client = new CatalogueClient(vertx, webClientPools, catalogueOptions, cache);
+
+    lookupConcurrently(client, RESOURCE_ID)
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(1, itemCalls.get(RESOURCE_ID.toString()).get());
+                          ResourceObj first = res.resultAt(0);
+                          assertEquals(RESOURCE_ID, first.getId());
+                          for (int i = 1; i < CONCURRENT_LOOKUPS; i++) {
+                            assertSame(first, res.resultAt(i));
+                          }
+                          assertEquals(0, client.inFlightCount());
+                          cache.close().onComplete(testContext.succeedingThenComplete());
+                        })));
+  }
+
+  @Test
+  @DisplayName("Concurrent lookups for a missing item share one catalogue call and its failure")
+  void concurrentFailuresCoalesced(Vertx vertx, VertxTestContext testContext) {
+    CatalogueCache cache = new CatalogueCache(vertx, 0, 300, 30);
+    CatalogueClient client = new CatalogueClient(vertx, webClientPools, catalogueOptions, cache);
+
+    CompositeFuture lookups = lookupConcurrently(client, MISSING_ID);
+    lookups.onComplete(
+        res ->
+            testContext.verify(
+                () -> {
+                  assertTrue(res.failed());
+                  assertEquals(1, itemCalls.get(MISSING_ID.toString()).get());
+                  for (int i = 0; i < CONCURRENT_LOOKUPS; i++) {
+                    Throwable cause = lookups.cause(i);
+                    assertTrue(cause instanceof ComposeException);
+                    assertEquals(ITEMNOTFOUND, ((ComposeException) cause).getResponse().getTitle());
+                  }
+                  assertEquals(0, client.inFlightCount());
+                  cache.close().onComplete(testContext.succeedingThenComplete());
+                }));
+  }
+
+  @Test
+  @DisplayName("Resource groups are looked up as groups and rejected as resources")
+  void resourceGroupLookup(Vertx vertx, VertxTestContext testContext) {
+    CatalogueCache cache = new CatalogueCache(vertx, 10, 300, 30);
+    CatalogueClient client = new CatalogueClient(vertx, webClientPools, catalogueOptions, cache);
+
+    client
+        .getResourceGroupDetails(GROUP_ID)
+        .compose(
+            group -> {
+              testContext.verify(
+                  () -> {
+                    assertEquals(ItemType.RESOURCE_GROUP, group.getItemType());
+                    assertEquals(GROUP_ID, group.getId());
+                    assertEquals(GROUP_ID, group.getResGrpId());
+                    assertEquals("rs.iudx.io", group.getResServerUrl());
+                  });
+              /* served from the cache, but still not a resource */
+              return client.getResourceDetails(GROUP_ID);
+            })
+        .recover(
+            err -> {
+              testContext.verify(
+                  () -> {
+                    assertTrue(err instanceof ComposeException);
+                    assertEquals(
+                        ERR_NOT_VALID_RESOURCE, ((ComposeException) err).getResponse().getTitle());
+                    assertEquals(1, itemCalls.get(GROUP_ID.toString()).get());
+                  });
+              return client.getResourceGroupDetails(RESOURCE_ID);
+            })
+        .onComplete(
+            testContext.failing(
+                err ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(err instanceof ComposeException);
+                          assertEquals(
+                              ERR_NOT_VALID_RESOURCE_GROUP,
+                              ((ComposeException) err).getResponse().getTitle());
+                          cache.close().onComplete(testContext.succeedingThenComplete());
+                        })));
+  }
+}
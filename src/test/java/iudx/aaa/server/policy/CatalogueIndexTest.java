@@ -0,0 +1,158 @@
+package iudx.aaa.server.policy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import iudx.aaa.server.apiserver.ItemType;
+import iudx.aaa.server.apiserver.ResourceObj;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the catalogue snapshot index. */
+public class CatalogueIndexTest {
+
+  private static final UUID RES_GRP_ID = UUID.randomUUID();
+  private static final UUID OWNER_ID = UUID.randomUUID();
+
+  private static void put(CatalogueIndex index, UUID id) {
+    index.put(id, RES_GRP_ID, OWNER_ID, "apd.iudx.io", "rs.iudx.io", "SECURE");
+  }
+
+  @Test
+  @DisplayName("Added resource is returned with all details")
+  void putAndGet() {
+    CatalogueIndex index = new CatalogueIndex();
+    UUID id = UUID.randomUUID();
+    put(index, id);
+
+    ResourceObj resource = index.get(id);
+    assertEquals(id, resource.getId());
+    assertEquals(ItemType.RESOURCE, resource.getItemType());
+    assertEquals(RES_GRP_ID, resource.getResGrpId());
+    assertEquals(OWNER_ID, resource.getOwnerId());
+    assertEquals("apd.iudx.io", resource.getApdUrl());
+    assertEquals("rs.iudx.io", resource.getResServerUrl());
+    assertFalse(resource.isPii());
+
+    assertNull(index.get(UUID.randomUUID()));
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  @DisplayName("Adding an existing resource updates it")
+  void update() {
+    CatalogueIndex index = new CatalogueIndex();
+    UUID id = UUID.randomUUID();
+    put(index, id);
+    index.put(id, RES_GRP_ID, OWNER_ID, "other-apd.iudx.io", "rs.iudx.io", "PII");
+
+    assertEquals("other-apd.iudx.io", index.get(id).getApdUrl());
+    assertTrue(index.get(id).isPii());
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  @DisplayName("Resources are kept when the index grows and after others are removed")
+  void growAndRemove() {
+    CatalogueIndex index = new CatalogueIndex();
+    int count = 100_000;
+    for (int i = 0; i < count; i++) {
+      put(index, new UUID(1, i));
+    }
+    assertEquals(count, index.size());
+
+    for (int i = 0; i < count; i += 2) {
+      assertTrue(index.remove(new UUID(1, i)));
+    }
+    assertFalse(index.remove(new UUID(1, 0)));
+    assertEquals(count / 2, index.size());
+
+    for (int i = 0; i < count; i++) {
+      if (i % 2 == 0) {
+        assertNull(index.get(new UUID(1, i)));
+      } else {
+        assertEquals(new UUID(1, i), index.get(new UUID(1, i)).getId());
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Resources not seen in a sync pass are removed at the end of the pass")
+  void passSweep() {
+    CatalogueIndex index = new CatalogueIndex();
+    UUID kept = UUID.randomUUID();
+    UUID deleted = UUID.randomUUID();
+
+    index.beginPass();
+    put(index, kept);
+    put(index, deleted);
+    assertEquals(0, index.endPass());
+
+    index.beginPass();
+    put(index, kept);
+    assertEquals(1, index.endPass());
+
+    assertEquals(kept, index.get(kept).getId());
+    assertNull(index.get(deleted));
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  @DisplayName("Resources seen only in passes that did not complete are removed by the next pass")
+  void incompletePass() {
+    CatalogueIndex index = new CatalogueIndex();
+    UUID kept = UUID.randomUUID();
+    UUID deletedBefore = UUID.randomUUID();
+    UUID deletedDuring = UUID.randomUUID();
+
+    index.beginPass();
+    put(index, kept);
+    put(index, deletedBefore);
+    put(index, deletedDuring);
+    assertEquals(0, index.endPass());
+
+    /* these passes fail before they end */
+    index.beginPass();
+    put(index, deletedDuring);
+    index.beginPass();
+
+    index.beginPass();
+    put(index, kept);
+    assertEquals(2, index.endPass());
+
+    assertEquals(kept, index.get(kept).getId());
+    assertNull(index.get(deletedBefore));
+    assertNull(index.get(deletedDuring));
+    assertEquals(1, index.size());
+  }
+
+  @Test
+  @DisplayName("Index does not grow when resources are replaced in every sync pass")
+  void churn() {
+    CatalogueIndex index = new CatalogueIndex();
+    int count = 10_000;
+    long memory = 0;
+
+    for (int pass = 0; pass < 50; pass++) {
+      index.beginPass();
+      for (int i = 0; i < count; i++) {
+        put(index, new UUID(pass, i));
+      }
+      assertEquals(pass == 0 ? 0 : count, index.endPass());
+      assertEquals(count, index.size());
+
+      /* two passes of resources are live during a pass, after which the size must stay flat */
+      if (pass == 2) {
+        memory = index.memoryBytes();
+      } else if (pass > 2) {
+        assertEquals(memory, index.memoryBytes());
+      }
+    }
+
+    assertEquals(new UUID(49, 0), index.get(new UUID(49, 0)).getId());
+    assertNull(index.get(new UUID(48, 0)));
+  }
+}
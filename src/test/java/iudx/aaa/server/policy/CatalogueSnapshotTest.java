@@ -0,0 +1,372 @@
+package iudx.aaa.server.policy;
+
+import static iudx.aaa.server.policy.CatalogueClient.CAT_ITEM_ENDPOINT;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_ACCESS_POLICY_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_APD_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_PROVIDER_USER_ID_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RESOURCE_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_GROUP_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_TYPE;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_RESP_RES_SERVER_URL_KEY;
+import static iudx.aaa.server.policy.CatalogueClient.CAT_SUCCESS_URN;
+import static iudx.aaa.server.policy.CatalogueSnapshot.CAT_RESP_PROVIDER_KEY;
+import static iudx.aaa.server.policy.CatalogueSnapshot.CAT_RESP_RES_SERVER_KEY;
+import static iudx.aaa.server.policy.CatalogueSnapshot.CAT_RESP_TOTAL_HITS;
+import static iudx.aaa.server.policy.CatalogueSnapshot.CAT_SEARCH_ENDPOINT;
+import static iudx.aaa.server.policy.CatalogueSnapshot.CAT_SEARCH_LIMIT;
+import static iudx.aaa.server.policy.CatalogueSnapshot.CAT_SEARCH_OFFSET;
+import static iudx.aaa.server.policy.CatalogueSnapshot.CAT_SEARCH_VALUE;
+import static iudx.aaa.server.policy.Constants.CATALOGUE_CACHE_ADDRESS;
+import static iudx.aaa.server.policy.Constants.CAT_SNAPSHOT_PAGE_SIZE;
+import static iudx.aaa.server.policy.Constants.ID;
+import static iudx.aaa.server.policy.Constants.ITEMNOTFOUND;
+import static iudx.aaa.server.policy.Constants.RESULTS;
+import static iudx.aaa.server.policy.Constants.TYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.junit5.Timeout;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.ResourceObj;
+import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.WebClientPools;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * Unit tests for {@link CatalogueSnapshot} against a fake catalogue server that generates its
+ * resources on the fly.
+ */
+@ExtendWith(VertxExtension.class)
+public class CatalogueSnapshotTest {
+  private static final Logger LOGGER = LogManager.getLogger(CatalogueSnapshotTest.class);
+
+  private static final int LARGE_CATALOGUE = 1_000_000;
+  private static final int SMALL_CATALOGUE = 1000;
+  private static final int PAGE_SIZE = 10_000;
+
+  private static final int RES_SERVERS = 2;
+  private static final int PROVIDERS = 10;
+  private static final int RES_GROUPS = 1000;
+
+  /* resource with a provider that is not on the catalogue, should not be in the snapshot */
+  private static final UUID INVALID_ID = UUID.randomUUID();
+
+  /* resources on the fake catalogue are numbered from 0 to resourceCount - 1 */
+  private static volatile int resourceCount;
+  private static volatile boolean failSearch;
+  private static final AtomicInteger itemCalls = new AtomicInteger();
+
+  private static JsonObject catalogueOptions;
+  private static WebClientPools webClientPools;
+
+  @BeforeAll
+  static void startCatalogue(Vertx vertx, VertxTestContext testContext) {
+    webClientPools =
+        new WebClientPools(vertx, "catalogue", new WebClientOptions(), new JsonObject());
+
+    vertx
+        .createHttpServer()
+        .requestHandler(CatalogueSnapshotTest::respond)
+        .listen(0)
+        .onSuccess(
+            server ->
+                catalogueOptions =
+                    new JsonObject()
+                        .put("catServerHost", "localhost")
+                        .put("catServerPort", String.valueOf(server.actualPort()))
+                        .put("catServerBasePath", "")
+                        .put(CAT_SNAPSHOT_PAGE_SIZE, PAGE_SIZE))
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
+  @AfterAll
+  static void finish(Vertx vertx, VertxTestContext testContext) {
+    vertx.close(testContext.succeedingThenComplete());
+  }
+
+  private static UUID resourceId(int i) {
+    return new UUID(0xAL, i);
+  }
+
+  private static UUID resGrpId(int i) {
+    return new UUID(0xBL, i % RES_GROUPS);
+  }
+
+  private static UUID ownerId(int provider) {
+    return new UUID(0xCL, provider);
+  }
+
+  private static JsonObject resource(int i) {
+    return new JsonObject()
+        .put(ID, resourceId(i).toString())
+        .put(CAT_RESP_RES_GROUP_KEY, resGrpId(i).toString())
+        .put(CAT_RESP_APD_KEY, "apd.iudx.io")
+        .put(CAT_RESP_ACCESS_POLICY_KEY, i % 2 == 0 ? "SECURE" : "PII")
+        .put(CAT_RESP_PROVIDER_KEY, "provider-" + (i % PROVIDERS))
+        .put(CAT_RESP_RES_SERVER_KEY, "rs-" + (i % RES_SERVERS));
+  }
+
+  /** Respond to search requests like the catalogue, one page at a time. */
+  private static void respond(HttpServerRequest req) {
+    if (req.path().equals(CAT_ITEM_ENDPOINT)) {
+      itemCalls.incrementAndGet();
+      JsonObject notFound = new JsonObject().put(TYPE, "urn:dx:cat:ItemNotFound");
+      req.response().setStatusCode(404).end(notFound.encode());
+      return;
+    }
+
+    if (!req.path().equals(CAT_SEARCH_ENDPOINT) || failSearch) {
+      req.response().setStatusCode(500).end();
+      return;
+    }
+
+    String type = req.getParam(CAT_SEARCH_VALUE);
+    int offset = Integer.parseInt(req.getParam(CAT_SEARCH_OFFSET));
+    int limit = Integer.parseInt(req.getParam(CAT_SEARCH_LIMIT));
+
+    JsonArray results = new JsonArray();
+    int total;
+    if (type.equals("[[" + CAT_RESP_RES_SERVER_TYPE + "]]")) {
+      total = RES_SERVERS;
+      for (int i = offset; i < Math.min(offset + limit, total); i++) {
+        results.add(
+            new JsonObject()
+                .put(ID, "rs-" + i)
+                .put(CAT_RESP_RES_SERVER_URL_KEY, "rs" + i + ".iudx.io"));
+      }
+    } else if (type.equals("[[" + CAT_RESP_PROVIDER_TYPE + "]]")) {
+      total = PROVIDERS;
+      for (int i = offset; i < Math.min(offset + limit, total); i++) {
+        results.add(
+            new JsonObject()
+                .put(ID, "provider-" + i)
+                .put(CAT_RESP_PROVIDER_USER_ID_KEY, ownerId(i).toString()));
+      }
+    } else if (type.equals("[[" + CAT_RESP_RESOURCE_TYPE + "]]")) {
+      int count = resourceCount;
+      total = count + 1;
+      for (int i = offset; i < Math.min(offset + limit, count); i++) {
+        results.add(resource(i));
+      }
+      if (offset <= count && count < offset + limit) {
+        results.add(resource(0).put(ID, INVALID_ID.toString()).put(CAT_RESP_PROVIDER_KEY, "none"));
+      }
+    } else {
+      req.response().setStatusCode(400).end();
+      return;
+    }
+
+    req.response()
+        .end(
+            new JsonObject()
+                .put(TYPE, CAT_SUCCESS_URN)
+                .put(CAT_RESP_TOTAL_HITS, total)
+                .put(RESULTS, results)
+                .encode());
+  }
+
+  private static void assertResource(int i, ResourceObj resource) {
+    assertEquals(resourceId(i), resource.getId());
+    assertEquals(resGrpId(i), resource.getResGrpId());
+    assertEquals(ownerId(i % PROVIDERS), resource.getOwnerId());
+    assertEquals("apd.iudx.io", resource.getApdUrl());
+    assertEquals("rs" + (i % RES_SERVERS) + ".iudx.io", resource.getResServerUrl());
+    assertEquals(i % 2 != 0, resource.isPii());
+  }
+
+  @Test
+  @Timeout(value = 5, timeUnit = TimeUnit.MINUTES)
+  @DisplayName("Snapshot of a million resources is synced and deleted resources are removed")
+  void largeCatalogue(Vertx vertx, VertxTestContext testContext) {
+    resourceCount = LARGE_CATALOGUE;
+    failSearch = false;
+    CatalogueSnapshot snapshot = new CatalogueSnapshot(vertx, webClientPools, catalogueOptions);
+
+    snapshot
+        .sync()
+        .onComplete(
+            testContext.succeeding(
+                v ->
+                    testContext.verify(
+                        () -> {
+                          LOGGER.info(
+                              "Snapshot of {} resources uses {} bytes",
+                              snapshot.size(),
+                              snapshot.memoryBytes());
+                          assertEquals(LARGE_CATALOGUE, snapshot.size());
+                          assertTrue(snapshot.memoryBytes() < 64L * LARGE_CATALOGUE);
+                          for (int i = 0; i < LARGE_CATALOGUE; i += 9973) {
+                            assertResource(i, snapshot.get(resourceId(i)));
+                          }
+                          assertResource(
+                              LARGE_CATALOGUE - 1, snapshot.get(resourceId(LARGE_CATALOGUE - 1)));
+                          assertNull(snapshot.get(INVALID_ID));
+                          assertNull(snapshot.get(UUID.randomUUID()));
+
+                          resourceCount = LARGE_CATALOGUE - PAGE_SIZE;
+                        })))
+        .compose(v -> snapshot.sync())
+        .onComplete(
+            testContext.succeeding(
+                v ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(LARGE_CATALOGUE - PAGE_SIZE, snapshot.size());
+                          assertNull(snapshot.get(resourceId(LARGE_CATALOGUE - 1)));
+                          assertNotNull(snapshot.get(resourceId(0)));
+                          snapshot.close().onComplete(testContext.succeedingThenComplete());
+                        })));
+  }
+
+  @Test
+  @DisplayName("Failed sync keeps the snapshot")
+  void failedSync(Vertx vertx, VertxTestContext testContext) {
+    resourceCount = SMALL_CATALOGUE;
+    failSearch = false;
+    CatalogueSnapshot snapshot = new CatalogueSnapshot(vertx, webClientPools, catalogueOptions);
+
+    snapshot
+        .sync()
+        .compose(
+            v -> {
+              failSearch = true;
+              return snapshot.sync();
+            })
+        .onComplete(
+            res ->
+                testContext.verify(
+                    () -> {
+                      failSearch = false;
+                      assertTrue(res.failed());
+                      assertEquals(SMALL_CATALOGUE, snapshot.size());
+                      assertResource(0, snapshot.get(resourceId(0)));
+                      snapshot.close().onComplete(testContext.succeedingThenComplete());
+                    }));
+  }
+
+  @Test
+  @DisplayName("Resource deleted before a failed sync is removed by the next sync")
+  void syncAfterFailedSync(Vertx vertx, VertxTestContext testContext) {
+    resourceCount = SMALL_CATALOGUE;
+    failSearch = false;
+    CatalogueSnapshot snapshot = new CatalogueSnapshot(vertx, webClientPools, catalogueOptions);
+
+    snapshot
+        .sync()
+        .compose(
+            v -> {
+              resourceCount = SMALL_CATALOGUE - 1;
+              failSearch = true;
+              return snapshot.sync();
+            })
+        .transform(
+            res -> {
+              failSearch = false;
+              if (res.succeeded()) {
+                return Future.failedFuture("Sync did not fail");
+              }
+              return snapshot.sync();
+            })
+        .onComplete(
+            testContext.succeeding(
+                v ->
+                    testContext.verify(
+                        () -> {
+                          assertNull(snapshot.get(resourceId(SMALL_CATALOGUE - 1)));
+                          assertResource(0, snapshot.get(resourceId(0)));
+                          assertEquals(SMALL_CATALOGUE - 1, snapshot.size());
+                          snapshot.close().onComplete(testContext.succeedingThenComplete());
+                        })));
+  }
+
+  @Test
+  @DisplayName("Evicted item is removed from the snapshot")
+  void evict(Vertx vertx, VertxTestContext testContext) {
+    resourceCount = SMALL_CATALOGUE;
+    failSearch = false;
+    CatalogueSnapshot snapshot = new CatalogueSnapshot(vertx, webClientPools, catalogueOptions);
+
+    snapshot
+        .sync()
+        .onComplete(
+            testContext.succeeding(
+                v -> {
+                  vertx
+                      .eventBus()
+                      .publish(
+                          CATALOGUE_CACHE_ADDRESS,
+                          new JsonObject().put(ID, resourceId(1).toString()));
+                  vertx.setTimer(
+                      100,
+                      id ->
+                          testContext.verify(
+                              () -> {
+                                assertNull(snapshot.get(resourceId(1)));
+                                assertNotNull(snapshot.get(resourceId(2)));
+                                assertEquals(SMALL_CATALOGUE - 1, snapshot.size());
+                                snapshot.close().onComplete(testContext.succeedingThenComplete());
+                              }));
+                }));
+  }
+
+  @Test
+  @DisplayName("Catalogue client serves resources in the snapshot without calling the catalogue")
+  void clientUsesSnapshot(Vertx vertx, VertxTestContext testContext) {
+    resourceCount = SMALL_CATALOGUE;
+    failSearch = false;
+    CatalogueSnapshot snapshot = new CatalogueSnapshot(vertx, webClientPools, catalogueOptions);
+    CatalogueCache cache = new CatalogueCache(vertx, 0, 300, 30);
+    CatalogueClient client =
+        new CatalogueClient(vertx, webClientPools, catalogueOptions, cache, snapshot);
+
+    int callsBefore = itemCalls.get();
+
+    snapshot
+        .sync()
+        .compose(v -> client.getResourceDetails(resourceId(5)))
+        .onComplete(
+            testContext.succeeding(
+                resource ->
+                    testContext.verify(
+                        () -> {
+                          assertResource(5, resource);
+                          assertEquals(callsBefore, itemCalls.get());
+                        })))
+        .compose(v -> client.getResourceDetails(INVALID_ID))
+        .onComplete(
+            res ->
+                testContext.verify(
+                    () -> {
+                      /* not in the snapshot, so the catalogue is called */
+                      assertFalse(res.succeeded());
+                      assertEquals(callsBefore + 1, itemCalls.get());
+                      assertEquals(
+                          ITEMNOTFOUND,
+                          ((ComposeException) res.cause()).getResponse().getTitle());
+                      snapshot
+                          .close()
+                          .compose(v -> cache.close())
+                          .onComplete(testContext.succeedingThenComplete());
+                    }));
+  }
+}
@@ -1,5 +1,7 @@
 package iudx.aaa.server.policy;
 
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_ADDRESS;
+import static iudx.aaa.server.apiserver.util.Constants.DELEGATION_CACHE_IDS;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_INPUT;
 import static iudx.aaa.server.apiserver.util.Urn.URN_INVALID_ROLE;
 import static iudx.aaa.server.apiserver.util.Urn.URN_SUCCESS;
@@ -12,6 +14,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.Checkpoint;
@@ -116,7 +119,9 @@ public class DeleteDelegationTest {
 
     utils = new Utils(pool);
 
-    policyService = new PolicyServiceImpl(pool, registrationService, apdService, catalogueClient);
+    policyService =
+        new PolicyServiceImpl(
+            pool, registrationService, apdService, catalogueClient, vertx.eventBus());
     testContext.completeNow();
   }
 
@@ -338,6 +343,20 @@ public class DeleteDelegationTest {
                         Roles.CONSUMER,
                         DelegationStatus.ACTIVE));
 
+    Checkpoint responded = testContext.checkpoint();
+    Checkpoint evicted = testContext.checkpoint();
+
+    /* the deleted delegation is published for eviction from the API server's cache */
+    MessageConsumer<JsonObject> evictions = vertxObj.eventBus().consumer(DELEGATION_CACHE_ADDRESS);
+    evictions.handler(
+        msg -> {
+          JsonArray ids = msg.body().getJsonArray(DELEGATION_CACHE_IDS);
+          if (ids.contains(consumersDelegationId.toString())) {
+            evictions.unregister();
+            evicted.flag();
+          }
+        });
+
     create
         .onSuccess(
             res -> {
@@ -356,7 +375,7 @@ public class DeleteDelegationTest {
                                     assertEquals(
                                         SUCC_TITLE_DELETE_DELE, response.getString("title"));
                                     assertEquals(200, response.getInteger("status"));
-                                    testContext.completeNow();
+                                    responded.flag();
                                   })));
             })
         .onFailure(fail -> testContext.failNow(fail.getMessage()));
@@ -1090,4 +1090,149 @@ public class VerifyResourceAccessTest {
                           testContext.completeNow();
                         })));
   }
+
+  @Test
+  @DisplayName("Consumer success for resource group - APD called once for the group")
+  void consumerResourceGroupSuccess(VertxTestContext testContext) {
+
+    UUID resGroupId = UUID.randomUUID();
+    UUID itemOwnerUserId = UUID.randomUUID();
+    String apdUrl = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".apd.com";
+
+    User consumerUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .roles(List.of(Roles.CONSUMER))
+            .rolesToRsMapping(
+                Map.of(Roles.CONSUMER.toString(), new JsonArray(List.of(DUMMY_SERVER))))
+            .build();
+
+    Mockito.when(catalogueClient.getResourceGroupDetails(resGroupId))
+        .thenReturn(
+            Future.succeededFuture(
+                new ResourceObj(
+                    ItemType.RESOURCE_GROUP,
+                    resGroupId,
+                    itemOwnerUserId,
+                    DUMMY_SERVER,
+                    resGroupId,
+                    apdUrl,
+                    "SECURE")));
+
+    JsonObject tokenReqcontext = new JsonObject().put("access", 1);
+
+    JsonObject apdContext =
+        new JsonObject()
+            .put(CALL_APD_APDURL, apdUrl)
+            .put(CALL_APD_ITEM_ID, resGroupId.toString())
+            .put(CALL_APD_ITEM_TYPE, ItemType.RESOURCE_GROUP.toString().toLowerCase())
+            .put(CALL_APD_OWNERID, itemOwnerUserId.toString())
+            .put(CALL_APD_RES_SER_URL, DUMMY_SERVER)
+            .put(CALL_APD_USERID, consumerUser.getUserId())
+            .put(CALL_APD_CONTEXT, tokenReqcontext);
+
+    Mockito.when(apdService.callApd(apdContext))
+        .thenReturn(Future.succeededFuture(new JsonObject()));
+
+    JsonObject jsonReq =
+        new JsonObject()
+            .put("itemId", resGroupId.toString())
+            .put("itemType", ItemType.RESOURCE_GROUP.toString().toLowerCase())
+            .put("role", Roles.CONSUMER.toString().toLowerCase())
+            .put("context", tokenReqcontext);
+
+    RequestToken req = new RequestToken(jsonReq);
+
+    policyService
+        .verifyResourceAccess(req, null, consumerUser)
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          Mockito.verify(apdService).callApd(apdContext);
+                          assertEquals(response.getString(CREATE_TOKEN_RG), resGroupId.toString());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Provider success for resource group")
+  void providerResourceGroupSuccess(VertxTestContext testContext) {
+
+    User providerUser =
+        new UserBuilder()
+            .userId(UUID.randomUUID())
+            .roles(List.of(Roles.PROVIDER))
+            .rolesToRsMapping(
+                Map.of(Roles.PROVIDER.toString(), new JsonArray(List.of(DUMMY_SERVER))))
+            .build();
+
+    UUID resGroupId = UUID.randomUUID();
+    UUID itemOwnerUserId = UUID.fromString(providerUser.getUserId());
+    String apdUrl = RandomStringUtils.randomAlphabetic(10).toLowerCase() + ".apd.com";
+
+    Mockito.when(catalogueClient.getResourceGroupDetails(resGroupId))
+        .thenReturn(
+            Future.succeededFuture(
+                new ResourceObj(
+                    ItemType.RESOURCE_GROUP,
+                    resGroupId,
+                    itemOwnerUserId,
+                    DUMMY_SERVER,
+                    resGroupId,
+                    apdUrl,
+                    "SECURE")));
+
+    JsonObject jsonReq =
+        new JsonObject()
+            .put("itemId", resGroupId.toString())
+            .put("itemType", ItemType.RESOURCE_GROUP.toString().toLowerCase())
+            .put("role", Roles.PROVIDER.toString().toLowerCase());
+
+    RequestToken req = new RequestToken(jsonReq);
+
+    policyService
+        .verifyResourceAccess(req, null, providerUser)
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(response.getString(STATUS), SUCCESS);
+                          assertEquals(response.getString(CAT_ID), resGroupId.toString());
+                          assertEquals(response.getString(CREATE_TOKEN_RG), resGroupId.toString());
+                          assertEquals(response.getString(URL), DUMMY_SERVER);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Prefetch - catalogue lookup is started for a valid item ID")
+  void prefetchStartsLookup(VertxTestContext testContext) {
+    UUID resId = UUID.randomUUID();
+
+    Mockito.when(catalogueClient.getItemDetails(resId))
+        .thenReturn(Future.failedFuture("Catalogue unreachable"));
+
+    /* the prefetch succeeds even if the lookup fails, the failure is left to the token request */
+    policyService
+        .prefetchResource(resId.toString())
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          Mockito.verify(catalogueClient).getItemDetails(resId);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Prefetch - invalid item ID is ignored")
+  void prefetchInvalidItemId(VertxTestContext testContext) {
+    policyService
+        .prefetchResource("rs.iudx.io")
+        .onComplete(testContext.succeedingThenComplete());
+  }
 }
@@ -41,6 +41,7 @@ import iudx.aaa.server.apiserver.RoleStatus;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.token.TokenService;
 import java.util.List;
@@ -139,7 +140,13 @@ public class AddRolesTest {
                 DUMMY_SERVER_TWO, new UserBuilder().userId(UUID.randomUUID()).build()))
         .onSuccess(
             succ -> {
-              registrationService = new RegistrationServiceImpl(pool, kc, tokenService, options);
+              registrationService =
+                  new RegistrationServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      kc,
+                      tokenService,
+                      options);
               testContext.completeNow();
             })
         .onFailure(err -> testContext.failNow(err.getMessage()));
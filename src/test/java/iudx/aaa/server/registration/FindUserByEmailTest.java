@@ -24,6 +24,7 @@ import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
 import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.apiserver.util.Urn;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.token.TokenService;
@@ -145,7 +146,13 @@ public class FindUserByEmailTest {
         .compose(sss -> utils.createFakeUser(user, false, false))
         .onSuccess(
             res -> {
-              registrationService = new RegistrationServiceImpl(pool, kc, tokenService, options);
+              registrationService =
+                  new RegistrationServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      kc,
+                      tokenService,
+                      options);
               testContext.completeNow();
             })
         .onFailure(err -> testContext.failNow(err.getMessage()));
@@ -190,10 +197,14 @@ public class FindUserByEmailTest {
 
     String notRegdEmail = RandomStringUtils.randomAlphabetic(10) + "@gmail.com";
 
-    Mockito.when(kc.findUserByEmail(notRegdEmail))
-        .thenReturn(Future.succeededFuture(new JsonObject()));
-    Mockito.when(kc.findUserByEmail(utils.getDetails(user).email))
-        .thenReturn(Future.succeededFuture(utils.getKcAdminJson(user)));
+    Mockito.when(kc.findUsersByEmail(Set.of(utils.getDetails(user).email, notRegdEmail)))
+        .thenReturn(
+            Future.succeededFuture(
+                Map.of(
+                    notRegdEmail,
+                    new JsonObject(),
+                    utils.getDetails(user).email,
+                    utils.getKcAdminJson(user))));
 
     registrationService
         .findUserByEmail(Set.of(utils.getDetails(user).email, notRegdEmail))
@@ -228,7 +239,7 @@ public class FindUserByEmailTest {
   @Test
   @DisplayName("Test keycloak failure")
   void userEmailFail(VertxTestContext testContext) {
-    Mockito.when(kc.findUserByEmail(any())).thenReturn(Future.failedFuture("fail"));
+    Mockito.when(kc.findUsersByEmail(any())).thenReturn(Future.failedFuture("fail"));
 
     registrationService
         .findUserByEmail(Set.of(utils.getDetails(user).email))
@@ -244,8 +255,10 @@ public class FindUserByEmailTest {
   @Test
   @DisplayName("Test getting email of user already in DB")
   void findingUserAlreadyOnDb(VertxTestContext testContext) {
-    Mockito.when(kc.findUserByEmail(utils.getDetails(user).email))
-        .thenReturn(Future.succeededFuture(utils.getKcAdminJson(user)));
+    Mockito.when(kc.findUsersByEmail(Set.of(utils.getDetails(user).email)))
+        .thenReturn(
+            Future.succeededFuture(
+                Map.of(utils.getDetails(user).email, utils.getKcAdminJson(user))));
 
     Checkpoint userExistsInDb = testContext.checkpoint();
     Checkpoint dataObtained = testContext.checkpoint();
@@ -301,20 +314,20 @@ public class FindUserByEmailTest {
 
     String existingUserEmail = utils.getDetails(user).email;
 
-    Mockito.when(kc.findUserByEmail(newUserEmail))
+    JsonObject newUserJson =
+        new JsonObject()
+            .put("keycloakId", newUserId)
+            .put("email", newUserEmail)
+            .put(
+                "name",
+                new JsonObject()
+                    .put("firstName", newUserFirstName)
+                    .put("lastName", newUserLastName));
+
+    Mockito.when(kc.findUsersByEmail(Set.of(existingUserEmail, newUserEmail)))
         .thenReturn(
             Future.succeededFuture(
-                new JsonObject()
-                    .put("keycloakId", newUserId)
-                    .put("email", newUserEmail)
-                    .put(
-                        "name",
-                        new JsonObject()
-                            .put("firstName", newUserFirstName)
-                            .put("lastName", newUserLastName))));
-
-    Mockito.when(kc.findUserByEmail(existingUserEmail))
-        .thenReturn(Future.succeededFuture(utils.getKcAdminJson(user)));
+                Map.of(newUserEmail, newUserJson, existingUserEmail, utils.getKcAdminJson(user))));
 
     Checkpoint newUserNotInDb = testContext.checkpoint();
     Checkpoint newUserInDb = testContext.checkpoint();
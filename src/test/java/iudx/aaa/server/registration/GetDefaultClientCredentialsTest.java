@@ -33,6 +33,7 @@ import io.vertx.sqlclient.Tuple;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.token.TokenService;
 import java.util.List;
@@ -129,7 +130,13 @@ public class GetDefaultClientCredentialsTest {
             DUMMY_SERVER_1, new UserBuilder().userId(UUID.randomUUID()).build())
         .onSuccess(
             res -> {
-              registrationService = new RegistrationServiceImpl(pool, kc, tokenService, options);
+              registrationService =
+                  new RegistrationServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      kc,
+                      tokenService,
+                      options);
               testContext.completeNow();
             })
         .onFailure(err -> testContext.failNow(err.getMessage()));
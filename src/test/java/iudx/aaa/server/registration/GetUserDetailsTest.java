@@ -20,6 +20,7 @@ import io.vertx.sqlclient.PoolOptions;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.token.TokenService;
 import java.util.ArrayList;
@@ -155,7 +156,13 @@ public class GetUserDetailsTest {
         .compose(sss -> utils.createFakeUser(userTwo, false, false))
         .onSuccess(
             res -> {
-              registrationService = new RegistrationServiceImpl(pool, kc, tokenService, options);
+              registrationService =
+                  new RegistrationServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      kc,
+                      tokenService,
+                      options);
               testContext.completeNow();
             })
         .onFailure(err -> testContext.failNow(err.getMessage()));
@@ -355,4 +362,55 @@ public class GetUserDetailsTest {
                           testContext.completeNow();
                         })));
   }
+
+  @Test
+  @DisplayName("Test cached user details are not fetched from Keycloak again")
+  void cachedDetails(VertxTestContext testContext) {
+    KcAdmin cachedKc = Mockito.mock(KcAdmin.class);
+    UserDetailsCache cache = new UserDetailsCache(vertxObj, 10, 60, 60);
+    RegistrationService cachedService =
+        new RegistrationServiceImpl(
+            pool,
+            new ServerRegistry(vertxObj, pool, connectOptions),
+            cachedKc,
+            tokenService,
+            options,
+            cache);
+
+    JsonObject userOneDetails = utils.getKcAdminJson(userOne);
+    JsonObject userTwoDetails = utils.getKcAdminJson(userTwo);
+
+    Mockito.when(cachedKc.getDetails(List.of(userOne.getUserId())))
+        .thenReturn(Future.succeededFuture(Map.of(userOne.getUserId(), userOneDetails)));
+    Mockito.when(cachedKc.getDetails(List.of(userTwo.getUserId())))
+        .thenReturn(Future.succeededFuture(Map.of(userTwo.getUserId(), userTwoDetails)));
+
+    cachedService
+        .getUserDetails(List.of(userOne.getUserId()))
+        .compose(
+            res -> cachedService.getUserDetails(List.of(userOne.getUserId(), userTwo.getUserId())))
+        .onComplete(
+            testContext.succeeding(
+                jsonResult ->
+                    testContext.verify(
+                        () -> {
+                          Map<String, JsonObject> response = jsonObjectToMap.apply(jsonResult);
+
+                          assertEquals(2, response.size());
+                          assertEquals(
+                              userOneDetails.getString("email"),
+                              response.get(userOne.getUserId()).getString("email"));
+                          assertEquals(
+                              userTwoDetails.getString("email"),
+                              response.get(userTwo.getUserId()).getString("email"));
+
+                          /* user one was only fetched by the first call */
+                          Mockito.verify(cachedKc, Mockito.times(1))
+                              .getDetails(List.of(userOne.getUserId()));
+                          Mockito.verify(cachedKc, Mockito.times(1))
+                              .getDetails(List.of(userTwo.getUserId()));
+                          cache.close();
+                          testContext.completeNow();
+                        })));
+  }
 }
@@ -0,0 +1,166 @@
+package iudx.aaa.server.registration;
+
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the latency of {@link KcAdmin#getDetails(List)} for increasing batch sizes against a
+ * local stub Keycloak with 1000 users that answers every admin API call after <tt>delayMs</tt>.
+ * Small batches are looked up user by user, <tt>maxConcurrency</tt> at a time, while large batches
+ * are picked out of the 10 pages of 100 users, so the latency stops growing with the batch size
+ * once paging is cheaper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KcAdminBenchmark {
+
+  private static final String REALM = "bench";
+  private static final String USERS_PATH = "/auth/admin/realms/" + REALM + "/users";
+  private static final int REALM_USERS = 1000;
+  private static final int PAGE_SIZE = 100;
+
+  @Param({"1", "5", "20", "100", "500"})
+  public int batchSize;
+
+  @Param({"10"})
+  public int maxConcurrency;
+
+  @Param({"5"})
+  public long delayMs;
+
+  private Vertx vertx;
+  private Context context;
+  private KcAdmin kcAdmin;
+  private List<JsonObject> users;
+  private Map<String, JsonObject> usersById;
+  private List<String> batch;
+
+  @Setup
+  public void setup() throws Exception {
+    vertx = Vertx.vertx();
+
+    users = new ArrayList<JsonObject>();
+    for (int i = 0; i < REALM_USERS; i++) {
+      String email = String.format("user%04d@iudx.io", i);
+      users.add(
+          new JsonObject()
+              .put("id", UUID.randomUUID().toString())
+              .put("username", email)
+              .put("email", email)
+              .put("firstName", "first")
+              .put("lastName", "last"));
+    }
+    usersById =
+        users.stream().collect(Collectors.toMap(u -> u.getString("id"), Function.identity()));
+
+    /* spread the batch over the realm */
+    batch = new ArrayList<String>();
+    for (int i = 0; i < batchSize; i++) {
+      batch.add(users.get(i * (REALM_USERS / batchSize)).getString("id"));
+    }
+
+    int port =
+        vertx
+            .createHttpServer()
+            .requestHandler(req -> vertx.setTimer(delayMs, id -> respond(req)))
+            .listen(0)
+            .toCompletionStage()
+            .toCompletableFuture()
+            .get()
+            .actualPort();
+
+    /* the client is used on a single context, as in the Registration Verticle */
+    context = vertx.getOrCreateContext();
+    CompletableFuture<KcAdmin> created = new CompletableFuture<KcAdmin>();
+    context.runOnContext(
+        v ->
+            created.complete(
+                new KcAdmin(
+                    vertx,
+                    "http://localhost:" + port + "/auth",
+                    REALM,
+                    "admin-client",
+                    "secret",
+                    maxConcurrency,
+                    maxConcurrency,
+                    PAGE_SIZE)));
+    kcAdmin = created.get();
+  }
+
+  @TearDown
+  public void tearDown() {
+    vertx.close();
+  }
+
+  private void respond(HttpServerRequest req) {
+    String path = req.path();
+
+    if (path.endsWith("/token")) {
+      req.response()
+          .end(new JsonObject().put("access_token", "token").put("expires_in", 3600).encode());
+    } else if (path.equals(USERS_PATH + "/count")) {
+      req.response().end(String.valueOf(REALM_USERS));
+    } else if (path.equals(USERS_PATH)) {
+      int first = Integer.parseInt(req.getParam("first"));
+      int max = Integer.parseInt(req.getParam("max"));
+      JsonArray page = new JsonArray();
+      users.stream().skip(first).limit(max).forEach(page::add);
+      req.response().end(page.encode());
+    } else {
+      JsonObject user = usersById.get(path.substring(USERS_PATH.length() + 1));
+      if (user == null) {
+        req.response().setStatusCode(404).end();
+      } else {
+        req.response().end(user.encode());
+      }
+    }
+  }
+
+  @Benchmark
+  public Map<String, JsonObject> getDetails() throws Exception {
+    CompletableFuture<Map<String, JsonObject>> details =
+        new CompletableFuture<Map<String, JsonObject>>();
+    context.runOnContext(
+        v ->
+            kcAdmin
+                .getDetails(batch)
+                .onSuccess(details::complete)
+                .onFailure(details::completeExceptionally));
+    return details.get();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(KcAdminBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
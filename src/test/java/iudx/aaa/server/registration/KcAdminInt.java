@@ -18,7 +18,11 @@ import java.util.Properties;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jboss.resteasy.client.jaxrs.internal.ResteasyClientBuilderImpl;
 import org.junit.jupiter.api.extension.ExtensionContext.Store.CloseableResource;
+import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.KeycloakBuilder;
 import org.keycloak.admin.client.resource.UsersResource;
 import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
@@ -29,7 +33,7 @@ import org.keycloak.representations.idm.UserRepresentation;
  * {@link CloseableResource} - so when tests are over, the {@link #close()} method is automatically
  * called which deletes users from Keycloak.
  */
-public class KcAdminInt extends KcAdmin implements CloseableResource {
+public class KcAdminInt implements CloseableResource {
 
   private static final Logger LOGGER = LogManager.getLogger(KcAdminInt.class);
 
@@ -48,6 +52,8 @@ public class KcAdminInt extends KcAdmin implements CloseableResource {
 
   public static final String INTEG_CONFIG_PATH = "./configs/config-integ.json";
 
+  private Keycloak keycloak;
+  private String realm;
   private String tokenUrl;
   public String cosAdminToken;
 
@@ -58,7 +64,16 @@ public class KcAdminInt extends KcAdmin implements CloseableResource {
       String clientSecret,
       int poolSize,
       String cosAdminEmail) {
-    super(serverUrl, realm, clientId, clientSecret, poolSize);
+    this.realm = realm;
+    this.keycloak =
+        KeycloakBuilder.builder()
+            .serverUrl(serverUrl)
+            .realm(realm)
+            .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
+            .clientId(clientId)
+            .clientSecret(clientSecret)
+            .resteasyClient(new ResteasyClientBuilderImpl().connectionPoolSize(poolSize).build())
+            .build();
 
     this.tokenUrl = serverUrl + "/realms/" + realm + TOKEN_ENDPOINT;
     this.cosAdminToken = getToken(cosAdminEmail);
@@ -190,5 +205,6 @@ public class KcAdminInt extends KcAdmin implements CloseableResource {
   public void close() throws Throwable {
     LOGGER.info("Integration tests over - about to delete created users in Keycloak");
     deleteUsers();
+    keycloak.close();
   }
 }
@@ -0,0 +1,521 @@
+package iudx.aaa.server.registration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the Keycloak admin client against a stub Keycloak server. */
+@ExtendWith(VertxExtension.class)
+public class KcAdminTest {
+
+  private static final String REALM = "test";
+  private static final String ADMIN_PATH = "/auth/admin/realms/" + REALM;
+  private static final String USERS_PATH = ADMIN_PATH + "/users";
+  private static final String TOKEN_PATH =
+      "/auth/realms/" + REALM + "/protocol/openid-connect/token";
+
+  private static final String USER_ID = UUID.randomUUID().toString();
+  private static final String OTHER_USER_ID = UUID.randomUUID().toString();
+  private static final String EMAIL = "user@iudx.io";
+  private static final String OTHER_EMAIL = "other@iudx.io";
+
+  private HttpServer server;
+  private final AtomicInteger tokenRequests = new AtomicInteger();
+  private final AtomicInteger userRequests = new AtomicInteger();
+  private final AtomicInteger pageRequests = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  /* all users in the realm, ordered by username as Keycloak does */
+  private final List<JsonObject> realmUsers = new ArrayList<JsonObject>();
+
+  /* tokens up to this number are rejected by the admin API */
+  private volatile int rejectedTokens;
+  private volatile long expiresIn;
+  private volatile long delayMs;
+  private volatile JsonObject eventsConfig;
+
+  private static JsonObject user(String id, String email) {
+    return new JsonObject()
+        .put("id", id)
+        .put("username", email)
+        .put("email", email)
+        .put("firstName", "first")
+        .put("lastName", "last");
+  }
+
+  private void addRealmUsers(int count) {
+    for (int i = 0; i < count; i++) {
+      realmUsers.add(user(UUID.randomUUID().toString(), "user" + i + "@other.iudx.io"));
+    }
+    realmUsers.sort(Comparator.comparing(u -> u.getString("username")));
+  }
+
+  private void handle(HttpServerRequest req) {
+    String path = req.path();
+
+    if (path.equals(TOKEN_PATH)) {
+      int token = tokenRequests.incrementAndGet();
+      req.response()
+          .putHeader("Content-Type", "application/json")
+          .end(
+              new JsonObject()
+                  .put("access_token", "token-" + token)
+                  .put("expires_in", expiresIn)
+                  .encode());
+      return;
+    }
+
+    if (!path.startsWith(ADMIN_PATH)) {
+      req.response().setStatusCode(404).end();
+      return;
+    }
+
+    String auth = req.getHeader("Authorization");
+    int token = Integer.parseInt(auth.substring("Bearer token-".length()));
+    if (token <= rejectedTokens) {
+      req.response().setStatusCode(401).end();
+      return;
+    }
+
+    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    req.response().endHandler(v -> inFlight.decrementAndGet());
+
+    if (delayMs > 0) {
+      Vertx.currentContext().owner().setTimer(delayMs, id -> respond(req));
+    } else {
+      respond(req);
+    }
+  }
+
+  private void respond(HttpServerRequest req) {
+    String path = req.path();
+
+    if (path.equals(ADMIN_PATH + "/events/config")) {
+      req.response().putHeader("Content-Type", "application/json").end(eventsConfig.encode());
+      return;
+    }
+
+    /* events are echoed back with the query params of the request */
+    if (path.equals(ADMIN_PATH + "/events") || path.equals(ADMIN_PATH + "/admin-events")) {
+      JsonObject event = new JsonObject().put("time", 1000L);
+      req.params()
+          .names()
+          .forEach(name -> event.put(name, new JsonArray(req.params().getAll(name))));
+      req.response()
+          .putHeader("Content-Type", "application/json")
+          .end(new JsonArray().add(event).encode());
+      return;
+    }
+
+    if (path.equals(USERS_PATH + "/count")) {
+      req.response().end(String.valueOf(realmUsers.size()));
+      return;
+    }
+
+    if (path.equals(USERS_PATH) && req.getParam("first") != null) {
+      pageRequests.incrementAndGet();
+      int first = Integer.parseInt(req.getParam("first"));
+      int max = Integer.parseInt(req.getParam("max"));
+
+      JsonArray page = new JsonArray();
+      realmUsers.stream().skip(first).limit(max).forEach(page::add);
+      req.response().putHeader("Content-Type", "application/json").end(page.encode());
+      return;
+    }
+
+    userRequests.incrementAndGet();
+    if (path.equals(USERS_PATH)) {
+      JsonArray users = new JsonArray();
+      if ("true".equals(req.getParam("exact"))) {
+        realmUsers.stream()
+            .filter(u -> u.getString("username").equals(req.getParam("username")))
+            .forEach(users::add);
+      }
+      req.response().putHeader("Content-Type", "application/json").end(users.encode());
+      return;
+    }
+
+    String id = path.substring(USERS_PATH.length() + 1);
+    realmUsers.stream()
+        .filter(u -> u.getString("id").equals(id))
+        .findFirst()
+        .ifPresentOrElse(
+            u -> req.response().end(u.encode()), () -> req.response().setStatusCode(404).end());
+  }
+
+  @BeforeEach
+  void startServer(Vertx vertx, VertxTestContext testContext) {
+    tokenRequests.set(0);
+    userRequests.set(0);
+    pageRequests.set(0);
+    inFlight.set(0);
+    maxInFlight.set(0);
+    rejectedTokens = 0;
+    expiresIn = 300;
+    delayMs = 0;
+    eventsConfig =
+        new JsonObject()
+            .put("eventsEnabled", true)
+            .put("adminEventsEnabled", true)
+            .put("enabledEventTypes", new JsonArray());
+
+    realmUsers.clear();
+    realmUsers.add(user(OTHER_USER_ID, OTHER_EMAIL));
+    realmUsers.add(user(USER_ID, EMAIL));
+
+    vertx
+        .createHttpServer()
+        .requestHandler(this::handle)
+        .listen(0)
+        .onComplete(
+            testContext.succeeding(
+                s -> {
+                  server = s;
+                  testContext.completeNow();
+                }));
+  }
+
+  @AfterEach
+  void stopServer(VertxTestContext testContext) {
+    server.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  private KcAdmin kcAdmin(Vertx vertx, String realm) {
+    return new KcAdmin(
+        vertx,
+        "http://localhost:" + server.actualPort() + "/auth",
+        realm,
+        "admin-client",
+        "secret",
+        5);
+  }
+
+  private KcAdmin kcAdmin(Vertx vertx, int maxConcurrency, int pageSize) {
+    return new KcAdmin(
+        vertx,
+        "http://localhost:" + server.actualPort() + "/auth",
+        REALM,
+        "admin-client",
+        "secret",
+        5,
+        maxConcurrency,
+        pageSize);
+  }
+
+  @Test
+  @DisplayName("Service account token is requested once and reused")
+  void tokenReused(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = kcAdmin(vertx, REALM);
+
+    /* concurrent calls share the first token request */
+    Future<String> first = kc.getEmailId(USER_ID);
+    Future<String> second = kc.getEmailId(UUID.randomUUID().toString());
+
+    Future.all(first, second)
+        .compose(res -> kc.findUserByEmail(EMAIL))
+        .onComplete(
+            testContext.succeeding(
+                found ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(EMAIL, first.result());
+                          assertEquals("", second.result());
+                          assertEquals(USER_ID, found.getString("keycloakId"));
+                          assertEquals(EMAIL, found.getString("email"));
+                          assertEquals(
+                              "first", found.getJsonObject("name").getString("firstName"));
+                          assertEquals(1, tokenRequests.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Token is refreshed once it is close to expiry")
+  void tokenRefreshed(Vertx vertx, VertxTestContext testContext) {
+    expiresIn = 1;
+    KcAdmin kc = kcAdmin(vertx, REALM);
+
+    kc.getEmailId(USER_ID)
+        .compose(
+            email -> {
+              assertEquals(1, tokenRequests.get());
+              /* a token valid for 1 second is used for half the time */
+              return Future.future(p -> vertx.setTimer(700, id -> p.complete()));
+            })
+        .compose(done -> kc.getEmailId(USER_ID))
+        .onComplete(
+            testContext.succeeding(
+                email ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(EMAIL, email);
+                          assertEquals(2, tokenRequests.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Rejected token is replaced and the call retried once")
+  void tokenRejected(Vertx vertx, VertxTestContext testContext) {
+    rejectedTokens = 1;
+    KcAdmin kc = kcAdmin(vertx, REALM);
+
+    kc.getEmailId(USER_ID)
+        .onComplete(
+            testContext.succeeding(
+                email ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(EMAIL, email);
+                          assertEquals(2, tokenRequests.get());
+                          assertEquals(1, userRequests.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Details of many users are picked out of the pages of all users")
+  void detailsPaged(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = kcAdmin(vertx, REALM);
+    String missing = UUID.randomUUID().toString();
+
+    kc.getDetails(List.of(USER_ID, OTHER_USER_ID, missing, USER_ID))
+        .onComplete(
+            testContext.succeeding(
+                (Map<String, JsonObject> details) ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(3, details.size());
+                          assertEquals(EMAIL, details.get(USER_ID).getString("email"));
+                          assertEquals(
+                              OTHER_EMAIL, details.get(OTHER_USER_ID).getString("email"));
+                          assertEquals(
+                              "last",
+                              details.get(USER_ID).getJsonObject("name").getString("lastName"));
+                          assertTrue(details.get(missing).isEmpty());
+
+                          /* one page has both users, the missing user is looked up */
+                          assertEquals(1, pageRequests.get());
+                          assertEquals(1, userRequests.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Details of a few users in a large realm are fetched one by one")
+  void detailsSeparately(Vertx vertx, VertxTestContext testContext) {
+    addRealmUsers(20);
+    KcAdmin kc = kcAdmin(vertx, 5, 5);
+    String missing = UUID.randomUUID().toString();
+
+    kc.getDetails(List.of(USER_ID, OTHER_USER_ID, missing))
+        .onComplete(
+            testContext.succeeding(
+                (Map<String, JsonObject> details) ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(3, details.size());
+                          assertEquals(EMAIL, details.get(USER_ID).getString("email"));
+                          assertTrue(details.get(missing).isEmpty());
+
+                          /* 5 pages for 22 users are more than 3 lookups */
+                          assertEquals(0, pageRequests.get());
+                          assertEquals(3, userRequests.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Many users are found by email using the pages of all users")
+  void emailsPaged(Vertx vertx, VertxTestContext testContext) {
+    addRealmUsers(20);
+    KcAdmin kc = kcAdmin(vertx, 5, 10);
+    Set<String> emails = new HashSet<String>();
+    emails.add(EMAIL);
+    emails.add(OTHER_EMAIL);
+    for (int i = 0; i < 5; i++) {
+      emails.add("user" + i + "@other.iudx.io");
+    }
+    emails.add("missing@iudx.io");
+
+    kc.findUsersByEmail(emails)
+        .onComplete(
+            testContext.succeeding(
+                (Map<String, JsonObject> found) ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(8, found.size());
+                          assertEquals(USER_ID, found.get(EMAIL).getString("keycloakId"));
+                          JsonObject name = found.get(EMAIL).getJsonObject("name");
+                          assertEquals("first", name.getString("firstName"));
+                          assertEquals(
+                              OTHER_USER_ID, found.get(OTHER_EMAIL).getString("keycloakId"));
+                          assertTrue(found.get("missing@iudx.io").isEmpty());
+
+                          /* 3 pages for 22 users, the missing user is searched for */
+                          assertEquals(3, pageRequests.get());
+                          assertEquals(1, userRequests.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Admin API calls are limited to the max concurrency")
+  void concurrencyLimit(Vertx vertx, VertxTestContext testContext) {
+    addRealmUsers(100);
+    delayMs = 20;
+    /* 11 pages for 102 users are more than 6 lookups */
+    KcAdmin kc = kcAdmin(vertx, 2, 10);
+
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < 6; i++) {
+      ids.add(realmUsers.get(i).getString("id"));
+    }
+
+    kc.getDetails(ids)
+        .onComplete(
+            testContext.succeeding(
+                (Map<String, JsonObject> details) ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(6, details.size());
+                          assertTrue(details.values().stream().noneMatch(JsonObject::isEmpty));
+                          assertEquals(6, userRequests.get());
+                          assertEquals(2, maxInFlight.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Unknown email returns an empty object")
+  void unknownEmail(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = kcAdmin(vertx, REALM);
+
+    kc.findUserByEmail("missing@iudx.io")
+        .onComplete(
+            testContext.succeeding(
+                found ->
+                    testContext.verify(
+                        () -> {
+                          assertTrue(found.isEmpty());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Missing realm fails the call")
+  void missingRealm(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = kcAdmin(vertx, "missing");
+
+    kc.getEmailId(USER_ID)
+        .onComplete(
+            testContext.failing(
+                err ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals("Realm may not exist", err.getMessage());
+                          assertEquals(0, userRequests.get());
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("User events and admin events on users are paged through")
+  void events(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = kcAdmin(vertx, REALM);
+
+    Future<List<JsonObject>> events = kc.getUserEvents(10, 5);
+    Future<List<JsonObject>> adminEvents = kc.getUserAdminEvents(0, 5);
+
+    Future.all(events, adminEvents)
+        .onComplete(
+            testContext.succeeding(
+                done ->
+                    testContext.verify(
+                        () -> {
+                          JsonObject event = events.result().get(0);
+                          assertEquals(1000L, event.getLong("time"));
+                          assertEquals(new JsonArray().add("10"), event.getJsonArray("first"));
+                          assertEquals(new JsonArray().add("5"), event.getJsonArray("max"));
+                          assertEquals(
+                              new JsonArray()
+                                  .add("REGISTER")
+                                  .add("UPDATE_PROFILE")
+                                  .add("UPDATE_EMAIL")
+                                  .add("DELETE_ACCOUNT"),
+                              event.getJsonArray("type"));
+
+                          JsonObject adminEvent = adminEvents.result().get(0);
+                          assertEquals(
+                              new JsonArray().add("USER"),
+                              adminEvent.getJsonArray("resourceTypes"));
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("User events are saved only if events, admin events and the event types are on")
+  void eventsSaved(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = kcAdmin(vertx, REALM);
+
+    kc.userEventsSaved()
+        .compose(
+            saved -> {
+              assertTrue(saved);
+              eventsConfig.put("adminEventsEnabled", false);
+              return kc.userEventsSaved();
+            })
+        .compose(
+            saved -> {
+              assertFalse(saved);
+              eventsConfig
+                  .put("adminEventsEnabled", true)
+                  .put(
+                      "enabledEventTypes",
+                      new JsonArray().add("REGISTER").add("UPDATE_PROFILE").add("LOGIN"));
+              return kc.userEventsSaved();
+            })
+        .onComplete(
+            testContext.succeeding(
+                saved ->
+                    testContext.verify(
+                        () -> {
+                          assertFalse(saved);
+                          kc.close();
+                          testContext.completeNow();
+                        })));
+  }
+}
@@ -20,6 +20,7 @@ import io.vertx.sqlclient.PoolOptions;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.token.TokenService;
 import java.util.HashMap;
@@ -135,7 +136,13 @@ public class ListResourceServerTest {
             utils.createFakeResourceServer(DUMMY_SERVER_TWO, adminTwoUser))
         .onSuccess(
             succ -> {
-              registrationService = new RegistrationServiceImpl(pool, kc, tokenService, options);
+              registrationService =
+                  new RegistrationServiceImpl(
+                      pool,
+                      new ServerRegistry(vertx, pool, connectOptions),
+                      kc,
+                      tokenService,
+                      options);
               testContext.completeNow();
             })
         .onFailure(err -> testContext.failNow(err.getMessage()));
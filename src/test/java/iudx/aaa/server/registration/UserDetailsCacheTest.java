@@ -0,0 +1,136 @@
+package iudx.aaa.server.registration;
+
+import static iudx.aaa.server.registration.Constants.USER_DETAILS_CACHE_ADDRESS;
+import static iudx.aaa.server.registration.Constants.USER_DETAILS_CACHE_IDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.util.FakeTicker;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the user details cache. */
+@ExtendWith(VertxExtension.class)
+public class UserDetailsCacheTest {
+
+  private static JsonObject details(String email) {
+    return new JsonObject()
+        .put("email", email)
+        .put("name", new JsonObject().put("firstName", "first").put("lastName", "last"));
+  }
+
+  @Test
+  @DisplayName("Users are cached until the TTL, missing users until the negative TTL")
+  void ttl(Vertx vertx) {
+    FakeTicker ticker = new FakeTicker();
+    UserDetailsCache cache = new UserDetailsCache(vertx, 10, 60, 10, ticker);
+
+    String found = UUID.randomUUID().toString();
+    String missing = UUID.randomUUID().toString();
+    List<String> ids = List.of(found, missing);
+
+    assertTrue(cache.getAll(ids).isEmpty());
+    cache.put(found, details("user@iudx.io"));
+    cache.put(missing, new JsonObject());
+
+    Map<String, JsonObject> cached = cache.getAll(ids);
+    assertEquals(2, cached.size());
+    assertEquals("user@iudx.io", cached.get(found).getString("email"));
+    assertTrue(cached.get(missing).isEmpty());
+
+    ticker.advance(10);
+    cached = cache.getAll(ids);
+    assertEquals(1, cached.size());
+    assertTrue(cached.containsKey(found));
+
+    ticker.advance(50);
+    assertTrue(cache.getAll(ids).isEmpty());
+
+    cache.close();
+  }
+
+  @Test
+  @DisplayName("Changes to returned details do not change the cached details")
+  void copies(Vertx vertx) {
+    UserDetailsCache cache = new UserDetailsCache(vertx, 10, 60, 10);
+
+    String id = UUID.randomUUID().toString();
+    cache.put(id, details("user@iudx.io"));
+
+    cache.getAll(List.of(id)).get(id).put("email", "other@iudx.io");
+    assertEquals("user@iudx.io", cache.getAll(List.of(id)).get(id).getString("email"));
+
+    cache.close();
+  }
+
+  @Test
+  @DisplayName("Users are evicted when published on the event bus")
+  void eviction(Vertx vertx, VertxTestContext testContext) {
+    UserDetailsCache cache = new UserDetailsCache(vertx, 10, 60, 10);
+    UserDetailsCache other = new UserDetailsCache(vertx, 10, 60, 10);
+
+    String evicted = UUID.randomUUID().toString();
+    String kept = UUID.randomUUID().toString();
+    cache.put(evicted, details("user@iudx.io"));
+    cache.put(kept, details("kept@iudx.io"));
+    other.put(evicted, details("user@iudx.io"));
+
+    /* evicted locally at once, and on the other instance through the event bus */
+    other.invalidate(List.of(evicted));
+    assertEquals(0, other.size());
+
+    vertx.setTimer(
+        100,
+        id ->
+            testContext.verify(
+                () -> {
+                  assertEquals(Map.of(), cache.getAll(List.of(evicted)));
+                  assertEquals(1, cache.getAll(List.of(kept)).size());
+
+                  vertx
+                      .eventBus()
+                      .publish(
+                          USER_DETAILS_CACHE_ADDRESS,
+                          new JsonObject().put(USER_DETAILS_CACHE_IDS, new JsonArray().add(kept)));
+                  vertx.setTimer(
+                      100,
+                      id2 ->
+                          testContext.verify(
+                              () -> {
+                                assertEquals(0, cache.size());
+                                cache.close();
+                                other.close().onComplete(testContext.succeedingThenComplete());
+                              }));
+                }));
+  }
+
+  @Test
+  @DisplayName("A size or TTL of 0 disables the cache")
+  void disabled(Vertx vertx) {
+    UserDetailsCache noSize = new UserDetailsCache(vertx, 0, 60, 10);
+    UserDetailsCache noTtl = new UserDetailsCache(vertx, 10, 0, 0);
+    UserDetailsCache noNegative = new UserDetailsCache(vertx, 10, 60, 0);
+
+    String id = UUID.randomUUID().toString();
+    noSize.put(id, details("user@iudx.io"));
+    noTtl.put(id, details("user@iudx.io"));
+    noNegative.put(id, new JsonObject());
+
+    assertTrue(noSize.getAll(List.of(id)).isEmpty());
+    assertTrue(noTtl.getAll(List.of(id)).isEmpty());
+    assertTrue(noNegative.getAll(List.of(id)).isEmpty());
+
+    noSize.close();
+    noTtl.close();
+    noNegative.close();
+  }
+}
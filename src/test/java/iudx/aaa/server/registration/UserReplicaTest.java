@@ -0,0 +1,352 @@
+package iudx.aaa.server.registration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.configuration.Configuration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+/** Unit tests for the local replica of Keycloak users and its sync. */
+@ExtendWith(VertxExtension.class)
+public class UserReplicaTest {
+  private static Logger LOGGER = LogManager.getLogger(UserReplicaTest.class);
+
+  private static final String SQL_RESET_SYNC =
+      "UPDATE keycloak_user_sync SET event_cursor = $1::bigint, locked_until = NULL,"
+          + " last_sync_at = NOW() - $2::bigint * INTERVAL '1 second',"
+          + " last_full_sync_at = NOW() - $3::bigint * INTERVAL '1 second'";
+
+  private static final String SQL_INSERT_USER =
+      "INSERT INTO keycloak_users (id, email, first_name, last_name, synced_at)"
+          + " VALUES ($1::uuid, $2::text, 'first', 'last',"
+          + " NOW() - $3::bigint * INTERVAL '1 second') ON CONFLICT (id) DO UPDATE"
+          + " SET email = EXCLUDED.email, synced_at = EXCLUDED.synced_at";
+
+  private static final long FULL_SYNC_INTERVAL = 3600;
+  private static final int PAGE_SIZE = 2;
+
+  private static Vertx vertxObj;
+  private static PgPool pool;
+
+  @BeforeAll
+  @DisplayName("Deploying Verticle")
+  static void startVertx(Vertx vertx, VertxTestContext testContext) {
+    vertxObj = vertx;
+    JsonObject dbConfig = new Configuration().configLoader(1, vertx);
+
+    Map<String, String> schemaProp = Map.of("search_path", dbConfig.getString("databaseSchema"));
+    PgConnectOptions connectOptions =
+        new PgConnectOptions()
+            .setPort(Integer.parseInt(dbConfig.getString("databasePort")))
+            .setHost(dbConfig.getString("databaseIP"))
+            .setDatabase(dbConfig.getString("databaseName"))
+            .setUser(dbConfig.getString("databaseUserName"))
+            .setPassword(dbConfig.getString("databasePassword"))
+            .setProperties(schemaProp);
+    PoolOptions poolOptions =
+        new PoolOptions().setMaxSize(Integer.parseInt(dbConfig.getString("poolSize")));
+
+    pool = PgPool.pool(vertx, connectOptions, poolOptions);
+    testContext.completeNow();
+  }
+
+  @AfterAll
+  public static void finish(VertxTestContext testContext) {
+    LOGGER.info("Finishing and resetting DB");
+    pool.query("DELETE FROM keycloak_users")
+        .execute()
+        .compose(res -> resetSync(0, null, null))
+        .onComplete(
+            x -> {
+              if (x.failed()) {
+                LOGGER.warn(x.cause().getMessage());
+              }
+              vertxObj.close(testContext.succeeding(response -> testContext.completeNow()));
+            });
+  }
+
+  /** Reset the sync state. A <tt>null</tt> age leaves the timestamp unset. */
+  private static Future<Void> resetSync(long cursor, Long syncAge, Long fullSyncAge) {
+    return pool.preparedQuery(SQL_RESET_SYNC)
+        .execute(Tuple.of(cursor, syncAge, fullSyncAge))
+        .mapEmpty();
+  }
+
+  private static Future<Void> insertUser(UUID id, String email, long age) {
+    return pool.preparedQuery(SQL_INSERT_USER).execute(Tuple.of(id, email, age)).mapEmpty();
+  }
+
+  private static JsonObject kcUser(UUID id, String email) {
+    return new JsonObject()
+        .put("id", id.toString())
+        .put("username", email)
+        .put("email", email)
+        .put("firstName", "first")
+        .put("lastName", "last");
+  }
+
+  private static JsonObject details(String email) {
+    return new JsonObject()
+        .put("email", email)
+        .put("name", new JsonObject().put("firstName", "first").put("lastName", "last"));
+  }
+
+  private static UserReplicaSync replicaSync(Vertx vertx, KcAdmin kc) {
+    return new UserReplicaSync(vertx, pool, kc, 60, FULL_SYNC_INTERVAL, PAGE_SIZE);
+  }
+
+  @Test
+  @DisplayName("Full sync upserts all users and deletes users no longer on Keycloak")
+  void fullSync(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = Mockito.mock(KcAdmin.class);
+    UUID one = UUID.randomUUID();
+    UUID two = UUID.randomUUID();
+    UUID three = UUID.randomUUID();
+    UUID deleted = UUID.randomUUID();
+
+    Mockito.when(kc.getUsers(0, PAGE_SIZE))
+        .thenReturn(
+            Future.succeededFuture(
+                List.of(kcUser(one, "one@iudx.io"), kcUser(two, "two@iudx.io"))));
+    Mockito.when(kc.getUsers(PAGE_SIZE, PAGE_SIZE))
+        .thenReturn(Future.succeededFuture(List.of(kcUser(three, "three@iudx.io"))));
+    Mockito.when(kc.getDetails(List.of(deleted.toString())))
+        .thenReturn(Future.succeededFuture(Map.of(deleted.toString(), new JsonObject())));
+
+    UserReplica replica = new UserReplica(vertx, pool, kc, 60);
+    List<String> ids =
+        List.of(one.toString(), two.toString(), three.toString(), deleted.toString());
+
+    resetSync(0, null, null)
+        .compose(res -> insertUser(deleted, "deleted@iudx.io", 60))
+        .compose(res -> replicaSync(vertx, kc).sync())
+        .compose(
+            synced -> {
+              assertTrue(synced);
+              return replica.getDetails(ids);
+            })
+        .onComplete(
+            testContext.succeeding(
+                details ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(4, details.size());
+                          assertEquals(
+                              "one@iudx.io", details.get(one.toString()).getString("email"));
+                          assertEquals(
+                              "three@iudx.io", details.get(three.toString()).getString("email"));
+                          assertEquals(
+                              "first",
+                              details
+                                  .get(two.toString())
+                                  .getJsonObject("name")
+                                  .getString("firstName"));
+                          assertTrue(details.get(deleted.toString()).isEmpty());
+
+                          /* only the deleted user is looked up on Keycloak */
+                          Mockito.verify(kc).getDetails(List.of(deleted.toString()));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Event sync fetches only the users changed since the cursor")
+  void eventSync(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = Mockito.mock(KcAdmin.class);
+    UUID updated = UUID.randomUUID();
+    UUID removed = UUID.randomUUID();
+    UUID unchanged = UUID.randomUUID();
+
+    Mockito.when(kc.userEventsSaved()).thenReturn(Future.succeededFuture(true));
+    /* events are newest first; the second page reaches the cursor */
+    Mockito.when(kc.getUserEvents(0, PAGE_SIZE))
+        .thenReturn(
+            Future.succeededFuture(
+                List.of(
+                    new JsonObject().put("time", 3000L).put("userId", updated.toString()),
+                    new JsonObject().put("time", 2000L).put("userId", updated.toString()))));
+    Mockito.when(kc.getUserEvents(PAGE_SIZE, PAGE_SIZE))
+        .thenReturn(
+            Future.succeededFuture(
+                List.of(new JsonObject().put("time", 900L).put("userId", unchanged.toString()))));
+    Mockito.when(kc.getUserAdminEvents(0, PAGE_SIZE))
+        .thenReturn(
+            Future.succeededFuture(
+                List.of(
+                    new JsonObject()
+                        .put("time", 2500L)
+                        .put("resourcePath", "users/" + removed + "/role-mappings"))));
+    Mockito.when(kc.getDetails(any()))
+        .thenReturn(
+            Future.succeededFuture(
+                Map.of(
+                    updated.toString(),
+                    details("new@iudx.io"),
+                    removed.toString(),
+                    new JsonObject())));
+    Mockito.when(kc.findUsersByEmail(Set.of("removed@iudx.io")))
+        .thenReturn(Future.succeededFuture(Map.of("removed@iudx.io", new JsonObject())));
+
+    UserReplica replica = new UserReplica(vertx, pool, kc, 60);
+
+    resetSync(1000, 3600L, 60L)
+        .compose(res -> insertUser(updated, "old@iudx.io", 0))
+        .compose(res -> insertUser(removed, "removed@iudx.io", 0))
+        .compose(res -> insertUser(unchanged, "unchanged@iudx.io", 0))
+        .compose(res -> replicaSync(vertx, kc).sync())
+        .compose(
+            synced -> {
+              assertTrue(synced);
+              Mockito.verify(kc, Mockito.never()).getUsers(Mockito.anyInt(), Mockito.anyInt());
+              return pool.query("SELECT event_cursor FROM keycloak_user_sync").execute();
+            })
+        .compose(
+            rows -> {
+              assertEquals(3000L, rows.iterator().next().getLong("event_cursor"));
+              return replica.findUsersByEmail(
+                  Set.of("new@iudx.io", "unchanged@iudx.io", "removed@iudx.io"));
+            })
+        .onComplete(
+            testContext.succeeding(
+                users ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(
+                              updated.toString(),
+                              users.get("new@iudx.io").getString("keycloakId"));
+                          assertEquals(
+                              unchanged.toString(),
+                              users.get("unchanged@iudx.io").getString("keycloakId"));
+
+                          /* the removed user is no longer in the replica */
+                          Mockito.verify(kc).findUsersByEmail(Set.of("removed@iudx.io"));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Event sync is skipped and the replica not marked fresh if events are not saved")
+  void eventsNotSaved(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = Mockito.mock(KcAdmin.class);
+    Mockito.when(kc.userEventsSaved()).thenReturn(Future.succeededFuture(false));
+
+    resetSync(1000, 3600L, 60L)
+        .compose(res -> replicaSync(vertx, kc).sync())
+        .compose(
+            synced -> {
+              assertFalse(synced);
+              return pool.query(
+                      "SELECT last_sync_at < NOW() - INTERVAL '30 minutes' AS stale,"
+                          + " locked_until IS NULL AS released FROM keycloak_user_sync")
+                  .execute();
+            })
+        .onComplete(
+            testContext.succeeding(
+                rows ->
+                    testContext.verify(
+                        () -> {
+                          Row row = rows.iterator().next();
+                          assertTrue(row.getBoolean("stale"));
+                          assertTrue(row.getBoolean("released"));
+                          Mockito.verify(kc, Mockito.never())
+                              .getUserEvents(Mockito.anyInt(), Mockito.anyInt());
+                          Mockito.verify(kc, Mockito.never())
+                              .getUserAdminEvents(Mockito.anyInt(), Mockito.anyInt());
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Sync is skipped while another instance holds the lease")
+  void leaseHeld(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = Mockito.mock(KcAdmin.class);
+
+    resetSync(0, null, null)
+        .compose(
+            res ->
+                pool.query(
+                        "UPDATE keycloak_user_sync SET locked_until = NOW() + INTERVAL '1 minute'")
+                    .execute())
+        .compose(res -> replicaSync(vertx, kc).sync())
+        .onComplete(
+            testContext.succeeding(
+                synced ->
+                    testContext.verify(
+                        () -> {
+                          assertFalse(synced);
+                          Mockito.verifyNoInteractions(kc);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Stale replica is not used")
+  void staleReplica(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = Mockito.mock(KcAdmin.class);
+    UUID id = UUID.randomUUID();
+
+    Mockito.when(kc.getDetails(List.of(id.toString())))
+        .thenReturn(Future.succeededFuture(Map.of(id.toString(), details("keycloak@iudx.io"))));
+
+    UserReplica replica = new UserReplica(vertx, pool, kc, 60);
+
+    resetSync(0, 120L, 120L)
+        .compose(res -> insertUser(id, "replica@iudx.io", 120))
+        .compose(res -> replica.getDetails(List.of(id.toString())))
+        .onComplete(
+            testContext.succeeding(
+                details ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(
+                              "keycloak@iudx.io", details.get(id.toString()).getString("email"));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Emails are matched case-insensitively")
+  void emailCase(Vertx vertx, VertxTestContext testContext) {
+    KcAdmin kc = Mockito.mock(KcAdmin.class);
+    UUID id = UUID.randomUUID();
+
+    UserReplica replica = new UserReplica(vertx, pool, kc, 60);
+
+    resetSync(0, 0L, 0L)
+        .compose(res -> insertUser(id, "Mixed.Case@iudx.io", 0))
+        .compose(res -> replica.findUserByEmail("mixed.case@IUDX.io"))
+        .onComplete(
+            testContext.succeeding(
+                user ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(id.toString(), user.getString("keycloakId"));
+                          assertEquals("Mixed.Case@iudx.io", user.getString("email"));
+                          Mockito.verifyNoInteractions(kc);
+                          testContext.completeNow();
+                        })));
+  }
+}
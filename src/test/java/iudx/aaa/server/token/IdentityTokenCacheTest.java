@@ -0,0 +1,120 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.ACCESS_TOKEN;
+import static iudx.aaa.server.token.Constants.CLAIM_EXPIRY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.aaa.server.apiserver.DelegationInformation;
+import iudx.aaa.server.apiserver.Roles;
+import iudx.aaa.server.apiserver.util.FakeTicker;
+import java.util.UUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the identity token cache. */
+@ExtendWith(VertxExtension.class)
+public class IdentityTokenCacheTest {
+
+  private static final String RS_URL = "rs.iudx.io";
+
+  private static JsonObject jwt() {
+    return new JsonObject().put(ACCESS_TOKEN, UUID.randomUUID().toString());
+  }
+
+  @Test
+  @DisplayName("Token is reused only within the configured fraction of the token expiry")
+  void reuseWithinFraction(Vertx vertx, VertxTestContext testContext) {
+    FakeTicker ticker = new FakeTicker();
+    IdentityTokenCache cache = new IdentityTokenCache(vertx, 10, 0.5, ticker);
+
+    IdentityTokenCache.Key key =
+        IdentityTokenCache.key(UUID.randomUUID().toString(), Roles.CONSUMER, RS_URL, null);
+    JsonObject jwt = jwt();
+    cache.put(key, jwt);
+
+    ticker.advance(CLAIM_EXPIRY / 2 - 1);
+    assertEquals(jwt, cache.get(key));
+
+    ticker.advance(1);
+    assertNull(cache.get(key));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Delegation ID is part of the key only for delegates")
+  void delegationInKey(Vertx vertx, VertxTestContext testContext) {
+    IdentityTokenCache cache = new IdentityTokenCache(vertx, 10, 0.5);
+    String userId = UUID.randomUUID().toString();
+    DelegationInformation deleg =
+        new DelegationInformation(UUID.randomUUID(), UUID.randomUUID(), Roles.PROVIDER, RS_URL);
+    DelegationInformation otherDeleg =
+        new DelegationInformation(UUID.randomUUID(), UUID.randomUUID(), Roles.PROVIDER, RS_URL);
+
+    cache.put(IdentityTokenCache.key(userId, Roles.DELEGATE, RS_URL, deleg), jwt());
+    assertNotNull(cache.get(IdentityTokenCache.key(userId, Roles.DELEGATE, RS_URL, deleg)));
+    assertNull(cache.get(IdentityTokenCache.key(userId, Roles.DELEGATE, RS_URL, otherDeleg)));
+
+    cache.put(IdentityTokenCache.key(userId, Roles.CONSUMER, RS_URL, null), jwt());
+    assertNotNull(cache.get(IdentityTokenCache.key(userId, Roles.CONSUMER, RS_URL, deleg)));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Cache size of 0 disables caching")
+  void disabled(Vertx vertx, VertxTestContext testContext) {
+    IdentityTokenCache cache = new IdentityTokenCache(vertx, 0, 0.5);
+    IdentityTokenCache.Key key =
+        IdentityTokenCache.key(UUID.randomUUID().toString(), Roles.CONSUMER, RS_URL, null);
+    cache.put(key, jwt());
+    assertNull(cache.get(key));
+
+    cache.close().onComplete(testContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Revocation evicts tokens of the user for the server on all caches")
+  void evictOnRevoke(Vertx vertx, VertxTestContext testContext) {
+    IdentityTokenCache cache = new IdentityTokenCache(vertx, 10, 0.5);
+    IdentityTokenCache otherInstance = new IdentityTokenCache(vertx, 10, 0.5);
+    String userId = UUID.randomUUID().toString();
+
+    IdentityTokenCache.Key consumer = IdentityTokenCache.key(userId, Roles.CONSUMER, RS_URL, null);
+    IdentityTokenCache.Key provider = IdentityTokenCache.key(userId, Roles.PROVIDER, RS_URL, null);
+    IdentityTokenCache.Key otherRs =
+        IdentityTokenCache.key(userId, Roles.CONSUMER, "other.iudx.io", null);
+
+    cache.put(consumer, jwt());
+    cache.put(provider, jwt());
+    cache.put(otherRs, jwt());
+    otherInstance.put(consumer, jwt());
+
+    cache.invalidate(userId, RS_URL);
+    assertNull(cache.get(consumer));
+    assertNull(cache.get(provider));
+    assertNotNull(cache.get(otherRs));
+
+    /* eviction on the other instance arrives over the event bus */
+    vertx.setTimer(
+        100,
+        id ->
+            testContext.verify(
+                () -> {
+                  assertNull(otherInstance.get(consumer));
+                  assertNotEquals(0, cache.size());
+                  cache
+                      .close()
+                      .compose(res -> otherInstance.close())
+                      .onComplete(testContext.succeedingThenComplete());
+                }));
+  }
+}
@@ -0,0 +1,157 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.EXP;
+import static iudx.aaa.server.token.Constants.SUB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.authentication.TokenCredentials;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import io.vertx.ext.auth.jwt.JWTAuthOptions;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for loading multiple signing keys from the JWT keystore. */
+@ExtendWith(VertxExtension.class)
+public class SigningKeysTest {
+
+  private static final String PASSWORD = "secret";
+  private static final String OLD_KEY = "ES256";
+  private static final String NEW_KEY = "ES256-2";
+  /* the keystore stores aliases in lower case */
+  private static final String OLD_KID = "es256";
+  private static final String NEW_KID = "es256-2";
+
+  private static KeyStore keyStore;
+  private static X509Certificate newCert;
+
+  @BeforeAll
+  @DisplayName("Create keystore with two ES256 keys and an RSA key")
+  static void setup(VertxTestContext testContext) throws Exception {
+    keyStore = KeyStore.getInstance("PKCS12");
+    keyStore.load(null, null);
+
+    addKey(OLD_KEY, TokenSignerTest.generateKeyPair(), "SHA256withECDSA");
+    newCert = addKey(NEW_KEY, TokenSignerTest.generateKeyPair(), "SHA256withECDSA");
+
+    KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+    rsa.initialize(2048);
+    addKey("RS256", rsa.generateKeyPair(), "SHA256withRSA");
+
+    testContext.completeNow();
+  }
+
+  private static X509Certificate addKey(String alias, KeyPair keyPair, String signatureAlgorithm)
+      throws Exception {
+    X500Name name = new X500Name("CN=" + alias);
+    long now = System.currentTimeMillis();
+    X509CertificateHolder holder =
+        new JcaX509v3CertificateBuilder(
+                name,
+                BigInteger.valueOf(now),
+                new Date(now),
+                new Date(now + 86400000L),
+                name,
+                keyPair.getPublic())
+            .build(new JcaContentSignerBuilder(signatureAlgorithm).build(keyPair.getPrivate()));
+    X509Certificate cert = new JcaX509CertificateConverter().getCertificate(holder);
+    keyStore.setKeyEntry(
+        alias, keyPair.getPrivate(), PASSWORD.toCharArray(), new Certificate[] {cert});
+    return cert;
+  }
+
+  @Test
+  @DisplayName("All ES256 keys are published in the JWKS and the active key is used for signing")
+  void activeKeyAndJwks() throws Exception {
+    SigningKeys keys = new SigningKeys(keyStore, PASSWORD, NEW_KEY);
+
+    assertEquals(NEW_KID, keys.activeKid());
+    assertEquals(keyStore.getKey(NEW_KEY, PASSWORD.toCharArray()), keys.activeKey());
+
+    JsonArray jwks = keys.jwks().getJsonArray("keys");
+    List<String> kids =
+        jwks.stream().map(key -> ((JsonObject) key).getString("kid")).collect(Collectors.toList());
+    assertEquals(2, kids.size());
+    assertTrue(kids.containsAll(List.of(OLD_KID, NEW_KID)));
+    jwks.forEach(key -> assertFalse(((JsonObject) key).containsKey("d")));
+
+    String expectedCert =
+        "-----BEGIN CERTIFICATE-----\n"
+            + Base64.getEncoder().encodeToString(newCert.getEncoded())
+            + "\n-----END CERTIFICATE-----";
+    assertEquals(expectedCert, keys.certificate());
+  }
+
+  @Test
+  @DisplayName("Tokens signed with the old key are verified after rotating to the new key")
+  void verifyAfterRotation(Vertx vertx, VertxTestContext testContext) throws Exception {
+    TokenSigner oldSigner = TokenSigner.create(new SigningKeys(keyStore, PASSWORD, OLD_KEY));
+    SigningKeys rotated = new SigningKeys(keyStore, PASSWORD, NEW_KEY);
+    TokenSigner newSigner = TokenSigner.create(rotated);
+
+    JWTAuthOptions options = new JWTAuthOptions();
+    rotated.verificationKeys().forEach(options::addPubSecKey);
+    JWTAuth provider = JWTAuth.create(vertx, options);
+
+    long exp = System.currentTimeMillis() / 1000 + 100;
+    String oldToken = oldSigner.claims().claim(SUB, "old").claim(EXP, exp).sign();
+    String newToken = newSigner.claims().claim(SUB, "new").claim(EXP, exp).sign();
+
+    provider
+        .authenticate(new TokenCredentials(oldToken))
+        .compose(
+            user -> {
+              assertEquals("old", user.attributes().getJsonObject("accessToken").getString(SUB));
+              return provider.authenticate(new TokenCredentials(newToken));
+            })
+        .onComplete(
+            testContext.succeeding(
+                user ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(
+                              "new", user.attributes().getJsonObject("accessToken").getString(SUB));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Active alias is matched ignoring case and the kid is the alias in the keystore")
+  void activeAliasCase() throws Exception {
+    assertEquals(OLD_KID, new SigningKeys(keyStore, PASSWORD, "es256").activeKid());
+    assertEquals(NEW_KID, new SigningKeys(keyStore, PASSWORD, "Es256-2").activeKid());
+  }
+
+  @Test
+  @DisplayName("Loading fails if the active alias is missing or not an ES256 key")
+  void missingActiveKey() {
+    assertThrows(
+        GeneralSecurityException.class, () -> new SigningKeys(keyStore, PASSWORD, "unknown"));
+    assertThrows(GeneralSecurityException.class, () -> new SigningKeys(keyStore, PASSWORD, "RS256"));
+  }
+}
@@ -0,0 +1,226 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.ACCESS_TOKEN;
+import static iudx.aaa.server.token.Constants.PG_CONNECTION_TIMEOUT;
+import static iudx.aaa.server.token.Constants.REVOCATION_MAX_ATTEMPTS;
+import static iudx.aaa.server.token.Constants.REVOCATION_RETRY_BASE_MS;
+import static iudx.aaa.server.token.Constants.REVOCATION_RETRY_MAX_MS;
+import static iudx.aaa.server.token.Constants.RS_REVOKE_BODY_REQUESTED_AT;
+import static iudx.aaa.server.token.Constants.RS_URL;
+import static iudx.aaa.server.token.Constants.SQL_ENQUEUE_REVOCATION;
+import static iudx.aaa.server.token.Constants.USER_ID;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.PgPool;
+import io.vertx.sqlclient.PoolOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import iudx.aaa.server.apiserver.User;
+import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.configuration.Configuration;
+import iudx.aaa.server.registration.Utils;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+
+/** Unit tests for sending token revocations from the outbox. */
+@ExtendWith(VertxExtension.class)
+public class TokenRevocationDispatcherTest {
+  private static Logger LOGGER = LogManager.getLogger(TokenRevocationDispatcherTest.class);
+
+  private static final String SQL_GET_OUTBOX =
+      "SELECT status, attempts, last_error FROM token_revocation_outbox"
+          + " WHERE user_id = $1::uuid AND url = $2::text";
+
+  private static final String DUMMY_SERVER =
+      "dummy" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + ".iudx.io";
+
+  private static Vertx vertxObj;
+  private static PgPool pgPool;
+  private static Utils utils;
+  private static MockHttpWebClient mockHttpWebClient;
+  private static TokenRevokeService revokeService;
+  private static IdentityTokenCache identityTokenCache;
+
+  private static User successUser = new UserBuilder().userId(UUID.randomUUID()).build();
+  private static User failureUser = new UserBuilder().userId(UUID.randomUUID()).build();
+
+  @BeforeAll
+  @DisplayName("Deploying Verticle")
+  static void startVertx(Vertx vertx, VertxTestContext testContext) {
+    vertxObj = vertx;
+    JsonObject dbConfig = new Configuration().configLoader(2, vertx);
+
+    Map<String, String> schemaProp = Map.of("search_path", dbConfig.getString("databaseSchema"));
+    PgConnectOptions connectOptions =
+        new PgConnectOptions()
+            .setPort(Integer.parseInt(dbConfig.getString("databasePort")))
+            .setHost(dbConfig.getString("databaseIP"))
+            .setDatabase(dbConfig.getString("databaseName"))
+            .setUser(dbConfig.getString("databaseUserName"))
+            .setPassword(dbConfig.getString("databasePassword"))
+            .setConnectTimeout(PG_CONNECTION_TIMEOUT)
+            .setProperties(schemaProp);
+    PoolOptions poolOptions =
+        new PoolOptions().setMaxSize(Integer.parseInt(dbConfig.getString("poolSize")));
+
+    pgPool = PgPool.pool(vertx, connectOptions, poolOptions);
+    utils = new Utils(pgPool);
+    mockHttpWebClient = new MockHttpWebClient();
+    revokeService = mockHttpWebClient.getMockHttpWebClient();
+    identityTokenCache = Mockito.mock(IdentityTokenCache.class);
+
+    utils
+        .createFakeUser(successUser, false, false)
+        .compose(res -> utils.createFakeUser(failureUser, false, false))
+        .onComplete(testContext.succeedingThenComplete());
+  }
+
+  @AfterAll
+  public static void finish(VertxTestContext testContext) {
+    LOGGER.info("Finishing....");
+    /* outbox entries are deleted along with the users */
+    utils
+        .deleteFakeUser()
+        .onComplete(
+            x -> {
+              if (x.failed()) {
+                LOGGER.warn(x.cause().getMessage());
+              }
+              vertxObj.close(testContext.succeeding(response -> testContext.completeNow()));
+            });
+  }
+
+  private static TokenRevocationDispatcher dispatcher(Vertx vertx, JsonObject options) {
+    return new TokenRevocationDispatcher(
+        vertx,
+        pgPool,
+        revokeService,
+        identityTokenCache,
+        url -> Future.succeededFuture(new JsonObject().put(ACCESS_TOKEN, "admin-token")),
+        options);
+  }
+
+  private static Future<Void> enqueue(User user) {
+    return pgPool
+        .preparedQuery(SQL_ENQUEUE_REVOCATION)
+        .execute(Tuple.of(user.getUserId(), DUMMY_SERVER))
+        .mapEmpty();
+  }
+
+  private static Future<RowSet<Row>> getOutbox(User user) {
+    return pgPool.preparedQuery(SQL_GET_OUTBOX).execute(Tuple.of(user.getUserId(), DUMMY_SERVER));
+  }
+
+  private static Future<Void> sleep(Vertx vertx, long ms) {
+    Promise<Void> promise = Promise.promise();
+    vertx.setTimer(ms, id -> promise.complete());
+    return promise.future();
+  }
+
+  @Test
+  @DisplayName(
+      "Revocation accepted by the server is deleted from the outbox and the cached tokens evicted")
+  void revocationSent(Vertx vertx, VertxTestContext testContext) {
+    mockHttpWebClient.setResponse("valid");
+    TokenRevocationDispatcher dispatcher = dispatcher(vertx, new JsonObject());
+    long enqueuedAt = System.currentTimeMillis() / 1000;
+
+    enqueue(successUser)
+        .compose(res -> dispatcher.dispatch())
+        .compose(
+            claimed -> {
+              assertTrue(claimed >= 1);
+              return getOutbox(successUser);
+            })
+        .onComplete(
+            testContext.succeeding(
+                rows ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(0, rows.rowCount());
+                          Mockito.verify(revokeService, Mockito.atLeastOnce())
+                              .httpRevokeRequest(
+                                  Mockito.argThat(
+                                      req ->
+                                          successUser.getUserId().equals(req.getString(USER_ID))
+                                              && DUMMY_SERVER.equals(req.getString(RS_URL))
+                                              && Math.abs(
+                                                      req.getLong(RS_REVOKE_BODY_REQUESTED_AT)
+                                                          - enqueuedAt)
+                                                  <= 5),
+                                  Mockito.eq("admin-token"));
+                          Mockito.verify(identityTokenCache)
+                              .invalidate(successUser.getUserId(), DUMMY_SERVER);
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Failed revocation is retried and marked as failed after the max attempts")
+  void revocationRetriedThenFailed(Vertx vertx, VertxTestContext testContext) {
+    mockHttpWebClient.setResponse("invalid");
+    JsonObject options =
+        new JsonObject()
+            .put(REVOCATION_MAX_ATTEMPTS, 2)
+            .put(REVOCATION_RETRY_BASE_MS, 1)
+            .put(REVOCATION_RETRY_MAX_MS, 1);
+    TokenRevocationDispatcher dispatcher = dispatcher(vertx, options);
+
+    enqueue(failureUser)
+        .compose(res -> dispatcher.dispatch())
+        .compose(res -> getOutbox(failureUser))
+        .compose(
+            rows -> {
+              Row row = rows.iterator().next();
+              assertEquals("PENDING", row.getString("status"));
+              assertEquals(1, row.getInteger("attempts"));
+              assertNotNull(row.getString("last_error"));
+              return sleep(vertx, 100);
+            })
+        .compose(res -> dispatcher.dispatch())
+        .compose(res -> getOutbox(failureUser))
+        .onComplete(
+            testContext.succeeding(
+                rows ->
+                    testContext.verify(
+                        () -> {
+                          Row row = rows.iterator().next();
+                          assertEquals("FAILED", row.getString("status"));
+                          assertEquals(2, row.getInteger("attempts"));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Retry delay doubles with every attempt up to the max delay")
+  void retryDelay(Vertx vertx) {
+    JsonObject options =
+        new JsonObject().put(REVOCATION_RETRY_BASE_MS, 1000).put(REVOCATION_RETRY_MAX_MS, 5000);
+    TokenRevocationDispatcher dispatcher = dispatcher(vertx, options);
+
+    assertEquals(1000, dispatcher.retryDelay(1));
+    assertEquals(2000, dispatcher.retryDelay(2));
+    assertEquals(4000, dispatcher.retryDelay(3));
+    assertEquals(5000, dispatcher.retryDelay(4));
+    assertEquals(5000, dispatcher.retryDelay(100));
+  }
+}
@@ -0,0 +1,103 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.ACCESS_TOKEN;
+import static iudx.aaa.server.token.Constants.CONSTRAINTS;
+import static iudx.aaa.server.token.Constants.ITEM_ID;
+import static iudx.aaa.server.token.Constants.ITEM_TYPE;
+import static iudx.aaa.server.token.Constants.ROLE;
+import static iudx.aaa.server.token.Constants.URL;
+import static iudx.aaa.server.token.Constants.USER_ID;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import iudx.aaa.server.apiserver.IntrospectToken;
+import java.security.KeyPair;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks the per-request token paths of {@link TokenServiceImpl} that do not touch the DB:
+ * creating a resource access token with {@link TokenServiceImpl#getJwt(JsonObject)} and
+ * introspecting it with {@link TokenServiceImpl#validateToken(IntrospectToken)}. The introspection
+ * cache is disabled, so every introspection verifies the token signature.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenServiceBenchmark {
+
+  private static final String KID = "ES256";
+
+  private Vertx vertx;
+  private TokenServiceImpl tokenService;
+  private JsonObject request;
+  private IntrospectToken introspectToken;
+
+  @Setup
+  public void setup() throws Exception {
+    vertx = Vertx.vertx();
+    KeyPair keyPair = TokenSignerTest.generateKeyPair();
+
+    tokenService =
+        new TokenServiceImpl(
+            null,
+            null,
+            null,
+            null,
+            TokenSignerTest.createProvider(vertx, keyPair, KID),
+            new TokenSigner(keyPair.getPrivate(), TokenSigner.encodedHeader(KID)),
+            null,
+            new VerifiedTokenCache(vertx, 0, 0, false),
+            1);
+
+    request =
+        new JsonObject()
+            .put(USER_ID, UUID.randomUUID().toString())
+            .put(URL, "rs.iudx.io")
+            .put(ROLE, "CONSUMER")
+            .put(ITEM_TYPE, "RESOURCE")
+            .put(ITEM_ID, UUID.randomUUID().toString())
+            .put(CONSTRAINTS, new JsonObject().put("access", new JsonObject().put("api", true)));
+
+    introspectToken = new IntrospectToken();
+    introspectToken.setAccessToken(tokenService.getJwt(request).getString(ACCESS_TOKEN));
+  }
+
+  @TearDown
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Benchmark
+  public JsonObject getJwt() {
+    return tokenService.getJwt(request);
+  }
+
+  @Benchmark
+  public JsonObject validateToken() {
+    /* no DB or service calls are made for a resource token, so the future is already complete */
+    return tokenService.validateToken(introspectToken).result();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TokenServiceBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
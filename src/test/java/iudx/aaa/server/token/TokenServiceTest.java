@@ -27,7 +27,6 @@ import static iudx.aaa.server.token.Constants.ERR_DETAIL_DELEGATION_INFO_MISSING
 import static iudx.aaa.server.token.Constants.ERR_DETAIL_INVALID_COS_URL;
 import static iudx.aaa.server.token.Constants.ERR_DETAIL_INVALID_ROLE_FOR_COS;
 import static iudx.aaa.server.token.Constants.ERR_DETAIL_INVALID_RS;
-import static iudx.aaa.server.token.Constants.ERR_DETAIL_NO_RES_GRP_TOKEN;
 import static iudx.aaa.server.token.Constants.ERR_DETAIL_ROLE_NOT_OWNED;
 import static iudx.aaa.server.token.Constants.ERR_DOES_NOT_HAVE_ROLE_FOR_RS;
 import static iudx.aaa.server.token.Constants.ERR_TITLE_APD_INTERACT_REQUIRED;
@@ -35,10 +34,10 @@ import static iudx.aaa.server.token.Constants.ERR_TITLE_DELEGATION_INFO_MISSING;
 import static iudx.aaa.server.token.Constants.ERR_TITLE_INVALID_COS_URL;
 import static iudx.aaa.server.token.Constants.ERR_TITLE_INVALID_ROLE_FOR_COS;
 import static iudx.aaa.server.token.Constants.ERR_TITLE_INVALID_RS;
-import static iudx.aaa.server.token.Constants.ERR_TITLE_NO_RES_GRP_TOKEN;
 import static iudx.aaa.server.token.Constants.ERR_TITLE_ROLE_NOT_OWNED;
 import static iudx.aaa.server.token.Constants.EXP;
 import static iudx.aaa.server.token.Constants.IID;
+import static iudx.aaa.server.token.Constants.INTERNAL_SVR_ERR;
 import static iudx.aaa.server.token.Constants.INTROSPECT_USERINFO;
 import static iudx.aaa.server.token.Constants.ISS;
 import static iudx.aaa.server.token.Constants.ITEM_ID;
@@ -54,6 +53,9 @@ import static iudx.aaa.server.token.Constants.SID;
 import static iudx.aaa.server.token.Constants.STATUS;
 import static iudx.aaa.server.token.Constants.SUB;
 import static iudx.aaa.server.token.Constants.SUCCESS;
+import static iudx.aaa.server.token.Constants.TOKENS_PROCESSED;
+import static iudx.aaa.server.token.Constants.TOKEN_REVOKE_REQUESTED;
+import static iudx.aaa.server.token.Constants.TOKEN_SUCCESS;
 import static iudx.aaa.server.token.Constants.TYPE;
 import static iudx.aaa.server.token.Constants.URL;
 import static iudx.aaa.server.token.Constants.USER_ID;
@@ -70,7 +72,6 @@ import io.vertx.core.Future;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
-import io.vertx.ext.auth.KeyStoreOptions;
 import io.vertx.ext.auth.jwt.JWTAuth;
 import io.vertx.ext.auth.jwt.JWTAuthOptions;
 import io.vertx.junit5.Checkpoint;
@@ -86,12 +87,15 @@ import iudx.aaa.server.apiserver.RequestToken;
 import iudx.aaa.server.apiserver.Roles;
 import iudx.aaa.server.apiserver.User;
 import iudx.aaa.server.apiserver.User.UserBuilder;
+import iudx.aaa.server.apiserver.util.ComposeException;
+import iudx.aaa.server.apiserver.util.ServerRegistry;
 import iudx.aaa.server.configuration.Configuration;
 import iudx.aaa.server.policy.MockRegistrationFactory;
 import iudx.aaa.server.policy.PolicyService;
 import iudx.aaa.server.registration.RegistrationService;
 import iudx.aaa.server.registration.Utils;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.util.Base64;
 import java.util.List;
 import java.util.Map;
@@ -105,6 +109,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 /** Unit tests for token creation, introspection, revocation. */
@@ -131,12 +136,14 @@ public class TokenServiceTest {
   private static String keystorePath;
   private static String keystorePassword;
   private static JWTAuth provider;
+  private static SigningKeys signingKeys;
+  private static TokenSigner signer;
+  private static IdentityTokenCache identityTokenCache;
+  private static VerifiedTokenCache verifiedTokenCache;
   private static PolicyService policyService;
   private static RegistrationService registrationService;
   private static MockRegistrationFactory mockRegistrationFactory;
   private static MockPolicyFactory mockPolicy;
-  private static TokenRevokeService httpWebClient;
-  private static MockHttpWebClient mockHttpWebClient;
 
   private static final String DUMMY_COS_URL =
       "cos" + RandomStringUtils.randomAlphabetic(5).toLowerCase() + "iudx.io";
@@ -209,6 +216,12 @@ public class TokenServiceTest {
     }
 
     /* Initializing the services */
+    try {
+      signingKeys = SigningKeys.load(vertx, keystorePath, keystorePassword, "ES256");
+    } catch (GeneralSecurityException e) {
+      testContext.failNow(e);
+      return;
+    }
     provider = jwtInitConfig(vertx);
     pgPool = PgPool.pool(vertx, connectOptions, poolOptions);
 
@@ -235,15 +248,29 @@ public class TokenServiceTest {
     create.onSuccess(
         r -> {
           mockPolicy = new MockPolicyFactory();
-          mockHttpWebClient = new MockHttpWebClient();
-          httpWebClient = mockHttpWebClient.getMockHttpWebClient();
 
           policyService = mockPolicy.getInstance();
           mockRegistrationFactory = new MockRegistrationFactory();
           registrationService = mockRegistrationFactory.getInstance();
+          identityTokenCache = new IdentityTokenCache(vertx, 100, 0.25);
+          verifiedTokenCache = new VerifiedTokenCache(vertx, 100, 300, false);
+          try {
+            signer = TokenSigner.create(signingKeys);
+          } catch (GeneralSecurityException e) {
+            testContext.failNow(e);
+            return;
+          }
           tokenServiceImplObj =
               new TokenServiceImpl(
-                  pgPool, policyService, registrationService, provider, httpWebClient);
+                  pgPool,
+                  new ServerRegistry(vertx, pgPool, connectOptions),
+                  policyService,
+                  registrationService,
+                  provider,
+                  signer,
+                  identityTokenCache,
+                  verifiedTokenCache,
+                  2);
           tokenService = tokenServiceImplObj;
 
           testContext.completeNow();
@@ -253,7 +280,7 @@ public class TokenServiceTest {
   /* Initializing JwtProvider */
   public static JWTAuth jwtInitConfig(Vertx vertx) {
     JWTAuthOptions config = new JWTAuthOptions();
-    config.setKeyStore(new KeyStoreOptions().setPath(keystorePath).setPassword(keystorePassword));
+    signingKeys.verificationKeys().forEach(config::addPubSecKey);
 
     JWTAuth provider = JWTAuth.create(vertx, config);
     return provider;
@@ -374,84 +401,49 @@ public class TokenServiceTest {
   }
 
   @Test
-  @DisplayName(
-      "Create Token - Request for Resource Group token fails for admin, cos_admin, provider, consumer, delegate")
-  void createTokenRsGrpFails(VertxTestContext testContext) {
+  @DisplayName("Consumer getting Resource group token - Success")
+  void createTokenConsResGrpSuccess(VertxTestContext testContext) {
 
-    List<Roles> roles = List.of(Roles.ADMIN, Roles.COS_ADMIN, Roles.PROVIDER, Roles.CONSUMER);
-
-    User user = new User(normalUser.toJson());
-    user.setRoles(roles);
-    user.setRolesToRsMapping(
-        Map.of(
-            Roles.CONSUMER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.PROVIDER.toString(),
-            new JsonArray().add("some-rs.url"),
-            Roles.ADMIN.toString(),
-            new JsonArray().add("some-rs.url")));
-
-    Map<Roles, Checkpoint> checks =
-        roles.stream().collect(Collectors.toMap(role -> role, role -> testContext.checkpoint()));
-    Checkpoint delegateCheck = testContext.checkpoint();
-    roles.forEach(
-        role -> {
-          JsonObject jsonReq =
-              new JsonObject()
-                  .put("itemId", RESOURCE_GROUP)
-                  .put("itemType", "resource_group")
-                  .put("role", role.toString().toLowerCase());
-
-          RequestToken request = new RequestToken(jsonReq);
-          tokenService
-              .createToken(request, null, user)
-              .onComplete(
-                  testContext.succeeding(
-                      response ->
-                          testContext.verify(
-                              () -> {
-                                assertEquals(
-                                    URN_INVALID_INPUT.toString(), response.getString(TYPE));
-                                assertEquals(
-                                    ERR_TITLE_NO_RES_GRP_TOKEN, response.getString("title"));
-                                assertEquals(
-                                    ERR_DETAIL_NO_RES_GRP_TOKEN, response.getString("detail"));
-                                assertEquals(403, response.getInteger("status"));
-                                checks.get(role).flag();
-                              })));
-        });
-
-    User delegateUser = new User(normalUser.toJson());
-    delegateUser.setRoles(List.of(Roles.DELEGATE));
-    delegateUser.setRolesToRsMapping(
-        Map.of(Roles.DELEGATE.toString(), new JsonArray().add("some-rs.url")));
-
-    DelegationInformation delegConsInfo =
-        new DelegationInformation(
-            UUID.randomUUID(),
-            UUID.fromString(normalUser.getUserId()),
-            Roles.CONSUMER,
-            DUMMY_SERVER);
+    User consumerUser = new User(normalUser.toJson());
+    consumerUser.setRoles(List.of(Roles.CONSUMER));
+    consumerUser.setRolesToRsMapping(
+        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
 
     JsonObject jsonReq =
         new JsonObject()
             .put("itemId", RESOURCE_GROUP)
             .put("itemType", "resource_group")
-            .put("role", "delegate");
-
+            .put("role", "consumer");
     RequestToken request = new RequestToken(jsonReq);
+
+    JsonObject policyResponse =
+        new JsonObject()
+            .put(STATUS, SUCCESS)
+            .put(CAT_ID, RESOURCE_GROUP)
+            .put(CREATE_TOKEN_RG, RESOURCE_GROUP)
+            .put(CONSTRAINTS, new JsonObject().put("access", new JsonArray().add("sub").add("api")))
+            .put(URL, DUMMY_SERVER);
+    mockPolicy.setResponse(policyResponse);
+
     tokenService
-        .createToken(request, delegConsInfo, delegateUser)
+        .createToken(request, null, consumerUser)
         .onComplete(
             testContext.succeeding(
                 response ->
                     testContext.verify(
                         () -> {
-                          assertEquals(URN_INVALID_INPUT.toString(), response.getString(TYPE));
-                          assertEquals(ERR_TITLE_NO_RES_GRP_TOKEN, response.getString("title"));
-                          assertEquals(ERR_DETAIL_NO_RES_GRP_TOKEN, response.getString("detail"));
-                          assertEquals(403, response.getInteger("status"));
-                          delegateCheck.flag();
+                          assertEquals(URN_SUCCESS.toString(), response.getString("type"));
+                          JsonObject payload =
+                              getJwtPayload(
+                                  response.getJsonObject("results").getString(ACCESS_TOKEN));
+                          assertEquals(payload.getString(SUB), consumerUser.getUserId());
+                          assertEquals(payload.getString(AUD), DUMMY_SERVER);
+                          assertEquals(payload.getString(IID), "rg:" + RESOURCE_GROUP);
+                          assertEquals(payload.getString(RG), RESOURCE_GROUP);
+                          assertEquals(
+                              payload.getString(ROLE), Roles.CONSUMER.toString().toLowerCase());
+                          assertFalse(payload.getJsonObject(CONS).isEmpty());
+                          testContext.completeNow();
                         })));
   }
 
@@ -870,6 +862,172 @@ public class TokenServiceTest {
                         })));
   }
 
+  @Test
+  @DisplayName("Consumer getting tokens for a batch of resource items - Success")
+  void createTokensBatchSuccess(VertxTestContext testContext) {
+
+    User consumerUser = new User(normalUser.toJson());
+    consumerUser.setRoles(List.of(Roles.CONSUMER));
+    consumerUser.setRolesToRsMapping(
+        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+
+    String allowedItem = UUID.randomUUID().toString();
+    String apdItem = UUID.randomUUID().toString();
+    String deniedItem = UUID.randomUUID().toString();
+    List<String> itemIds = List.of(allowedItem, apdItem, deniedItem, allowedItem);
+
+    List<RequestToken> requests =
+        itemIds.stream()
+            .map(
+                itemId ->
+                    new RequestToken(
+                        new JsonObject()
+                            .put("itemId", itemId)
+                            .put("itemType", "resource")
+                            .put("role", "consumer")))
+            .collect(Collectors.toList());
+
+    JsonObject allowed =
+        new JsonObject()
+            .put("status", "success")
+            .put("cat_id", allowedItem)
+            .put("url", DUMMY_SERVER)
+            .put("constraints", new JsonObject().put("access", new JsonArray().add("api")));
+    JsonObject apdInteraction =
+        new JsonObject()
+            .put("status", "apd-interaction")
+            .put("sessionId", UUID.randomUUID().toString())
+            .put("link", DUMMY_SERVER + "/apd-interact")
+            .put("url", DUMMY_SERVER);
+    ComposeException denied =
+        new ComposeException(403, URN_INVALID_INPUT, "Evaluation failed", "Evaluation failed");
+
+    Mockito.when(
+            policyService.verifyResourceAccess(
+                Mockito.argThat(req -> req != null && allowedItem.equals(req.getItemId())),
+                Mockito.any(),
+                Mockito.any()))
+        .thenAnswer(inv -> Future.succeededFuture(allowed.copy()));
+    Mockito.when(
+            policyService.verifyResourceAccess(
+                Mockito.argThat(req -> req != null && apdItem.equals(req.getItemId())),
+                Mockito.any(),
+                Mockito.any()))
+        .thenAnswer(inv -> Future.succeededFuture(apdInteraction.copy()));
+    Mockito.when(
+            policyService.verifyResourceAccess(
+                Mockito.argThat(req -> req != null && deniedItem.equals(req.getItemId())),
+                Mockito.any(),
+                Mockito.any()))
+        .thenReturn(Future.failedFuture(denied));
+
+    tokenService
+        .createTokens(requests, null, consumerUser)
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(URN_SUCCESS.toString(), response.getString("type"));
+                          assertEquals(TOKENS_PROCESSED, response.getString("title"));
+                          JsonArray results = response.getJsonArray("results");
+                          assertEquals(itemIds.size(), results.size());
+                          for (int i = 0; i < itemIds.size(); i++) {
+                            assertEquals(
+                                itemIds.get(i), results.getJsonObject(i).getString(ITEM_ID));
+                          }
+
+                          JsonObject token = results.getJsonObject(0);
+                          assertEquals(200, token.getInteger("status"));
+                          assertEquals(TOKEN_SUCCESS, token.getString("title"));
+                          JsonObject payload =
+                              getJwtPayload(
+                                  token.getJsonObject("results").getString(ACCESS_TOKEN));
+                          assertEquals(consumerUser.getUserId(), payload.getString(SUB));
+                          assertEquals(DUMMY_SERVER, payload.getString(AUD));
+
+                          JsonObject apd = results.getJsonObject(1);
+                          assertEquals(403, apd.getInteger("status"));
+                          assertEquals(ERR_TITLE_APD_INTERACT_REQUIRED, apd.getString("title"));
+                          assertTrue(apd.getJsonObject("context").containsKey(APD_TOKEN));
+
+                          JsonObject error = results.getJsonObject(2);
+                          assertEquals(403, error.getInteger("status"));
+                          assertEquals(URN_INVALID_INPUT.toString(), error.getString("type"));
+
+                          assertEquals(200, results.getJsonObject(3).getInteger("status"));
+                          testContext.completeNow();
+                        })));
+  }
+
+  @Test
+  @DisplayName("Consumer getting tokens for a batch - internal error fails only that item")
+  void createTokensBatchInternalError(VertxTestContext testContext) {
+
+    User consumerUser = new User(normalUser.toJson());
+    consumerUser.setRoles(List.of(Roles.CONSUMER));
+    consumerUser.setRolesToRsMapping(
+        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+
+    String allowedItem = UUID.randomUUID().toString();
+    String brokenItem = UUID.randomUUID().toString();
+    List<String> itemIds = List.of(brokenItem, allowedItem);
+
+    List<RequestToken> requests =
+        itemIds.stream()
+            .map(
+                itemId ->
+                    new RequestToken(
+                        new JsonObject()
+                            .put("itemId", itemId)
+                            .put("itemType", "resource")
+                            .put("role", "consumer")))
+            .collect(Collectors.toList());
+
+    JsonObject allowed =
+        new JsonObject()
+            .put("status", "success")
+            .put("cat_id", allowedItem)
+            .put("url", DUMMY_SERVER)
+            .put("constraints", new JsonObject().put("access", new JsonArray().add("api")));
+
+    Mockito.when(
+            policyService.verifyResourceAccess(
+                Mockito.argThat(req -> req != null && allowedItem.equals(req.getItemId())),
+                Mockito.any(),
+                Mockito.any()))
+        .thenAnswer(inv -> Future.succeededFuture(allowed.copy()));
+    Mockito.when(
+            policyService.verifyResourceAccess(
+                Mockito.argThat(req -> req != null && brokenItem.equals(req.getItemId())),
+                Mockito.any(),
+                Mockito.any()))
+        .thenReturn(Future.failedFuture(new RuntimeException("Catalogue unavailable")));
+
+    tokenService
+        .createTokens(requests, null, consumerUser)
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(URN_SUCCESS.toString(), response.getString("type"));
+                          JsonArray results = response.getJsonArray("results");
+                          assertEquals(itemIds.size(), results.size());
+
+                          JsonObject error = results.getJsonObject(0);
+                          assertEquals(brokenItem, error.getString(ITEM_ID));
+                          assertEquals(500, error.getInteger("status"));
+                          assertEquals(INTERNAL_SVR_ERR, error.getString("title"));
+
+                          JsonObject token = results.getJsonObject(1);
+                          assertEquals(allowedItem, token.getString(ITEM_ID));
+                          assertEquals(200, token.getInteger("status"));
+                          assertEquals(TOKEN_SUCCESS, token.getString("title"));
+                          testContext.completeNow();
+                        })));
+  }
+
   @Test
   @DisplayName("COS Admin cannot get Resource Server token")
   void createTokenCosAdminResServFail(VertxTestContext testContext) {
@@ -1016,6 +1174,64 @@ public class TokenServiceTest {
                         })));
   }
 
+  @Test
+  @DisplayName("Repeated Resource Server token request returns cached token until role is lost")
+  void createTokenResServCachedToken(VertxTestContext testContext) {
+
+    User consumerUser = new UserBuilder().userId(UUID.randomUUID()).build();
+    consumerUser.setRoles(List.of(Roles.CONSUMER));
+    consumerUser.setRolesToRsMapping(
+        Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
+
+    JsonObject jsonReq =
+        new JsonObject()
+            .put("itemId", DUMMY_SERVER)
+            .put("itemType", "resource_server")
+            .put("role", "consumer");
+    RequestToken request = new RequestToken(jsonReq);
+
+    User noRsUser = new User(consumerUser.toJson());
+    noRsUser.setRolesToRsMapping(Map.of(Roles.CONSUMER.toString(), new JsonArray()));
+
+    Checkpoint cached = testContext.checkpoint();
+    Checkpoint reissued = testContext.checkpoint();
+
+    Future<JsonObject> first = tokenService.createToken(request, null, consumerUser);
+    Future<JsonObject> second =
+        first.compose(res -> tokenService.createToken(request, null, consumerUser));
+
+    second
+        .onSuccess(
+            res ->
+                testContext.verify(
+                    () -> {
+                      assertEquals(
+                          first.result().getJsonObject("results").getString(ACCESS_TOKEN),
+                          res.getJsonObject("results").getString(ACCESS_TOKEN));
+                      cached.flag();
+                    }))
+        .compose(res -> tokenService.createToken(request, null, noRsUser))
+        .compose(
+            res -> {
+              assertEquals(403, res.getInteger("status"));
+              return tokenService.createToken(request, null, consumerUser);
+            })
+        .onComplete(
+            testContext.succeeding(
+                res ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(URN_SUCCESS.toString(), res.getString("type"));
+                          assertFalse(
+                              first
+                                  .result()
+                                  .getJsonObject("results")
+                                  .getString(ACCESS_TOKEN)
+                                  .equals(res.getJsonObject("results").getString(ACCESS_TOKEN)));
+                          reissued.flag();
+                        })));
+  }
+
   @Test
   @DisplayName("Delegate getting Resource Server token - Success")
   void createTokenDelegateResServSuccess(VertxTestContext testContext) {
@@ -1367,7 +1583,6 @@ public class TokenServiceTest {
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_SERVER);
 
-    mockHttpWebClient.setResponse("valid");
     tokenService
         .revokeToken(mapToRevToken(request), consumerUser)
         .onComplete(
@@ -1390,7 +1605,6 @@ public class TokenServiceTest {
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_ACTIVE_APD);
 
-    mockHttpWebClient.setResponse("valid");
     tokenService
         .revokeToken(mapToRevToken(request), consumerUser)
         .onComplete(
@@ -1404,8 +1618,8 @@ public class TokenServiceTest {
   }
 
   @Test
-  @DisplayName("revokeToken [Failed-01 Failure in RS]")
-  void revokeTokenFailed01(VertxTestContext testContext) {
+  @DisplayName("revokeToken [Success - repeated revocations are coalesced and listed as pending]")
+  void revokeTokenPendingListed(VertxTestContext testContext) {
 
     User consumerUser = new User(normalUser.toJson());
     consumerUser.setRoles(List.of(Roles.CONSUMER));
@@ -1413,16 +1627,28 @@ public class TokenServiceTest {
         Map.of(Roles.CONSUMER.toString(), new JsonArray().add(DUMMY_SERVER)));
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_SERVER);
-    mockHttpWebClient.setResponse("invalid");
     tokenService
         .revokeToken(mapToRevToken(request), consumerUser)
+        .compose(res -> tokenService.revokeToken(mapToRevToken(request), consumerUser))
+        .compose(
+            res -> {
+              assertEquals(TOKEN_REVOKE_REQUESTED, res.getString("title"));
+              return tokenService.listRevocations(consumerUser);
+            })
         .onComplete(
             testContext.succeeding(
                 response ->
                     testContext.verify(
                         () -> {
-                          assertEquals(URN_INVALID_INPUT.toString(), response.getString(TYPE));
-                          assertEquals(400, response.getInteger(STATUS));
+                          assertEquals(URN_SUCCESS.toString(), response.getString(TYPE));
+                          List<JsonObject> revocations =
+                              response.getJsonArray("results").stream()
+                                  .map(obj -> (JsonObject) obj)
+                                  .filter(obj -> DUMMY_SERVER.equals(obj.getString(RS_URL)))
+                                  .collect(Collectors.toList());
+                          assertEquals(1, revocations.size());
+                          assertEquals("pending", revocations.get(0).getString(STATUS));
+                          assertEquals(0, revocations.get(0).getInteger("attempts"));
                           testContext.completeNow();
                         })));
   }
@@ -1431,7 +1657,6 @@ public class TokenServiceTest {
   @DisplayName("revokeToken [Failed-02 no roles]")
   void revokeTokenFailed02(VertxTestContext testContext) {
 
-    mockHttpWebClient.setResponse("valid");
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_SERVER);
     tokenService
@@ -1460,7 +1685,6 @@ public class TokenServiceTest {
     JsonObject request =
         new JsonObject().put(RS_URL, RandomStringUtils.randomAlphabetic(10) + ".com");
 
-    mockHttpWebClient.setResponse("valid");
     tokenService
         .revokeToken(mapToRevToken(request), consumerUser)
         .onComplete(
@@ -1483,7 +1707,6 @@ public class TokenServiceTest {
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_INACTIVE_APD);
 
-    mockHttpWebClient.setResponse("valid");
     tokenService
         .revokeToken(mapToRevToken(request), consumerUser)
         .onComplete(
@@ -1506,7 +1729,6 @@ public class TokenServiceTest {
 
     JsonObject request = new JsonObject().put(RS_URL, DUMMY_COS_URL);
 
-    mockHttpWebClient.setResponse("valid");
     tokenService
         .revokeToken(mapToRevToken(request), consumerUser)
         .onComplete(
@@ -1602,6 +1824,87 @@ public class TokenServiceTest {
                         })));
   }
 
+  @Test
+  @DisplayName("validateTokens batch with valid, repeated, invalid and missing tokens [Success]")
+  void validateTokensBatchSuccess(VertxTestContext testContext) {
+    JsonObject userDetailsResp =
+        new JsonObject().put(normalUser.getUserId(), utils.getKcAdminJson(normalUser));
+    mockRegistrationFactory.setResponse(userDetailsResp);
+    Mockito.clearInvocations(registrationService);
+
+    JsonObject identityTokenRequest =
+        new JsonObject()
+            .put(ITEM_TYPE, RESOURCE_SVR)
+            .put(ITEM_ID, DUMMY_SERVER)
+            .put(USER_ID, normalUser.getUserId())
+            .put(URL, DUMMY_SERVER)
+            .put(ROLE, Roles.CONSUMER.toString().toLowerCase());
+    JsonObject resourceTokenRequest =
+        new JsonObject()
+            .put(ITEM_TYPE, "resource_group")
+            .put(ITEM_ID, RESOURCE_GROUP)
+            .put(USER_ID, normalUser.getUserId())
+            .put(URL, DUMMY_SERVER)
+            .put(ROLE, Roles.CONSUMER.toString().toLowerCase());
+
+    String identityToken = tokenServiceImplObj.getJwt(identityTokenRequest).getString(ACCESS_TOKEN);
+    String resourceToken = tokenServiceImplObj.getJwt(resourceTokenRequest).getString(ACCESS_TOKEN);
+
+    List<IntrospectToken> batch =
+        List.of(
+                identityToken,
+                resourceToken,
+                identityToken,
+                randomToken.getString(ACCESS_TOKEN),
+                "")
+            .stream()
+            .map(token -> mapToInspctToken(new JsonObject().put(ACCESS_TOKEN, token)))
+            .collect(Collectors.toList());
+
+    tokenService
+        .validateTokens(batch)
+        .onComplete(
+            testContext.succeeding(
+                response ->
+                    testContext.verify(
+                        () -> {
+                          assertEquals(URN_SUCCESS.toString(), response.getString(TYPE));
+                          JsonArray results = response.getJsonArray("results");
+                          assertEquals(5, results.size());
+
+                          JsonObject identity = results.getJsonObject(0);
+                          assertEquals(200, identity.getInteger("status"));
+                          assertEquals(
+                              "rs:" + DUMMY_SERVER,
+                              identity.getJsonObject("results").getString(IID));
+                          assertTrue(
+                              identity
+                                  .getJsonObject("results")
+                                  .getJsonObject(INTROSPECT_USERINFO)
+                                  .containsKey("email"));
+
+                          JsonObject resource = results.getJsonObject(1);
+                          assertEquals(200, resource.getInteger("status"));
+                          assertFalse(
+                              resource.getJsonObject("results").containsKey(INTROSPECT_USERINFO));
+
+                          assertEquals(identity, results.getJsonObject(2));
+
+                          assertEquals(401, results.getJsonObject(3).getInteger("status"));
+                          assertEquals(
+                              URN_INVALID_AUTH_TOKEN.toString(),
+                              results.getJsonObject(3).getString(TYPE));
+                          assertEquals(400, results.getJsonObject(4).getInteger("status"));
+                          assertEquals(
+                              URN_MISSING_INFO.toString(), results.getJsonObject(4).getString(TYPE));
+
+                          /* user details fetched once for the distinct identity token users */
+                          Mockito.verify(registrationService, Mockito.times(1))
+                              .getUserDetails(List.of(normalUser.getUserId()));
+                          testContext.completeNow();
+                        })));
+  }
+
   @DisplayName("validateToken resource server token - registration service fails [Fail]")
   void validateResourceServerTokenRegServiceFails(VertxTestContext testContext) {
 
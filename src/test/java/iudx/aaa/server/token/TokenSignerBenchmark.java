@@ -0,0 +1,113 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.AUD;
+import static iudx.aaa.server.token.Constants.CLAIM_ISSUER;
+import static iudx.aaa.server.token.Constants.CLAIM_EXPIRY;
+import static iudx.aaa.server.token.Constants.CONS;
+import static iudx.aaa.server.token.Constants.EXP;
+import static iudx.aaa.server.token.Constants.IAT;
+import static iudx.aaa.server.token.Constants.IID;
+import static iudx.aaa.server.token.Constants.ISS;
+import static iudx.aaa.server.token.Constants.ROLE;
+import static iudx.aaa.server.token.Constants.SUB;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.JWTOptions;
+import io.vertx.ext.auth.jwt.JWTAuth;
+import java.security.KeyPair;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares minting a token with {@link JWTAuth#generateToken} against the dedicated {@link
+ * TokenSigner}, using the claims of a typical resource access token. Run with <tt>-prof gc</tt> to
+ * compare allocation rates as well as latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenSignerBenchmark {
+
+  private static final String KID = "ES256";
+
+  private final JWTOptions options =
+      new JWTOptions()
+          .setAlgorithm("ES256")
+          .setHeader(new JsonObject().put(ISS, CLAIM_ISSUER).put(Constants.KID, KID));
+
+  private Vertx vertx;
+  private JWTAuth provider;
+  private TokenSigner signer;
+
+  private final String userId = UUID.randomUUID().toString();
+  private final String iid = "ri:" + UUID.randomUUID();
+  private final JsonObject cons = new JsonObject().put("access", "api");
+
+  @Setup
+  public void setup() throws Exception {
+    vertx = Vertx.vertx();
+    KeyPair keyPair = TokenSignerTest.generateKeyPair();
+    provider = TokenSignerTest.createProvider(vertx, keyPair, KID);
+    signer = new TokenSigner(keyPair.getPrivate(), TokenSigner.encodedHeader(KID));
+  }
+
+  @TearDown
+  public void tearDown() {
+    vertx.close();
+  }
+
+  @Benchmark
+  public String provider() {
+    long timestamp = System.currentTimeMillis() / 1000;
+    JsonObject claims =
+        new JsonObject()
+            .put(SUB, userId)
+            .put(ISS, "cos.iudx.io")
+            .put(AUD, "rs.iudx.io")
+            .put(EXP, timestamp + CLAIM_EXPIRY)
+            .put(IAT, timestamp)
+            .put(IID, iid)
+            .put(ROLE, "consumer")
+            .put(CONS, cons);
+    return provider.generateToken(claims, options);
+  }
+
+  @Benchmark
+  public String signer() {
+    long timestamp = System.currentTimeMillis() / 1000;
+    return signer
+        .claims()
+        .claim(SUB, userId)
+        .claim(ISS, "cos.iudx.io")
+        .claim(AUD, "rs.iudx.io")
+        .claim(EXP, timestamp + CLAIM_EXPIRY)
+        .claim(IAT, timestamp)
+        .claim(IID, iid)
+        .claim(ROLE, "consumer")
+        .claim(CONS, cons)
+        .sign();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(TokenSignerBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
@@ -0,0 +1,117 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.AUD;
+import static iudx.aaa.server.token.Constants.CLAIM_EXPIRY;
+import static iudx.aaa.server.token.Constants.CONS;
+import static iudx.aaa.server.token.Constants.EXP;
+import static iudx.aaa.server.token.Constants.IAT;
+import static iudx.aaa.server.token.Constants.IID;
+import static iudx.aaa.server.token.Constants.ISS;
+import static iudx.aaa.server.token.Constants.ROLE;
+import static iudx.aaa.server.token.Constants.SUB;
+
+import io.vertx.core.json.JsonObject;
+import java.security.KeyPair;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures token signing throughput for increasing thread counts, to check how signing scales with
+ * the number of TokenVerticle instances. As in the verticle, all threads share the same key pair
+ * and each thread has its own {@link TokenSigner}.
+ *
+ * <p>Run {@link #main(String[])} to benchmark 1, 2, 4... threads up to the number of available
+ * processors and print the speedup over a single thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenSignerScalingBenchmark {
+
+  private static final String KID = "ES256";
+
+  /** The key pair, shared by all threads like the keys shared by all verticle instances. */
+  @State(Scope.Benchmark)
+  public static class Keys {
+    KeyPair keyPair;
+
+    @Setup
+    public void setup() throws Exception {
+      keyPair = TokenSignerTest.generateKeyPair();
+    }
+  }
+
+  /** The signer of a thread, like the signer of a verticle instance. */
+  @State(Scope.Thread)
+  public static class Signer {
+    TokenSigner signer;
+
+    private final String userId = UUID.randomUUID().toString();
+    private final String iid = "ri:" + UUID.randomUUID();
+    private final JsonObject cons = new JsonObject().put("access", "api");
+
+    @Setup
+    public void setup(Keys keys) throws Exception {
+      signer = new TokenSigner(keys.keyPair.getPrivate(), TokenSigner.encodedHeader(KID));
+    }
+  }
+
+  @Benchmark
+  public String sign(Signer state) {
+    long timestamp = System.currentTimeMillis() / 1000;
+    return state
+        .signer
+        .claims()
+        .claim(SUB, state.userId)
+        .claim(ISS, "cos.iudx.io")
+        .claim(AUD, "rs.iudx.io")
+        .claim(EXP, timestamp + CLAIM_EXPIRY)
+        .claim(IAT, timestamp)
+        .claim(IID, state.iid)
+        .claim(ROLE, "consumer")
+        .claim(CONS, state.cons)
+        .sign();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    int cores = Runtime.getRuntime().availableProcessors();
+    double baseline = 0;
+
+    for (int threads = 1; threads <= cores; threads = Math.min(threads * 2, cores)) {
+      RunResult result =
+          new Runner(
+                  new OptionsBuilder()
+                      .include(TokenSignerScalingBenchmark.class.getSimpleName())
+                      .threads(threads)
+                      .build())
+              .runSingle();
+
+      double score = result.getPrimaryResult().getScore();
+      if (threads == 1) {
+        baseline = score;
+      }
+      System.out.printf(
+          "threads=%d ops/s=%.0f speedup=%.2fx%n", threads, score, score / baseline);
+
+      if (threads == cores) {
+        break;
+      }
+    }
+  }
+}
@@ -518,11 +518,11 @@ public class TokensIT {
     }
 
     @Test
-    @DisplayName("Cannot get Res group token")
-    void noResGrpToken() {
+    @DisplayName("Res Group - supplied ID not a resource group")
+    void resGrpNotResourceGroup() {
       JsonObject tokenReq =
           new JsonObject()
-              .put("itemId", ALPHA_RES_GROUP_ID)
+              .put("itemId", ALPHA_RES_ITEM_OPEN_ID)
               .put("itemType", ItemType.RESOURCE_GROUP.toString().toLowerCase())
               .put("role", Roles.CONSUMER.toString().toLowerCase());
 
@@ -534,10 +534,10 @@ public class TokensIT {
           .when()
           .post("/token")
           .then()
-          .statusCode(403)
+          .statusCode(400)
           .body("type", equalTo(Urn.URN_INVALID_INPUT.toString()))
-          .body("title", equalTo(ERR_TITLE_NO_RES_GRP_TOKEN))
-          .body("detail", equalTo(ERR_DETAIL_NO_RES_GRP_TOKEN));
+          .body("title", equalTo(ERR_NOT_VALID_RESOURCE_GROUP))
+          .body("detail", equalTo(ALPHA_RES_ITEM_OPEN_ID.toString()));
     }
 
     @Test
@@ -984,11 +984,11 @@ public class TokensIT {
     }
 
     @Test
-    @DisplayName("Cannot get Res group token")
-    void noResGrpToken() {
+    @DisplayName("Res Group - supplied ID not a resource group")
+    void resGrpNotResourceGroup() {
       JsonObject tokenReq =
           new JsonObject()
-              .put("itemId", ALPHA_RES_GROUP_ID)
+              .put("itemId", ALPHA_RES_ITEM_OPEN_ID)
               .put("itemType", ItemType.RESOURCE_GROUP.toString().toLowerCase())
               .put("role", Roles.PROVIDER.toString().toLowerCase());
 
@@ -1000,10 +1000,10 @@ public class TokensIT {
           .when()
           .post("/token")
           .then()
-          .statusCode(403)
+          .statusCode(400)
           .body("type", equalTo(Urn.URN_INVALID_INPUT.toString()))
-          .body("title", equalTo(ERR_TITLE_NO_RES_GRP_TOKEN))
-          .body("detail", equalTo(ERR_DETAIL_NO_RES_GRP_TOKEN));
+          .body("title", equalTo(ERR_NOT_VALID_RESOURCE_GROUP))
+          .body("detail", equalTo(ALPHA_RES_ITEM_OPEN_ID.toString()));
     }
 
     @Test
@@ -1389,8 +1389,8 @@ public class TokensIT {
           .then()
           .statusCode(403)
           .body("type", equalTo(Urn.URN_INVALID_INPUT.toString()))
-          .body("title", equalTo(ERR_TITLE_NO_RES_GRP_TOKEN))
-          .body("detail", equalTo(ERR_DETAIL_NO_RES_GRP_TOKEN));
+          .body("title", equalTo(ACCESS_DENIED))
+          .body("detail", equalTo(INVALID_ROLE));
     }
 
     @Test
@@ -1672,8 +1672,8 @@ public class TokensIT {
           .then()
           .statusCode(403)
           .body("type", equalTo(Urn.URN_INVALID_INPUT.toString()))
-          .body("title", equalTo(ERR_TITLE_NO_RES_GRP_TOKEN))
-          .body("detail", equalTo(ERR_DETAIL_NO_RES_GRP_TOKEN));
+          .body("title", equalTo(ACCESS_DENIED))
+          .body("detail", equalTo(INVALID_ROLE));
     }
 
     @Test
@@ -1942,11 +1942,11 @@ public class TokensIT {
     }
 
     @Test
-    @DisplayName("Cannot get Res group token")
-    void noResGrpToken() {
+    @DisplayName("Res Group - supplied ID not a resource group")
+    void resGrpNotResourceGroup() {
       JsonObject tokenReq =
           new JsonObject()
-              .put("itemId", ALPHA_RES_GROUP_ID)
+              .put("itemId", ALPHA_RES_ITEM_OPEN_ID)
               .put("itemType", ItemType.RESOURCE_GROUP.toString().toLowerCase())
               .put("role", Roles.DELEGATE.toString().toLowerCase());
 
@@ -1959,10 +1959,10 @@ public class TokensIT {
           .when()
           .post("/token")
           .then()
-          .statusCode(403)
+          .statusCode(400)
           .body("type", equalTo(Urn.URN_INVALID_INPUT.toString()))
-          .body("title", equalTo(ERR_TITLE_NO_RES_GRP_TOKEN))
-          .body("detail", equalTo(ERR_DETAIL_NO_RES_GRP_TOKEN));
+          .body("title", equalTo(ERR_NOT_VALID_RESOURCE_GROUP))
+          .body("detail", equalTo(ALPHA_RES_ITEM_OPEN_ID.toString()));
     }
 
     @Test
@@ -2524,11 +2524,11 @@ public class TokensIT {
     }
 
     @Test
-    @DisplayName("Cannot get Res group token")
-    void noResGrpToken() {
+    @DisplayName("Res Group - supplied ID not a resource group")
+    void resGrpNotResourceGroup() {
       JsonObject tokenReq =
           new JsonObject()
-              .put("itemId", ALPHA_RES_GROUP_ID)
+              .put("itemId", ALPHA_RES_ITEM_OPEN_ID)
               .put("itemType", ItemType.RESOURCE_GROUP.toString().toLowerCase())
               .put("role", Roles.DELEGATE.toString().toLowerCase());
 
@@ -2541,10 +2541,10 @@ public class TokensIT {
           .when()
           .post("/token")
           .then()
-          .statusCode(403)
+          .statusCode(400)
           .body("type", equalTo(Urn.URN_INVALID_INPUT.toString()))
-          .body("title", equalTo(ERR_TITLE_NO_RES_GRP_TOKEN))
-          .body("detail", equalTo(ERR_DETAIL_NO_RES_GRP_TOKEN));
+          .body("title", equalTo(ERR_NOT_VALID_RESOURCE_GROUP))
+          .body("detail", equalTo(ALPHA_RES_ITEM_OPEN_ID.toString()));
     }
 
     @Test
@@ -0,0 +1,105 @@
+package iudx.aaa.server.token;
+
+import static iudx.aaa.server.token.Constants.EXP;
+import static iudx.aaa.server.token.Constants.INTROSPECT_USERINFO;
+import static iudx.aaa.server.token.Constants.SUB;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.common.base.Ticker;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** Unit tests for the introspection cache of verified tokens. */
+@ExtendWith(VertxExtension.class)
+public class VerifiedTokenCacheTest {
+
+  private static final long START = 1_700_000_000L;
+
+  /* a single clock drives both the wall time and the cache's ticker */
+  private final AtomicLong seconds = new AtomicLong();
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return TimeUnit.SECONDS.toNanos(seconds.get() - START);
+        }
+      };
+
+  private VerifiedTokenCache cache;
+
+  @BeforeEach
+  void setup(Vertx vertx) {
+    seconds.set(START);
+    cache = new VerifiedTokenCache(vertx, 10, 300, false, ticker, seconds::get);
+  }
+
+  private static JsonObject claims(long exp) {
+    return new JsonObject().put(SUB, UUID.randomUUID().toString()).put(EXP, exp);
+  }
+
+  @Test
+  @DisplayName("Verified token is returned until the TTL cap")
+  void ttlCap() {
+    String token = UUID.randomUUID().toString();
+    JsonObject claims = claims(START + 3600);
+    cache.put(token, claims);
+
+    seconds.addAndGet(299);
+    assertEquals(claims, cache.get(token));
+
+    seconds.addAndGet(1);
+    assertNull(cache.get(token));
+  }
+
+  @Test
+  @DisplayName("Token is not returned once exp has passed, even within the TTL cap")
+  void honoursExp() {
+    String token = UUID.randomUUID().toString();
+    cache.put(token, claims(START + 10));
+
+    seconds.addAndGet(9);
+    assertEquals(START + 10, cache.get(token).getLong(EXP));
+
+    seconds.addAndGet(1);
+    assertNull(cache.get(token));
+  }
+
+  @Test
+  @DisplayName("Expired tokens and unknown tokens are not cached")
+  void expiredNotCached() {
+    String token = UUID.randomUUID().toString();
+    cache.put(token, claims(START));
+    assertNull(cache.get(token));
+    assertNull(cache.get(UUID.randomUUID().toString()));
+  }
+
+  @Test
+  @DisplayName("Changes to a returned result do not affect the cached claims")
+  void returnsCopy() {
+    String token = UUID.randomUUID().toString();
+    cache.put(token, claims(START + 3600));
+
+    cache.get(token).put(INTROSPECT_USERINFO, new JsonObject());
+    assertFalse(cache.get(token).containsKey(INTROSPECT_USERINFO));
+  }
+
+  @Test
+  @DisplayName("Cache size of 0 disables caching")
+  void disabled(Vertx vertx) {
+    VerifiedTokenCache disabled =
+        new VerifiedTokenCache(vertx, 0, 300, false, ticker, seconds::get);
+    String token = UUID.randomUUID().toString();
+    disabled.put(token, claims(START + 3600));
+    assertNull(disabled.get(token));
+  }
+}